@@ -0,0 +1,41 @@
+package benchmark;
+
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
+import org.fxtravel.fxspringboot.event.EventCenterImpl;
+import org.fxtravel.fxspringboot.event.EventListener;
+import org.fxtravel.fxspringboot.event.EventType;
+import org.fxtravel.fxspringboot.event.data.PaymentInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// 同步发布事件的开销随监听器数量的变化
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventCenterBenchmark {
+    @Param({"1", "8", "64"})
+    int listeners;
+
+    private EventCenterImpl eventCenter;
+    private PaymentInfo info;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        eventCenter = new EventCenterImpl();
+        for (int i = 0; i < listeners; i++) {
+            EventListener<PaymentInfo> listener = blackhole::consume;
+            eventCenter.subscribe(EventType.TT_STATUS_CHANGED, listener);
+        }
+        info = new PaymentInfo(1, 1, 1, E_PaymentStatus.COMPLETED, 1, "A01");
+    }
+
+    @Benchmark
+    public void publish() {
+        eventCenter.publish(EventType.TT_STATUS_CHANGED, info);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmark;
+
+import org.fxtravel.fxspringboot.common.E_PaymentType;
+import org.fxtravel.fxspringboot.service.impl.common.PaymentServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+// 订单号生成，单线程与多线程并发
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderNumberBenchmark {
+    private MethodHandle generate;
+
+    @Setup
+    public void setUp() throws Exception {
+        // 生成方法是私有的，通过方法句柄调用
+        Method method = PaymentServiceImpl.class.getDeclaredMethod("generateOrderNumber", E_PaymentType.class);
+        method.setAccessible(true);
+        generate = MethodHandles.lookup().unreflect(method).bindTo(new PaymentServiceImpl());
+    }
+
+    @Benchmark
+    public String generateOrderNumber() throws Throwable {
+        return (String) generate.invokeExact(E_PaymentType.TRAIN_TICKET);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generateOrderNumberContended() throws Throwable {
+        return (String) generate.invokeExact(E_PaymentType.TRAIN_TICKET);
+    }
+}
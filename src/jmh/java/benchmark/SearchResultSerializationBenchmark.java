@@ -0,0 +1,65 @@
+package benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.fxtravel.fxspringboot.common.SeatType;
+import org.fxtravel.fxspringboot.common.TrainType;
+import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
+import org.fxtravel.fxspringboot.pojo.entities.Train;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.utils.SeatBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 车次查询结果的JSON序列化，与接口返回的内容一致（包含座位位图）
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResultSerializationBenchmark {
+    // 查询结果中的车次数
+    @Param({"10", "100"})
+    int trains;
+
+    private ObjectMapper objectMapper;
+    private List<TrainSearchResult> results;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        LocalDateTime departure = LocalDateTime.of(2025, 1, 1, 8, 0);
+        SeatType[] seatTypes = SeatType.values();
+        results = new ArrayList<>(trains);
+        for (int i = 0; i < trains; i++) {
+            Train train = new Train(i, "G" + (100 + i), TrainType.HIGH_SPEED_TRAIN, "北京", "上海",
+                    departure.plusMinutes(10L * i), departure.plusMinutes(10L * i + 300), 300);
+            List<TrainSeat> seats = new ArrayList<>(seatTypes.length);
+            for (int s = 0; s < seatTypes.length; s++) {
+                TrainSeat seat = new TrainSeat();
+                seat.setId(i * seatTypes.length + s);
+                seat.setTrainId(i);
+                seat.setSeatType(seatTypes[s]);
+                seat.setPrice(553.0 + 100 * s);
+                seat.setRemain(40);
+                seat.setSeatAllocation(SeatBitmap.empty(100, 1).encode());
+                seats.add(seat);
+            }
+            TrainSearchResult result = new TrainSearchResult();
+            result.setTrain(train);
+            result.setTrainseats(seats);
+            results.add(result);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(results);
+    }
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+import org.fxtravel.fxspringboot.utils.SeatBitmap;
+import org.fxtravel.fxspringboot.utils.SeatUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// 座位位图的热点路径：查找空位、置位、座位号解析
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SeatUtilBenchmark {
+    // 座位数与已售比例
+    @Param({"100", "1000"})
+    int capacity;
+    @Param({"0.5", "0.95"})
+    double occupied;
+
+    private byte[] allocation;
+    private String[] numbers;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        SeatBitmap bitmap = SeatBitmap.empty(capacity, 1);
+        bitmap.set(0, 1, IntStream.range(0, capacity).filter(i -> random.nextDouble() < occupied).toArray());
+        allocation = bitmap.encode();
+        numbers = IntStream.range(0, capacity).mapToObj(SeatUtil::idx2number).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public int nextAvailable() {
+        return SeatUtil.nextAvailable(allocation);
+    }
+
+    @Benchmark
+    public byte[] setBit() {
+        return SeatUtil.setBit(allocation, capacity - 1);
+    }
+
+    @Benchmark
+    public int number2idx() {
+        cursor = cursor + 1 == numbers.length ? 0 : cursor + 1;
+        return SeatUtil.number2idx(numbers[cursor]);
+    }
+}
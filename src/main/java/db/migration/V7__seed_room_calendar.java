@@ -0,0 +1,104 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按已有的房间订单初始化库存日历，并把room.remain恢复为每晚可售间数
+ * V3之前下单时直接把remain减1，离店后也不归还；V3起remain表示每晚可售间数，按入住区间逐晚记入room_calendar。
+ * 仍占用房间的订单（待支付、已完成、已交易）把尚未过去的夜晚记入日历，并把当初扣掉的remain加回。
+ * 编码与RoomCalendar一致（每晚2字节，大端），这里单独实现，迁移内容不随业务代码变化。
+ */
+public class V7__seed_room_calendar extends BaseJavaMigration {
+
+    private static final String HELD = "'PENDING', 'COMPLETED', 'FINISHED'";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        LocalDate today = LocalDate.now();
+
+        // 房型ID/月份 -> 当月每晚的已售间数
+        Map<String, int[]> sold = new HashMap<>();
+        String orders = "SELECT room_id, check_in_date, check_out_date FROM room_order "
+                + "WHERE status IN (" + HELD + ") AND check_out_date > ?";
+        try (PreparedStatement statement = connection.prepareStatement(orders)) {
+            statement.setDate(1, Date.valueOf(today));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    int roomId = rs.getInt(1);
+                    LocalDate checkIn = rs.getDate(2).toLocalDate();
+                    LocalDate checkOut = rs.getDate(3).toLocalDate();
+                    LocalDate night = checkIn.isBefore(today) ? today : checkIn;
+                    for (; night.isBefore(checkOut); night = night.plusDays(1)) {
+                        YearMonth month = YearMonth.from(night);
+                        sold.computeIfAbsent(roomId + "/" + month, k -> new int[month.lengthOfMonth()])
+                                [night.getDayOfMonth() - 1]++;
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, int[]> entry : sold.entrySet()) {
+            String[] key = entry.getKey().split("/");
+            merge(connection, Integer.parseInt(key[0]), key[1], entry.getValue());
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE room SET remain = remain + (SELECT COUNT(*) FROM room_order o "
+                    + "WHERE o.room_id = room.id AND o.status IN (" + HELD + "))");
+        }
+    }
+
+    // 与已有的行相加，没有时插入
+    private static void merge(Connection connection, int roomId, String stayMonth, int[] nights) throws Exception {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT sold FROM room_calendar WHERE room_id = ? AND stay_month = ?")) {
+            select.setInt(1, roomId);
+            select.setString(2, stayMonth);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    byte[] existing = rs.getBytes(1);
+                    for (int i = 0; i < nights.length && i * 2 + 1 < existing.length; i++) {
+                        nights[i] += ((existing[i * 2] & 0xFF) << 8) | (existing[i * 2 + 1] & 0xFF);
+                    }
+                    try (PreparedStatement update = connection.prepareStatement(
+                            "UPDATE room_calendar SET sold = ? WHERE room_id = ? AND stay_month = ?")) {
+                        update.setBytes(1, encode(nights));
+                        update.setInt(2, roomId);
+                        update.setString(3, stayMonth);
+                        update.executeUpdate();
+                    }
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO room_calendar (room_id, stay_month, sold) VALUES (?, ?, ?)")) {
+            insert.setInt(1, roomId);
+            insert.setString(2, stayMonth);
+            insert.setBytes(3, encode(nights));
+            insert.executeUpdate();
+        }
+    }
+
+    private static byte[] encode(int[] nights) {
+        byte[] bytes = new byte[nights.length * 2];
+        for (int i = 0; i < nights.length; i++) {
+            int value = Math.min(nights[i], 0xFFFF);
+            bytes[i * 2] = (byte) (value >>> 8);
+            bytes[i * 2 + 1] = (byte) value;
+        }
+        return bytes;
+    }
+}
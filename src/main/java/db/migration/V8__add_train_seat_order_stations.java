@@ -0,0 +1,40 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 为按基线接入的旧库补上按区间购票新增的列
+ * V1只在表不存在时建表，已有的train_seat_order不会得到from_station/to_station，关闭ddl-auto后插入订单会失败。
+ * 新建的库在V1中已有这两列，曾在ddl-auto: update下运行过的库也可能已经有了，因此只添加缺少的列。
+ */
+public class V8__add_train_seat_order_stations extends BaseJavaMigration {
+
+    // 表名、列名、列定义
+    private static final String[][] COLUMNS = {
+            {"train_seat_order", "from_station", "VARCHAR(255)"},
+            {"train_seat_order", "to_station", "VARCHAR(255)"},
+    };
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String[] column : COLUMNS) {
+                if (!exists(connection, column[0], column[1])) {
+                    statement.executeUpdate("ALTER TABLE " + column[0] + " ADD COLUMN " + column[1] + " " + column[2]);
+                }
+            }
+        }
+    }
+
+    private static boolean exists(Connection connection, String table, String column) throws Exception {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.fxtravel.fxspringboot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时恢复支付超时任务
+ * 超时任务只保存在内存的时间轮中，重启后丢失；这里按主键分批读取PENDING的支付记录，
+ * 以payment_time + timeout_seconds为到期时间重新设置，已经过期的立即置为失败并归还库存。
+ */
+@Slf4j
+@Component
+public class PaymentTimeoutRecovery implements ApplicationRunner {
+    private final PaymentService paymentService;
+
+    @Value("${fx.payment.timeout.recover-on-startup:true}")
+    private boolean enabled = true;
+
+    @Value("${fx.payment.timeout.recover-batch-size:500}")
+    private int batchSize = 500;
+
+    public PaymentTimeoutRecovery(PaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int recovered = paymentService.recoverTimeouts(batchSize);
+            if (recovered > 0) {
+                log.info("Payment timeout recovery re-armed {} pending payments", recovered);
+            }
+        } catch (Exception e) {
+            log.error("Payment timeout recovery failed", e);
+        }
+    }
+}
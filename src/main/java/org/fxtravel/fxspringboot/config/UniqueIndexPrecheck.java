@@ -0,0 +1,97 @@
+package org.fxtravel.fxspringboot.config;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行新建唯一索引的迁移前检查重复数据
+ * 已有数据库按版本0建立基线后会执行V2，表中已有重复值时CREATE UNIQUE INDEX只会报出数据库的原始错误。
+ * 这里在迁移开始前统计重复值，存在时中止迁移并列出需要人工合并的数据；
+ * 支付单号、用户邮箱与座次都关联着业务数据，不自动删除或改写。
+ */
+@Component
+public class UniqueIndexPrecheck implements Callback {
+    // 迁移版本 -> 该版本新建的唯一索引：表名与列
+    private static final Map<String, List<String[]>> CHECKS = Map.of("2", List.of(
+            new String[]{"payment", "order_number"},
+            new String[]{"user", "email"},
+            new String[]{"train_stop", "train_id", "stop_index"},
+            new String[]{"train_seat", "train_id", "seat_type"}));
+
+    // 每个索引最多列出的重复值
+    private static final int SAMPLE = 5;
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE;
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        MigrationInfo info = context.getMigrationInfo();
+        if (info == null || info.getVersion() == null) {
+            return;
+        }
+        List<String[]> checks = CHECKS.get(info.getVersion().getVersion());
+        if (checks == null) {
+            return;
+        }
+
+        List<String> duplicates = new ArrayList<>();
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (String[] check : checks) {
+                duplicates.addAll(findDuplicates(statement, check));
+            }
+        } catch (SQLException e) {
+            throw new FlywayException("Unique index pre-check failed: " + e.getMessage(), e);
+        }
+        if (!duplicates.isEmpty()) {
+            throw new FlywayException("Migration " + info.getVersion() + " adds unique indexes but the tables "
+                    + "contain duplicates; merge or remove them and restart:\n" + String.join("\n", duplicates));
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return "uniqueIndexPrecheck";
+    }
+
+    // 按唯一索引的列分组统计，NULL不受唯一约束限制，不计入重复
+    private static List<String> findDuplicates(Statement statement, String[] check) throws SQLException {
+        String table = check[0];
+        String columns = String.join(", ", List.of(check).subList(1, check.length));
+        String notNull = String.join(" IS NOT NULL AND ", List.of(check).subList(1, check.length)) + " IS NOT NULL";
+        String sql = "SELECT " + columns + ", COUNT(*) FROM " + table + " WHERE " + notNull
+                + " GROUP BY " + columns + " HAVING COUNT(*) > 1 LIMIT " + SAMPLE;
+
+        List<String> duplicates = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            int width = check.length - 1;
+            while (rs.next()) {
+                List<String> values = new ArrayList<>(width);
+                for (int i = 1; i <= width; i++) {
+                    values.add(rs.getString(i));
+                }
+                duplicates.add("  " + table + " (" + columns + ") = (" + String.join(", ", values) + "): "
+                        + rs.getLong(width + 1) + " rows");
+            }
+        }
+        return duplicates;
+    }
+}
@@ -0,0 +1,35 @@
+package org.fxtravel.fxspringboot.controller.common;
+
+import org.fxtravel.fxspringboot.service.inter.common.SuggestService;
+import org.fxtravel.fxspringboot.utils.PrefixTrie;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/suggest")
+public class SuggestController {
+
+    @Autowired
+    private SuggestService suggestService;
+
+    // 输入补全：type为station（车站）或destination（酒店目的地）
+    @GetMapping
+    public ResponseEntity<?> suggest(@RequestParam(defaultValue = "station") String type,
+                                     @RequestParam String prefix,
+                                     @RequestParam(defaultValue = "10") int limit) {
+        int size = Math.min(Math.max(limit, 1), PrefixTrie.TOP_K);
+        List<String> results = switch (type) {
+            case "station" -> suggestService.suggestStations(prefix, size);
+            case "destination" -> suggestService.suggestDestinations(prefix, size);
+            default -> null;
+        };
+        if (results == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "不支持的类型: " + type));
+        }
+        return ResponseEntity.ok(results);
+    }
+}
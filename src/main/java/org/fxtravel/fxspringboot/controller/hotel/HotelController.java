@@ -3,9 +3,11 @@ package org.fxtravel.fxspringboot.controller.hotel;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.BookHotelRequest;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.HotelSearchResult;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.SearchHotelRequest;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.dto.train.SearchTrainRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Hotel;
@@ -21,6 +23,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,17 +44,30 @@ public class HotelController {
         if (errors != null) return errors;
 
         try {
-            List<HotelSearchResult> results = hotelService.searchHotels(
-                    request.getDestination(), request.getNamePattern());
+            SearchPage<HotelSearchResult> page = hotelService.searchHotels(
+                    request.getDestination(), request.getNamePattern(),
+                    request.getCursor(), request.getPageSize(), stayOf(request));
 
-            return ResponseEntity.ok(Map.of(
+            Map<String, Object> body = new HashMap<>(Map.of(
                     "message", "查询成功",
-                    "data", results,
+                    "data", page.getItems(),
                     "sortBy", "rating"
             ));
+            body.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "查询失败: " + e.getMessage()));
         }
     }
+
+    // 入住、离店日期都未给出时不计算可订间数；只给出一个时由服务层报参数错误
+    private static StayClaim stayOf(SearchHotelRequest request) {
+        if (request.getCheckInDate() == null && request.getCheckOutDate() == null) {
+            return null;
+        }
+        return new StayClaim(request.getCheckInDate(), request.getCheckOutDate());
+    }
 }
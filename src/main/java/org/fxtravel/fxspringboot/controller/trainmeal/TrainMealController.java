@@ -1,6 +1,7 @@
 package org.fxtravel.fxspringboot.controller.trainmeal;
 
 import jakarta.servlet.http.HttpSession;
+import org.fxtravel.fxspringboot.common.Role;
 import org.fxtravel.fxspringboot.pojo.dto.trainmeal.TrainMealQueryDTO;
 import org.fxtravel.fxspringboot.pojo.entities.User;
 import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
@@ -21,6 +22,12 @@ public class TrainMealController {
     @Autowired
     private TrainMealService trainMealService;
 
+    // 餐食库存运行统计
+    @GetMapping("/stats")
+    public Map<String, Long> getStockStats() {
+        return trainMealService.getStockStats();
+    }
+
     @GetMapping("/{trainId}")
     public ResponseEntity<?> getUserMeals(@PathVariable Integer trainId,
                                                         HttpSession session) {
@@ -39,4 +46,23 @@ public class TrainMealController {
                 "sortBy", "price"
         ));
     }
+
+    // 修改餐食信息或上下架，仅管理员可访问；余量由下单、退单维护，请求中的remain被忽略
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateMeal(@PathVariable Integer id, @RequestBody TrainMeal meal,
+                                        HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "未登录"));
+        }
+        if (!Role.ADMIN.equals(user.getRole())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "权限不足"));
+        }
+
+        meal.setId(id);
+        if (!trainMealService.updateMeal(meal)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "餐食不存在"));
+        }
+        return ResponseEntity.ok(Map.of("message", "修改成功"));
+    }
 }
@@ -2,6 +2,8 @@ package org.fxtravel.fxspringboot.controller.trainseat;
 
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
+import org.fxtravel.fxspringboot.pojo.dto.train.FlexSearchResult;
 import org.fxtravel.fxspringboot.pojo.dto.train.SearchTrainRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
@@ -15,6 +17,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +32,20 @@ public class TrainSeatController {
         return trainSeatService.getTrainById(id);
     }
 
+    // 座位库存运行统计
+    @GetMapping("/seat/stats")
+    public Map<String, Long> getInventoryStats() {
+        return trainSeatService.getInventoryStats();
+    }
+
+    // 指定区间内各座次的余座，不传车站时为整趟
+    @GetMapping("/seat/availability")
+    public Map<Integer, Integer> getAvailability(@RequestParam Integer trainId,
+                                                 @RequestParam(required = false) String fromStation,
+                                                 @RequestParam(required = false) String toStation) {
+        return trainSeatService.getAvailability(trainId, fromStation, toStation);
+    }
+
     // 按出发时间排序查询车次接口
     @PostMapping("/seat/by-departure-time")
     public ResponseEntity<?> searchTrainByDepartureTime(@Valid @RequestBody SearchTrainRequest request,
@@ -40,17 +57,23 @@ public class TrainSeatController {
         if (errors != null) return errors;
 
         try {
-            List<TrainSearchResult> results = trainSeatService.findByRouteAndTimeOrderByTime(
+            SearchPage<TrainSearchResult> page = trainSeatService.findByRouteAndTimeOrderByTime(
                     request.getDepartureStation(),
                     request.getArrivalStation(),
-                    request.getDepartureDate()
+                    request.getDepartureDate(),
+                    request.getCursor(),
+                    request.getPageSize()
             );
 
-            return ResponseEntity.ok(Map.of(
+            Map<String, Object> body = new HashMap<>(Map.of(
                     "message", "查询成功",
-                    "data", results,
+                    "data", page.getItems(),
                     "sortBy", "departureTime"
             ));
+            body.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "查询失败: " + e.getMessage()));
@@ -67,7 +90,71 @@ public class TrainSeatController {
         if (errors != null) return errors;
 
         try {
-            List<TrainSearchResult> results = trainSeatService.findByRouteAndTimeOrderByDuration(
+            SearchPage<TrainSearchResult> page = trainSeatService.findByRouteAndTimeOrderByDuration(
+                    request.getDepartureStation(),
+                    request.getArrivalStation(),
+                    request.getDepartureDate(),
+                    request.getCursor(),
+                    request.getPageSize()
+            );
+
+            Map<String, Object> body = new HashMap<>(Map.of(
+                    "message", "查询成功",
+                    "data", page.getItems(),
+                    "sortBy", "departureTime"
+            ));
+            body.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "查询失败: " + e.getMessage()));
+        }
+    }
+
+    // 弹性日期查询：出发日期前后flexDays天的车次及每天的最早、最短、最低价与余座
+    @PostMapping("/seat/flex")
+    public ResponseEntity<?> searchFlexible(@Valid @RequestBody SearchTrainRequest request,
+                                            BindingResult bindingResult,
+                                            HttpSession session) {
+        User user = (User) session.getAttribute("user");
+
+        ResponseEntity<? extends Map<String, ?>> errors = AuthUtil.check(bindingResult, user);
+        if (errors != null) return errors;
+
+        try {
+            FlexSearchResult result = trainSeatService.findFlexible(
+                    request.getDepartureStation(),
+                    request.getArrivalStation(),
+                    request.getDepartureDate(),
+                    request.getFlexDays() == null ? 3 : request.getFlexDays()
+            );
+
+            return ResponseEntity.ok(Map.of(
+                    "message", "查询成功",
+                    "days", result.getDays(),
+                    "data", result.getTrains(),
+                    "sortBy", "departureTime"
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "查询失败: " + e.getMessage()));
+        }
+    }
+
+    // 换乘查询：一次、两次换乘的行程，每个行程为各段列车的查询结果
+    @PostMapping("/seat/transfer")
+    public ResponseEntity<?> searchTransfer(@Valid @RequestBody SearchTrainRequest request,
+                                            BindingResult bindingResult,
+                                            HttpSession session) {
+        User user = (User) session.getAttribute("user");
+
+        ResponseEntity<? extends Map<String, ?>> errors = AuthUtil.check(bindingResult, user);
+        if (errors != null) return errors;
+
+        try {
+            List<List<TrainSearchResult>> results = trainSeatService.findTransfers(
                     request.getDepartureStation(),
                     request.getArrivalStation(),
                     request.getDepartureDate()
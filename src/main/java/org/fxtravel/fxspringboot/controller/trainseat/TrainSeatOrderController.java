@@ -8,6 +8,7 @@ import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentRequest;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentResultDTO;
+import org.fxtravel.fxspringboot.pojo.dto.train.BatchTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.GetTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSeatOrderDTO;
 import org.fxtravel.fxspringboot.pojo.entities.*;
@@ -18,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -78,6 +80,33 @@ public class TrainSeatOrderController {
         }
     }
 
+    // 一次为多位乘客购票：一次占座、一笔支付、一条语句插入全部订单
+    @PostMapping("/ticket/batch")
+    public ResponseEntity<?> getTickets(@Valid @RequestBody BatchTicketRequest request,
+                                        BindingResult bindingResult) {
+        if (bindingResult.hasErrors()) {
+            List<String> errors = bindingResult.getFieldErrors()
+                    .stream()
+                    .map(FieldError::getDefaultMessage)
+                    .toList();
+            return ResponseEntity.badRequest().body(Map.of("errors", errors));
+        }
+
+        try {
+            List<TrainSeatOrder> orders = trainSeatOrderService.createOrders(request);
+
+            return ResponseEntity.ok(Map.of(
+                    "message", "车票生成成功",
+                    "ids", orders.stream().map(TrainSeatOrder::getId).toList(),
+                    "number", orders.get(0).getOrderNumber(),
+                    "seats", orders.stream().map(o -> o.getSeatNumber() == null ? "" : o.getSeatNumber()).toList()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "生成车票失败: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/ticket/{orderId}")
     public ResponseEntity<PaymentResultDTO> getOrderPaymentStatus(@PathVariable Integer orderId) {
         TrainSeatOrder order = trainSeatOrderService.getOrderById(orderId);
@@ -112,6 +141,8 @@ public class TrainSeatOrderController {
                             train,
                             seat,  // 使用预加载的座位数据
                             order.getSeatNumber(),
+                            order.getFromStation(),
+                            order.getToStation(),
                             order.getRelatedPaymentId(),
                             order.getTotalAmount(),
                             order.getStatus(),
@@ -7,6 +7,9 @@ import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 @Data
 @AllArgsConstructor
 public class PaymentInfo {
+    // 支付失败时没有占用任何库存（库存不足、支付未开启），收到时不需要归还
+    public static final Object NOTHING_HELD = new Object();
+
     private Integer orderId;                // 订单ID
     private Integer goodId;                 // 商品ID
     private Integer quantity;               // 购买数量
@@ -1,6 +1,7 @@
 package org.fxtravel.fxspringboot.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 import org.fxtravel.fxspringboot.common.E_PaymentStatus;
@@ -59,9 +60,36 @@ public interface PaymentMapper extends BaseMapper<payment> {
     @Select("SELECT * FROM payment WHERE order_number = #{orderNumber}")
     payment selectByOrderNumber(String orderNumber);
 
-    // 更新支付状态
-    @Update("UPDATE payment SET status = #{status}, payment_time = #{paymentTime} WHERE order_number = #{orderNumber}")
-    int updateStatus(String orderNumber, E_PaymentStatus status, LocalDateTime paymentTime);
+    // 比较并更新支付状态：当前状态仍为expected时才更新，返回0表示已被其他请求或清理任务改变
+    @Update("UPDATE payment SET status = #{status}, payment_time = #{paymentTime} " +
+            "WHERE order_number = #{orderNumber} AND status = #{expected}")
+    int updateStatus(@Param("orderNumber") String orderNumber, @Param("expected") E_PaymentStatus expected,
+                     @Param("status") E_PaymentStatus status, @Param("paymentTime") LocalDateTime paymentTime);
+
+    // 开始支付：只有仍未开启的支付才进入待支付并记录超时时间
+    @Update("UPDATE payment SET status = 'PENDING', payment_time = #{paymentTime}, " +
+            "timeout_seconds = #{timeoutSeconds}, expire_time = #{expireTime} " +
+            "WHERE order_number = #{orderNumber} AND status = 'IDLE'")
+    int startPending(@Param("orderNumber") String orderNumber, @Param("paymentTime") LocalDateTime paymentTime,
+                     @Param("timeoutSeconds") long timeoutSeconds, @Param("expireTime") LocalDateTime expireTime);
+
+    // 按主键分批读取待支付的记录，启动时恢复超时任务
+    @Select("SELECT * FROM payment WHERE status = 'PENDING' AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<payment> findPendingAfter(int afterId, int limit);
+
+    // 按超时时间读取一批已超时的支付并加锁，由清理任务在同一事务中批量置为失败
+    @Select("SELECT * FROM payment WHERE status = #{status} AND expire_time < #{before} " +
+            "ORDER BY expire_time, id LIMIT #{limit} FOR UPDATE")
+    List<payment> findExpiredForUpdate(E_PaymentStatus status, LocalDateTime before, int limit);
+
+    // 一条语句把一批支付置为失败，状态已经改变的行不更新
+    @Update("<script>" +
+            "UPDATE payment SET status = 'FAILED', payment_time = #{paymentTime} " +
+            "WHERE status = #{expected} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int failAll(@Param("ids") List<Integer> ids, @Param("expected") E_PaymentStatus expected,
+                @Param("paymentTime") LocalDateTime paymentTime);
 
     // 统计某类型的支付总金额
     @Select("SELECT COALESCE(SUM(amount), 0) FROM payment WHERE type = #{type} AND status = 'COMPLETED'")
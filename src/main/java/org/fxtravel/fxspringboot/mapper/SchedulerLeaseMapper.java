@@ -0,0 +1,17 @@
+package org.fxtravel.fxspringboot.mapper;
+
+import org.apache.ibatis.annotations.Update;
+
+// 定时任务租约，时间以数据库时钟为准，避免各实例的时钟偏差
+public interface SchedulerLeaseMapper {
+    // 租约空闲、已过期或本来就由owner持有时获取（续期），成功返回1
+    @Update("UPDATE scheduler_lease SET owner = #{owner}, " +
+            "lease_until = TIMESTAMPADD(SECOND, #{leaseSeconds}, CURRENT_TIMESTAMP(6)) " +
+            "WHERE name = #{name} AND (owner = #{owner} OR lease_until < CURRENT_TIMESTAMP(6))")
+    int acquire(String name, String owner, long leaseSeconds);
+
+    // 主动释放，其他实例下一轮即可接管
+    @Update("UPDATE scheduler_lease SET owner = NULL, lease_until = CURRENT_TIMESTAMP(6) " +
+            "WHERE name = #{name} AND owner = #{owner}")
+    int release(String name, String owner);
+}
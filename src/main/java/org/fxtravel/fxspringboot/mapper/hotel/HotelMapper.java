@@ -5,6 +5,7 @@ import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.apache.ibatis.annotations.*;
 
 import java.util.List;
+import java.util.Map;
 
 public interface HotelMapper extends BaseMapper<Hotel> {
 
@@ -13,4 +14,22 @@ public interface HotelMapper extends BaseMapper<Hotel> {
 
     @Select("SELECT * FROM hotel WHERE destination = #{destination} AND name LIKE CONCAT('%', #{name}, '%') ORDER BY rating DESC")
     List<Hotel> findByDestAndName(@Param("destination") String destination, @Param("name") String name);
+
+    // 按ID顺序增量读取，用于加载酒店名称索引
+    @Select("SELECT * FROM hotel WHERE id > #{afterId} ORDER BY id")
+    List<Hotel> findAfter(@Param("afterId") int afterId);
+
+    // 各目的地的酒店数，用于输入补全的热度排序
+    @Select("SELECT destination AS name, COUNT(*) AS weight FROM hotel GROUP BY destination")
+    List<Map<String, Object>> countByDestination();
+
+    // 键集分页：按(评分降序, id)排序，未评分的排在最后；name为空时不按名称过滤
+    @Select("<script>SELECT * FROM hotel WHERE destination = #{destination} " +
+            "<if test='name != null and name != \"\"'>AND name LIKE CONCAT('%', #{name}, '%') </if>" +
+            "<if test='afterRating != null'>AND (COALESCE(rating, -1) &lt; #{afterRating} " +
+            "OR (COALESCE(rating, -1) = #{afterRating} AND id &gt; #{afterId})) </if>" +
+            "ORDER BY COALESCE(rating, -1) DESC, id LIMIT #{limit}</script>")
+    List<Hotel> findPageByDest(@Param("destination") String destination, @Param("name") String name,
+                               @Param("afterRating") Double afterRating, @Param("afterId") Integer afterId,
+                               @Param("limit") int limit);
 }
\ No newline at end of file
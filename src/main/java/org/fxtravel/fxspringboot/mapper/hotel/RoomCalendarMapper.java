@@ -0,0 +1,35 @@
+package org.fxtravel.fxspringboot.mapper.hotel;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.fxtravel.fxspringboot.pojo.entities.RoomCalendarMonth;
+
+import java.util.List;
+
+public interface RoomCalendarMapper extends BaseMapper<RoomCalendarMonth> {
+    @Select("SELECT * FROM room_calendar WHERE room_id = #{roomId} AND stay_month = #{stayMonth}")
+    RoomCalendarMonth find(@Param("roomId") int roomId, @Param("stayMonth") String stayMonth);
+
+    // 一次查询多个房型若干个月的日历，搜索时计算入住区间的可订间数
+    @Select("<script>" +
+            "SELECT * FROM room_calendar WHERE room_id IN " +
+            "<foreach collection='roomIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND stay_month IN " +
+            "<foreach collection='stayMonths' item='m' open='(' separator=',' close=')'>#{m}</foreach>" +
+            "</script>")
+    List<RoomCalendarMonth> findByRooms(@Param("roomIds") List<Integer> roomIds,
+                                        @Param("stayMonths") List<String> stayMonths);
+
+    // 第一次写入某个月时插入，行已存在（其他写入者先插入）时返回0
+    @Insert("INSERT IGNORE INTO room_calendar (room_id, stay_month, sold) VALUES (#{roomId}, #{stayMonth}, #{sold})")
+    int insertIfAbsent(@Param("roomId") int roomId, @Param("stayMonth") String stayMonth, @Param("sold") byte[] sold);
+
+    // 整月比较并交换：sold仍等于读取到的值时才更新，返回0表示已被其他写入者改变
+    @Update("UPDATE room_calendar SET sold = #{sold} " +
+            "WHERE room_id = #{roomId} AND stay_month = #{stayMonth} AND sold = #{expected}")
+    int compareAndSet(@Param("roomId") int roomId, @Param("stayMonth") String stayMonth,
+                      @Param("expected") byte[] expected, @Param("sold") byte[] sold);
+}
@@ -5,7 +5,6 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
-import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
 
 import java.util.List;
 
@@ -13,6 +12,14 @@ public interface RoomMapper extends BaseMapper<Room> {
     @Select("SELECT * FROM room WHERE hotel_id = #{hotelId} ORDER BY type_id")
     List<Room> findByHotel(@Param("hotelId") Integer hotelId);
 
+    // 一次查询多家酒店的全部房型
+    @Select("<script>" +
+            "SELECT * FROM room WHERE hotel_id IN " +
+            "<foreach collection='hotelIDs' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "ORDER BY hotel_id, type_id" +
+            "</script>")
+    List<Room> findByHotels(@Param("hotelIDs") List<Integer> hotelIDs);
+
     @Update("UPDATE room SET remain = remain - #{count} WHERE id = #{id} AND remain >= #{count}")
     int deduct(int id, int count);
 
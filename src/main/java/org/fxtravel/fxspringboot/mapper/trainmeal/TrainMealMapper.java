@@ -1,6 +1,7 @@
 package org.fxtravel.fxspringboot.mapper.trainmeal;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
@@ -11,10 +12,6 @@ public interface TrainMealMapper extends BaseMapper<TrainMeal> {
     @Select("SELECT * FROM train_meal WHERE train_id = #{trainId} AND enabled = true ORDER BY price")
     List<TrainMeal> selectByTrain(Integer trainId);
 
-    // 使用SELECT FOR UPDATE加锁查询
-    @Select("SELECT * FROM train_meal WHERE id = #{id} FOR UPDATE")
-    TrainMeal selectByIdForUpdate(int id);
-
     @Update("UPDATE train_meal SET " +
             "remain = remain - #{count} " +
             "WHERE id = #{id} AND remain >= #{count}")
@@ -24,4 +21,12 @@ public interface TrainMealMapper extends BaseMapper<TrainMeal> {
             "remain = remain + #{count} " +
             "WHERE id = #{id}")
     void add(int id, int count);
+
+    // 批量写回库存增量，remain为各餐食本次写回的增量，一条语句更新多行
+    @Update("<script>" +
+            "UPDATE train_meal SET " +
+            "remain = remain + CASE id <foreach collection='meals' item='m'>WHEN #{m.id} THEN #{m.remain} </foreach>END " +
+            "WHERE id IN <foreach collection='meals' item='m' open='(' separator=',' close=')'>#{m.id}</foreach>" +
+            "</script>")
+    int addAll(@Param("meals") List<TrainMeal> meals);
 }
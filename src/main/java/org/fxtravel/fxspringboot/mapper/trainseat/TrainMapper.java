@@ -4,6 +4,7 @@ package org.fxtravel.fxspringboot.mapper.trainseat;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
@@ -20,4 +21,30 @@ public interface TrainMapper extends BaseMapper<Train> {
             "AND departure_time BETWEEN #{start} AND #{end} ORDER BY duration_minutes")
     List<Train> findByRouteAndTimeOrderByDuration(String fromStation, String toStation,
                                                   LocalDateTime start, LocalDateTime end);
-}
\ No newline at end of file
+
+    // 键集分页：按(departure_time, id)排序，从游标之后取limit条
+    @Select("<script>SELECT * FROM train WHERE from_station = #{fromStation} AND to_station = #{toStation} " +
+            "AND departure_time BETWEEN #{start} AND #{end} " +
+            "<if test='afterTime != null'>AND (departure_time &gt; #{afterTime} " +
+            "OR (departure_time = #{afterTime} AND id &gt; #{afterId})) </if>" +
+            "ORDER BY departure_time, id LIMIT #{limit}</script>")
+    List<Train> findPageOrderByTime(@Param("fromStation") String fromStation, @Param("toStation") String toStation,
+                                    @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                    @Param("afterTime") LocalDateTime afterTime, @Param("afterId") Integer afterId,
+                                    @Param("limit") int limit);
+
+    // 键集分页：按(duration_minutes, id)排序，从游标之后取limit条
+    @Select("<script>SELECT * FROM train WHERE from_station = #{fromStation} AND to_station = #{toStation} " +
+            "AND departure_time BETWEEN #{start} AND #{end} " +
+            "<if test='afterDuration != null'>AND (duration_minutes &gt; #{afterDuration} " +
+            "OR (duration_minutes = #{afterDuration} AND id &gt; #{afterId})) </if>" +
+            "ORDER BY duration_minutes, id LIMIT #{limit}</script>")
+    List<Train> findPageOrderByDuration(@Param("fromStation") String fromStation, @Param("toStation") String toStation,
+                                        @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                        @Param("afterDuration") Long afterDuration, @Param("afterId") Integer afterId,
+                                        @Param("limit") int limit);
+
+    // 时刻表索引加载：按ID顺序读取新增的列车
+    @Select("SELECT * FROM train WHERE id > #{afterId} ORDER BY id")
+    List<Train> findAfter(@Param("afterId") int afterId);
+}
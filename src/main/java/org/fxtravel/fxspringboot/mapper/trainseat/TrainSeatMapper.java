@@ -16,9 +16,32 @@ public interface TrainSeatMapper extends BaseMapper<TrainSeat> {
     @Select("SELECT * FROM train_seat WHERE train_id = #{trainID}")
     List<TrainSeat> findByTrain(@Param("trainID") Integer trainID);
 
-    @Update("UPDATE train_seat SET remain = remain - 1, seat_allocation = #{seatAllocation} WHERE id = #{id} AND remain >= 1")
-    int deduct(@Param("id") int id, @Param("seatAllocation") byte[] seatAllocation);
+    // 一次查询多趟列车的全部座次
+    @Select("<script>" +
+            "SELECT * FROM train_seat WHERE train_id IN " +
+            "<foreach collection='trainIDs' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "ORDER BY train_id, id" +
+            "</script>")
+    List<TrainSeat> findByTrains(@Param("trainIDs") List<Integer> trainIDs);
 
-    @Update("UPDATE train_seat SET remain = remain + 1, seat_allocation = #{seatAllocation} WHERE id = #{id}")
-    int add(@Param("id") int id, @Param("seatAllocation") byte[] seatAllocation);
-}
\ No newline at end of file
+    // 以读取时的位图作为期望值做比较并交换，位图已被他人修改时影响行数为0
+    // 尚未分配过座位的行位图为NULL，使用<=>比较
+    @Update("UPDATE train_seat SET remain = remain - #{count}, seat_allocation = #{seatAllocation} " +
+            "WHERE id = #{id} AND remain >= #{count} AND seat_allocation <=> #{expected}")
+    int deduct(@Param("id") int id, @Param("count") int count,
+               @Param("seatAllocation") byte[] seatAllocation, @Param("expected") byte[] expected);
+
+    @Update("UPDATE train_seat SET remain = remain + #{count}, seat_allocation = #{seatAllocation} " +
+            "WHERE id = #{id} AND seat_allocation <=> #{expected}")
+    int add(@Param("id") int id, @Param("count") int count,
+            @Param("seatAllocation") byte[] seatAllocation, @Param("expected") byte[] expected);
+
+    // 批量写回座位分配，一条语句更新多行
+    @Update("<script>" +
+            "UPDATE train_seat SET " +
+            "remain = CASE id <foreach collection='seats' item='s'>WHEN #{s.id} THEN #{s.remain} </foreach>END, " +
+            "seat_allocation = CASE id <foreach collection='seats' item='s'>WHEN #{s.id} THEN #{s.seatAllocation} </foreach>END " +
+            "WHERE id IN <foreach collection='seats' item='s' open='(' separator=',' close=')'>#{s.id}</foreach>" +
+            "</script>")
+    int flushAllocations(@Param("seats") List<TrainSeat> seats);
+}
@@ -2,6 +2,8 @@
 package org.fxtravel.fxspringboot.mapper.trainseat;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 import org.fxtravel.fxspringboot.common.E_PaymentStatus;
@@ -26,4 +28,41 @@ public interface TrainSeatOrderMapper extends BaseMapper<TrainSeatOrder> {
     // 更新订单状态
     @Update("UPDATE train_seat_order SET status = #{status} WHERE id = #{id}")
     int updateStatus(Integer id, E_PaymentStatus status);
-}
\ No newline at end of file
+
+    // 更新同一笔支付下所有订单的状态
+    @Update("UPDATE train_seat_order o JOIN train_seat_order p ON o.order_number = p.order_number " +
+            "SET o.status = #{status} WHERE p.id = #{id}")
+    int updateGroupStatus(@Param("id") Integer id, @Param("status") E_PaymentStatus status);
+
+    // 同一笔支付的所有订单
+    @Select("SELECT * FROM train_seat_order WHERE order_number = #{orderNumber} ORDER BY id")
+    List<TrainSeatOrder> findAllByOrderNumber(String orderNumber);
+
+    // 批量插入订单，一条语句插入多行并回填自增ID
+    @Insert("<script>" +
+            "INSERT INTO train_seat_order (user_id, train_id, train_seat_id, from_station, to_station, " +
+            "total_amount, status, create_time) VALUES " +
+            "<foreach collection='orders' item='o' separator=','>" +
+            "(#{o.userId}, #{o.trainId}, #{o.trainSeatId}, #{o.fromStation}, #{o.toStation}, " +
+            "#{o.totalAmount}, #{o.status}, #{o.createTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insertBatch(@Param("orders") List<TrainSeatOrder> orders);
+
+    // 批量关联支付
+    @Update("<script>" +
+            "UPDATE train_seat_order SET order_number = #{orderNumber}, related_payment_id = #{paymentId} " +
+            "WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int bindPayment(@Param("ids") List<Integer> ids, @Param("orderNumber") String orderNumber,
+                    @Param("paymentId") Integer paymentId);
+
+    // 批量回填座位号，一条语句更新多行
+    @Update("<script>" +
+            "UPDATE train_seat_order SET " +
+            "seat_number = CASE id <foreach collection='orders' item='o'>WHEN #{o.id} THEN #{o.seatNumber} </foreach>END " +
+            "WHERE id IN <foreach collection='orders' item='o' open='(' separator=',' close=')'>#{o.id}</foreach>" +
+            "</script>")
+    int updateSeatNumbers(@Param("orders") List<TrainSeatOrder> orders);
+}
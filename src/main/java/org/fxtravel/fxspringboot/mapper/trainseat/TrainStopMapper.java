@@ -0,0 +1,16 @@
+// TrainStopMapper.java
+package org.fxtravel.fxspringboot.mapper.trainseat;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.fxtravel.fxspringboot.pojo.entities.TrainStop;
+
+import java.util.List;
+
+@Mapper
+public interface TrainStopMapper extends BaseMapper<TrainStop> {
+    @Select("SELECT * FROM train_stop WHERE train_id = #{trainID} ORDER BY stop_index")
+    List<TrainStop> findByTrain(@Param("trainID") Integer trainID);
+}
@@ -0,0 +1,15 @@
+package org.fxtravel.fxspringboot.pojo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchPage<T> {
+    private List<T> items;          // 当前页的结果
+    private String nextCursor;      // 下一页的游标，没有下一页时为null
+}
@@ -5,9 +5,11 @@ import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class HotelSearchResult {
     private Hotel hotel;
-    private List<Room> rooms;
+    private List<Room> rooms;       // Room.remain为每晚可售间数，不是某段日期的余量
+    private Map<Integer, Integer> available;    // 房型ID -> 入住区间内每晚都能订到的间数，查询未给出日期时为null
 }
\ No newline at end of file
@@ -3,9 +3,19 @@ package org.fxtravel.fxspringboot.pojo.dto.hotel;
 import jakarta.annotation.Nullable;
 import lombok.Data;
 
+import java.time.LocalDate;
+
 @Data
 public class SearchHotelRequest {
     String destination;
     @Nullable
     String namePattern;     // 空就是任意
+    @Nullable
+    String cursor;          // 上一页返回的nextCursor，为空时查询第一页
+    @Nullable
+    Integer pageSize;       // 每页条数，为空时取默认值，超过上限时截断
+    @Nullable
+    LocalDate checkInDate;  // 入住日期，与离店日期同时给出时返回每个房型在该区间内的可订间数
+    @Nullable
+    LocalDate checkOutDate; // 离店日期
 }
@@ -0,0 +1,16 @@
+package org.fxtravel.fxspringboot.pojo.dto.hotel;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// 按入住区间占用/归还房量的参数，区间为[入住日期, 离店日期)的每一晚
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StayClaim {
+    private LocalDate checkInDate;
+    private LocalDate checkOutDate;
+}
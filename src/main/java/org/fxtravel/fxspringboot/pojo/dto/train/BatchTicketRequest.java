@@ -0,0 +1,25 @@
+package org.fxtravel.fxspringboot.pojo.dto.train;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+// 一次为多位乘客购买同一座次的车票
+@Data
+public class BatchTicketRequest {
+    @NotNull(message = "用户不能为空")
+    private Integer userId;
+
+    @NotNull(message = "座次不能为空")
+    private Integer seatId;
+
+    @NotNull(message = "购票数量不能为空")
+    @Min(value = 1, message = "购票数量至少为1")
+    @Max(value = 5, message = "单笔订单最多购买5张车票")
+    private Integer quantity;
+
+    // 可选，按区间购票时的上车站与下车站，为空表示整趟
+    private String fromStation;
+    private String toStation;
+}
@@ -0,0 +1,28 @@
+package org.fxtravel.fxspringboot.pojo.dto.train;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class FlexSearchResult {
+    private List<DaySummary> days = new ArrayList<>();          // 日期窗口内每天的概况，按日期排序
+    private List<TrainSearchResult> trains = new ArrayList<>(); // 窗口内全部车次，按出发时间排序
+
+    @Data
+    public static class DaySummary {
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        private LocalDate date;
+        private int trainCount;                 // 有座次的车次数
+        private LocalDateTime earliestDeparture;// 最早出发时间
+        private Integer earliestTrainId;
+        private Integer shortestMinutes;        // 最短耗时
+        private Integer shortestTrainId;
+        private Double minPrice;                // 有余座的座次中的最低价，没有余座时为null
+        private int seatsLeft;                  // 全部座次的余座之和
+    }
+}
@@ -7,4 +7,7 @@ import lombok.Data;
 public class GetTicketRequest {
     private Integer userId;
     private Integer seatId;
+    // 可选，按区间购票时的上车站与下车站，为空表示整趟
+    private String fromStation;
+    private String toStation;
 }
\ No newline at end of file
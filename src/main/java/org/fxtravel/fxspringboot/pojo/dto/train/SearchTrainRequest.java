@@ -22,4 +22,8 @@ public class SearchTrainRequest {
     @NotNull(message = "出发日期不能为空")
     @JsonFormat(pattern = "yyyy-MM-dd")
     private LocalDate departureDate;
+
+    private String cursor;          // 上一页返回的nextCursor，为空时查询第一页
+    private Integer pageSize;       // 每页条数，为空时取默认值，超过上限时截断
+    private Integer flexDays;       // 弹性日期查询：出发日期前后的天数
 }
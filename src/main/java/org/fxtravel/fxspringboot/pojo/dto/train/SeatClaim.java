@@ -0,0 +1,21 @@
+package org.fxtravel.fxspringboot.pojo.dto.train;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 按区间占座/退座的参数，出发站与到达站为空时表示整趟
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SeatClaim {
+    private String fromStation;
+    private String toStation;
+    private String[] seatNumbers;
+    // 暂留键（订单ID），不为空时座位在支付完成前只保留在内存中
+    private Integer holdKey;
+
+    public SeatClaim(String fromStation, String toStation, String[] seatNumbers) {
+        this(fromStation, toStation, seatNumbers, null);
+    }
+}
@@ -20,6 +20,8 @@ public class TrainSeatOrderDTO {
     private Train train;
     private TrainSeat trainSeat;
     private String seatNumber;
+    private String fromStation;
+    private String toStation;
     private Integer relatedPaymentId;
     private Double totalAmount;
     private E_PaymentStatus status;
@@ -23,7 +23,7 @@ public class Room {
     private String name;// 房型名称（如“⼤床房”）
 
     @Column(name = "remain", nullable = false)
-    private Integer remain;// 剩余可售房量
+    private Integer remain;// 每晚可售房量，按晚的已售数见RoomCalendarMonth
 
     @Column(name = "price_per_night", nullable = false, precision = 10)
     private Double pricePerNight;// 每晚基础价格（元）
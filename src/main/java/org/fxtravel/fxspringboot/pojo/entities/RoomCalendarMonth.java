@@ -0,0 +1,27 @@
+package org.fxtravel.fxspringboot.pojo.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "room_calendar")
+public class RoomCalendarMonth {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "room_id", nullable = false)
+    private Integer roomId;
+
+    @Column(name = "stay_month", nullable = false, length = 7)
+    private String stayMonth;// 月份（YYYY-MM）
+
+    // 当月每晚的已售间数，每晚2字节（大端），下标为日期减一
+    @Column(name = "sold", nullable = false, columnDefinition = "VARBINARY(62)")
+    private byte[] sold;
+}
@@ -29,10 +29,8 @@ public class TrainSeat {
     @Column(nullable = false)
     private Integer remain;
 
+    // 编码格式见SeatBitmap，为空表示尚未分配过座位
     @Lob
-    @Column(
-            name = "seat_allocation",
-            columnDefinition = "BINARY(64) DEFAULT 0x00000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000"
-    )
+    @Column(name = "seat_allocation", columnDefinition = "BLOB")
     private byte[] seatAllocation;
 }
\ No newline at end of file
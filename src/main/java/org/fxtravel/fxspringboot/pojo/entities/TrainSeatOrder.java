@@ -31,6 +31,13 @@ public class TrainSeatOrder {
 
     private String seatNumber;
 
+    // 按区间购票时的上车站与下车站，为空表示整趟
+    @Column(name = "from_station")
+    private String fromStation;
+
+    @Column(name = "to_station")
+    private String toStation;
+
     @Column(name = "related_payment_id")
     private Integer relatedPaymentId;
 
@@ -0,0 +1,32 @@
+package org.fxtravel.fxspringboot.pojo.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 列车经停站，stopIndex从0开始，相邻两站之间为一个区间
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "train_stop")
+public class TrainStop {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "train_id", nullable = false)
+    private Integer trainId;
+
+    @Column(name = "stop_index", nullable = false)
+    private Integer stopIndex;
+
+    @Column(nullable = false)
+    private String station;
+
+    private LocalDateTime arrivalTime;
+    private LocalDateTime departureTime;
+}
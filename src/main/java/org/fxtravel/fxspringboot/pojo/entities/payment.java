@@ -30,4 +30,5 @@ public class payment {
     private Long timeoutSeconds;
     private Integer quantity;
     private Integer goodId;
+    private LocalDateTime expireTime; // 超时时间，超过后由清理任务置为失败
 }
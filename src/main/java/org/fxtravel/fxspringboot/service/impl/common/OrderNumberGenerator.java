@@ -0,0 +1,164 @@
+package org.fxtravel.fxspringboot.service.impl.common;
+
+import jakarta.annotation.PostConstruct;
+import org.fxtravel.fxspringboot.common.E_PaymentType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单号生成器（Snowflake风格）
+ * 格式：类型前缀(2) | yyyyMMddHHmmssSSS(17) | 节点号(4) | 毫秒内序号(4)，共27位，例如TT2024010112000012300070001。
+ * 毫秒时间戳与序号打包在一个AtomicLong中（时间戳 << 12 | 序号），每次取max(当前时间 << 12, 上一个值 + 1)，
+ * 以CAS推进，不加锁；同一毫秒内超过4096个时借用下一毫秒，时钟回拨时沿用上一个时间继续递增，因此单节点内严格递增。
+ * 节点号不同的实例不会生成相同的订单号。日期部分按秒缓存，生成时只写一次字符数组。
+ * 节点号取自配置或StatefulSet的pod序号，两者都没有时启动失败：散列推导无法保证各实例不同。
+ */
+@Component
+public class OrderNumberGenerator {
+    public static final int LENGTH = 27;
+    public static final int MAX_NODE_ID = 1023;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // 节点号，未配置（-1）时使用StatefulSet的pod序号（主机名以-序号结尾）
+    @Value("${fx.payment.order-number.node-id:-1}")
+    private int nodeId = -1;
+
+    private final String hostname;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final AtomicLong last = new AtomicLong();
+    private volatile int node = -1;
+    private volatile SecondStamp stamp = new SecondStamp(Long.MIN_VALUE, new char[14]);
+
+    // 某一秒的yyyyMMddHHmmss
+    private static final class SecondStamp {
+        final long second;
+        final char[] digits;
+
+        SecondStamp(long second, char[] digits) {
+            this.second = second;
+            this.digits = digits;
+        }
+    }
+
+    public OrderNumberGenerator() {
+        this.hostname = System.getenv("HOSTNAME");
+    }
+
+    public OrderNumberGenerator(int nodeId) {
+        this(nodeId, System.getenv("HOSTNAME"));
+    }
+
+    public OrderNumberGenerator(int nodeId, String hostname) {
+        this.nodeId = nodeId;
+        this.hostname = hostname;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点号必须在0到" + MAX_NODE_ID + "之间: " + nodeId);
+        }
+        int resolved = nodeId >= 0 ? nodeId : ordinalOf(hostname);
+        if (resolved < 0) {
+            throw new IllegalStateException("未配置fx.payment.order-number.node-id，且主机名" + hostname
+                    + "不以pod序号结尾；请为每个实例配置不同的节点号（0到" + MAX_NODE_ID + "）");
+        }
+        node = resolved;
+    }
+
+    /**
+     * 生成一个订单号
+     */
+    public String next(E_PaymentType type) {
+        long id = nextId();
+        long millis = id >>> SEQUENCE_BITS;
+        int sequence = (int) (id & SEQUENCE_MASK);
+
+        char[] buf = new char[LENGTH];
+        switch (type) {
+            case TRAIN_TICKET:
+                buf[0] = 'T';
+                buf[1] = 'T';
+                break;
+            case TRAIN_MEAL:
+                buf[0] = 'T';
+                buf[1] = 'M';
+                break;
+            case HOTEL:
+                buf[0] = 'H';
+                buf[1] = 'T';
+                break;
+        }
+        System.arraycopy(stampOf(Math.floorDiv(millis, 1000)).digits, 0, buf, 2, 14);
+        writeDigits(buf, 16, 3, (int) Math.floorMod(millis, 1000));
+        writeDigits(buf, 19, 4, node);
+        writeDigits(buf, 23, 4, sequence);
+        return new String(buf);
+    }
+
+    public int getNodeId() {
+        return node;
+    }
+
+    // -------------------- 私有方法 --------------------
+    // 打包的(毫秒时间戳, 序号)，严格递增
+    private long nextId() {
+        while (true) {
+            long prev = last.get();
+            long next = Math.max(System.currentTimeMillis() << SEQUENCE_BITS, prev + 1);
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    // 日期部分每秒只计算一次
+    private SecondStamp stampOf(long second) {
+        SecondStamp current = stamp;
+        if (current.second == second) {
+            return current;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+        char[] digits = new char[14];
+        writeDigits(digits, 0, 4, time.getYear());
+        writeDigits(digits, 4, 2, time.getMonthValue());
+        writeDigits(digits, 6, 2, time.getDayOfMonth());
+        writeDigits(digits, 8, 2, time.getHour());
+        writeDigits(digits, 10, 2, time.getMinute());
+        writeDigits(digits, 12, 2, time.getSecond());
+        SecondStamp computed = new SecondStamp(second, digits);
+        // 只向前替换，并发时旧的一秒不会覆盖新的一秒
+        if (second > current.second) {
+            stamp = computed;
+        }
+        return computed;
+    }
+
+    private static void writeDigits(char[] buf, int offset, int width, int value) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    // StatefulSet的pod名形如name-3，以序号结尾时返回序号，否则返回-1
+    private static int ordinalOf(String host) {
+        if (host == null) {
+            return -1;
+        }
+        int dash = host.lastIndexOf('-');
+        String suffix = dash < 0 ? "" : host.substring(dash + 1);
+        if (suffix.isEmpty() || suffix.length() > 4 || !suffix.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        int ordinal = Integer.parseInt(suffix);
+        return ordinal <= MAX_NODE_ID ? ordinal : -1;
+    }
+}
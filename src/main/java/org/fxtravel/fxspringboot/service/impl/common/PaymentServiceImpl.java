@@ -1,6 +1,8 @@
 package org.fxtravel.fxspringboot.service.impl.common;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
 import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 import org.fxtravel.fxspringboot.common.E_PaymentType;
 import org.fxtravel.fxspringboot.event.EventCenter;
@@ -10,17 +12,21 @@ import org.fxtravel.fxspringboot.mapper.PaymentMapper;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentResultDTO;
 import org.fxtravel.fxspringboot.pojo.entities.payment;
 import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
+import org.fxtravel.fxspringboot.utils.TimingWheel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @Transactional
 public class PaymentServiceImpl implements PaymentService {
@@ -32,9 +38,17 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private EventCenter eventCenter;
 
-    private final Map<String, CompletableFuture<Boolean>> pendingPayments = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
-    private static final DateTimeFormatter ORDER_NUMBER_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    @Autowired
+    private OrderNumberGenerator orderNumbers;
+
+    // 创建后一直未开启的支付在多久之后由清理任务置为失败
+    @Value("${fx.payment.sweeper.idle-timeout-seconds:900}")
+    private long idleTimeoutSeconds = 900;
+
+    // 支付超时：订单号 -> 时间轮中的超时任务，支付完成或失败时取消
+    private final Map<String, TimingWheel.Timeout> pendingTimeouts = new ConcurrentHashMap<>();
+    private final ExecutorService timeoutExecutor = Executors.newFixedThreadPool(4);
+    private final TimingWheel timeoutWheel = new TimingWheel(100, TimeUnit.MILLISECONDS, 512, timeoutExecutor);
 
     // -------------------- 基础支付操作实现 --------------------
     @Override
@@ -51,8 +65,9 @@ public class PaymentServiceImpl implements PaymentService {
         payment.setAmount(amount);
         payment.setRelatedId(relatedId);
         payment.setStatus(E_PaymentStatus.IDLE);
-        payment.setOrderNumber(generateOrderNumber(type));
+        payment.setOrderNumber(orderNumbers.next(type));
         payment.setTimeoutSeconds(0L);
+        payment.setExpireTime(LocalDateTime.now().plusSeconds(idleTimeoutSeconds));
         payment.setQuantity(quantity);
         payment.setGoodId(goodId);
 
@@ -71,10 +86,13 @@ public class PaymentServiceImpl implements PaymentService {
         switch (type) {
             case TRAIN_TICKET:
                 eventCenter.publish(EventType.TT_STATUS_CHANGED, info);
+                break;
             case TRAIN_MEAL:
                 eventCenter.publish(EventType.TM_STATUS_CHANGED, info);
+                break;
             case HOTEL:
                 eventCenter.publish(EventType.HT_STATUS_CHANGED, info);
+                break;
         }
     }
 
@@ -104,8 +122,9 @@ public class PaymentServiceImpl implements PaymentService {
             return false;
         }
 
-        // 更新支付状态
-        int result = paymentMapper.updateStatus(orderNumber, E_PaymentStatus.COMPLETED, LocalDateTime.now());
+        // 比较并更新支付状态，与超时或清理任务并发时只有一方成功，失败的一方不发送通知
+        int result = paymentMapper.updateStatus(orderNumber, payment.getStatus(),
+                E_PaymentStatus.COMPLETED, LocalDateTime.now());
         if (result > 0) {
             payment.setStatus(E_PaymentStatus.COMPLETED);
             notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
@@ -113,11 +132,7 @@ public class PaymentServiceImpl implements PaymentService {
                     payment.getGoodId(), payment.getUserId(), data);
         }
 
-        // 通知等待中的支付流程
-        CompletableFuture<Boolean> future = pendingPayments.remove(orderNumber);
-        if (future != null) {
-            future.complete(true);
-        }
+        cancelTimeout(orderNumber);
 
         return result > 0;
     }
@@ -133,7 +148,8 @@ public class PaymentServiceImpl implements PaymentService {
         }
 
         // 更新支付状态
-        int result = paymentMapper.updateStatus(orderNumber, E_PaymentStatus.FAILED, LocalDateTime.now());
+        int result = paymentMapper.updateStatus(orderNumber, payment.getStatus(),
+                E_PaymentStatus.FAILED, LocalDateTime.now());
         if (result > 0) {
             payment.setStatus(E_PaymentStatus.FAILED);
             notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
@@ -141,11 +157,7 @@ public class PaymentServiceImpl implements PaymentService {
                     payment.getGoodId(), payment.getUserId(), data);
         }
 
-        // 通知等待中的支付流程
-        CompletableFuture<Boolean> future = pendingPayments.remove(orderNumber);
-        if (future != null) {
-            future.complete(false);
-        }
+        cancelTimeout(orderNumber);
 
         return result > 0;
     }
@@ -163,7 +175,8 @@ public class PaymentServiceImpl implements PaymentService {
             return false;
         }
 
-        int result = paymentMapper.updateStatus(orderNumber, E_PaymentStatus.REFUNDED, LocalDateTime.now());
+        int result = paymentMapper.updateStatus(orderNumber, payment.getStatus(),
+                E_PaymentStatus.REFUNDED, LocalDateTime.now());
         if (result > 0) {
             payment.setStatus(E_PaymentStatus.REFUNDED);
             notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
@@ -182,7 +195,8 @@ public class PaymentServiceImpl implements PaymentService {
             return false;
         }
 
-        int result = paymentMapper.updateStatus(orderNumber, E_PaymentStatus.FINISHED, LocalDateTime.now());
+        int result = paymentMapper.updateStatus(orderNumber, payment.getStatus(),
+                E_PaymentStatus.FINISHED, LocalDateTime.now());
         if (result > 0) {
             payment.setStatus(E_PaymentStatus.FINISHED);
             notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
@@ -236,35 +250,92 @@ public class PaymentServiceImpl implements PaymentService {
             return result;
         }
 
-        // 更新支付记录，设置状态和超时时间
+        // 更新支付记录，设置状态和超时时间；只有仍未开启的支付才能开始
+        LocalDateTime now = LocalDateTime.now();
+        if (paymentMapper.startPending(orderNumber, now, timeout, now.plusSeconds(timeout)) == 0) {
+            return startLost(payment, result, data);
+        }
         payment.setStatus(E_PaymentStatus.PENDING);
-        payment.setPaymentTime(LocalDateTime.now());
+        payment.setPaymentTime(now);
         payment.setTimeoutSeconds(timeout);
-        paymentMapper.updateById(payment);
+        payment.setExpireTime(now.plusSeconds(timeout));
 
         result.setCurrentStatus(E_PaymentStatus.PENDING);
         result.setRemainingTimeSeconds(timeout);
         result.setMessage("Payment processing started");
 
-        // 模拟支付处理
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        pendingPayments.put(orderNumber, future);
-
         // 设置超时处理
-        scheduler.schedule(() -> {
-            if (!future.isDone()) {
-                // 检查状态是否仍然是PENDING（可能已经被其他操作改变）
-                payment currentPayment = paymentMapper.selectByOrderNumber(orderNumber);
-                if (currentPayment != null && currentPayment.getStatus() == E_PaymentStatus.PENDING) {
-                    failPayment(orderNumber, data.get());
-
-                    future.complete(false);
-                    pendingPayments.remove(orderNumber);
+        armTimeout(orderNumber, timeout * 1000, data);
+
+        return result;
+    }
+
+    @Override
+    public int recoverTimeouts(int batchSize) {
+        int recovered = 0;
+        int afterId = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (;;) {
+            List<payment> payments = paymentMapper.findPendingAfter(afterId, batchSize);
+            for (payment payment : payments) {
+                if (pendingTimeouts.containsKey(payment.getOrderNumber())) {
+                    continue;
+                }
+                // 已经过期的立即执行；没有记录开始时间的按已过期处理
+                long delayMs = 0;
+                if (payment.getPaymentTime() != null && payment.getTimeoutSeconds() != null) {
+                    LocalDateTime deadline = payment.getPaymentTime().plusSeconds(payment.getTimeoutSeconds());
+                    delayMs = Math.max(0, Duration.between(now, deadline).toMillis());
                 }
+                // 重启后没有下单时的回调数据，各模块按订单记录归还库存
+                armTimeout(payment.getOrderNumber(), delayMs, null);
+                recovered++;
             }
-        }, timeout, TimeUnit.SECONDS);
+            if (payments.size() < batchSize) {
+                break;
+            }
+            afterId = payments.get(payments.size() - 1).getId();
+        }
+        return recovered;
+    }
 
-        return result;
+    @Override
+    public List<payment> failExpired(E_PaymentStatus status, LocalDateTime before, int limit) {
+        // 读取时加锁，批量更新前这些行的状态不会被其他事务改变
+        List<payment> batch = paymentMapper.findExpiredForUpdate(status, before, limit);
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<Integer> ids = new ArrayList<>(batch.size());
+        for (payment payment : batch) {
+            ids.add(payment.getId());
+        }
+        // 截断到微秒，与DATETIME(6)中保存的值一致，用来识别本条语句更新的行
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        int updated = paymentMapper.failAll(ids, status, now);
+        if (updated != batch.size()) {
+            // 部分行的状态已被其他请求改变，只通知本条语句置为失败的行
+            log.info("Payment sweep updated {} of {} rows", updated, batch.size());
+            batch = failedBy(ids, now);
+        }
+
+        // 批量通知：待支付的订单已占用库存，由各模块按订单记录归还；未开启的支付没有占用库存
+        Object data = status == E_PaymentStatus.IDLE ? PaymentInfo.NOTHING_HELD : null;
+        for (payment payment : batch) {
+            payment.setStatus(E_PaymentStatus.FAILED);
+            payment.setPaymentTime(now);
+            cancelTimeout(payment.getOrderNumber());
+            notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
+                    E_PaymentStatus.FAILED, payment.getQuantity(),
+                    payment.getGoodId(), payment.getUserId(), data);
+        }
+        return batch;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timeoutWheel.stop();
+        timeoutExecutor.shutdown();
     }
 
     @Override
@@ -280,22 +351,58 @@ public class PaymentServiceImpl implements PaymentService {
     }
 
     // -------------------- 私有方法 --------------------
-    private String generateOrderNumber(E_PaymentType type) {
-        String prefix = "";
-        switch (type) {
-            case TRAIN_TICKET:
-                prefix = "TT";
-                break;
-            case TRAIN_MEAL:
-                prefix = "TM";
-                break;
-            case HOTEL:
-                prefix = "HT";
-                break;
+    // 本次批量更新置为失败的行：状态为FAILED且支付时间等于本次更新写入的时间
+    private List<payment> failedBy(List<Integer> ids, LocalDateTime paymentTime) {
+        List<payment> failed = new ArrayList<>();
+        for (payment payment : paymentMapper.selectByIds(ids)) {
+            if (payment.getStatus() == E_PaymentStatus.FAILED && paymentTime.equals(payment.getPaymentTime())) {
+                failed.add(payment);
+            }
+        }
+        return failed;
+    }
+
+    // 扣减库存后发现支付已不是IDLE：被清理任务置为失败时（当时没有占用库存）归还刚扣减的库存
+    private PaymentResultDTO startLost(payment payment, PaymentResultDTO result, Supplier<Object> data) {
+        payment current = paymentMapper.selectByOrderNumber(payment.getOrderNumber());
+        E_PaymentStatus status = current == null ? null : current.getStatus();
+        if (status == E_PaymentStatus.FAILED) {
+            notifyPaymentStatusChanged(payment.getType(), payment.getRelatedId(),
+                    E_PaymentStatus.FAILED, payment.getQuantity(),
+                    payment.getGoodId(), payment.getUserId(), data.get());
+        }
+        result.setCurrentStatus(status);
+        result.setRemainingTimeSeconds(current == null ? 0L : calculateRemainingTime(current));
+        result.setMessage("Payment state changed before it started");
+        return result;
+    }
+
+    private void armTimeout(String orderNumber, long delayMs, Supplier<Object> data) {
+        TimingWheel.Timeout old = pendingTimeouts.put(orderNumber,
+                timeoutWheel.schedule(() -> expire(orderNumber, data), delayMs, TimeUnit.MILLISECONDS));
+        if (old != null) {
+            old.cancel();
+        }
+    }
+
+    private void cancelTimeout(String orderNumber) {
+        TimingWheel.Timeout timeout = pendingTimeouts.remove(orderNumber);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    // 超时处理：状态仍然是PENDING（可能已经被其他操作改变）时置为失败
+    private void expire(String orderNumber, Supplier<Object> data) {
+        pendingTimeouts.remove(orderNumber);
+        try {
+            payment currentPayment = paymentMapper.selectByOrderNumber(orderNumber);
+            if (currentPayment != null && currentPayment.getStatus() == E_PaymentStatus.PENDING) {
+                failPayment(orderNumber, data == null ? null : data.get());
+            }
+        } catch (Exception e) {
+            log.error("Payment timeout error: order={}", orderNumber, e);
         }
-        String timestamp = LocalDateTime.now().format(ORDER_NUMBER_DATE_FORMAT);
-        String random = String.format("%04d", new Random().nextInt(10000));
-        return prefix + timestamp + random;
     }
 
     // 计算剩余时间
@@ -0,0 +1,149 @@
+package org.fxtravel.fxspringboot.service.impl.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
+import org.fxtravel.fxspringboot.mapper.SchedulerLeaseMapper;
+import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 超时支付的清理任务
+ * 时间轮中的超时任务只在创建支付的实例上触发，实例宕机后由这里兜底；创建后一直未开启的支付也由这里置为失败。
+ * 每轮按(status, expire_time)顺序分批读取已超时的支付，每批一条UPDATE置为失败并批量发送通知，
+ * 每轮最多处理max-batches批，数据库开销与订单量无关。
+ * 多个实例通过scheduler_lease表中的租约协调，同一时刻只有持有租约的实例执行清理。
+ */
+@Slf4j
+@Component
+public class PaymentSweeper {
+    static final String LEASE_NAME = "payment-sweeper";
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private SchedulerLeaseMapper leaseMapper;
+
+    @Value("${fx.payment.sweeper.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${fx.payment.sweeper.interval-ms:1000}")
+    private long intervalMs = 1000;
+
+    @Value("${fx.payment.sweeper.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${fx.payment.sweeper.max-batches:10}")
+    private int maxBatches = 10;
+
+    // 超时后再等待多久才清理，留给创建支付的实例上的时间轮先处理
+    @Value("${fx.payment.sweeper.grace-seconds:5}")
+    private long graceSeconds = 5;
+
+    @Value("${fx.payment.sweeper.lease-seconds:10}")
+    private long leaseSeconds = 10;
+
+    // 租约持有者标识，未配置时使用pid@主机名（容器中即为pod名）
+    @Value("${fx.payment.sweeper.owner:}")
+    private String owner = "";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // 统计信息
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong leaseDenied = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong expiredPending = new AtomicLong();
+    private final AtomicLong abandonedIdle = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (owner == null || owner.isEmpty()) {
+            owner = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::sweepQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            // 释放租约，其他实例下一轮即可接管
+            leaseMapper.release(LEASE_NAME, owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Payment sweeper lease release failed", e);
+        }
+    }
+
+    /**
+     * 执行一轮清理
+     * @return 置为失败的支付数，未取得租约时返回0
+     */
+    public int sweep() {
+        runs.incrementAndGet();
+        if (leaseMapper.acquire(LEASE_NAME, owner, leaseSeconds) == 0) {
+            leaseDenied.incrementAndGet();
+            return 0;
+        }
+        LocalDateTime before = LocalDateTime.now().minusSeconds(graceSeconds);
+        int pending = sweep(E_PaymentStatus.PENDING, before);
+        int idle = sweep(E_PaymentStatus.IDLE, LocalDateTime.now());
+        expiredPending.addAndGet(pending);
+        abandonedIdle.addAndGet(idle);
+        return pending + idle;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("leaseDenied", leaseDenied.get());
+        stats.put("batches", batches.get());
+        stats.put("expiredPending", expiredPending.get());
+        stats.put("abandonedIdle", abandonedIdle.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    // 每批在单独的事务中完成，置为失败的行不再满足条件，下一批从剩余的最早超时处继续
+    private int sweep(E_PaymentStatus status, LocalDateTime before) {
+        int swept = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            int size = paymentService.failExpired(status, before, batchSize).size();
+            batches.incrementAndGet();
+            swept += size;
+            if (size < batchSize) {
+                break;
+            }
+        }
+        return swept;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error("Payment sweep error", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.fxtravel.fxspringboot.service.impl.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TimetableIndex;
+import org.fxtravel.fxspringboot.service.inter.common.SuggestService;
+import org.fxtravel.fxspringboot.utils.PrefixTrie;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车站与目的地的输入补全
+ * 车站取自时刻表索引（不再查询数据库），目的地按酒店表分组统计，
+ * 分别构建带热度的前缀树，定时整体替换。
+ */
+@Slf4j
+@Service
+public class SuggestServiceImpl implements SuggestService {
+    @Autowired
+    private TimetableIndex timetable;
+    @Autowired
+    private HotelMapper hotelMapper;
+
+    @Value("${fx.suggest.refresh-seconds:60}")
+    private long refreshSeconds = 60;
+
+    private volatile PrefixTrie stations = PrefixTrie.empty();
+    private volatile PrefixTrie destinations = PrefixTrie.empty();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void start() {
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 重建两棵前缀树
+     */
+    public void refresh() {
+        stations = new PrefixTrie(timetable.stationWeights());
+
+        Map<String, Long> weights = new HashMap<>();
+        for (Map<String, Object> row : hotelMapper.countByDestination()) {
+            Object name = row.get("name");
+            if (name != null) {
+                weights.put(name.toString(), ((Number) row.get("weight")).longValue());
+            }
+        }
+        destinations = new PrefixTrie(weights);
+    }
+
+    @Override
+    public List<String> suggestStations(String prefix, int limit) {
+        return stations.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<String> suggestDestinations(String prefix, int limit) {
+        return destinations.suggest(prefix, limit);
+    }
+
+    @Override
+    public String canonicalStation(String input) {
+        String canonical = stations.canonical(input);
+        return canonical == null ? input : canonical;
+    }
+
+    @Override
+    public String canonicalDestination(String input) {
+        String canonical = destinations.canonical(input);
+        return canonical == null ? input : canonical;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Suggest refresh error", e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package org.fxtravel.fxspringboot.service.impl.hotel;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Hotel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 酒店名称的N-gram倒排索引，按目的地分区
+ * 名称规范化（去空白、小写）后按单字、二元、三元切分，中文名称同样适用。
+ * 子串匹配：取查询串最长的N-gram的倒排表求交集，再校验确实包含查询串；
+ * 模糊匹配：按查询串的二元组在名称中出现的比例打分，不低于fx.hotel.name-index.min-similarity的计入结果。
+ * 每个目的地的索引不可变，酒店新增或修改时重建该目的地的索引后整体替换。
+ */
+@Slf4j
+@Component
+public class HotelNameIndex {
+    @Autowired
+    private HotelMapper hotelMapper;
+
+    @Value("${fx.hotel.name-index.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${fx.hotel.name-index.refresh-seconds:30}")
+    private long refreshSeconds = 30;
+
+    @Value("${fx.hotel.name-index.reload-minutes:30}")
+    private long reloadMinutes = 30;
+
+    @Value("${fx.hotel.name-index.min-similarity:0.5}")
+    private double minSimilarity = 0.5;
+
+    private static final int MAX_GRAM = 3;
+    private static final int[] NO_IDS = new int[0];
+
+    // 未评分的酒店按-1排序，与分页查询中的COALESCE一致
+    private static final Comparator<Entry> BY_RATING = Comparator
+            .comparingDouble((Entry e) -> -e.rating)
+            .thenComparingInt(e -> e.id);
+
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile int maxId;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * 索引中的一家酒店
+     */
+    public static final class Entry {
+        final int id;
+        final String name;      // 规范化后的名称
+        final double rating;
+
+        Entry(Hotel hotel) {
+            this.id = hotel.getId();
+            this.name = normalize(hotel.getName());
+            this.rating = hotel.getRating() == null ? -1 : hotel.getRating();
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+    }
+
+    // 一个目的地的索引
+    private static final class Partition {
+        final Map<Integer, Entry> hotels;
+        final Map<String, int[]> postings;     // N-gram -> 酒店ID（升序）
+
+        Partition(Map<Integer, Entry> hotels) {
+            this.hotels = hotels;
+            Map<String, Set<Integer>> grams = new HashMap<>();
+            for (Entry entry : hotels.values()) {
+                for (String gram : grams(entry.name, 1, MAX_GRAM)) {
+                    grams.computeIfAbsent(gram, k -> new HashSet<>()).add(entry.id);
+                }
+            }
+            this.postings = new HashMap<>(grams.size());
+            grams.forEach((gram, ids) -> {
+                int[] sorted = ids.stream().mapToInt(Integer::intValue).toArray();
+                Arrays.sort(sorted);
+                postings.put(gram, sorted);
+            });
+        }
+
+        int[] posting(String gram) {
+            return postings.getOrDefault(gram, NO_IDS);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshSeconds, TimeUnit.SECONDS);
+        refresher.scheduleWithFixedDelay(this::reloadQuietly, reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    // 索引是否已加载，未加载时调用方应直接查询数据库
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 子串匹配：名称包含pattern的酒店，按评分降序、ID升序
+     */
+    public List<Entry> match(String destination, String pattern) {
+        Partition partition = partitions.get(destination);
+        String query = normalize(pattern);
+        if (partition == null || query.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 用最长的N-gram求交集，候选集最小
+        int n = Math.min(query.length(), MAX_GRAM);
+        int[] candidates = null;
+        for (String gram : grams(query, n, n)) {
+            int[] posting = partition.posting(gram);
+            candidates = candidates == null ? posting : intersect(candidates, posting);
+            if (candidates.length == 0) {
+                break;
+            }
+        }
+
+        List<Entry> result = new ArrayList<>();
+        for (int id : candidates) {
+            Entry entry = partition.hotels.get(id);
+            if (entry.name.contains(query)) {
+                result.add(entry);
+            }
+        }
+        result.sort(BY_RATING);
+        return result;
+    }
+
+    /**
+     * 子串匹配在前，其后是模糊匹配（按相似度降序，相同时按评分）
+     * @return 酒店ID，最多limit个
+     */
+    public List<Integer> search(String destination, String pattern, int limit) {
+        Map<Integer, Entry> ranked = new LinkedHashMap<>();
+        for (Entry entry : match(destination, pattern)) {
+            ranked.put(entry.id, entry);
+        }
+        if (ranked.size() < limit) {
+            for (Entry entry : fuzzy(destination, pattern)) {
+                ranked.putIfAbsent(entry.id, entry);
+            }
+        }
+        return ranked.keySet().stream().limit(limit).toList();
+    }
+
+    /**
+     * 模糊匹配：查询串的二元组在名称中出现的比例不低于阈值
+     */
+    public List<Entry> fuzzy(String destination, String pattern) {
+        Partition partition = partitions.get(destination);
+        String query = normalize(pattern);
+        if (partition == null || query.length() < 2) {
+            return new ArrayList<>();
+        }
+
+        Set<String> bigrams = new HashSet<>(grams(query, 2, 2));
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (String gram : bigrams) {
+            for (int id : partition.posting(gram)) {
+                hits.merge(id, 1, Integer::sum);
+            }
+        }
+
+        Map<Entry, Double> scores = new HashMap<>();
+        hits.forEach((id, count) -> {
+            double score = (double) count / bigrams.size();
+            if (score >= minSimilarity) {
+                scores.put(partition.hotels.get(id), score);
+            }
+        });
+        List<Entry> result = new ArrayList<>(scores.keySet());
+        result.sort(Comparator.comparingDouble((Entry e) -> -scores.get(e)).thenComparing(BY_RATING));
+        return result;
+    }
+
+    /**
+     * 酒店新增或修改后更新索引，目的地变更时从原目的地移除
+     */
+    public void put(Hotel hotel) {
+        if (hotel.getId() == null || hotel.getDestination() == null || hotel.getName() == null) {
+            return;
+        }
+        remove(hotel.getId());
+        partitions.compute(hotel.getDestination(), (destination, partition) -> {
+            Map<Integer, Entry> hotels = partition == null ? new HashMap<>() : new HashMap<>(partition.hotels);
+            hotels.put(hotel.getId(), new Entry(hotel));
+            return new Partition(hotels);
+        });
+        maxId = Math.max(maxId, hotel.getId());
+    }
+
+    public void remove(int hotelId) {
+        for (String destination : partitions.keySet()) {
+            partitions.computeIfPresent(destination, (key, partition) -> {
+                if (!partition.hotels.containsKey(hotelId)) {
+                    return partition;
+                }
+                Map<Integer, Entry> hotels = new HashMap<>(partition.hotels);
+                hotels.remove(hotelId);
+                return hotels.isEmpty() ? null : new Partition(hotels);
+            });
+        }
+    }
+
+    /**
+     * 全量重建索引
+     */
+    public synchronized void reload() {
+        List<Hotel> hotels = hotelMapper.findAfter(0);
+        Map<String, Map<Integer, Entry>> grouped = new HashMap<>();
+        int max = 0;
+        for (Hotel hotel : hotels) {
+            max = Math.max(max, hotel.getId());
+            if (hotel.getDestination() != null && hotel.getName() != null) {
+                grouped.computeIfAbsent(hotel.getDestination(), k -> new HashMap<>()).put(hotel.getId(), new Entry(hotel));
+            }
+        }
+        partitions.keySet().retainAll(grouped.keySet());
+        grouped.forEach((destination, entries) -> partitions.put(destination, new Partition(entries)));
+        maxId = max;
+        loaded = true;
+    }
+
+    /**
+     * 增量加载新增的酒店，索引未加载时全量加载
+     * @return 新增的酒店数
+     */
+    public synchronized int refresh() {
+        if (!loaded) {
+            reload();
+            return partitions.values().stream().mapToInt(p -> p.hotels.size()).sum();
+        }
+        List<Hotel> added = hotelMapper.findAfter(maxId);
+        added.forEach(this::put);
+        return added.size();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hotelNameDestinations", (long) partitions.size());
+        stats.put("hotelNameEntries", partitions.values().stream().mapToLong(p -> p.hotels.size()).sum());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private static String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(input.length());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // 长度在[min, max]内的全部N-gram
+    private static Collection<String> grams(String text, int min, int max) {
+        Set<String> result = new HashSet<>();
+        for (int n = min; n <= max; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                result.add(text.substring(i, i + n));
+            }
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Hotel name index refresh error", e);
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Hotel name index reload error", e);
+        }
+    }
+}
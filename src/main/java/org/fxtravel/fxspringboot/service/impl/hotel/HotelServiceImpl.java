@@ -3,38 +3,59 @@ package org.fxtravel.fxspringboot.service.impl.hotel;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.fxtravel.fxspringboot.common.E_NotificationEventType;
 import org.fxtravel.fxspringboot.event.EventCenter;
 import org.fxtravel.fxspringboot.event.EventType;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
 import org.fxtravel.fxspringboot.mapper.hotel.RoomMapper;
+import org.fxtravel.fxspringboot.mapper.hotel.RoomOrderMapper;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.HotelSearchResult;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.dto.notification.NotificationRequestDTO;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.*;
 import org.fxtravel.fxspringboot.service.inter.hotel.HotelService;
 import org.fxtravel.fxspringboot.service.inter.NotificationService;
+import org.fxtravel.fxspringboot.utils.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+@Slf4j
 @Service
 public class HotelServiceImpl implements HotelService {
     @Autowired
     private HotelMapper hotelMapper;
     @Autowired
     private RoomMapper roomMapper;
+    @Autowired
+    private RoomOrderMapper roomOrderMapper;
+    @Autowired
+    private HotelNameIndex nameIndex;
+    @Autowired
+    private RoomCalendar calendar;
 
     @Autowired
     private EventCenter eventCenter;
 
+    @Value("${fx.search.page-size:20}")
+    private int pageSize = 20;
+
+    @Value("${fx.search.max-page-size:100}")
+    private int maxPageSize = 100;
+
     @PostConstruct
     public void init() {
         // 注册回调，确保在服务启动时就注册
@@ -51,12 +72,31 @@ public class HotelServiceImpl implements HotelService {
     public void handlePaymentStatusChange(PaymentInfo info) {
         switch (info.getNewStatus()){
             case FAILED:
+                // 只有占用成功后超时的支付才携带入住区间，库存不足导致的失败没有可归还的房量（NOTHING_HELD）；
+                // 重启后恢复或由清理任务处理的超时没有下单时的数据，按订单记录归还
+                if (info.getData() == null) {
+                    putBackOrder(info);
+                } else if (info.getData() instanceof StayClaim stay) {
+                    putBack(info.getGoodId(), info.getQuantity(), stay);
+                }
+                break;
             case REFUNDED:
-                putBack(info.getGoodId(), info.getQuantity(), null);
+                putBackOrder(info);
                 break;
         }
     }
 
+    // 按订单记录的入住区间归还
+    private void putBackOrder(PaymentInfo info) {
+        RoomOrder order = info.getOrderId() == null ? null : roomOrderMapper.selectById(info.getOrderId());
+        if (order == null) {
+            log.warn("Room order not found on {}: order={}", info.getNewStatus(), info.getOrderId());
+            return;
+        }
+        putBack(info.getGoodId(), info.getQuantity(),
+                new StayClaim(order.getCheckInDate(), order.getCheckOutDate()));
+    }
+
     @Override
     public Hotel getHotelById(Integer id) {
         return hotelMapper.selectById(id);
@@ -73,20 +113,127 @@ public class HotelServiceImpl implements HotelService {
             return getResults(hotelMapper.findByDest(destination));
         }
 
+        // 名称索引已加载时由索引确定匹配的酒店及顺序（子串匹配在前，模糊匹配在后），数据库只按主键取行
+        if (nameIndex.isLoaded()) {
+            return getResults(fetchRanked(nameIndex.search(destination, pattern, Integer.MAX_VALUE)));
+        }
         return getResults(hotelMapper.findByDestAndName(destination, pattern));
     }
 
+    @Override
+    public SearchPage<HotelSearchResult> searchHotels(String destination, String pattern, String cursor, Integer requested) {
+        PageCursor after = PageCursor.decode(cursor);
+        int limit = PageCursor.pageSize(requested, pageSize, maxPageSize);
+        if (pattern != null && !pattern.isEmpty() && nameIndex.isLoaded()) {
+            return searchByName(destination, pattern, after, limit);
+        }
+
+        // 多取一条判断是否还有下一页
+        List<Hotel> hotels = hotelMapper.findPageByDest(destination, pattern,
+                after == null ? null : after.getDoubleKey(), after == null ? null : after.getId(), limit + 1);
+        boolean more = hotels.size() > limit;
+        if (more) {
+            hotels = hotels.subList(0, limit);
+        }
+        List<HotelSearchResult> results = getResults(hotels);
+        String next = null;
+        if (more) {
+            // 未评分的酒店按-1排序，与SQL中的COALESCE一致
+            Hotel last = hotels.get(limit - 1);
+            next = PageCursor.encode(last.getRating() == null ? -1.0 : last.getRating(), last.getId());
+        }
+        return new SearchPage<>(results == null ? new ArrayList<>() : results, next);
+    }
+
+    @Override
+    public SearchPage<HotelSearchResult> searchHotels(String destination, String pattern, String cursor, Integer requested,
+                                                      StayClaim stay) {
+        SearchPage<HotelSearchResult> page = searchHotels(destination, pattern, cursor, requested);
+        if (stay == null) {
+            return page;
+        }
+
+        // Room.remain是每晚可售间数，按库存日历换算为这段日期内每晚都能订到的间数，本页的房型一次计算
+        List<Room> rooms = page.getItems().stream().flatMap(r -> r.getRooms().stream()).toList();
+        Map<Integer, Integer> available = calendar.available(rooms, stay.getCheckInDate(), stay.getCheckOutDate());
+        for (HotelSearchResult result : page.getItems()) {
+            Map<Integer, Integer> own = new HashMap<>();
+            for (Room room : result.getRooms()) {
+                own.put(room.getId(), available.getOrDefault(room.getId(), 0));
+            }
+            result.setAvailable(own);
+        }
+        return page;
+    }
+
+    // 按名称分页：在索引的子串匹配结果上应用游标，顺序与findPageByDest一致
+    private SearchPage<HotelSearchResult> searchByName(String destination, String pattern, PageCursor after, int limit) {
+        List<HotelNameIndex.Entry> matches = nameIndex.match(destination, pattern);
+        if (after != null) {
+            double afterRating = after.getDoubleKey();
+            int afterId = after.getId();
+            matches = matches.stream()
+                    .filter(e -> e.getRating() < afterRating || (e.getRating() == afterRating && e.getId() > afterId))
+                    .toList();
+        }
+
+        // 没有名称包含查询串的酒店时，首页返回模糊匹配的结果，不再翻页
+        if (matches.isEmpty() && after == null) {
+            List<HotelSearchResult> results = getResults(fetchRanked(nameIndex.fuzzy(destination, pattern).stream()
+                    .limit(limit).map(HotelNameIndex.Entry::getId).toList()));
+            return new SearchPage<>(results == null ? new ArrayList<>() : results, null);
+        }
+
+        boolean more = matches.size() > limit;
+        if (more) {
+            matches = matches.subList(0, limit);
+        }
+        List<HotelSearchResult> results = getResults(fetchRanked(matches.stream().map(HotelNameIndex.Entry::getId).toList()));
+        String next = null;
+        if (more) {
+            HotelNameIndex.Entry last = matches.get(limit - 1);
+            next = PageCursor.encode(last.getRating(), last.getId());
+        }
+        return new SearchPage<>(results == null ? new ArrayList<>() : results, next);
+    }
+
+    // 按主键取回酒店，保持索引给出的顺序；索引中已不存在于数据库的酒店跳过
+    private List<Hotel> fetchRanked(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Hotel> rows = new HashMap<>();
+        for (Hotel hotel : hotelMapper.selectByIds(ids)) {
+            rows.put(hotel.getId(), hotel);
+        }
+        List<Hotel> hotels = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Hotel hotel = rows.get(id);
+            if (hotel != null) {
+                hotels.add(hotel);
+            }
+        }
+        return hotels;
+    }
+
     private List<HotelSearchResult> getResults(List<Hotel> hotels) {
         if (hotels.isEmpty()) {
             return null;
         }
 
-        // 转换为搜索结果
+        // 一次查询取回所有酒店的房型，按酒店分组
+        Map<Integer, List<Room>> roomsByHotel = new HashMap<>();
+        for (Room room : roomMapper.findByHotels(hotels.stream().map(Hotel::getId).toList())) {
+            roomsByHotel.computeIfAbsent(room.getHotelId(), k -> new ArrayList<>()).add(room);
+        }
+
+        // 按查询返回的酒店顺序（评分）转换为搜索结果
         List<HotelSearchResult> results = new ArrayList<>();
 
         for (Hotel hotel : hotels) {
-            List<Room> roomList = roomMapper.findByHotel(hotel.getId());
-            if (roomList.isEmpty()) {
+            List<Room> roomList = roomsByHotel.get(hotel.getId());
+            // 没有房型的酒店不显示
+            if (roomList == null) {
                 continue;
             }
             // 创建搜索结果对象
@@ -108,6 +255,11 @@ public class HotelServiceImpl implements HotelService {
             return false;
         }
 
+        // 按入住区间下单时remain是每晚的可售间数，在库存日历中逐晚扣减
+        if (data instanceof StayClaim stay) {
+            return calendar.reserve(id, obj.getRemain(), stay.getCheckInDate(), stay.getCheckOutDate(), count);
+        }
+
         // 2. 扣减库存
         int updated = roomMapper.deduct(id, count);
 
@@ -116,6 +268,10 @@ public class HotelServiceImpl implements HotelService {
 
     @Override
     public void putBack(int id, int count, Object data) {
+        if (data instanceof StayClaim stay) {
+            calendar.release(id, stay.getCheckInDate(), stay.getCheckOutDate(), count);
+            return;
+        }
         roomMapper.add(id, count);
     }
 }
\ No newline at end of file
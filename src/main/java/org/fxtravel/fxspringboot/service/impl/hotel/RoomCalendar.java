@@ -0,0 +1,337 @@
+package org.fxtravel.fxspringboot.service.impl.hotel;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.hotel.RoomCalendarMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Room;
+import org.fxtravel.fxspringboot.pojo.entities.RoomCalendarMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 房型按晚的库存日历
+ * 每个房型每月一行room_calendar，保存当月每晚的已售间数。占用一个入住区间时任何一晚超出可售间数即不占用任何一晚，
+ * 因此区间要么整体占用、要么不占用。
+ * 默认直接在数据库上按月比较并交换整行（sold仍等于读取到的值时才更新），多个实例可以同时售卖；
+ * 开启常驻模式后计数数组常驻内存，逐晚CAS扣减，成功后按月写回。常驻模式要求同一房型只由一个实例售卖，
+ * 写回同样比较并交换，行已被其他写入者改变时把对方的变化并入内存后重试，不会覆盖对方的数据。
+ */
+@Slf4j
+@Component
+public class RoomCalendar {
+    @Autowired
+    private RoomCalendarMapper calendarMapper;
+
+    @Value("${fx.hotel.calendar.max-nights:30}")
+    private int maxNights = 30;
+
+    // 是否常驻内存，默认关闭；只有确认后端只部署一个实例时才能开启
+    @Value("${fx.hotel.calendar.resident:false}")
+    private boolean resident = false;
+
+    // 按月比较并交换冲突后的最大重试次数
+    @Value("${fx.hotel.calendar.max-retries:5}")
+    private int maxRetries = 5;
+
+    private final Map<Long, Month> months = new ConcurrentHashMap<>();
+
+    // 一个房型一个月的已售间数
+    private static final class Month {
+        final int roomId;
+        final YearMonth month;
+        final AtomicIntegerArray sold;
+        // 最近一次读取或写回的整行，写回时作为期望值；null表示数据库中还没有这一行
+        byte[] persisted;
+
+        Month(int roomId, YearMonth month, AtomicIntegerArray sold, byte[] persisted) {
+            this.roomId = roomId;
+            this.month = month;
+            this.sold = sold;
+            this.persisted = persisted;
+        }
+    }
+
+    // 入住区间落在某个月内的部分，日期下标[fromDay, toDay)
+    private record Span(YearMonth month, int fromDay, int toDay) {
+    }
+
+    /**
+     * 占用[checkIn, checkOut)的每一晚count间
+     * 每次读取与比较并交换都是独立的语句，不加入调用方事务，
+     * 否则重试时读到的仍是调用方事务开始时的快照，第一次冲突后每次重试都会失败
+     * @param capacity 该房型每晚的可售间数
+     * @return 所有夜晚都有余量并已扣减时返回true，否则不扣减任何一晚
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public boolean reserve(int roomId, int capacity, LocalDate checkIn, LocalDate checkOut, int count) {
+        if (!validRange(checkIn, checkOut) || count < 1) {
+            return false;
+        }
+        if (!resident) {
+            return reserveInDatabase(roomId, capacity, checkIn, checkOut, count);
+        }
+        for (LocalDate night = checkIn; night.isBefore(checkOut); night = night.plusDays(1)) {
+            Month month = month(roomId, YearMonth.from(night));
+            int index = night.getDayOfMonth() - 1;
+            while (true) {
+                int sold = month.sold.get(index);
+                if (sold + count > capacity) {
+                    // 回滚已扣减的夜晚；其间其他线程的写回可能已带上这些夜晚，回滚后同样写回
+                    add(roomId, checkIn, night, -count);
+                    persist(roomId, checkIn, night);
+                    return false;
+                }
+                if (month.sold.compareAndSet(index, sold, sold + count)) {
+                    break;
+                }
+            }
+        }
+        persist(roomId, checkIn, checkOut);
+        return true;
+    }
+
+    /**
+     * 归还[checkIn, checkOut)的每一晚count间，与reserve对称；已售间数不会减到0以下
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void release(int roomId, LocalDate checkIn, LocalDate checkOut, int count) {
+        if (!validRange(checkIn, checkOut) || count < 1) {
+            return;
+        }
+        if (!resident) {
+            for (Span span : spans(checkIn, checkOut)) {
+                update(roomId, span, -count, Integer.MAX_VALUE);
+            }
+            return;
+        }
+        add(roomId, checkIn, checkOut, -count);
+        persist(roomId, checkIn, checkOut);
+    }
+
+    /**
+     * 区间内每晚的剩余间数，下标0为入住当晚
+     */
+    public int[] remaining(int roomId, int capacity, LocalDate checkIn, LocalDate checkOut) {
+        if (!validRange(checkIn, checkOut)) {
+            return new int[0];
+        }
+        int[] result = new int[(int) ChronoUnit.DAYS.between(checkIn, checkOut)];
+        Map<YearMonth, int[]> rows = resident ? null : new HashMap<>();
+        LocalDate night = checkIn;
+        for (int i = 0; i < result.length; i++, night = night.plusDays(1)) {
+            YearMonth yearMonth = YearMonth.from(night);
+            int index = night.getDayOfMonth() - 1;
+            int sold = resident ? month(roomId, yearMonth).sold.get(index)
+                    : rows.computeIfAbsent(yearMonth, m -> read(roomId, m))[index];
+            result[i] = Math.max(0, capacity - sold);
+        }
+        return result;
+    }
+
+    /**
+     * 每个房型在[checkIn, checkOut)内每晚都能订到的间数，即各晚剩余间数的最小值
+     * 数据库模式下所有房型一次查询
+     * @return 房型ID -> 可订间数
+     * @throws IllegalArgumentException 区间为空、颠倒或超过最多入住晚数
+     */
+    public Map<Integer, Integer> available(List<Room> rooms, LocalDate checkIn, LocalDate checkOut) {
+        if (!validRange(checkIn, checkOut)) {
+            throw new IllegalArgumentException("入住区间无效，最多入住" + maxNights + "晚");
+        }
+        Map<Integer, Integer> result = new HashMap<>();
+        if (rooms.isEmpty()) {
+            return result;
+        }
+        Map<String, byte[]> rows = new HashMap<>();
+        if (!resident) {
+            List<Integer> roomIds = rooms.stream().map(Room::getId).toList();
+            List<String> stayMonths = spans(checkIn, checkOut).stream().map(s -> s.month().toString()).toList();
+            for (RoomCalendarMonth row : calendarMapper.findByRooms(roomIds, stayMonths)) {
+                rows.put(row.getRoomId() + "/" + row.getStayMonth(), row.getSold());
+            }
+        }
+        for (Room room : rooms) {
+            int capacity = room.getRemain() == null ? 0 : room.getRemain();
+            int min = capacity;
+            for (Span span : spans(checkIn, checkOut)) {
+                int[] sold = resident ? snapshot(month(room.getId(), span.month()).sold)
+                        : decode(rows.get(room.getId() + "/" + span.month()), span.month().lengthOfMonth());
+                for (int day = span.fromDay(); day < span.toDay(); day++) {
+                    min = Math.min(min, capacity - sold[day]);
+                }
+            }
+            result.put(room.getId(), Math.max(0, min));
+        }
+        return result;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private boolean validRange(LocalDate checkIn, LocalDate checkOut) {
+        return checkIn != null && checkOut != null && checkIn.isBefore(checkOut)
+                && ChronoUnit.DAYS.between(checkIn, checkOut) <= maxNights;
+    }
+
+    // 逐月扣减，后面的月份余量不足或重试耗尽时把前面已写入的月份加回
+    private boolean reserveInDatabase(int roomId, int capacity, LocalDate checkIn, LocalDate checkOut, int count) {
+        List<Span> spans = spans(checkIn, checkOut);
+        for (int i = 0; i < spans.size(); i++) {
+            if (!update(roomId, spans.get(i), count, capacity)) {
+                for (int j = 0; j < i; j++) {
+                    update(roomId, spans.get(j), -count, Integer.MAX_VALUE);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 以读取到的整行为期望值更新一个月内[fromDay, toDay)的已售间数
+     * 归还（delta为负）不会因余量不足失败，冲突时一直重试直到写入，否则已售间数会永久多计；
+     * 每次冲突都说明另一个写入者已经成功，重试不会无限进行下去
+     * @return 已写入时返回true；增加后任何一晚超过capacity或冲突重试耗尽时返回false，不做任何修改
+     */
+    private boolean update(int roomId, Span span, int delta, int capacity) {
+        String stayMonth = span.month().toString();
+        for (int attempt = 0; delta < 0 || attempt <= maxRetries; attempt++) {
+            RoomCalendarMonth row = calendarMapper.find(roomId, stayMonth);
+            byte[] expected = row == null ? null : row.getSold();
+            int[] sold = decode(expected, span.month().lengthOfMonth());
+            for (int day = span.fromDay(); day < span.toDay(); day++) {
+                sold[day] = Math.max(0, sold[day] + delta);
+                if (delta > 0 && sold[day] > capacity) {
+                    return false;
+                }
+            }
+            byte[] updated = encode(sold);
+            int written = expected == null ? calendarMapper.insertIfAbsent(roomId, stayMonth, updated)
+                    : calendarMapper.compareAndSet(roomId, stayMonth, expected, updated);
+            if (written > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // [checkIn, checkOut)按月拆分
+    private static List<Span> spans(LocalDate checkIn, LocalDate checkOut) {
+        List<Span> spans = new ArrayList<>(2);
+        LocalDate from = checkIn;
+        while (from.isBefore(checkOut)) {
+            YearMonth month = YearMonth.from(from);
+            LocalDate next = month.plusMonths(1).atDay(1);
+            LocalDate to = next.isBefore(checkOut) ? next : checkOut;
+            spans.add(new Span(month, from.getDayOfMonth() - 1, from.getDayOfMonth() - 1 + (int) ChronoUnit.DAYS.between(from, to)));
+            from = to;
+        }
+        return spans;
+    }
+
+    // [from, to)的每一晚加delta，减少时不低于0
+    private void add(int roomId, LocalDate from, LocalDate to, int delta) {
+        for (LocalDate night = from; night.isBefore(to); night = night.plusDays(1)) {
+            AtomicIntegerArray sold = month(roomId, YearMonth.from(night)).sold;
+            sold.getAndUpdate(night.getDayOfMonth() - 1, value -> Math.max(0, value + delta));
+        }
+    }
+
+    private Month month(int roomId, YearMonth month) {
+        long key = ((long) roomId << 32) | (month.getYear() * 12L + month.getMonthValue());
+        return months.computeIfAbsent(key, k -> load(roomId, month));
+    }
+
+    private Month load(int roomId, YearMonth month) {
+        RoomCalendarMonth row = calendarMapper.find(roomId, month.toString());
+        byte[] bytes = row == null ? null : row.getSold();
+        return new Month(roomId, month, new AtomicIntegerArray(decode(bytes, month.lengthOfMonth())), bytes);
+    }
+
+    private int[] read(int roomId, YearMonth month) {
+        RoomCalendarMonth row = calendarMapper.find(roomId, month.toString());
+        return decode(row == null ? null : row.getSold(), month.lengthOfMonth());
+    }
+
+    // 区间涉及的每个月整行写回；同一行的写回串行执行，后写入的总是较新的快照
+    private void persist(int roomId, LocalDate checkIn, LocalDate checkOut) {
+        Set<YearMonth> touched = new LinkedHashSet<>();
+        for (LocalDate night = checkIn; night.isBefore(checkOut); night = night.plusDays(1)) {
+            touched.add(YearMonth.from(night));
+        }
+        for (YearMonth yearMonth : touched) {
+            Month month = month(roomId, yearMonth);
+            synchronized (month) {
+                flush(month);
+            }
+        }
+    }
+
+    // 以上次读取或写回的整行为期望值写回；行已被其他写入者改变时把对方的变化并入内存后重试
+    private void flush(Month month) {
+        String stayMonth = month.month.toString();
+        int days = month.month.lengthOfMonth();
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            byte[] current = encode(snapshot(month.sold));
+            int written = month.persisted == null
+                    ? calendarMapper.insertIfAbsent(month.roomId, stayMonth, current)
+                    : calendarMapper.compareAndSet(month.roomId, stayMonth, month.persisted, current);
+            if (written > 0) {
+                month.persisted = current;
+                return;
+            }
+            log.debug("Room calendar changed by another writer: room={}, month={}", month.roomId, stayMonth);
+            RoomCalendarMonth row = calendarMapper.find(month.roomId, stayMonth);
+            byte[] theirs = row == null ? null : row.getSold();
+            int[] base = decode(month.persisted, days);
+            int[] now = decode(theirs, days);
+            for (int i = 0; i < days; i++) {
+                if (now[i] != base[i]) {
+                    month.sold.getAndAdd(i, now[i] - base[i]);
+                }
+            }
+            month.persisted = theirs;
+        }
+        log.error("Room calendar write-back gave up after retries: room={}, month={}", month.roomId, stayMonth);
+    }
+
+    private static int[] snapshot(AtomicIntegerArray sold) {
+        int[] values = new int[sold.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sold.get(i);
+        }
+        return values;
+    }
+
+    // 每晚2字节（大端），缺少的行或字节按0处理
+    private static int[] decode(byte[] bytes, int days) {
+        int[] sold = new int[days];
+        if (bytes != null) {
+            for (int i = 0; i < days && i * 2 + 1 < bytes.length; i++) {
+                sold[i] = ((bytes[i * 2] & 0xFF) << 8) | (bytes[i * 2 + 1] & 0xFF);
+            }
+        }
+        return sold;
+    }
+
+    private static byte[] encode(int[] sold) {
+        byte[] bytes = new byte[sold.length * 2];
+        for (int i = 0; i < sold.length; i++) {
+            int value = Math.max(0, Math.min(sold[i], 0xFFFF));
+            bytes[i * 2] = (byte) (value >>> 8);
+            bytes[i * 2 + 1] = (byte) value;
+        }
+        return bytes;
+    }
+}
@@ -9,6 +9,7 @@ import org.fxtravel.fxspringboot.event.EventType;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.hotel.RoomOrderMapper;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.BookHotelRequest;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
 import org.fxtravel.fxspringboot.pojo.entities.RoomOrder;
@@ -23,6 +24,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class RoomOrderServiceImpl implements RoomOrderService {
@@ -74,6 +76,10 @@ public class RoomOrderServiceImpl implements RoomOrderService {
         }
 
         // 2. 计算入住天数和总价
+        if (request.getCheckInDate() == null || request.getCheckOutDate() == null
+                || !request.getCheckInDate().isBefore(request.getCheckOutDate())) {
+            throw new IllegalArgumentException("离店日期必须晚于入住日期");
+        }
         long nights = ChronoUnit.DAYS.between(
                 request.getCheckInDate(),
                 request.getCheckOutDate()
@@ -107,12 +113,17 @@ public class RoomOrderServiceImpl implements RoomOrderService {
         order.setOrderNumber(payment.getOrderNumber());
         roomOrderMapper.updateById(order);
 
-        // 6. 模拟支付流程（保持原有逻辑）
+        // 6. 模拟支付流程：按入住区间逐晚占用房量，占用成功后支付失败时携带区间归还
+        StayClaim stay = new StayClaim(order.getCheckInDate(), order.getCheckOutDate());
+        AtomicBoolean reserved = new AtomicBoolean();
         paymentService.simulatePaymentProcess(
                 payment.getOrderNumber(),
                 30,
-                () -> hotelService.checkAndGet(room.getId(), 1, null),
-                () -> null
+                () -> {
+                    reserved.set(hotelService.checkAndGet(room.getId(), 1, stay));
+                    return reserved.get();
+                },
+                () -> reserved.get() ? stay : PaymentInfo.NOTHING_HELD
         );
 
         return order;
@@ -0,0 +1,223 @@
+package org.fxtravel.fxspringboot.service.impl.trainmeal;
+
+import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 各车次的餐食菜单缓存
+ * 按车次ID缓存已上架、按价格排序的餐食列表，按条目数（LRU）与有效期淘汰。
+ * 菜单内容很少变化，餐食上下架或修改时淘汰所在车次；余量变化频繁，下单、退单时直接修改缓存中的对象。
+ * 查询数据库时不持有锁，每次修改都记下版本号；查询期间菜单中的餐食被修改或车次被淘汰时，查到的结果只返回不缓存，
+ * 避免查询前读到的旧余量覆盖掉查询期间的修改。
+ */
+@Component
+public class MealMenuCache {
+    @Value("${fx.meal.menu.max-entries:500}")
+    private int maxEntries = 500;
+
+    @Value("${fx.meal.menu.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    // 访问顺序的LinkedHashMap，最久未访问的条目在最前
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 餐食ID -> 缓存中的对象，余量变化时直接修改
+    private final Map<Integer, TrainMeal> meals = new HashMap<>();
+
+    // 修改版本号：餐食ID/车次ID -> 最近一次修改余量/淘汰时的版本，全部淘汰时记在cleared
+    // 只有查询进行中时才需要比较，没有进行中的查询时清空
+    private int loading;
+    private long version;
+    private long cleared;
+    private final Map<Integer, Long> patchedMeals = new HashMap<>();
+    private final Map<Integer, Long> invalidatedTrains = new HashMap<>();
+
+    // 统计信息
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    private static final class Entry {
+        final List<TrainMeal> meals;
+        final long expiresAt;
+
+        Entry(List<TrainMeal> meals, long expiresAt) {
+            this.meals = meals;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 读取车次的菜单，未命中或已过期时调用loader查询并缓存
+     * @return 新建的列表与餐食对象，调用方可以随意修改
+     */
+    public List<TrainMeal> get(int trainId, Supplier<List<TrainMeal>> loader) {
+        long now = System.currentTimeMillis();
+        long loadedAt;
+        synchronized (this) {
+            Entry entry = entries.get(trainId);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return copy(entry.meals);
+            }
+            if (entry != null) {
+                remove(trainId);
+            }
+            loading++;
+            loadedAt = version;
+        }
+
+        // 查询数据库时不持有锁，同一车次并发未命中时各自查询，后写入的覆盖先写入的
+        misses.incrementAndGet();
+        List<TrainMeal> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loaded();
+            }
+            throw e;
+        }
+        List<TrainMeal> cached = loaded == null ? new ArrayList<>() : new ArrayList<>(loaded);
+        synchronized (this) {
+            boolean modified = modifiedSince(loadedAt, trainId, cached);
+            loaded();
+            if (modified) {
+                discarded.incrementAndGet();
+                return copy(cached);
+            }
+            if (entries.containsKey(trainId)) {
+                remove(trainId);
+            }
+            for (TrainMeal meal : cached) {
+                if (meal.getId() != null) {
+                    meals.put(meal.getId(), meal);
+                }
+            }
+            entries.put(trainId, new Entry(cached, now + ttlSeconds * 1000));
+            evict();
+            return copy(cached);
+        }
+    }
+
+    /**
+     * 更新缓存中某个餐食的余量，餐食未被缓存时忽略
+     */
+    public synchronized void updateRemain(int mealId, int remain) {
+        if (loading > 0) {
+            patchedMeals.put(mealId, ++version);
+        }
+        TrainMeal meal = meals.get(mealId);
+        if (meal != null) {
+            meal.setRemain(remain);
+        }
+    }
+
+    /**
+     * 缓存中某个餐食的余量加上delta，餐食未被缓存时忽略
+     */
+    public synchronized void adjustRemain(int mealId, int delta) {
+        if (loading > 0) {
+            patchedMeals.put(mealId, ++version);
+        }
+        TrainMeal meal = meals.get(mealId);
+        if (meal != null) {
+            meal.setRemain(Math.max(0, (meal.getRemain() == null ? 0 : meal.getRemain()) + delta));
+        }
+    }
+
+    // 餐食上下架或修改后淘汰所在车次的菜单
+    public synchronized void invalidate(int trainId) {
+        if (loading > 0) {
+            invalidatedTrains.put(trainId, ++version);
+        }
+        remove(trainId);
+    }
+
+    public synchronized void invalidateAll() {
+        cleared = ++version;
+        patchedMeals.clear();
+        invalidatedTrains.clear();
+        entries.clear();
+        meals.clear();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("menuCacheEntries", (long) entries.size());
+        }
+        stats.put("menuCacheHits", hits.get());
+        stats.put("menuCacheMisses", misses.get());
+        stats.put("menuCacheEvictions", evictions.get());
+        stats.put("menuCacheDiscarded", discarded.get());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private static List<TrainMeal> copy(List<TrainMeal> meals) {
+        List<TrainMeal> copy = new ArrayList<>(meals.size());
+        for (TrainMeal meal : meals) {
+            copy.add(new TrainMeal(meal.getId(), meal.getTrainId(), meal.getName(), meal.getDescription(),
+                    meal.getImage(), meal.getMealTime(), meal.getPrice(), meal.getRemain(), meal.getEnabled()));
+        }
+        return copy;
+    }
+
+    // 从开始查询（版本loadedAt）到现在，车次是否被淘汰过，或查到的餐食余量是否被修改过
+    private boolean modifiedSince(long loadedAt, int trainId, List<TrainMeal> loaded) {
+        if (cleared > loadedAt || invalidatedTrains.getOrDefault(trainId, 0L) > loadedAt) {
+            return true;
+        }
+        for (TrainMeal meal : loaded) {
+            if (meal.getId() != null && patchedMeals.getOrDefault(meal.getId(), 0L) > loadedAt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 一次查询结束，没有进行中的查询时不再需要修改记录
+    private void loaded() {
+        if (--loading == 0) {
+            patchedMeals.clear();
+            invalidatedTrains.clear();
+        }
+    }
+
+    // 超出条目数上限时淘汰最久未访问的条目
+    private void evict() {
+        Iterator<Map.Entry<Integer, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            release(entry);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(int trainId) {
+        release(entries.remove(trainId));
+    }
+
+    private void release(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (TrainMeal meal : entry.meals) {
+            if (meal.getId() != null) {
+                meals.remove(meal.getId(), meal);
+            }
+        }
+    }
+}
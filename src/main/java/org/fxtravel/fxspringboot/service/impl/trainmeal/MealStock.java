@@ -0,0 +1,348 @@
+package org.fxtravel.fxspringboot.service.impl.trainmeal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.trainmeal.TrainMealMapper;
+import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻内存的餐食库存
+ * 每个train_meal的余量拆分到若干条带（stripe）中，线程优先在自己的条带上CAS扣减，
+ * 本条带不足时再依次从其他条带凑齐，凑不齐则把已取的加回并返回失败。
+ * 首次访问时从数据库加载，变更由后台线程以增量形式批量写回（remain = remain + 增量），
+ * 不会覆盖其他途径对数据库余量的修改；后台线程还会定期重新读取数据库余量，
+ * 把补货、后台修改等其他途径的变化并入内存。
+ * 两次核对之间其他途径的扣减看不到，因此与座位常驻库存一样，要求同一餐食只由一个实例售卖。
+ */
+@Slf4j
+@Component
+public class MealStock {
+    @Autowired
+    private TrainMealMapper trainMealMapper;
+
+    @Value("${fx.meal.stock.stripes:8}")
+    private int stripes = 8;
+
+    @Value("${fx.meal.stock.flush-interval-ms:200}")
+    private long flushIntervalMs = 200;
+
+    @Value("${fx.meal.stock.flush-batch-size:200}")
+    private int flushBatchSize = 200;
+
+    @Value("${fx.meal.stock.reconcile-interval-ms:30000}")
+    private long reconcileIntervalMs = 30000;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> dirtyMeals = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    // 统计信息
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong rejects = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong contention = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong flushStatements = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+
+    // 单个餐食的内存状态
+    static final class Entry {
+        final AtomicIntegerArray stripes;
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+        // 最近一次写回时的余量，写回的增量为当前余量与之差
+        volatile int flushed;
+
+        Entry(int remain, int stripeCount) {
+            this.stripes = new AtomicIntegerArray(stripeCount);
+            // 余量平均分配到各条带，余数放在前面的条带
+            for (int i = 0; i < stripeCount; i++) {
+                stripes.set(i, remain / stripeCount + (i < remain % stripeCount ? 1 : 0));
+            }
+            this.flushed = remain;
+        }
+
+        int total() {
+            int sum = 0;
+            for (int i = 0; i < stripes.length(); i++) {
+                sum += stripes.get(i);
+            }
+            return sum;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        // 与写回在同一个线程上执行，核对时flushed不会被并发修改
+        flusher.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前把所有未落库的变更写回
+        flushQuietly();
+    }
+
+    /**
+     * 扣减count份
+     * @return 余量不足或餐食不存在时返回false，不扣减任何条带
+     */
+    public boolean claim(int mealId, int count) {
+        Entry entry = load(mealId);
+        if (entry == null || count < 1) {
+            return false;
+        }
+        int home = home(entry);
+        if (take(entry, home, count, true) == count) {
+            claimed(mealId, entry);
+            return true;
+        }
+
+        // 本条带不足，从其他条带凑齐
+        int taken = 0;
+        for (int i = 0; i < entry.stripes.length() && taken < count; i++) {
+            taken += take(entry, (home + i) % entry.stripes.length(), count - taken, false);
+        }
+        if (taken < count) {
+            if (taken > 0) {
+                entry.stripes.getAndAdd(home, taken);
+            }
+            rejects.incrementAndGet();
+            return false;
+        }
+        borrows.incrementAndGet();
+        claimed(mealId, entry);
+        return true;
+    }
+
+    /**
+     * 归还count份
+     */
+    public void release(int mealId, int count) {
+        Entry entry = load(mealId);
+        if (entry == null || count < 1) {
+            return;
+        }
+        entry.stripes.getAndAdd(home(entry), count);
+        releases.incrementAndGet();
+        markDirty(mealId, entry);
+    }
+
+    /**
+     * 内存中的余量
+     * @return 餐食未常驻内存时返回-1，不会触发加载
+     */
+    public int remain(int mealId) {
+        Entry entry = entries.get(mealId);
+        return entry == null ? -1 : entry.total();
+    }
+
+    /**
+     * 把有变更的餐食以增量批量写回，一条语句更新多行
+     */
+    public void flush() {
+        Iterator<Integer> it = dirtyMeals.iterator();
+        List<TrainMeal> batch = new ArrayList<>(flushBatchSize);
+        List<Integer> totals = new ArrayList<>(flushBatchSize);
+        while (it.hasNext()) {
+            Integer id = it.next();
+            it.remove();
+            Entry entry = entries.get(id);
+            // 先清除脏标记再取快照，之后的修改会重新标记
+            if (entry == null || !entry.dirty.compareAndSet(true, false)) {
+                continue;
+            }
+            int total = entry.total();
+            int delta = total - entry.flushed;
+            if (delta == 0) {
+                continue;
+            }
+            TrainMeal meal = new TrainMeal();
+            meal.setId(id);
+            meal.setRemain(delta);
+            batch.add(meal);
+            totals.add(total);
+            if (batch.size() >= flushBatchSize) {
+                write(batch, totals);
+                batch = new ArrayList<>(flushBatchSize);
+                totals = new ArrayList<>(flushBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, totals);
+        }
+    }
+
+    /**
+     * 先写回内存中的变更，再重新读取常驻餐食的数据库余量，把其他途径造成的差额并入内存
+     * 写回后数据库余量应等于flushed，多出或少掉的部分来自补货、后台修改等其他途径。
+     * 差额为负且内存余量不够扣时只扣到0，剩下的差额在之后的核对中继续扣减。
+     */
+    public void reconcile() {
+        flush();
+        List<Integer> ids = new ArrayList<>(entries.keySet());
+        for (int from = 0; from < ids.size(); from += flushBatchSize) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + flushBatchSize));
+            for (TrainMeal meal : trainMealMapper.selectByIds(chunk)) {
+                Entry entry = entries.get(meal.getId());
+                if (entry == null || meal.getRemain() == null) {
+                    continue;
+                }
+                int external = meal.getRemain() - entry.flushed;
+                if (external == 0) {
+                    continue;
+                }
+                int applied = adjust(entry, external);
+                entry.flushed += applied;
+                reconciled.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("residentMeals", (long) entries.size());
+        stats.put("dirtyMeals", (long) dirtyMeals.size());
+        stats.put("claims", claims.get());
+        stats.put("rejects", rejects.get());
+        stats.put("releases", releases.get());
+        stats.put("contention", contention.get());
+        stats.put("borrows", borrows.get());
+        stats.put("flushStatements", flushStatements.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("reconciled", reconciled.get());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private Entry load(int mealId) {
+        Entry entry = entries.get(mealId);
+        if (entry != null) {
+            return entry;
+        }
+        TrainMeal meal = trainMealMapper.selectById(mealId);
+        if (meal == null) {
+            return null;
+        }
+        int remain = meal.getRemain() == null ? 0 : meal.getRemain();
+        return entries.computeIfAbsent(mealId, k -> new Entry(remain, Math.max(1, stripes)));
+    }
+
+    // 当前线程的条带
+    private static int home(Entry entry) {
+        return (int) (Thread.currentThread().getId() % entry.stripes.length());
+    }
+
+    /**
+     * 从一个条带取至多count份
+     * @param exact 为true时只有够count份才取
+     * @return 实际取到的份数
+     */
+    private int take(Entry entry, int stripe, int count, boolean exact) {
+        while (true) {
+            int value = entry.stripes.get(stripe);
+            int n = Math.min(value, count);
+            if (n <= 0 || (exact && n < count)) {
+                return 0;
+            }
+            if (entry.stripes.compareAndSet(stripe, value, value - n)) {
+                return n;
+            }
+            contention.incrementAndGet();
+        }
+    }
+
+    // 把差额平均加到各条带，减少时依次从各条带取，返回实际调整的份数
+    private int adjust(Entry entry, int delta) {
+        int count = entry.stripes.length();
+        if (delta > 0) {
+            for (int i = 0; i < count; i++) {
+                entry.stripes.getAndAdd(i, delta / count + (i < delta % count ? 1 : 0));
+            }
+            return delta;
+        }
+        int taken = 0;
+        for (int i = 0; i < count && taken < -delta; i++) {
+            taken += take(entry, i, -delta - taken, false);
+        }
+        return -taken;
+    }
+
+    private void claimed(int mealId, Entry entry) {
+        claims.incrementAndGet();
+        markDirty(mealId, entry);
+    }
+
+    private void markDirty(int mealId, Entry entry) {
+        if (entry.dirty.compareAndSet(false, true)) {
+            dirtyMeals.add(mealId);
+        }
+    }
+
+    private void write(List<TrainMeal> batch, List<Integer> totals) {
+        try {
+            trainMealMapper.addAll(batch);
+            flushStatements.incrementAndGet();
+            flushedRows.addAndGet(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                Entry entry = entries.get(batch.get(i).getId());
+                if (entry != null) {
+                    entry.flushed = totals.get(i);
+                }
+            }
+        } catch (Exception e) {
+            // 写回失败时重新标记，等待下一轮
+            flushFailures.incrementAndGet();
+            for (TrainMeal meal : batch) {
+                Entry entry = entries.get(meal.getId());
+                if (entry != null) {
+                    markDirty(meal.getId(), entry);
+                }
+            }
+            log.warn("Meal stock flush failed, will retry", e);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Meal stock reconcile error", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Meal stock flush error", e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @Transactional
@@ -108,10 +109,14 @@ public class TrainMealOrderServiceImpl implements TrainMealOrderService {
         order.setOrderNumber(payment.getOrderNumber());
         trainMealOrderMapper.updateById(order);
 
-        // 6. 启动异步支付流程
+        // 6. 启动异步支付流程：扣减失败时没有可归还的余量（NOTHING_HELD）
+        AtomicBoolean reserved = new AtomicBoolean();
         paymentService.simulatePaymentProcess(payment.getOrderNumber(), 30,
-                () -> trainMealService.checkAndGet(meal.getId(), order.getQuantity(), null),
-                () -> null);
+                () -> {
+                    reserved.set(trainMealService.checkAndGet(meal.getId(), order.getQuantity(), null));
+                    return reserved.get();
+                },
+                () -> reserved.get() ? null : PaymentInfo.NOTHING_HELD);
 
         return order;
     }
@@ -2,7 +2,6 @@ package org.fxtravel.fxspringboot.service.impl.trainmeal;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import jakarta.transaction.Transactional;
 import org.fxtravel.fxspringboot.event.EventCenter;
 import org.fxtravel.fxspringboot.event.EventType;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
@@ -11,9 +10,13 @@ import org.fxtravel.fxspringboot.pojo.dto.trainmeal.TrainMealQueryDTO;
 import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
 import org.fxtravel.fxspringboot.service.inter.trainmeal.TrainMealService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class TrainMealServiceImpl implements TrainMealService {
@@ -24,6 +27,18 @@ public class TrainMealServiceImpl implements TrainMealService {
     @Autowired
     private EventCenter eventCenter;
 
+    @Autowired
+    private MealStock mealStock;
+
+    @Autowired
+    private MealMenuCache menuCache;
+
+    // 餐食库存是否常驻内存，默认关闭；只有确认后端只部署一个实例时才能开启
+    @Value("${fx.meal.stock.resident:false}")
+    private boolean residentStock = false;
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
     @PostConstruct
     public void init() {
         // 注册回调，确保在服务启动时就注册
@@ -40,6 +55,11 @@ public class TrainMealServiceImpl implements TrainMealService {
     private void handlePaymentStatusChange(PaymentInfo info) {
         switch (info.getNewStatus()){
             case FAILED:
+                // 未开启的支付被清理时没有扣减过余量
+                if (info.getData() != PaymentInfo.NOTHING_HELD) {
+                    putBack(info.getGoodId(), info.getQuantity(), null);
+                }
+                break;
             case REFUNDED:
                 putBack(info.getGoodId(), info.getQuantity(), null);
                 break;
@@ -48,7 +68,19 @@ public class TrainMealServiceImpl implements TrainMealService {
 
     @Override
     public List<TrainMeal> getMealsByTrain4User(Integer trainId) {
-        return trainMealMapper.selectByTrain(trainId);
+        return menuCache.get(trainId, () -> {
+            List<TrainMeal> meals = trainMealMapper.selectByTrain(trainId);
+            if (residentStock) {
+                // 常驻内存的余量比尚未写回的数据库值更新
+                for (TrainMeal meal : meals) {
+                    int remain = meal.getId() == null ? -1 : mealStock.remain(meal.getId());
+                    if (remain >= 0) {
+                        meal.setRemain(remain);
+                    }
+                }
+            }
+            return meals;
+        });
     }
 
     @Override
@@ -56,24 +88,67 @@ public class TrainMealServiceImpl implements TrainMealService {
         return trainMealMapper.selectById(id);
     }
 
-
     @Override
-    @Transactional(rollbackOn = Exception.class)
     public boolean checkAndGet(int id, int count, Object data) {
-        // 1. 检查库存是否充足
-        TrainMeal obj = trainMealMapper.selectByIdForUpdate(id);
-        if (obj == null || obj.getRemain() < count) {
-            return false;
+        boolean claimed;
+        if (residentStock) {
+            claimed = mealStock.claim(id, count);
+        } else {
+            // 数据库模式：一条带条件的UPDATE完成检查与扣减
+            fallbacks.incrementAndGet();
+            claimed = trainMealMapper.deduct(id, count) > 0;
         }
+        if (claimed) {
+            patchMenu(id, -count);
+        }
+        return claimed;
+    }
 
-        // 2. 扣减库存
-        int updated = trainMealMapper.deduct(id, count);
+    @Override
+    public void putBack(int id, int count, Object data) {
+        if (residentStock) {
+            mealStock.release(id, count);
+        } else {
+            trainMealMapper.add(id, count);
+        }
+        patchMenu(id, count);
+    }
 
-        return updated > 0;
+    @Override
+    public boolean updateMeal(TrainMeal meal) {
+        TrainMeal old = meal.getId() == null ? null : trainMealMapper.selectById(meal.getId());
+        if (old == null) {
+            return false;
+        }
+        // 余量只由下单、退单修改，避免覆盖内存中的库存
+        meal.setRemain(null);
+        boolean updated = trainMealMapper.updateById(meal) > 0;
+        // 上下架或修改后菜单内容变化，换车次时两边都淘汰
+        menuCache.invalidate(old.getTrainId());
+        if (meal.getTrainId() != null && !meal.getTrainId().equals(old.getTrainId())) {
+            menuCache.invalidate(meal.getTrainId());
+        }
+        return updated;
     }
 
     @Override
-    public void putBack(int id, int count, Object data) {
-        trainMealMapper.add(id, count);
+    public Map<String, Long> getStockStats() {
+        Map<String, Long> stats = new LinkedHashMap<>(mealStock.getStats());
+        stats.put("fallbacks", fallbacks.get());
+        stats.putAll(menuCache.getStats());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    // 余量变化后直接修改缓存中的菜单，常驻模式以内存余量为准
+    private void patchMenu(int id, int delta) {
+        if (residentStock) {
+            int remain = mealStock.remain(id);
+            if (remain >= 0) {
+                menuCache.updateRemain(id, remain);
+            }
+            return;
+        }
+        menuCache.adjustRemain(id, delta);
     }
 }
@@ -0,0 +1,806 @@
+package org.fxtravel.fxspringboot.service.impl.trainseat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainStopMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Train;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.pojo.entities.TrainStop;
+import org.fxtravel.fxspringboot.utils.SeatBitmap;
+import org.fxtravel.fxspringboot.utils.SeatUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 常驻内存的座位库存引擎
+ * 每个TrainSeat的座位位图以AtomicLongArray常驻内存，按64位字CAS占座，
+ * 变更由后台线程批量写回train_seat（write-behind）。
+ * 设置了经停站的列车按区间占座，同一座位可以分别售出互不重叠的区间。
+ * 待支付订单的座位以暂留（hold）形式只保存在内存中，支付完成后才写回，过期的暂留直接丢弃。
+ * 该模式假设同一个TrainSeat只由一个实例负责售卖。
+ */
+@Slf4j
+@Component
+public class SeatInventory {
+    @Autowired
+    private TrainSeatMapper trainSeatMapper;
+    @Autowired
+    private TrainStopMapper trainStopMapper;
+    @Autowired
+    private TrainMapper trainMapper;
+
+    @Value("${fx.seat.inventory.flush-interval-ms:200}")
+    private long flushIntervalMs = 200;
+
+    @Value("${fx.seat.inventory.flush-batch-size:200}")
+    private int flushBatchSize = 200;
+
+    // 暂留有效期，应长于支付超时时间
+    @Value("${fx.seat.hold.ttl-seconds:120}")
+    private long holdTtlSeconds = 120;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    // 列车ID -> 依次经过的车站
+    private final Map<Integer, List<String>> routes = new ConcurrentHashMap<>();
+    private final Set<Integer> dirtySeats = ConcurrentHashMap.newKeySet();
+    // 暂留键 -> 暂留的座位
+    private final Map<Integer, Hold> holds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    // 统计信息
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong flushStatements = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong holdCommits = new AtomicLong();
+    private final AtomicLong holdReleases = new AtomicLong();
+    private final AtomicLong holdExpired = new AtomicLong();
+    private final AtomicLong holdConflicts = new AtomicLong();
+    private final AtomicLong reclaims = new AtomicLong();
+    private final AtomicLong reclaimFailures = new AtomicLong();
+
+    // 单个TrainSeat的内存状态，多区间时remain在写回时由位图推算
+    static final class Entry {
+        final AtomicLongArray words;
+        final int bits;         // 每个区间的座位数（编码中的座位数）
+        final int stride;       // 每个区间的64位字数
+        final int segments;
+        final List<String> route;
+        final int capacity;     // 实际可售座位数
+        final AtomicInteger remain;
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+        // 暂留中的位，布局与words相同，写回时从words中剔除
+        final AtomicLongArray held;
+        // 暂留操作共享读锁，写回取快照时独占
+        final ReadWriteLock holdLock = new ReentrantReadWriteLock();
+
+        Entry(SeatBitmap bitmap, List<String> route, int capacity, int remain) {
+            this.words = new AtomicLongArray(bitmap.words());
+            this.held = new AtomicLongArray(this.words.length());
+            this.bits = bitmap.capacity();
+            this.stride = bitmap.stride();
+            this.segments = bitmap.segments();
+            this.route = route;
+            this.capacity = capacity;
+            this.remain = new AtomicInteger(remain);
+        }
+    }
+
+    // 一笔暂留：座次、区间[from, to)与座位索引
+    static final class Hold {
+        final int trainSeatId;
+        final int from;
+        final int to;
+        final int[] indexes;
+        final long expiresAt;
+
+        Hold(int trainSeatId, int from, int to, int[] indexes, long expiresAt) {
+            this.trainSeatId = trainSeatId;
+            this.from = from;
+            this.to = to;
+            this.indexes = indexes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::expireQuietly, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前把所有未落库的变更写回
+        flushQuietly();
+    }
+
+    /**
+     * 占用一个空闲座位
+     * @param trainSeatId 座次ID
+     * @return 座位索引，无可用座位时返回-1
+     */
+    public int claim(int trainSeatId) {
+        Entry entry = load(trainSeatId);
+        if (entry == null) {
+            return -1;
+        }
+        int[] indexes = claim(trainSeatId, entry, 0, entry.segments, 1, true);
+        return indexes == null ? -1 : indexes[0];
+    }
+
+    /**
+     * 一次占用多个座位，优先分配同一字母组内相邻的座位
+     * @return 座位索引，余量或空位不足时返回null
+     */
+    public int[] claim(int trainSeatId, int count) {
+        return claim(trainSeatId, null, null, count);
+    }
+
+    /**
+     * 按区间占用多个座位，出发站与到达站为空时占用整趟
+     * @return 座位索引，区间无效或空位不足时返回null
+     */
+    public int[] claim(int trainSeatId, String fromStation, String toStation, int count) {
+        Entry entry = load(trainSeatId);
+        if (entry == null || count < 1) {
+            return null;
+        }
+        int[] leg = legOf(entry, fromStation, toStation);
+        if (leg == null) {
+            return null;
+        }
+        return claim(trainSeatId, entry, leg[0], leg[1], count, true);
+    }
+
+    /**
+     * 暂留座位：与claim一样占用内存中的座位，但在commitHold之前不写回数据库，
+     * 超过有效期未确认的暂留由后台线程直接在内存中释放
+     * @param key 暂留键（订单ID），重复暂留时返回已暂留的座位；并发重复暂留时只保留先登记的一笔，
+     *            后到的归还自己占用的座位并返回先登记的座位
+     * @return 座位索引，区间无效或空位不足时返回null
+     */
+    public int[] hold(int key, int trainSeatId, String fromStation, String toStation, int count) {
+        Hold existing = holds.get(key);
+        if (existing != null) {
+            return existing.indexes;
+        }
+        Entry entry = load(trainSeatId);
+        if (entry == null || count < 1) {
+            return null;
+        }
+        int[] leg = legOf(entry, fromStation, toStation);
+        if (leg == null) {
+            return null;
+        }
+
+        // 占座与标记暂留之间不能被写回线程取快照，否则暂留的座位会被写入数据库
+        entry.holdLock.readLock().lock();
+        try {
+            int[] indexes = claim(trainSeatId, entry, leg[0], leg[1], count, false);
+            if (indexes == null) {
+                return null;
+            }
+            setHeld(entry, bitsOf(entry, leg[0], leg[1], indexes));
+            long expiresAt = System.currentTimeMillis() + holdTtlSeconds * 1000;
+            Hold hold = new Hold(trainSeatId, leg[0], leg[1], indexes, expiresAt);
+            Hold winner = holds.putIfAbsent(key, hold);
+            if (winner != null) {
+                undo(entry, hold);
+                holdConflicts.incrementAndGet();
+                return winner.indexes;
+            }
+            return indexes;
+        } finally {
+            entry.holdLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 确认暂留：座位转为正式占用，随下一轮写回落库
+     * @return 暂留不存在（已过期或已释放）时返回false
+     */
+    public boolean commitHold(int key) {
+        Hold hold = holds.remove(key);
+        if (hold == null) {
+            return false;
+        }
+        Entry entry = entries.get(hold.trainSeatId);
+        if (entry == null) {
+            return false;
+        }
+        entry.holdLock.readLock().lock();
+        try {
+            clearHeld(entry, bitsOf(entry, hold.from, hold.to, hold.indexes));
+            markDirty(hold.trainSeatId, entry);
+        } finally {
+            entry.holdLock.readLock().unlock();
+        }
+        holdCommits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 释放暂留的座位，座位从未写入数据库，因此不需要写回
+     * @return 暂留不存在（已过期或已确认）时返回false
+     */
+    public boolean releaseHold(int key) {
+        Hold hold = holds.remove(key);
+        if (hold == null) {
+            return false;
+        }
+        Entry entry = entries.get(hold.trainSeatId);
+        if (entry == null) {
+            return false;
+        }
+        entry.holdLock.readLock().lock();
+        try {
+            undo(entry, hold);
+        } finally {
+            entry.holdLock.readLock().unlock();
+        }
+        holdReleases.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 按订单记录的座位重新占用并随下一轮写回落库
+     * 暂留已过期或重启后丢失、而支付仍然完成时，据此补写订单的座位
+     * @return 区间无效、座位号超出范围或任一座位已被占用时返回false，不占用任何座位
+     */
+    public boolean claimExact(int trainSeatId, String fromStation, String toStation, int[] indexes) {
+        Entry entry = load(trainSeatId);
+        if (entry == null || indexes == null || indexes.length == 0) {
+            return false;
+        }
+        int[] leg = legOf(entry, fromStation, toStation);
+        if (leg == null) {
+            return false;
+        }
+        for (int index : indexes) {
+            if (index < 0 || index >= entry.capacity) {
+                return false;
+            }
+        }
+        if (entry.segments == 1 && !reserve(entry.remain, indexes.length)) {
+            reclaimFailures.incrementAndGet();
+            return false;
+        }
+        if (!setAll(entry, bitsOf(entry, leg[0], leg[1], indexes))) {
+            if (entry.segments == 1) {
+                entry.remain.addAndGet(indexes.length);
+            }
+            reclaimFailures.incrementAndGet();
+            return false;
+        }
+        claimed(trainSeatId, entry, indexes.length, true);
+        reclaims.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 释放所有已过期的暂留
+     * @return 释放的暂留数
+     */
+    public int expireHolds() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Map.Entry<Integer, Hold> e : holds.entrySet()) {
+            if (e.getValue().expiresAt <= now && releaseHold(e.getKey())) {
+                expired++;
+            }
+        }
+        holdExpired.addAndGet(expired);
+        return expired;
+    }
+
+    /**
+     * 释放一个已占用的座位
+     * @return 该座位原本是否处于占用状态
+     */
+    public boolean release(int trainSeatId, int index) {
+        return release(trainSeatId, new int[]{index}) == 1;
+    }
+
+    /**
+     * 释放多个已占用的座位
+     * @return 实际释放的座位数
+     */
+    public int release(int trainSeatId, int[] indexes) {
+        return release(trainSeatId, null, null, indexes);
+    }
+
+    /**
+     * 按区间释放多个座位，出发站与到达站为空时释放整趟
+     * @return 实际释放的座位数
+     */
+    public int release(int trainSeatId, String fromStation, String toStation, int[] indexes) {
+        Entry entry = load(trainSeatId);
+        if (entry == null) {
+            return 0;
+        }
+        int[] leg = legOf(entry, fromStation, toStation);
+        if (leg == null) {
+            return 0;
+        }
+        if (entry.segments > 1) {
+            return releaseLeg(trainSeatId, entry, leg[0], leg[1], indexes);
+        }
+
+        int released = 0;
+        for (int index : indexes) {
+            if (index >= 0 && index < entry.capacity && clearIfSet(entry, index)) {
+                released++;
+            }
+        }
+
+        if (released > 0) {
+            entry.remain.addAndGet(released);
+            markDirty(trainSeatId, entry);
+            releases.addAndGet(released);
+        }
+        return released;
+    }
+
+    /**
+     * 将所有脏数据批量写回数据库
+     */
+    public void flush() {
+        Iterator<Integer> it = dirtySeats.iterator();
+        List<TrainSeat> batch = new ArrayList<>(flushBatchSize);
+        while (it.hasNext()) {
+            Integer id = it.next();
+            it.remove();
+            Entry entry = entries.get(id);
+            // 先清除脏标记再取快照，之后的修改会重新标记
+            if (entry == null || !entry.dirty.compareAndSet(true, false)) {
+                continue;
+            }
+            batch.add(snapshot(id, entry));
+            if (batch.size() >= flushBatchSize) {
+                write(batch);
+                batch = new ArrayList<>(flushBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * 区间内的可售座位数
+     * @return 区间无效或座次不存在时返回-1
+     */
+    public int available(int trainSeatId, String fromStation, String toStation) {
+        Entry entry = load(trainSeatId);
+        if (entry == null) {
+            return -1;
+        }
+        int[] leg = legOf(entry, fromStation, toStation);
+        if (leg == null) {
+            return -1;
+        }
+        long[] words = snapshotWords(entry);
+        return SeatUtil.countAvailable(SeatUtil.occupancy(words, entry.stride, leg[0], leg[1]), entry.capacity);
+    }
+
+    /**
+     * 内存中的余量（整趟都空闲的可售座位数），暂留的座位视为已占用
+     * @return 座次未常驻内存时返回-1，不会触发加载
+     */
+    public int remain(int trainSeatId) {
+        Entry entry = entries.get(trainSeatId);
+        if (entry == null) {
+            return -1;
+        }
+        return entry.segments > 1 ? remainOf(entry, snapshotWords(entry)) : entry.remain.get();
+    }
+
+    /**
+     * 列车依次经过的车站，未设置经停站时为始发站与终点站
+     * 经停站只在加载时读取一次，修改后需重启生效
+     * @return 列车不存在时返回空列表
+     */
+    public List<String> route(int trainId) {
+        return routes.computeIfAbsent(trainId, id -> {
+            List<TrainStop> stops = trainStopMapper.findByTrain(id);
+            if (stops != null && stops.size() >= 2) {
+                return stops.stream().map(TrainStop::getStation).toList();
+            }
+            Train train = trainMapper.selectById(id);
+            if (train == null) {
+                return Collections.emptyList();
+            }
+            return List.of(train.getFromStation(), train.getToStation());
+        });
+    }
+
+    /**
+     * 将出发站与到达站转换为区间范围[from, to)
+     * @return 区间无效时返回null，出发站与到达站都为空时返回整趟
+     */
+    public static int[] legOf(List<String> route, int segments, String fromStation, String toStation) {
+        if (fromStation == null && toStation == null) {
+            return new int[]{0, segments};
+        }
+        int from = fromStation == null ? 0 : route.indexOf(fromStation);
+        int to = toStation == null ? route.size() - 1 : route.lastIndexOf(toStation);
+        if (from < 0 || to <= from || to > segments) {
+            return null;
+        }
+        return new int[]{from, to};
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("residentSeats", (long) entries.size());
+        stats.put("dirtySeats", (long) dirtySeats.size());
+        stats.put("claims", claims.get());
+        stats.put("releases", releases.get());
+        stats.put("flushStatements", flushStatements.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("activeHolds", (long) holds.size());
+        stats.put("holdCommits", holdCommits.get());
+        stats.put("holdReleases", holdReleases.get());
+        stats.put("holdExpired", holdExpired.get());
+        stats.put("holdConflicts", holdConflicts.get());
+        stats.put("reclaims", reclaims.get());
+        stats.put("reclaimFailures", reclaimFailures.get());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private Entry load(int trainSeatId) {
+        Entry entry = entries.get(trainSeatId);
+        if (entry != null) {
+            return entry;
+        }
+        return entries.computeIfAbsent(trainSeatId, id -> {
+            TrainSeat seat = trainSeatMapper.selectById(id);
+            if (seat == null) {
+                return null;
+            }
+            List<String> route = seat.getTrainId() == null ? Collections.emptyList() : route(seat.getTrainId());
+            int segments = Math.max(1, route.size() - 1);
+            int remain = seat.getRemain() == null ? 0 : seat.getRemain();
+            // 尚未分配过座位的座次按余量创建空位图
+            SeatBitmap bitmap = seat.getSeatAllocation() == null
+                    ? SeatBitmap.empty(Math.max(0, remain), 1)
+                    : SeatBitmap.decode(seat.getSeatAllocation());
+            SeatBitmap widened = bitmap.widen(segments);
+            if (widened == null) {
+                // 经停站与位图不一致时按位图本身的区间数整趟售卖
+                log.warn("Seat allocation does not match train stops: trainSeat={}", id);
+                widened = bitmap;
+                route = Collections.emptyList();
+            }
+            long[] used = widened.occupancy(0, widened.segments());
+            int capacity = SeatUtil.sellableCapacity(used, widened.capacity(), remain);
+            return new Entry(widened, route, capacity, remain);
+        });
+    }
+
+    private static int[] legOf(Entry entry, String fromStation, String toStation) {
+        return legOf(entry.route, entry.segments, fromStation, toStation);
+    }
+
+    // 在区间[from, to)上占座，commit为false时只占用内存，不标记写回
+    private int[] claim(int trainSeatId, Entry entry, int from, int to, int count, boolean commit) {
+        if (entry.segments > 1) {
+            return claimLeg(trainSeatId, entry, from, to, count, commit);
+        }
+        if (count == 1) {
+            int index = claimOne(trainSeatId, entry, commit);
+            return index < 0 ? null : new int[]{index};
+        }
+        if (!reserve(entry.remain, count)) {
+            return null;
+        }
+
+        for (;;) {
+            int[] indexes = SeatUtil.allocate(snapshotWords(entry), entry.capacity, count);
+            if (indexes == null) {
+                break;
+            }
+            // 选中的座位被并发占用时，基于新的快照重新分配
+            if (setAll(entry, indexes)) {
+                claimed(trainSeatId, entry, count, commit);
+                return indexes;
+            }
+        }
+
+        entry.remain.addAndGet(count);
+        return null;
+    }
+
+    // 单区间占用一个座位：逐字查找空位并CAS置位
+    private int claimOne(int trainSeatId, Entry entry, boolean commit) {
+        if (!reserve(entry.remain, 1)) {
+            return -1;
+        }
+
+        for (int w = 0; w < entry.words.length(); w++) {
+            long current = entry.words.get(w);
+            while (current != -1L) {
+                int bit = Long.numberOfTrailingZeros(~current);
+                int index = (w << 6) + bit;
+                if (index >= entry.capacity) {
+                    break;
+                }
+                if (entry.words.compareAndSet(w, current, current | (1L << bit))) {
+                    claimed(trainSeatId, entry, 1, commit);
+                    return index;
+                }
+                current = entry.words.get(w);
+            }
+        }
+
+        // 余量与位图不一致（位图已满），归还余量
+        entry.remain.incrementAndGet();
+        return -1;
+    }
+
+    // 多区间占座：在区间占用情况上分配，再在区间内的每个区间位图上置位
+    private int[] claimLeg(int trainSeatId, Entry entry, int from, int to, int count, boolean commit) {
+        for (;;) {
+            long[] occupied = SeatUtil.occupancy(snapshotWords(entry), entry.stride, from, to);
+            int[] indexes = SeatUtil.allocate(occupied, entry.capacity, count);
+            if (indexes == null) {
+                return null;
+            }
+            if (setAll(entry, bitsOf(entry, from, to, indexes))) {
+                claimed(trainSeatId, entry, count, commit);
+                return indexes;
+            }
+        }
+    }
+
+    private void claimed(int trainSeatId, Entry entry, int count, boolean commit) {
+        if (commit) {
+            markDirty(trainSeatId, entry);
+        }
+        claims.addAndGet(count);
+    }
+
+    // 多区间退座：座位在区间内任一区间位图上被清除即计为释放
+    private int releaseLeg(int trainSeatId, Entry entry, int from, int to, int[] indexes) {
+        int released = 0;
+        for (int index : indexes) {
+            if (index < 0 || index >= entry.capacity) {
+                continue;
+            }
+            boolean cleared = false;
+            for (int s = from; s < to; s++) {
+                cleared |= clearIfSet(entry, s * entry.stride * 64 + index);
+            }
+            if (cleared) {
+                released++;
+            }
+        }
+
+        if (released > 0) {
+            markDirty(trainSeatId, entry);
+            releases.addAndGet(released);
+        }
+        return released;
+    }
+
+    // 撤销一笔暂留：释放座位并清除暂留标记，调用方持有读锁，写回线程不会看到中间状态
+    private static void undo(Entry entry, Hold hold) {
+        int[] bits = bitsOf(entry, hold.from, hold.to, hold.indexes);
+        for (int bit : bits) {
+            clear(entry, bit);
+        }
+        clearHeld(entry, bits);
+        if (entry.segments == 1) {
+            entry.remain.addAndGet(hold.indexes.length);
+        }
+    }
+
+    // 座位在各区间位图中对应的位
+    private static int[] bitsOf(Entry entry, int from, int to, int[] indexes) {
+        int[] bits = new int[(to - from) * indexes.length];
+        int n = 0;
+        for (int s = from; s < to; s++) {
+            for (int index : indexes) {
+                bits[n++] = s * entry.stride * 64 + index;
+            }
+        }
+        return bits;
+    }
+
+    private static boolean reserve(AtomicInteger remain, int count) {
+        for (;;) {
+            int current = remain.get();
+            if (current < count) {
+                return false;
+            }
+            if (remain.compareAndSet(current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    // 逐字CAS置位，任一座位已被占用时回滚已置的位
+    private static boolean setAll(Entry entry, int[] indexes) {
+        for (int i = 0; i < indexes.length; i++) {
+            int w = indexes[i] >>> 6;
+            long mask = 1L << (indexes[i] & 63);
+            for (;;) {
+                long current = entry.words.get(w);
+                if ((current & mask) != 0) {
+                    for (int j = 0; j < i; j++) {
+                        clear(entry, indexes[j]);
+                    }
+                    return false;
+                }
+                if (entry.words.compareAndSet(w, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    // 清除已置位的位，返回该位原本是否为1
+    private static boolean clearIfSet(Entry entry, int index) {
+        int w = index >>> 6;
+        long mask = 1L << (index & 63);
+        for (;;) {
+            long current = entry.words.get(w);
+            if ((current & mask) == 0) {
+                return false;
+            }
+            if (entry.words.compareAndSet(w, current, current & ~mask)) {
+                return true;
+            }
+        }
+    }
+
+    private static void clear(Entry entry, int index) {
+        int w = index >>> 6;
+        long mask = 1L << (index & 63);
+        for (;;) {
+            long current = entry.words.get(w);
+            if (entry.words.compareAndSet(w, current, current & ~mask)) {
+                return;
+            }
+        }
+    }
+
+    private static void setHeld(Entry entry, int[] bits) {
+        for (int bit : bits) {
+            long mask = 1L << (bit & 63);
+            for (;;) {
+                long current = entry.held.get(bit >>> 6);
+                if (entry.held.compareAndSet(bit >>> 6, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void clearHeld(Entry entry, int[] bits) {
+        for (int bit : bits) {
+            long mask = 1L << (bit & 63);
+            for (;;) {
+                long current = entry.held.get(bit >>> 6);
+                if (entry.held.compareAndSet(bit >>> 6, current, current & ~mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static long[] snapshotWords(Entry entry) {
+        long[] words = new long[entry.words.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = entry.words.get(i);
+        }
+        return words;
+    }
+
+    private void markDirty(int trainSeatId, Entry entry) {
+        entry.dirty.set(true);
+        dirtySeats.add(trainSeatId);
+    }
+
+    // 只写回已确认的座位：暂留的位从位图中剔除，单区间时计回余量
+    private TrainSeat snapshot(int trainSeatId, Entry entry) {
+        long[] words;
+        int heldSeats = 0;
+        int remain;
+        entry.holdLock.writeLock().lock();
+        try {
+            words = snapshotWords(entry);
+            for (int i = 0; i < words.length; i++) {
+                long held = entry.held.get(i);
+                words[i] &= ~held;
+                heldSeats += Long.bitCount(held);
+            }
+            remain = entry.remain.get();
+        } finally {
+            entry.holdLock.writeLock().unlock();
+        }
+        TrainSeat seat = new TrainSeat();
+        seat.setId(trainSeatId);
+        if (entry.segments > 1) {
+            seat.setRemain(remainOf(entry, words));
+        } else {
+            seat.setRemain(remain + heldSeats);
+        }
+        seat.setSeatAllocation(new SeatBitmap(entry.bits, entry.segments, words).encode());
+        return seat;
+    }
+
+    // 多区间时按位图推算余量：整趟都空闲的座位才计入
+    private static int remainOf(Entry entry, long[] words) {
+        int used = entry.bits
+                - SeatUtil.countAvailable(SeatUtil.occupancy(words, entry.stride, 0, entry.segments), entry.bits);
+        return Math.max(0, entry.capacity - used);
+    }
+
+    private void write(List<TrainSeat> batch) {
+        try {
+            trainSeatMapper.flushAllocations(batch);
+            flushStatements.incrementAndGet();
+            flushedRows.addAndGet(batch.size());
+        } catch (Exception e) {
+            // 写回失败时重新标记，等待下一轮
+            flushFailures.incrementAndGet();
+            for (TrainSeat seat : batch) {
+                Entry entry = entries.get(seat.getId());
+                if (entry != null) {
+                    markDirty(seat.getId(), entry);
+                }
+            }
+            log.warn("Seat inventory flush failed, will retry", e);
+        }
+    }
+
+    private void expireQuietly() {
+        try {
+            expireHolds();
+        } catch (Exception e) {
+            log.error("Seat hold expiry error", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Seat inventory flush error", e);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package org.fxtravel.fxspringboot.service.impl.trainseat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Train;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 常驻内存的时刻表索引
+ * 启动时加载全部列车，按(出发站, 到达站)分组并按出发时间排序，
+ * 查询时二分查找出发时间窗口并截取，读路径不访问数据库。
+ * 新增的列车按ID增量加载；列车被修改或删除后在下一次全量重建时生效。
+ * 索引是不可变的快照，刷新时整体替换。
+ * 快照中的全部列车另按出发时间排成连接序列，供换乘查询按连接扫描算法(CSA)使用。
+ */
+@Slf4j
+@Component
+public class TimetableIndex {
+    @Autowired
+    private TrainMapper trainMapper;
+
+    @Value("${fx.timetable.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${fx.timetable.refresh-seconds:30}")
+    private long refreshSeconds = 30;
+
+    @Value("${fx.timetable.reload-minutes:30}")
+    private long reloadMinutes = 30;
+
+    @Value("${fx.journey.min-transfer-minutes:30}")
+    private long minTransferMinutes = 30;
+
+    @Value("${fx.journey.horizon-hours:24}")
+    private long horizonHours = 24;
+
+    @Value("${fx.journey.max-results:10}")
+    private int maxResults = 10;
+
+    // 行程最多包含的列车数，即最多两次换乘
+    private static final int MAX_LEGS = 3;
+
+    private volatile Snapshot snapshot;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+
+    // 出发时间与耗时都取自列车记录，耗时为空时按出发与到达时间计算
+    // 与分页查询的排序一致：同一排序键按ID排序
+    private static final Comparator<Train> BY_DEPARTURE = Comparator
+            .comparing(Train::getDepartureTime)
+            .thenComparing(Train::getId);
+    private static final Comparator<Train> BY_DURATION = Comparator
+            .comparingLong(TimetableIndex::durationOf)
+            .thenComparing(Train::getId);
+
+    // 同一出发站与到达站之间的列车，按出发时间排序
+    private static final class Route {
+        final Train[] trains;
+        final long[] departures;    // 与trains对应的出发时间，用于二分查找
+
+        Route(List<Train> trains) {
+            this.trains = trains.toArray(new Train[0]);
+            Arrays.sort(this.trains, BY_DEPARTURE);
+            this.departures = new long[this.trains.length];
+            for (int i = 0; i < this.trains.length; i++) {
+                departures[i] = epochSecond(this.trains[i].getDepartureTime());
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, Integer> stations;    // 车站名 -> 编号
+        final Map<Long, Route> routes;          // 车站编号对 -> 列车
+        final List<Train> trains;
+        final int maxId;
+        // 连接序列：按出发时间排序的列车及其车站编号与时间
+        final Train[] connections;
+        final int[] connFrom;
+        final int[] connTo;
+        final long[] connDep;
+        final long[] connArr;
+
+        Snapshot(List<Train> trains) {
+            Map<String, Integer> stations = new HashMap<>();
+            Map<Long, List<Train>> grouped = new HashMap<>();
+            int maxId = 0;
+            for (Train train : trains) {
+                maxId = Math.max(maxId, train.getId());
+                if (train.getFromStation() == null || train.getToStation() == null || train.getDepartureTime() == null) {
+                    continue;
+                }
+                int from = stations.computeIfAbsent(train.getFromStation(), k -> stations.size());
+                int to = stations.computeIfAbsent(train.getToStation(), k -> stations.size());
+                grouped.computeIfAbsent(pair(from, to), k -> new ArrayList<>()).add(train);
+            }
+            Map<Long, Route> routes = new HashMap<>();
+            grouped.forEach((key, list) -> routes.put(key, new Route(list)));
+
+            List<Train> connections = new ArrayList<>();
+            grouped.values().forEach(list -> list.stream()
+                    .filter(train -> train.getArrivalTime() != null)
+                    .forEach(connections::add));
+            connections.sort(BY_DEPARTURE);
+            int n = connections.size();
+            this.connections = connections.toArray(new Train[0]);
+            this.connFrom = new int[n];
+            this.connTo = new int[n];
+            this.connDep = new long[n];
+            this.connArr = new long[n];
+            for (int i = 0; i < n; i++) {
+                Train train = this.connections[i];
+                connFrom[i] = stations.get(train.getFromStation());
+                connTo[i] = stations.get(train.getToStation());
+                connDep[i] = epochSecond(train.getDepartureTime());
+                connArr[i] = epochSecond(train.getArrivalTime());
+            }
+
+            this.stations = stations;
+            this.routes = routes;
+            this.trains = trains;
+            this.maxId = maxId;
+        }
+
+        Route route(String fromStation, String toStation) {
+            Integer from = stations.get(fromStation);
+            Integer to = stations.get(toStation);
+            return from == null || to == null ? null : routes.get(pair(from, to));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshSeconds, TimeUnit.SECONDS);
+        refresher.scheduleWithFixedDelay(this::reloadQuietly, reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    // 索引是否已加载，未加载时调用方应直接查询数据库
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * 查询出发时间在[start, end]内的列车
+     * @param byDuration 为true时按耗时排序，否则按出发时间排序
+     * @return 索引未加载时返回null
+     */
+    public List<Train> find(String fromStation, String toStation,
+                            LocalDateTime start, LocalDateTime end, boolean byDuration) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        Route route = current.route(fromStation, toStation);
+        if (route == null) {
+            return Collections.emptyList();
+        }
+
+        int from = lowerBound(route.departures, epochSecond(start));
+        int to = lowerBound(route.departures, epochSecond(end) + 1);
+        List<Train> trains = new ArrayList<>(Arrays.asList(route.trains).subList(from, Math.max(from, to)));
+        // 当天的车次很少，截取后再按耗时排序
+        if (byDuration) {
+            trains.sort(BY_DURATION);
+        }
+        return trains;
+    }
+
+    /**
+     * 换乘查询：首段列车在[start, end]内出发的一次、两次换乘行程
+     * 从start开始做一次连接扫描，得到各换乘次数下最早到达的行程，
+     * 两次换乘的行程只有比一次换乘更早到达时才保留；
+     * 随后把start推到该行程首段出发之后再次扫描，直到凑满结果数或首段超出end。
+     * 每次换乘至少间隔fx.journey.min-transfer-minutes，全程不超过end之后fx.journey.horizon-hours。
+     * 索引未加载时先同步加载。
+     * @return 各行程的列车列表，按首段出发时间排序
+     */
+    public List<List<Train>> journeys(String fromStation, String toStation,
+                                      LocalDateTime start, LocalDateTime end) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            reload();
+            current = snapshot;
+        }
+        Integer origin = current.stations.get(fromStation);
+        Integer target = current.stations.get(toStation);
+        if (origin == null || target == null || origin.equals(target)) {
+            return Collections.emptyList();
+        }
+
+        long last = epochSecond(end);
+        long horizon = last + horizonHours * 3600;
+        List<List<Train>> journeys = new ArrayList<>();
+        Set<List<Integer>> seen = new HashSet<>();
+        long t = epochSecond(start);
+        while (journeys.size() < maxResults && t <= last) {
+            Scan scan = new Scan(current, origin, target);
+            scan.run(t, last, horizon, minTransferMinutes * 60);
+
+            long best = Long.MAX_VALUE;
+            long next = Long.MAX_VALUE;
+            for (int legs = 2; legs <= MAX_LEGS && journeys.size() < maxResults; legs++) {
+                if (scan.arrival[legs][target] >= best) {
+                    continue;
+                }
+                best = scan.arrival[legs][target];
+                List<Train> journey = scan.path(legs);
+                next = Math.min(next, epochSecond(journey.get(0).getDepartureTime()));
+                if (seen.add(journey.stream().map(Train::getId).toList())) {
+                    journeys.add(journey);
+                }
+            }
+            if (next == Long.MAX_VALUE) {
+                break;
+            }
+            t = next + 1;
+        }
+        journeys.sort(Comparator.comparing((List<Train> journey) -> journey.get(0).getDepartureTime())
+                .thenComparing(journey -> journey.get(journey.size() - 1).getArrivalTime()));
+        return journeys;
+    }
+
+    // 一次连接扫描：arrival[k][s]为乘坐k趟列车到达车站s的最早时间，parent为对应的最后一趟
+    private static final class Scan {
+        final Snapshot snapshot;
+        final int origin;
+        final int target;
+        final long[][] arrival = new long[MAX_LEGS + 1][];
+        final int[][] parent = new int[MAX_LEGS + 1][];
+
+        Scan(Snapshot snapshot, int origin, int target) {
+            this.snapshot = snapshot;
+            this.origin = origin;
+            this.target = target;
+            int stations = snapshot.stations.size();
+            for (int k = 1; k <= MAX_LEGS; k++) {
+                arrival[k] = new long[stations];
+                parent[k] = new int[stations];
+                Arrays.fill(arrival[k], Long.MAX_VALUE);
+            }
+        }
+
+        void run(long start, long last, long horizon, long minTransfer) {
+            Snapshot s = snapshot;
+            for (int i = lowerBound(s.connDep, start); i < s.connDep.length && s.connDep[i] <= horizon; i++) {
+                int u = s.connFrom[i];
+                int v = s.connTo[i];
+                // 不回到出发站，也不从目的站继续换乘
+                if (v == origin || u == target) {
+                    continue;
+                }
+                if (u == origin) {
+                    if (s.connDep[i] <= last) {
+                        relax(1, v, i);
+                    }
+                    continue;
+                }
+                for (int k = 2; k <= MAX_LEGS; k++) {
+                    long reached = arrival[k - 1][u];
+                    if (reached != Long.MAX_VALUE && reached + minTransfer <= s.connDep[i]) {
+                        relax(k, v, i);
+                    }
+                }
+            }
+        }
+
+        void relax(int k, int station, int connection) {
+            if (snapshot.connArr[connection] < arrival[k][station]) {
+                arrival[k][station] = snapshot.connArr[connection];
+                parent[k][station] = connection;
+            }
+        }
+
+        // 从目的站沿parent回溯出k趟列车
+        List<Train> path(int legs) {
+            Train[] path = new Train[legs];
+            int station = target;
+            for (int k = legs; k >= 1; k--) {
+                int connection = parent[k][station];
+                path[k - 1] = snapshot.connections[connection];
+                station = snapshot.connFrom[connection];
+            }
+            return Arrays.asList(path);
+        }
+    }
+
+    /**
+     * 全量重建索引
+     */
+    public void reload() {
+        snapshot = new Snapshot(trainMapper.findAfter(0));
+    }
+
+    /**
+     * 增量加载新增的列车，索引未加载时全量加载
+     * @return 新增的列车数
+     */
+    public int refresh() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            reload();
+            return snapshot.trains.size();
+        }
+        List<Train> added = trainMapper.findAfter(current.maxId);
+        if (added.isEmpty()) {
+            return 0;
+        }
+        List<Train> trains = new ArrayList<>(current.trains.size() + added.size());
+        trains.addAll(current.trains);
+        trains.addAll(added);
+        snapshot = new Snapshot(trains);
+        return added.size();
+    }
+
+    /**
+     * 各车站经停的列车数（作为出发站或到达站），用于输入补全的热度排序
+     * @return 索引未加载时返回空表
+     */
+    public Map<String, Long> stationWeights() {
+        Snapshot current = snapshot;
+        Map<String, Long> weights = new HashMap<>();
+        if (current == null) {
+            return weights;
+        }
+        for (Train train : current.connections) {
+            weights.merge(train.getFromStation(), 1L, Long::sum);
+            weights.merge(train.getToStation(), 1L, Long::sum);
+        }
+        return weights;
+    }
+
+    public Map<String, Long> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("timetableTrains", current == null ? 0L : current.trains.size());
+        stats.put("timetableRoutes", current == null ? 0L : current.routes.size());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private static long pair(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static long durationOf(Train train) {
+        if (train.getDurationMinutes() != null) {
+            return train.getDurationMinutes();
+        }
+        if (train.getArrivalTime() == null) {
+            return Long.MAX_VALUE;
+        }
+        return Duration.between(train.getDepartureTime(), train.getArrivalTime()).toMinutes();
+    }
+
+    // 第一个不小于key的位置
+    private static int lowerBound(long[] values, long key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Timetable refresh error", e);
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Timetable reload error", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.fxtravel.fxspringboot.service.impl.trainseat;
+
+import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 车次查询结果缓存
+ * 按(出发站, 到达站, 日期, 排序方式)缓存查询结果，按条目数（LRU）与有效期淘汰。
+ * 列车与座次信息变化很少，长期缓存；余量变化频繁，同一座次在所有缓存结果中共用一个TrainSeat对象，
+ * 占座/退座时直接更新该对象，不需要淘汰缓存。
+ */
+@Component
+public class TrainSearchCache {
+    @Value("${fx.search.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${fx.search.cache.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    // 访问顺序的LinkedHashMap，最久未访问的条目在最前
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 座次ID -> 缓存结果共用的对象；refs为引用该座次的条目数，归零时移除
+    private final Map<Integer, TrainSeat> seats = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> refs = new HashMap<>();
+
+    // 统计信息
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Entry {
+        final List<TrainSearchResult> results;  // 查询结果为null时同样缓存
+        final long expiresAt;
+
+        Entry(List<TrainSearchResult> results, long expiresAt) {
+            this.results = results;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 读取缓存的查询结果，未命中或已过期时调用loader查询并缓存
+     * @return 结果列表为新建的，列表中的TrainSeat为共用对象
+     */
+    public List<TrainSearchResult> get(String fromStation, String toStation, LocalDate date, String sortBy,
+                                       Supplier<List<TrainSearchResult>> loader) {
+        String key = fromStation + '|' + toStation + '|' + date + '|' + sortBy;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return copy(entry.results);
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+
+        // 查询数据库时不持有锁，同一个key并发未命中时各自查询，后写入的覆盖先写入的
+        misses.incrementAndGet();
+        List<TrainSearchResult> results = loader.get();
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                remove(key);
+            }
+            List<TrainSearchResult> shared = share(results);
+            entries.put(key, new Entry(shared, now + ttlSeconds * 1000));
+            evict();
+            return copy(shared);
+        }
+    }
+
+    /**
+     * 更新缓存中某个座次的余量与座位分配，座次未被缓存时忽略
+     * @param seatAllocation 为null时保持不变
+     */
+    public void updateSeat(int trainSeatId, int remain, byte[] seatAllocation) {
+        TrainSeat seat = seats.get(trainSeatId);
+        if (seat == null) {
+            return;
+        }
+        seat.setRemain(remain);
+        if (seatAllocation != null) {
+            seat.setSeatAllocation(seatAllocation);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        seats.clear();
+        refs.clear();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("searchCacheEntries", (long) entries.size());
+        }
+        stats.put("searchCacheHits", hits.get());
+        stats.put("searchCacheMisses", misses.get());
+        stats.put("searchCacheEvictions", evictions.get());
+        return stats;
+    }
+
+    // -------------------- 私有方法 --------------------
+    // 把查询结果中的座次替换为共用对象，已缓存的座次以新查询到的数据为准
+    private List<TrainSearchResult> share(List<TrainSearchResult> results) {
+        if (results == null) {
+            return null;
+        }
+        List<TrainSearchResult> shared = new ArrayList<>(results.size());
+        for (TrainSearchResult result : results) {
+            List<TrainSeat> trainSeats = new ArrayList<>(result.getTrainseats().size());
+            for (TrainSeat seat : result.getTrainseats()) {
+                TrainSeat cached = seats.get(seat.getId());
+                if (cached == null) {
+                    seats.put(seat.getId(), seat);
+                    cached = seat;
+                } else {
+                    cached.setRemain(seat.getRemain());
+                    cached.setSeatAllocation(seat.getSeatAllocation());
+                }
+                refs.merge(seat.getId(), 1, Integer::sum);
+                trainSeats.add(cached);
+            }
+            TrainSearchResult copy = new TrainSearchResult();
+            copy.setTrain(result.getTrain());
+            copy.setTrainseats(trainSeats);
+            shared.add(copy);
+        }
+        return shared;
+    }
+
+    private static List<TrainSearchResult> copy(List<TrainSearchResult> results) {
+        if (results == null) {
+            return null;
+        }
+        List<TrainSearchResult> copy = new ArrayList<>(results.size());
+        for (TrainSearchResult result : results) {
+            TrainSearchResult item = new TrainSearchResult();
+            item.setTrain(result.getTrain());
+            item.setTrainseats(new ArrayList<>(result.getTrainseats()));
+            copy.add(item);
+        }
+        return copy;
+    }
+
+    // 超出条目数上限时淘汰最久未访问的条目
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            release(entry);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        release(entries.remove(key));
+    }
+
+    private void release(Entry entry) {
+        if (entry == null || entry.results == null) {
+            return;
+        }
+        for (TrainSearchResult result : entry.results) {
+            for (TrainSeat seat : result.getTrainseats()) {
+                if (refs.merge(seat.getId(), -1, Integer::sum) <= 0) {
+                    refs.remove(seat.getId());
+                    seats.remove(seat.getId());
+                }
+            }
+        }
+    }
+}
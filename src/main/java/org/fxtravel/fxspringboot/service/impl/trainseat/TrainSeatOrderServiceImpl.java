@@ -10,7 +10,9 @@ import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.PaymentMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
+import org.fxtravel.fxspringboot.pojo.dto.train.BatchTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.GetTicketRequest;
+import org.fxtravel.fxspringboot.pojo.dto.train.SeatClaim;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeatOrder;
 import org.fxtravel.fxspringboot.pojo.entities.payment;
@@ -19,9 +21,12 @@ import org.fxtravel.fxspringboot.service.inter.trainseat.TrainSeatOrderService;
 import org.fxtravel.fxspringboot.service.inter.trainseat.TrainSeatService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class TrainSeatOrderServiceImpl implements TrainSeatOrderService {
@@ -42,18 +47,21 @@ public class TrainSeatOrderServiceImpl implements TrainSeatOrderService {
     @PostConstruct
     public void init() {
         // 注册回调，确保在服务启动时就注册
-        eventCenter.subscribe(EventType.TM_STATUS_CHANGED, this::handlePaymentStatusChange);
+        eventCenter.subscribe(EventType.TT_STATUS_CHANGED, this::handlePaymentStatusChange);
     }
 
     @PreDestroy
     public void destroy() {
         // 服务关闭时注销回调
-        eventCenter.unsubscribe(EventType.TM_STATUS_CHANGED, this::handlePaymentStatusChange);
+        eventCenter.unsubscribe(EventType.TT_STATUS_CHANGED, this::handlePaymentStatusChange);
     }
 
-    // 处理支付状态变更的回调方法
+    // 处理支付状态变更的回调方法，同一笔支付下的订单一起更新
+    // 订单号为空时联表更新匹配不到任何行，退回按ID更新
     private void handlePaymentStatusChange(PaymentInfo info) {
-        trainSeatOrderMapper.updateStatus(info.getOrderId(), info.getNewStatus());
+        if (trainSeatOrderMapper.updateGroupStatus(info.getOrderId(), info.getNewStatus()) == 0) {
+            trainSeatOrderMapper.updateStatus(info.getOrderId(), info.getNewStatus());
+        }
     }
 
     @Override
@@ -87,6 +95,8 @@ public class TrainSeatOrderServiceImpl implements TrainSeatOrderService {
         order.setTrainSeatId(request.getSeatId());
         order.setTotalAmount(seat.getPrice());
         order.setTrainId(seat.getTrainId());
+        order.setFromStation(request.getFromStation());
+        order.setToStation(request.getToStation());
         order.setStatus(E_PaymentStatus.IDLE);
         order.setCreateTime(LocalDateTime.now());
         trainSeatOrderMapper.insert(order);
@@ -108,7 +118,8 @@ public class TrainSeatOrderServiceImpl implements TrainSeatOrderService {
         paymentService.simulatePaymentProcess(payment.getOrderNumber(), 30,
                 () -> {
             String[] buf = new String[1];
-            boolean res = trainSeatService.checkAndGet(seat.getId(), 1, buf);
+            SeatClaim claim = new SeatClaim(order.getFromStation(), order.getToStation(), buf, order.getId());
+            boolean res = trainSeatService.checkAndGet(seat.getId(), 1, claim);
             if (res) {
                 order.setSeatNumber(buf[0]);
                 trainSeatOrderMapper.updateById(order);
@@ -117,4 +128,79 @@ public class TrainSeatOrderServiceImpl implements TrainSeatOrderService {
         }, order::getSeatNumber);
         return order;
     }
+
+    // 多位乘客共用一笔支付，以第一张订单作为支付的关联订单
+    // 插入订单、创建支付与关联支付在同一事务中，中途失败时不留下没有支付的订单；已占的座位在失败时归还
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<TrainSeatOrder> createOrders(BatchTicketRequest request) {
+        TrainSeat seat = trainSeatMapper.selectById(request.getSeatId());
+        if (seat == null) {
+            throw new IllegalArgumentException("Seat not found");
+        }
+        int quantity = request.getQuantity() == null ? 0 : request.getQuantity();
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Invalid quantity");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TrainSeatOrder> orders = new ArrayList<>(quantity);
+        for (int i = 0; i < quantity; i++) {
+            TrainSeatOrder order = new TrainSeatOrder();
+            order.setUserId(request.getUserId());
+            order.setTrainSeatId(request.getSeatId());
+            order.setTotalAmount(seat.getPrice());
+            order.setTrainId(seat.getTrainId());
+            order.setFromStation(request.getFromStation());
+            order.setToStation(request.getToStation());
+            order.setStatus(E_PaymentStatus.IDLE);
+            order.setCreateTime(now);
+            orders.add(order);
+        }
+        // 一条语句插入全部订单
+        trainSeatOrderMapper.insertBatch(orders);
+        TrainSeatOrder primary = orders.get(0);
+
+        payment payment = paymentService.createPayment(
+                request.getUserId(),
+                E_PaymentType.TRAIN_TICKET,
+                seat.getPrice() == null ? null : seat.getPrice() * quantity,
+                primary.getId(),
+                quantity,
+                seat.getId()
+        );
+
+        trainSeatOrderMapper.bindPayment(orders.stream().map(TrainSeatOrder::getId).toList(),
+                payment.getOrderNumber(), payment.getId());
+        for (TrainSeatOrder order : orders) {
+            order.setRelatedPaymentId(payment.getId());
+            order.setOrderNumber(payment.getOrderNumber());
+        }
+
+        // 一次分配全部座位，一条语句回填座位号
+        // 占座不加入本事务，后续步骤失败回滚订单与支付时座位不会随之撤销，需要显式归还
+        String[] buf = new String[quantity];
+        SeatClaim claim = new SeatClaim(request.getFromStation(), request.getToStation(), buf, primary.getId());
+        AtomicBoolean taken = new AtomicBoolean();
+        try {
+            paymentService.simulatePaymentProcess(payment.getOrderNumber(), 30,
+                    () -> {
+                boolean res = trainSeatService.checkAndGet(seat.getId(), quantity, claim);
+                if (res) {
+                    taken.set(true);
+                    for (int i = 0; i < quantity; i++) {
+                        orders.get(i).setSeatNumber(buf[i]);
+                    }
+                    trainSeatOrderMapper.updateSeatNumbers(orders);
+                }
+                return res;
+            }, () -> buf[0] == null ? null : buf);
+        } catch (RuntimeException e) {
+            if (taken.get()) {
+                trainSeatService.putBack(seat.getId(), quantity, claim);
+            }
+            throw e;
+        }
+        return orders;
+    }
 }
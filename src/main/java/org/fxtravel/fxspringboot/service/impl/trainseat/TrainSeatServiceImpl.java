@@ -3,31 +3,103 @@ package org.fxtravel.fxspringboot.service.impl.trainseat;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
 import org.fxtravel.fxspringboot.event.EventCenter;
 import org.fxtravel.fxspringboot.event.EventType;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
+import org.fxtravel.fxspringboot.pojo.dto.train.FlexSearchResult;
+import org.fxtravel.fxspringboot.pojo.dto.train.SeatClaim;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeatOrder;
+import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
 import org.fxtravel.fxspringboot.service.inter.trainseat.TrainSeatService;
+import org.fxtravel.fxspringboot.utils.PageCursor;
+import org.fxtravel.fxspringboot.utils.SeatBitmap;
 import org.fxtravel.fxspringboot.utils.SeatUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+@Slf4j
 @Service
 public class TrainSeatServiceImpl implements TrainSeatService {
     @Autowired
     TrainMapper trainMapper;
     @Autowired
     TrainSeatMapper trainSeatMapper;
+    @Autowired
+    TrainSeatOrderMapper trainSeatOrderMapper;
+    @Autowired
+    SeatInventory seatInventory;
+    @Autowired
+    TrainSearchCache searchCache;
+    @Autowired
+    TimetableIndex timetable;
+    @Autowired
+    PaymentService paymentService;
+
+    @Value("${fx.search.page-size:20}")
+    int pageSize = 20;
+
+    @Value("${fx.search.max-page-size:100}")
+    int maxPageSize = 100;
+
+    @Value("${fx.search.flex-max-days:7}")
+    int flexMaxDays = 7;
+
+    // 是否使用常驻内存的座位库存。内存位图只有一个写入者，默认关闭；
+    // 只有确认后端只部署一个实例时才能开启，多个实例同时开启会重复售出座位
+    @Value("${fx.seat.inventory.resident:false}")
+    boolean residentInventory = false;
+
+    // 数据库模式下比较并交换失败后的最大重试次数与退避基数
+    @Value("${fx.seat.cas.max-retries:5}")
+    int casMaxRetries = 5;
+    @Value("${fx.seat.cas.backoff-ms:2}")
+    long casBackoffMs = 2;
+
+    private final AtomicLong casConflicts = new AtomicLong();
+    private final AtomicLong casRetries = new AtomicLong();
+    private final AtomicLong casExhausted = new AtomicLong();
+
+    // 数据库模式下合并同一座次并发占座请求的等待窗口（微秒）与每批最多请求数
+    @Value("${fx.seat.combine.window-us:200}")
+    long combineWindowUs = 200;
+    @Value("${fx.seat.combine.max-batch:64}")
+    int combineMaxBatch = 64;
+    // 一个组长最多连续处理的批数，之后把组长交给队首的请求，避免单个请求一直替别人写库
+    @Value("${fx.seat.combine.max-leader-batches:8}")
+    int combineMaxLeaderBatches = 8;
+
+    private final Map<Integer, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong combinedBatches = new AtomicLong();
+    private final AtomicLong combinedRequests = new AtomicLong();
 
     @Autowired
     private EventCenter eventCenter;
@@ -35,25 +107,87 @@ public class TrainSeatServiceImpl implements TrainSeatService {
     @PostConstruct
     public void init() {
         // 注册回调，确保在服务启动时就注册
-        eventCenter.subscribe(EventType.TM_STATUS_CHANGED, this::handlePaymentStatusChange);
+        eventCenter.subscribe(EventType.TT_STATUS_CHANGED, this::handlePaymentStatusChange);
     }
 
     @PreDestroy
     public void destroy() {
         // 服务关闭时注销回调
-        eventCenter.unsubscribe(EventType.TM_STATUS_CHANGED, this::handlePaymentStatusChange);
+        eventCenter.unsubscribe(EventType.TT_STATUS_CHANGED, this::handlePaymentStatusChange);
     }
 
     // 处理支付状态变更的回调方法
     private void handlePaymentStatusChange(PaymentInfo info) {
         switch (info.getNewStatus()){
+            case COMPLETED:
+                // 支付完成后暂留的座位才写回数据库
+                // 暂留已过期或重启后丢失时按订单记录的座位重新占用，座位已被他人占用则退款
+                if (residentInventory && !seatInventory.commitHold(info.getOrderId())) {
+                    reclaim(info);
+                }
+                break;
             case FAILED:
+                // 常驻模式下待支付的座位只是暂留，直接丢弃；暂留已过期时座位可能已售给他人，不能再退座
+                if (residentInventory) {
+                    seatInventory.releaseHold(info.getOrderId());
+                    break;
+                }
+                putBack(info);
+                break;
             case REFUNDED:
-                putBack(info.getGoodId(), info.getQuantity(), info.getData());
+                // 补占失败触发的退款没有占用过座位
+                if (info.getData() != PaymentInfo.NOTHING_HELD) {
+                    putBack(info);
+                }
                 break;
         }
     }
 
+    // 暂留丢失时重新占用订单记录的座位，占用成功随写回落库，失败则退款并不再归还座位
+    private void reclaim(PaymentInfo info) {
+        TrainSeatOrder order = trainSeatOrderMapper.selectById(info.getOrderId());
+        if (order == null || order.getOrderNumber() == null) {
+            log.warn("Seat hold not found on payment completion: order={}", info.getOrderId());
+            return;
+        }
+        String[] seatNumbers = ordersOf(order).stream()
+                .map(TrainSeatOrder::getSeatNumber)
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+        int[] indexes = toIndexes(seatNumbers);
+        if (indexes != null && seatInventory.claimExact(order.getTrainSeatId(),
+                order.getFromStation(), order.getToStation(), indexes)) {
+            return;
+        }
+        log.warn("Seat hold lost and seats taken, refunding: order={}", info.getOrderId());
+        paymentService.refundPayment(order.getOrderNumber(), PaymentInfo.NOTHING_HELD);
+    }
+
+    // 以订单记录的座位与区间为准，找不到订单时沿用回调携带的座位号
+    // 多位乘客共用一笔支付时，同一订单号下的所有座位一起归还
+    private void putBack(PaymentInfo info) {
+        TrainSeatOrder order = trainSeatOrderMapper.selectById(info.getOrderId());
+        if (order == null) {
+            putBack(info.getGoodId(), info.getQuantity(), info.getData());
+            return;
+        }
+        String[] seatNumbers = ordersOf(order).stream()
+                .map(TrainSeatOrder::getSeatNumber)
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+        if (seatNumbers.length > 0) {
+            putBack(order.getTrainSeatId(), seatNumbers.length, new SeatClaim(order.getFromStation(),
+                    order.getToStation(), seatNumbers));
+        }
+    }
+
+    // 同一订单号下的所有订单，没有订单号时只有它自己
+    private List<TrainSeatOrder> ordersOf(TrainSeatOrder order) {
+        List<TrainSeatOrder> orders = order.getOrderNumber() == null ? null
+                : trainSeatOrderMapper.findAllByOrderNumber(order.getOrderNumber());
+        return orders == null || orders.isEmpty() ? List.of(order) : orders;
+    }
+
     @Override
     public Train getTrainById(Integer trainId) {
         return trainMapper.selectById(trainId);
@@ -64,9 +198,8 @@ public class TrainSeatServiceImpl implements TrainSeatService {
         LocalDateTime startOfDay = departureDate.atStartOfDay();
         LocalDateTime endOfDay = departureDate.atTime(23, 59, 59);
 
-        List<Train> trains = trainMapper.findByRouteAndTimeOrderByTime(fromStation, toStation, startOfDay, endOfDay);
-
-        return getResults(trains);
+        return search(fromStation, toStation, departureDate, "departureTime", () ->
+                getResults(findTrains(fromStation, toStation, startOfDay, endOfDay, false)));
     }
 
     @Override
@@ -74,9 +207,211 @@ public class TrainSeatServiceImpl implements TrainSeatService {
         LocalDateTime startOfDay = departureDate.atStartOfDay();
         LocalDateTime endOfDay = departureDate.atTime(23, 59, 59);
 
-        List<Train> trains = trainMapper.findByRouteAndTimeOrderByDuration(fromStation, toStation, startOfDay, endOfDay);
+        return search(fromStation, toStation, departureDate, "duration", () ->
+                getResults(findTrains(fromStation, toStation, startOfDay, endOfDay, true)));
+    }
+
+    @Override
+    public SearchPage<TrainSearchResult> findByRouteAndTimeOrderByTime(String fromStation, String toStation, LocalDate departureDate,
+                                                                       String cursor, Integer pageSize) {
+        return page(fromStation, toStation, departureDate, false, cursor, pageSize);
+    }
+
+    @Override
+    public SearchPage<TrainSearchResult> findByRouteAndTimeOrderByDuration(String fromStation, String toStation, LocalDate departureDate,
+                                                                           String cursor, Integer pageSize) {
+        return page(fromStation, toStation, departureDate, true, cursor, pageSize);
+    }
+
+    // 键集分页：索引已加载时当天结果已在缓存中，直接按游标截取；否则在SQL中按游标取一页
+    private SearchPage<TrainSearchResult> page(String fromStation, String toStation, LocalDate departureDate,
+                                               boolean byDuration, String cursor, Integer requested) {
+        PageCursor after = PageCursor.decode(cursor);
+        int limit = PageCursor.pageSize(requested, pageSize, maxPageSize);
+
+        if (timetable.isLoaded()) {
+            List<TrainSearchResult> all = byDuration
+                    ? findByRouteAndTimeOrderByDuration(fromStation, toStation, departureDate)
+                    : findByRouteAndTimeOrderByTime(fromStation, toStation, departureDate);
+            List<TrainSearchResult> rest = new ArrayList<>();
+            if (all != null) {
+                for (TrainSearchResult result : all) {
+                    if (after == null || isAfter(result.getTrain(), byDuration, after)) {
+                        rest.add(result);
+                    }
+                }
+            }
+            if (rest.size() <= limit) {
+                return new SearchPage<>(rest, null);
+            }
+            List<TrainSearchResult> items = new ArrayList<>(rest.subList(0, limit));
+            return new SearchPage<>(items, cursorOf(items.get(limit - 1).getTrain(), byDuration));
+        }
+
+        LocalDateTime startOfDay = departureDate.atStartOfDay();
+        LocalDateTime endOfDay = departureDate.atTime(23, 59, 59);
+        Integer afterId = after == null ? null : after.getId();
+        // 多取一条判断是否还有下一页
+        List<Train> trains = byDuration
+                ? trainMapper.findPageOrderByDuration(fromStation, toStation, startOfDay, endOfDay,
+                        after == null ? null : after.getLongKey(), afterId, limit + 1)
+                : trainMapper.findPageOrderByTime(fromStation, toStation, startOfDay, endOfDay,
+                        after == null ? null : LocalDateTime.ofEpochSecond(after.getLongKey(), 0, ZoneOffset.UTC),
+                        afterId, limit + 1);
+        boolean more = trains.size() > limit;
+        if (more) {
+            trains = trains.subList(0, limit);
+        }
+        List<TrainSearchResult> results = trains.isEmpty() ? null : getResults(trains);
+        if (results == null) {
+            results = new ArrayList<>();
+        }
+        overlayRemain(results);
+        return new SearchPage<>(results, more ? cursorOf(trains.get(limit - 1), byDuration) : null);
+    }
 
-        return getResults(trains);
+    private static long sortKey(Train train, boolean byDuration) {
+        return byDuration ? TimetableIndex.durationOf(train) : train.getDepartureTime().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static String cursorOf(Train train, boolean byDuration) {
+        return PageCursor.encode(sortKey(train, byDuration), train.getId());
+    }
+
+    private static boolean isAfter(Train train, boolean byDuration, PageCursor cursor) {
+        int order = Long.compare(sortKey(train, byDuration), cursor.getLongKey());
+        return order > 0 || order == 0 && train.getId() > cursor.getId();
+    }
+
+    // 常驻内存模式下余量以内存为准
+    private void overlayRemain(List<TrainSearchResult> results) {
+        if (!residentInventory) {
+            return;
+        }
+        for (TrainSearchResult result : results) {
+            for (TrainSeat seat : result.getTrainseats()) {
+                int remain = seatInventory.remain(seat.getId());
+                if (remain >= 0) {
+                    seat.setRemain(remain);
+                }
+            }
+        }
+    }
+
+    @Override
+    public FlexSearchResult findFlexible(String fromStation, String toStation, LocalDate departureDate, int days) {
+        int window = Math.min(Math.max(days, 0), flexMaxDays);
+        LocalDate first = departureDate.minusDays(window);
+        LocalDate last = departureDate.plusDays(window);
+
+        // 整个窗口一次范围查询，座次一次批量加载
+        List<Train> trains = findTrains(fromStation, toStation, first.atStartOfDay(), last.atTime(23, 59, 59), false);
+        List<TrainSearchResult> results = trains.isEmpty() ? null : getResults(trains);
+        if (results == null) {
+            results = new ArrayList<>();
+        }
+        overlayRemain(results);
+
+        FlexSearchResult flex = new FlexSearchResult();
+        flex.setTrains(results);
+        Map<LocalDate, FlexSearchResult.DaySummary> summaries = new LinkedHashMap<>();
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            FlexSearchResult.DaySummary summary = new FlexSearchResult.DaySummary();
+            summary.setDate(date);
+            summaries.put(date, summary);
+        }
+        for (TrainSearchResult result : results) {
+            Train train = result.getTrain();
+            FlexSearchResult.DaySummary summary = summaries.get(train.getDepartureTime().toLocalDate());
+            summary.setTrainCount(summary.getTrainCount() + 1);
+            // 结果按出发时间排序，当天第一趟即最早
+            if (summary.getEarliestDeparture() == null) {
+                summary.setEarliestDeparture(train.getDepartureTime());
+                summary.setEarliestTrainId(train.getId());
+            }
+            // 没有到达时间也没有历时的车次不参与最短历时比较
+            long minutes = TimetableIndex.durationOf(train);
+            if (minutes != Long.MAX_VALUE
+                    && (summary.getShortestMinutes() == null || minutes < summary.getShortestMinutes())) {
+                summary.setShortestMinutes((int) minutes);
+                summary.setShortestTrainId(train.getId());
+            }
+            for (TrainSeat seat : result.getTrainseats()) {
+                int remain = seat.getRemain() == null ? 0 : seat.getRemain();
+                summary.setSeatsLeft(summary.getSeatsLeft() + remain);
+                if (remain > 0 && (summary.getMinPrice() == null || seat.getPrice() < summary.getMinPrice())) {
+                    summary.setMinPrice(seat.getPrice());
+                }
+            }
+        }
+        flex.setDays(new ArrayList<>(summaries.values()));
+        return flex;
+    }
+
+    @Override
+    public List<List<TrainSearchResult>> findTransfers(String fromStation, String toStation, LocalDate departureDate) {
+        List<List<Train>> journeys = timetable.journeys(fromStation, toStation,
+                departureDate.atStartOfDay(), departureDate.atTime(23, 59, 59));
+        if (journeys.isEmpty()) {
+            return List.of();
+        }
+
+        // 所有行程涉及的列车一次取回座次
+        Map<Integer, Train> trains = new LinkedHashMap<>();
+        journeys.forEach(journey -> journey.forEach(train -> trains.put(train.getId(), train)));
+        List<TrainSearchResult> results = getResults(new ArrayList<>(trains.values()));
+        Map<Integer, TrainSearchResult> byTrain = new HashMap<>();
+        if (results != null) {
+            overlayRemain(results);
+            for (TrainSearchResult result : results) {
+                byTrain.put(result.getTrain().getId(), result);
+            }
+        }
+
+        // 任一段列车没有设置座次时不显示该行程
+        List<List<TrainSearchResult>> itineraries = new ArrayList<>();
+        for (List<Train> journey : journeys) {
+            List<TrainSearchResult> legs = new ArrayList<>(journey.size());
+            for (Train train : journey) {
+                TrainSearchResult leg = byTrain.get(train.getId());
+                if (leg == null) {
+                    break;
+                }
+                legs.add(leg);
+            }
+            if (legs.size() == journey.size()) {
+                itineraries.add(legs);
+            }
+        }
+        return itineraries;
+    }
+
+    // 时刻表索引加载完成后直接在内存中查询，否则查询数据库
+    private List<Train> findTrains(String fromStation, String toStation,
+                                   LocalDateTime start, LocalDateTime end, boolean byDuration) {
+        if (timetable.isLoaded()) {
+            return timetable.find(fromStation, toStation, start, end, byDuration);
+        }
+        return byDuration
+                ? trainMapper.findByRouteAndTimeOrderByDuration(fromStation, toStation, start, end)
+                : trainMapper.findByRouteAndTimeOrderByTime(fromStation, toStation, start, end);
+    }
+
+    // 查询结果走缓存；常驻内存模式下余量以内存为准（包括暂留与过期释放）
+    private List<TrainSearchResult> search(String fromStation, String toStation, LocalDate departureDate,
+                                           String sortBy, Supplier<List<TrainSearchResult>> loader) {
+        List<TrainSearchResult> results = searchCache.get(fromStation, toStation, departureDate, sortBy, loader);
+        if (results != null && residentInventory) {
+            for (TrainSearchResult result : results) {
+                for (TrainSeat seat : result.getTrainseats()) {
+                    int remain = seatInventory.remain(seat.getId());
+                    if (remain >= 0) {
+                        searchCache.updateSeat(seat.getId(), remain, null);
+                    }
+                }
+            }
+        }
+        return results;
     }
 
     private List<TrainSearchResult> getResults(List<Train> trains) {
@@ -84,14 +419,19 @@ public class TrainSeatServiceImpl implements TrainSeatService {
             return null;
         }
 
-        // 转换为搜索结果
+        // 一次查询取回所有列车的座次，按列车分组
+        Map<Integer, List<TrainSeat>> seatsByTrain = new HashMap<>();
+        for (TrainSeat seat : trainSeatMapper.findByTrains(trains.stream().map(Train::getId).toList())) {
+            seatsByTrain.computeIfAbsent(seat.getTrainId(), k -> new ArrayList<>()).add(seat);
+        }
+
+        // 按查询返回的列车顺序转换为搜索结果
         List<TrainSearchResult> results = new ArrayList<>();
 
         for (Train train : trains) {
-            // 获取该列车的所有座位信息
-            List<TrainSeat> seatList = trainSeatMapper.findByTrain(train.getId());
+            List<TrainSeat> seatList = seatsByTrain.get(train.getId());
             // 若列车没有设置座次，则不显示该列车
-            if (seatList.isEmpty()) {
+            if (seatList == null) {
                 continue;
             }
             // 创建搜索结果对象
@@ -105,68 +445,420 @@ public class TrainSeatServiceImpl implements TrainSeatService {
     }
 
     @Override
-    @Transactional(rollbackOn = Exception.class)
+    public Map<String, Long> getInventoryStats() {
+        Map<String, Long> stats = new LinkedHashMap<>(seatInventory.getStats());
+        stats.putAll(searchCache.getStats());
+        stats.putAll(timetable.getStats());
+        stats.put("casConflicts", casConflicts.get());
+        stats.put("casRetries", casRetries.get());
+        stats.put("casExhausted", casExhausted.get());
+        stats.put("combinedBatches", combinedBatches.get());
+        stats.put("combinedRequests", combinedRequests.get());
+        return stats;
+    }
+
+    @Override
+    public Map<Integer, Integer> getAvailability(Integer trainId, String fromStation, String toStation) {
+        Map<Integer, Integer> availability = new LinkedHashMap<>();
+        for (TrainSeat seat : trainSeatMapper.findByTrain(trainId)) {
+            int available = residentInventory
+                    ? seatInventory.available(seat.getId(), fromStation, toStation)
+                    : available(seat, fromStation, toStation);
+            if (available >= 0) {
+                availability.put(seat.getId(), available);
+            }
+        }
+        return availability;
+    }
+
+    // 数据库模式下每次尝试都是独立的语句，不加入调用方事务，
+    // 否则重试时读到的仍是调用方事务开始时的快照
+    // seatNumberRef为String[]时占用整趟，为SeatClaim时按区间占用
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public boolean checkAndGet(int id, int count, Object seatNumberRef) {
-        if (!(seatNumberRef instanceof String[] seatNumber)) {
-            System.err.println(seatNumberRef.getClass());
+        SeatClaim claim = toClaim(seatNumberRef);
+        if (claim == null || claim.getSeatNumbers() == null) {
+            log.warn("Seat claim rejected, unrecognized seat numbers: trainSeat={}, type={}",
+                    id, seatNumberRef == null ? null : seatNumberRef.getClass().getName());
+            return false;
+        }
+        String[] seatNumber = claim.getSeatNumbers();
+        if (count < 1 || seatNumber.length < count) {
             return false;
         }
 
-        TrainSeat obj = trainSeatMapper.selectById(id);
-        if (obj == null || obj.getRemain() < 1) {
+        if (residentInventory) {
+            // 带暂留键时座位在支付完成前只保留在内存中
+            int[] indexes = claim.getHoldKey() != null
+                    ? seatInventory.hold(claim.getHoldKey(), id, claim.getFromStation(), claim.getToStation(), count)
+                    : seatInventory.claim(id, claim.getFromStation(), claim.getToStation(), count);
+            if (indexes == null) {
+                return false;
+            }
+            fillSeatNumbers(seatNumber, indexes);
+            return true;
+        }
+
+        // 同一座次的并发请求合并为一次读取、一次写库
+        int[] indexes = combine(id, new Request(claim, count));
+        if (indexes == null) {
             return false;
         }
+        fillSeatNumbers(seatNumber, indexes);
+        return true;
+    }
 
-        // 获取当前座位分配情况
-        byte[] seatAllocation = obj.getSeatAllocation();
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void putBack(int id, int count, Object seatNumber) {
+        SeatClaim claim = seatNumber instanceof String number
+                ? new SeatClaim(null, null, new String[]{number}) : toClaim(seatNumber);
+        int[] indexes = claim == null ? null : toIndexes(claim.getSeatNumbers());
+        if (indexes == null) {
+            log.warn("Seat put back ignored, unrecognized seat numbers: trainSeat={}, type={}",
+                    id, seatNumber == null ? null : seatNumber.getClass().getName());
+            return;
+        }
 
-        // 查找下一个可用座位
-        Integer index = SeatUtil.nextAvailable(seatAllocation);
-        if (index == null) {
-            return false; // 没有可用座位
+        if (residentInventory) {
+            // 带暂留键时座位还只是暂留，直接丢弃暂留
+            if (claim.getHoldKey() != null && seatInventory.releaseHold(claim.getHoldKey())) {
+                return;
+            }
+            seatInventory.release(id, claim.getFromStation(), claim.getToStation(), indexes);
+            return;
         }
 
-        // 设置座位号
-        seatNumber[0] = SeatUtil.idx2number(index);
+        for (int attempt = 0; attempt <= casMaxRetries; attempt++) {
+            if (attempt > 0) {
+                casRetries.incrementAndGet();
+                backoff(attempt);
+            }
 
-        // 更新座位分配状态
-        byte[] updatedAllocation = SeatUtil.setBit(seatAllocation, index);
+            TrainSeat obj = trainSeatMapper.selectById(id);
+            if (obj == null || obj.getSeatAllocation() == null) {
+                return;
+            }
 
-        System.out.println(seatNumber[0]);
-        System.out.println(index);
-        System.out.println(Arrays.toString(updatedAllocation));
+            // 获取当前座位分配情况
+            byte[] expected = obj.getSeatAllocation();
+            Leg leg = resolveLeg(obj, claim);
+            if (leg == null) {
+                return;
+            }
 
-        // 更新数据库
-        int affected = trainSeatMapper.deduct(id, updatedAllocation);
-        return affected > 0;
+            // 只归还仍处于占用状态的座位，重复的回调不会多加余量
+            int[] occupied = Arrays.stream(indexes).filter(i -> leg.bitmap.isOccupied(leg.from, leg.to, i)).toArray();
+            if (occupied.length == 0) {
+                return;
+            }
+
+            // 更新座位分配状态，余量只增加归还后整趟空闲的座位
+            SeatBitmap updated = leg.bitmap.copy();
+            updated.clear(leg.from, leg.to, occupied);
+            int freed = updated.countFullyFree(occupied);
+            byte[] updatedAllocation = updated.encode();
+
+            // 更新数据库
+            if (trainSeatMapper.add(id, freed, updatedAllocation, expected) > 0) {
+                if (obj.getRemain() != null) {
+                    searchCache.updateSeat(id, obj.getRemain() + freed, updatedAllocation);
+                }
+                return;
+            }
+            casConflicts.incrementAndGet();
+        }
+
+        casExhausted.incrementAndGet();
+        log.error("Seat put back gave up after retries: trainSeat={}", id);
     }
 
-    @Override
-    @Transactional(rollbackOn = Exception.class)
-    public void putBack(int id, int count, Object seatNumber) {
-        if (!(seatNumber instanceof String)) {
-            System.err.println(seatNumber.getClass());
-            return;
+    /**
+     * 合并同一座次的并发占座请求
+     * 第一个到达的请求成为组长，等待一个窗口后把队列中的请求整批分配；
+     * 连续处理max-leader-batches批后队列仍不为空时把组长交给队首的请求。
+     * 其余请求等待组长写库后取回各自的座位。
+     * @return 座位索引，分配失败时返回null
+     */
+    private int[] combine(int id, Request request) {
+        Group group;
+        boolean leader;
+        for (;;) {
+            group = groups.computeIfAbsent(id, k -> new Group());
+            synchronized (group) {
+                // 组已处理完并移除时重新取组
+                if (group.retired) {
+                    continue;
+                }
+                group.queue.add(request);
+                leader = !group.draining;
+                group.draining = true;
+                break;
+            }
         }
 
-        TrainSeat obj = trainSeatMapper.selectById(id);
-        if (obj == null) {
-            return;
+        if (leader) {
+            if (combineWindowUs > 0) {
+                LockSupport.parkNanos(combineWindowUs * 1000);
+            }
+            lead(id, group);
+        } else {
+            // 等待组长写库，或由上一任组长交出组长后自己处理
+            CompletableFuture.anyOf(request.result, request.promoted).exceptionally(e -> null).join();
+            if (!request.result.isDone()) {
+                lead(id, group);
+            }
+        }
+
+        try {
+            return request.result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // 以组长身份分批处理队列，任何异常都让未完成的批次失败，并在退出时交出组长
+    private void lead(int id, Group group) {
+        List<Request> batch = List.of();
+        try {
+            for (int batches = 0; batches < Math.max(1, combineMaxLeaderBatches); batches++) {
+                batch = new ArrayList<>();
+                synchronized (group) {
+                    while (!group.queue.isEmpty() && batch.size() < combineMaxBatch) {
+                        batch.add(group.queue.poll());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                allocate(id, batch);
+            }
+        } catch (Throwable e) {
+            // 异常由各请求的结果带回，已完成的请求不受影响
+            for (Request r : batch) {
+                r.result.completeExceptionally(e);
+            }
+        } finally {
+            resign(id, group);
+        }
+    }
+
+    // 交出组长：队列为空时结束处理并移除空组，否则由队首的请求接任
+    private void resign(int id, Group group) {
+        Request next;
+        synchronized (group) {
+            next = group.queue.peek();
+            if (next == null) {
+                group.draining = false;
+                group.retired = true;
+                groups.remove(id, group);
+                return;
+            }
+        }
+        next.promoted.complete(null);
+    }
+
+    // 一次读取位图为整批请求分配座位，以一条deduct语句提交；冲突时整批重新读取
+    private void allocate(int id, List<Request> batch) {
+        if (batch.size() > 1) {
+            combinedBatches.incrementAndGet();
+            combinedRequests.addAndGet(batch.size());
+        }
+        boolean byLeg = batch.stream().anyMatch(r -> !r.wholeRun());
+
+        for (int attempt = 0; attempt <= casMaxRetries; attempt++) {
+            if (attempt > 0) {
+                casRetries.incrementAndGet();
+                backoff(attempt);
+            }
+
+            TrainSeat obj = trainSeatMapper.selectById(id);
+            if (obj == null) {
+                break;
+            }
+
+            // 获取当前座位分配情况，有按区间的请求时按经停站扩展位图
+            byte[] expected = obj.getSeatAllocation();
+            SeatBitmap bitmap = expected == null
+                    ? SeatBitmap.empty(Math.max(0, obj.getRemain()), 1)
+                    : SeatBitmap.decode(expected);
+            List<String> route = null;
+            SeatBitmap widened = null;
+            if (byLeg) {
+                route = seatInventory.route(obj.getTrainId());
+                widened = bitmap.widen(Math.max(1, route.size() - 1));
+                if (widened != null) {
+                    bitmap = widened;
+                }
+            }
+
+            // 依次为每个请求选座，余量只扣减此前整趟空闲的座位
+            int remain = obj.getRemain();
+            int capacity = SeatUtil.sellableCapacity(bitmap.occupancy(0, bitmap.segments()), bitmap.capacity(), remain);
+            int[][] results = new int[batch.size()][];
+            int fresh = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Request request = batch.get(i);
+                int[] range = request.wholeRun() ? new int[]{0, bitmap.segments()}
+                        : widened == null ? null
+                        : SeatInventory.legOf(route, widened.segments(),
+                        request.claim.getFromStation(), request.claim.getToStation());
+                if (range == null || bitmap.segments() == 1 && remain < request.count) {
+                    continue;
+                }
+                int[] indexes = SeatUtil.allocate(bitmap.occupancy(range[0], range[1]), capacity, request.count);
+                if (indexes == null) {
+                    continue; // 没有可用座位
+                }
+                int claimed = bitmap.countFullyFree(indexes);
+                bitmap.set(range[0], range[1], indexes);
+                remain -= claimed;
+                fresh += claimed;
+                results[i] = indexes;
+            }
+            if (Arrays.stream(results).allMatch(Objects::isNull)) {
+                break;
+            }
+
+            // 以读取到的位图为期望值更新数据库
+            byte[] updatedAllocation = bitmap.encode();
+            if (trainSeatMapper.deduct(id, fresh, updatedAllocation, expected) > 0) {
+                searchCache.updateSeat(id, obj.getRemain() - fresh, updatedAllocation);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.complete(results[i]);
+                }
+                return;
+            }
+            casConflicts.incrementAndGet();
+            if (attempt == casMaxRetries) {
+                casExhausted.incrementAndGet();
+            }
         }
 
-        // 获取当前座位分配情况
-        byte[] seatAllocation = obj.getSeatAllocation();
+        batch.forEach(r -> r.result.complete(null));
+    }
 
-        // 转换座位号到索引
-        int index = SeatUtil.number2idx((String) seatNumber);
-        if (index < 0) {
+    // 指数退避加随机抖动，避免冲突的请求同时重试
+    private void backoff(int attempt) {
+        long bound = casBackoffMs << Math.min(attempt, 6);
+        if (bound <= 0) {
             return;
         }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound / 2, bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 等待合并的一次占座请求
+    private static final class Request {
+        final SeatClaim claim;
+        final int count;
+        final CompletableFuture<int[]> result = new CompletableFuture<>();
+        // 上一任组长交出组长时完成
+        final CompletableFuture<Void> promoted = new CompletableFuture<>();
+
+        Request(SeatClaim claim, int count) {
+            this.claim = claim;
+            this.count = count;
+        }
+
+        boolean wholeRun() {
+            return claim.getFromStation() == null && claim.getToStation() == null;
+        }
+    }
+
+    // 同一座次的请求队列，draining表示已有组长在处理，retired表示已从groups中移除
+    private static final class Group {
+        final Queue<Request> queue = new ArrayDeque<>();
+        boolean draining;
+        boolean retired;
+    }
+
+    // 一次读取的位图按区间展开后的视图
+    private static final class Leg {
+        SeatBitmap bitmap;
+        int from;
+        int to;
+        long[] used;        // 整趟任一区间已占用
+        long[] occupied;    // 所购区间内已占用
+    }
+
+    /**
+     * 按读取到的位图解析区间
+     * 整趟占座直接使用位图本身的区间数；指定车站时按经停站扩展单区间的位图。
+     * 尚未分配过座位的座次按余量创建空位图。
+     * @return 区间无效或位图与经停站不一致时返回null
+     */
+    private Leg resolveLeg(TrainSeat seat, SeatClaim claim) {
+        SeatBitmap bitmap = seat.getSeatAllocation() == null
+                ? SeatBitmap.empty(Math.max(0, seat.getRemain()), 1)
+                : SeatBitmap.decode(seat.getSeatAllocation());
+        int[] range;
+        if (claim.getFromStation() == null && claim.getToStation() == null) {
+            range = new int[]{0, bitmap.segments()};
+        } else {
+            List<String> route = seatInventory.route(seat.getTrainId());
+            bitmap = bitmap.widen(Math.max(1, route.size() - 1));
+            if (bitmap == null) {
+                return null;
+            }
+            range = SeatInventory.legOf(route, bitmap.segments(), claim.getFromStation(), claim.getToStation());
+        }
+        if (range == null) {
+            return null;
+        }
+
+        Leg leg = new Leg();
+        leg.bitmap = bitmap;
+        leg.from = range[0];
+        leg.to = range[1];
+        leg.used = bitmap.occupancy(0, bitmap.segments());
+        leg.occupied = bitmap.occupancy(leg.from, leg.to);
+        return leg;
+    }
 
-        // 更新座位分配状态
-        byte[] updatedAllocation = SeatUtil.clearBit(seatAllocation, index);
+    // 数据库模式下直接按行内位图统计区间余座
+    private int available(TrainSeat seat, String fromStation, String toStation) {
+        Leg leg = resolveLeg(seat, new SeatClaim(fromStation, toStation, null));
+        if (leg == null) {
+            return -1;
+        }
+        int capacity = SeatUtil.sellableCapacity(leg.used, leg.bitmap.capacity(), seat.getRemain());
+        return SeatUtil.countAvailable(leg.occupied, capacity);
+    }
 
-        // 更新数据库
-        trainSeatMapper.add(id, updatedAllocation);
+    private static SeatClaim toClaim(Object data) {
+        if (data instanceof SeatClaim claim) {
+            return claim;
+        }
+        if (data instanceof String[] seatNumbers) {
+            return new SeatClaim(null, null, seatNumbers);
+        }
+        return null;
+    }
+
+    private static void fillSeatNumbers(String[] seatNumber, int[] indexes) {
+        for (int i = 0; i < indexes.length; i++) {
+            seatNumber[i] = SeatUtil.idx2number(indexes[i]);
+        }
+    }
+
+    // 座位号转换为索引，存在无效座位号时返回null
+    private static int[] toIndexes(String[] numbers) {
+        if (numbers == null) {
+            return null;
+        }
+
+        int[] indexes = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            indexes[i] = SeatUtil.number2idx(numbers[i]);
+            if (indexes[i] < 0) {
+                return null;
+            }
+        }
+        return indexes;
     }
 }
@@ -1,9 +1,12 @@
 package org.fxtravel.fxspringboot.service.inter.common;
 
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 import org.fxtravel.fxspringboot.common.E_PaymentType;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentResultDTO;
 import org.fxtravel.fxspringboot.pojo.entities.payment;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.function.Supplier;
 
 public interface PaymentService {
@@ -70,4 +73,21 @@ public interface PaymentService {
      * @return 当前支付状态
      */
     PaymentResultDTO checkPaymentStatus(Integer paymentId);
+
+    /**
+     * 为所有待支付的订单重新设置超时任务，到期时间为payment_time + timeout_seconds
+     * 重启后内存中的超时任务丢失，由启动任务调用
+     * @param batchSize 每批读取的行数
+     * @return 重新设置的订单数
+     */
+    int recoverTimeouts(int batchSize);
+
+    /**
+     * 把一批超时时间早于before的支付置为失败，并批量发送状态变更通知
+     * 读取时加锁，一条语句完成更新，需要在事务中调用
+     * @param status 只处理该状态（IDLE或PENDING）的支付
+     * @param limit 每批最多处理的行数
+     * @return 被置为失败的支付
+     */
+    List<payment> failExpired(E_PaymentStatus status, LocalDateTime before, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package org.fxtravel.fxspringboot.service.inter.common;
+
+import java.util.List;
+
+public interface SuggestService {
+    // 以prefix开头的车站名，按经停列车数降序
+    List<String> suggestStations(String prefix, int limit);
+    // 以prefix开头的酒店目的地，按酒店数降序
+    List<String> suggestDestinations(String prefix, int limit);
+    // 规范的车站名：忽略空白与大小写后完全匹配时返回库中的写法，否则原样返回
+    String canonicalStation(String input);
+    String canonicalDestination(String input);
+}
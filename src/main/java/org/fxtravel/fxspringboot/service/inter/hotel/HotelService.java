@@ -1,7 +1,9 @@
 package org.fxtravel.fxspringboot.service.inter.hotel;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.HotelSearchResult;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
 import org.fxtravel.fxspringboot.pojo.entities.RoomOrder;
@@ -14,4 +16,8 @@ public interface HotelService extends GoodService {
     Hotel getHotelById(Integer id);
     Room getRoomById(Integer id);
     List<HotelSearchResult> searchHotels(String destination, String pattern);
+    // 键集分页查询，cursor为上一页返回的nextCursor
+    SearchPage<HotelSearchResult> searchHotels(String destination, String pattern, String cursor, Integer pageSize);
+    // 给出入住区间时同时返回每个房型在区间内的可订间数，stay为null时与上面相同
+    SearchPage<HotelSearchResult> searchHotels(String destination, String pattern, String cursor, Integer pageSize, StayClaim stay);
 }
\ No newline at end of file
@@ -5,8 +5,13 @@ import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
 import org.fxtravel.fxspringboot.service.inter.common.GoodService;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TrainMealService extends GoodService {
     List<TrainMeal> getMealsByTrain4User(Integer trainId);
     TrainMeal getMealById(Integer id);
+    // 修改餐食信息或上下架（enabled），不修改余量；修改后淘汰所在车次的菜单缓存
+    boolean updateMeal(TrainMeal meal);
+    // 餐食库存运行统计
+    Map<String, Long> getStockStats();
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package org.fxtravel.fxspringboot.service.inter.trainseat;
 
+import org.fxtravel.fxspringboot.pojo.dto.train.BatchTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.GetTicketRequest;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeatOrder;
 
@@ -11,4 +12,5 @@ public interface TrainSeatOrderService {
     TrainSeatOrder getOrderById(Integer orderId);
     TrainSeatOrder getOrderByNumber(String orderNumber);
     TrainSeatOrder createOrder(GetTicketRequest request);
+    List<TrainSeatOrder> createOrders(BatchTicketRequest request);
 }
@@ -1,14 +1,29 @@
 package org.fxtravel.fxspringboot.service.inter.trainseat;
 
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
+import org.fxtravel.fxspringboot.pojo.dto.train.FlexSearchResult;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
 import org.fxtravel.fxspringboot.service.inter.common.GoodService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface TrainSeatService extends GoodService {
     Train getTrainById(Integer trainId);
     List<TrainSearchResult> findByRouteAndTimeOrderByTime(String fromStation, String toStation, LocalDate departureDate);
     List<TrainSearchResult> findByRouteAndTimeOrderByDuration(String fromStation, String toStation, LocalDate departureDate);
+    // 键集分页查询，cursor为上一页返回的nextCursor
+    SearchPage<TrainSearchResult> findByRouteAndTimeOrderByTime(String fromStation, String toStation, LocalDate departureDate,
+                                                                String cursor, Integer pageSize);
+    SearchPage<TrainSearchResult> findByRouteAndTimeOrderByDuration(String fromStation, String toStation, LocalDate departureDate,
+                                                                    String cursor, Integer pageSize);
+    // 弹性日期查询：departureDate前后days天内的全部车次及每天的概况
+    FlexSearchResult findFlexible(String fromStation, String toStation, LocalDate departureDate, int days);
+    // 没有直达车时的换乘行程，每个行程为按乘车顺序排列的各段列车
+    List<List<TrainSearchResult>> findTransfers(String fromStation, String toStation, LocalDate departureDate);
+    Map<String, Long> getInventoryStats();
+    // 各座次在指定区间内的可售座位数，座次ID -> 余座
+    Map<Integer, Integer> getAvailability(Integer trainId, String fromStation, String toStation);
 }
@@ -0,0 +1,69 @@
+package org.fxtravel.fxspringboot.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 键集分页游标
+ * 记录上一页最后一条记录的排序键与ID，编码为URL安全的Base64字符串，对调用方不透明。
+ * 下一页从(排序键, ID)严格之后开始，翻页期间插入或删除记录不会导致重复或遗漏。
+ */
+public final class PageCursor {
+    private final String key;
+    private final int id;
+
+    private PageCursor(String key, int id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static String encode(Object key, int id) {
+        String raw = key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @return 游标为空时返回null，表示第一页
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf('|');
+            PageCursor result = new PageCursor(raw.substring(0, split), Integer.parseInt(raw.substring(split + 1)));
+            // 提前校验排序键是数字
+            Double.parseDouble(result.key);
+            return result;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    // 每页条数：未指定时取默认值，超过上限时截断
+    public static int pageSize(Integer requested, int defaultSize, int maxSize) {
+        if (requested == null || requested < 1) {
+            return defaultSize;
+        }
+        return Math.min(requested, maxSize);
+    }
+
+    public long getLongKey() {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    public double getDoubleKey() {
+        return Double.parseDouble(key);
+    }
+
+    public int getId() {
+        return id;
+    }
+}
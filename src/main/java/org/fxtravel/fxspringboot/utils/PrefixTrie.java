@@ -0,0 +1,159 @@
+package org.fxtravel.fxspringboot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 带权重的前缀树，用于车站、目的地的输入补全
+ * 构建后不可变。每个节点的子节点按字符排序存放在数组中，查找时二分；
+ * 每个节点预先保存子树中权重最高的前TOP_K个词条，前缀查询只需沿前缀走到对应节点。
+ * 词条按规范化后的形式（去空白、小写）建树，查询结果返回原始写法。
+ */
+public final class PrefixTrie {
+    public static final int TOP_K = 10;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final String[] words;
+    private final long[] weights;
+    private final Node root;
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        int word = -1;      // 以该节点结尾的词条
+        int[] top;          // 子树中权重最高的词条，按权重降序
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    // 构建时使用的可变节点
+    private static final class Builder {
+        final TreeMap<Character, Builder> children = new TreeMap<>();
+        int word = -1;
+    }
+
+    public PrefixTrie(Map<String, Long> entries) {
+        List<String> words = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        Builder root = new Builder();
+        entries.forEach((word, weight) -> {
+            String key = normalize(word);
+            if (key.isEmpty()) {
+                return;
+            }
+            Builder node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), k -> new Builder());
+            }
+            // 规范化后相同的写法只保留权重较高的一个
+            if (node.word >= 0 && weights.get(node.word) >= weight) {
+                return;
+            }
+            node.word = words.size();
+            words.add(word);
+            weights.add(weight);
+        });
+
+        this.words = words.toArray(new String[0]);
+        this.weights = weights.stream().mapToLong(Long::longValue).toArray();
+        this.root = freeze(root);
+    }
+
+    public static PrefixTrie empty() {
+        return new PrefixTrie(Collections.emptyMap());
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * 前缀查询
+     * @return 以prefix开头的词条，按权重降序，最多limit个（不超过TOP_K）
+     */
+    public List<String> suggest(String prefix, int limit) {
+        Node node = find(normalize(prefix));
+        if (node == null || limit < 1) {
+            return Collections.emptyList();
+        }
+        int n = Math.min(limit, node.top.length);
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(words[node.top[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * 规范写法：输入规范化后与某个词条完全相同时返回该词条，否则返回null
+     */
+    public String canonical(String input) {
+        Node node = find(normalize(input));
+        return node == null || node.word < 0 ? null : words[node.word];
+    }
+
+    // -------------------- 私有方法 --------------------
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private Node freeze(Builder builder) {
+        Node node = new Node();
+        node.word = builder.word;
+        int n = builder.children.size();
+        if (n > 0) {
+            node.labels = new char[n];
+            node.children = new Node[n];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : builder.children.entrySet()) {
+                node.labels[i] = entry.getKey();
+                node.children[i] = freeze(entry.getValue());
+                i++;
+            }
+        }
+
+        // 合并自身与子节点的前K个
+        List<Integer> candidates = new ArrayList<>();
+        if (node.word >= 0) {
+            candidates.add(node.word);
+        }
+        for (Node child : node.children) {
+            for (int word : child.top) {
+                candidates.add(word);
+            }
+        }
+        candidates.sort((a, b) -> weights[a] != weights[b]
+                ? Long.compare(weights[b], weights[a])
+                : words[a].compareTo(words[b]));
+        node.top = candidates.stream().limit(TOP_K).mapToInt(Integer::intValue).toArray();
+        return node;
+    }
+
+    private static String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(input.length());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+}
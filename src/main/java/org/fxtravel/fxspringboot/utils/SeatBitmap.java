@@ -0,0 +1,437 @@
+package org.fxtravel.fxspringboot.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 座位分配的编码格式与解码后的区间位图
+ * 编码（版本1）：
+ *   魔数0xFA | 版本号 | 座位数(varint) | 区间数(varint) | 容器类型 | 容器数据
+ *   RAW ：每个区间ceil(座位数 / 8)字节的位图，按区间依次拼接
+ *   RUNS：游程数(varint)，随后每个游程为(与上一游程末尾的间隔, 长度)两个varint，
+ *         位置按 区间 * 座位数 + 座位索引 展开，只记录已占用的座位
+ * 编码时选择较短的容器，空闲或接近售罄的座次只需几个字节。
+ * 不满足上述格式的数据按旧格式解析：每64字节一个区间、每区间512个座位的原始位图。
+ * 解码后每个区间占stride个64位字，第s个区间的第i个座位对应第(s * stride * 64 + i)位。
+ */
+public class SeatBitmap {
+    public static final byte MAGIC = (byte) 0xFA;
+    public static final byte VERSION = 1;
+    public static final byte RAW = 0;
+    public static final byte RUNS = 1;
+    // 旧格式每个区间的字节数
+    public static final int LEGACY_SEGMENT_BYTES = 64;
+    // 解析上限，防止损坏的数据申请过大的内存
+    public static final int MAX_CAPACITY = 1 << 16;
+    public static final int MAX_SEGMENTS = 1 << 10;
+
+    private final int capacity;
+    private final int segments;
+    private final int stride;
+    private final long[] words;
+
+    public SeatBitmap(int capacity, int segments, long[] words) {
+        this.capacity = capacity;
+        this.segments = segments;
+        this.stride = strideOf(capacity);
+        this.words = words;
+    }
+
+    public static SeatBitmap empty(int capacity, int segments) {
+        return new SeatBitmap(capacity, segments, new long[strideOf(capacity) * segments]);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int segments() {
+        return segments;
+    }
+
+    // 每个区间占用的64位字数
+    public int stride() {
+        return stride;
+    }
+
+    public long[] words() {
+        return words;
+    }
+
+    public SeatBitmap copy() {
+        return new SeatBitmap(capacity, segments, words.clone());
+    }
+
+    /**
+     * 扩展为指定的区间数，单区间视为整趟占用，复制到每个区间
+     * @return 区间数不兼容时返回null
+     */
+    public SeatBitmap widen(int segments) {
+        if (segments == this.segments) {
+            return this;
+        }
+        if (this.segments != 1 || segments < 1) {
+            return null;
+        }
+
+        long[] widened = new long[stride * segments];
+        for (int s = 0; s < segments; s++) {
+            System.arraycopy(words, 0, widened, s * stride, stride);
+        }
+        return new SeatBitmap(capacity, segments, widened);
+    }
+
+    // 第from到第to个区间（不含to）的占用情况
+    public long[] occupancy(int from, int to) {
+        return occupancy(words, stride, from, to);
+    }
+
+    static long[] occupancy(long[] words, int stride, int from, int to) {
+        long[] result = new long[stride];
+        for (int s = from; s < to; s++) {
+            int base = s * stride;
+            for (int w = 0; w < stride; w++) {
+                result[w] |= words[base + w];
+            }
+        }
+        return result;
+    }
+
+    // 座位在第from到第to个区间（不含to）上是否全部处于占用状态
+    public boolean isOccupied(int from, int to, int index) {
+        if (index < 0 || index >= capacity || from >= to) {
+            return false;
+        }
+        for (int s = from; s < to; s++) {
+            int bit = s * stride * 64 + index;
+            if ((words[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void set(int from, int to, int[] indexes) {
+        for (int s = from; s < to; s++) {
+            for (int index : indexes) {
+                if (index >= 0 && index < capacity) {
+                    int bit = s * stride * 64 + index;
+                    words[bit >>> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+    }
+
+    public void clear(int from, int to, int[] indexes) {
+        for (int s = from; s < to; s++) {
+            for (int index : indexes) {
+                if (index >= 0 && index < capacity) {
+                    int bit = s * stride * 64 + index;
+                    words[bit >>> 6] &= ~(1L << (bit & 63));
+                }
+            }
+        }
+    }
+
+    // 在所有区间上都空闲的座位数
+    public int countFullyFree(int[] indexes) {
+        long[] used = occupancy(0, segments);
+        int free = 0;
+        for (int index : indexes) {
+            if (index >= 0 && index < capacity && (used[index >>> 6] & (1L << (index & 63))) == 0) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    // -------------------- 编码 --------------------
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarint(out, capacity);
+        writeVarint(out, segments);
+
+        // 展开后的已占用游程
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int runCount = 0;
+        long runStart = -1;
+        long runEnd = -1;
+        long previousEnd = 0;
+        for (int s = 0; s < segments; s++) {
+            for (int w = 0; w < stride; w++) {
+                long bits = words[s * stride + w];
+                while (bits != 0) {
+                    long position = (long) s * capacity + (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (position == runEnd) {
+                        runEnd++;
+                        continue;
+                    }
+                    if (runStart >= 0) {
+                        writeVarint(runs, (int) (runStart - previousEnd));
+                        writeVarint(runs, (int) (runEnd - runStart));
+                        previousEnd = runEnd;
+                        runCount++;
+                    }
+                    runStart = position;
+                    runEnd = position + 1;
+                }
+            }
+        }
+        if (runStart >= 0) {
+            writeVarint(runs, (int) (runStart - previousEnd));
+            writeVarint(runs, (int) (runEnd - runStart));
+            runCount++;
+        }
+
+        int segmentBytes = (capacity + 7) >>> 3;
+        if (varintSize(runCount) + runs.size() < segmentBytes * segments) {
+            out.write(RUNS);
+            writeVarint(out, runCount);
+            out.writeBytes(runs.toByteArray());
+        } else {
+            out.write(RAW);
+            for (int s = 0; s < segments; s++) {
+                for (int k = 0; k < segmentBytes; k++) {
+                    out.write((int) (words[s * stride + (k >>> 3)] >>> ((k & 7) << 3)));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // -------------------- 解码 --------------------
+    /**
+     * 解码座位分配，不是新格式时按旧格式的原始位图解析
+     * @return data为null时返回null
+     */
+    public static SeatBitmap decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        SeatBitmap decoded = parse(data);
+        return decoded != null ? decoded : legacy(data);
+    }
+
+    // 不解码整个位图，直接读取编码中的座位数，无法识别时返回-1
+    public static int capacity(byte[] data) {
+        Header header = header(data);
+        return header != null ? header.capacity : data == null ? -1 : legacySegmentBits(data);
+    }
+
+    // 不解码整个位图，直接读取编码中的区间数，无法识别时返回0
+    public static int segments(byte[] data) {
+        Header header = header(data);
+        return header != null ? header.segments : data == null ? 0 : legacySegments(data);
+    }
+
+    /**
+     * 不解码整个位图，直接在编码上判断第segment个区间的第index个座位是否已占用
+     */
+    public static boolean isOccupied(byte[] data, int segment, int index) {
+        Header header = header(data);
+        if (header == null) {
+            if (data == null) {
+                return false;
+            }
+            int bits = legacySegmentBits(data);
+            if (index < 0 || index >= bits || segment < 0 || segment >= legacySegments(data)) {
+                return false;
+            }
+            int bit = segment * bits + index;
+            return (data[bit >>> 3] & (1 << (bit & 7))) != 0;
+        }
+        if (index < 0 || index >= header.capacity || segment < 0 || segment >= header.segments) {
+            return false;
+        }
+
+        if (header.type == RAW) {
+            int offset = header.offset + segment * ((header.capacity + 7) >>> 3) + (index >>> 3);
+            return (data[offset] & (1 << (index & 7))) != 0;
+        }
+        long position = (long) segment * header.capacity + index;
+        Reader reader = new Reader(data, header.offset);
+        int count = reader.varint();
+        long end = 0;
+        for (int i = 0; i < count; i++) {
+            long start = end + reader.varint();
+            end = start + reader.varint();
+            if (position < start) {
+                return false;
+            }
+            if (position < end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // -------------------- 私有方法 --------------------
+    private static int strideOf(int capacity) {
+        return Math.max(1, (capacity + 63) >>> 6);
+    }
+
+    private static int legacySegments(byte[] raw) {
+        return raw.length >= LEGACY_SEGMENT_BYTES && raw.length % LEGACY_SEGMENT_BYTES == 0
+                ? raw.length / LEGACY_SEGMENT_BYTES : 1;
+    }
+
+    private static int legacySegmentBits(byte[] raw) {
+        return raw.length * 8 / legacySegments(raw);
+    }
+
+    private static SeatBitmap legacy(byte[] raw) {
+        int segments = legacySegments(raw);
+        int capacity = legacySegmentBits(raw);
+        SeatBitmap bitmap = empty(capacity, segments);
+        for (int i = 0; i < raw.length; i++) {
+            int b = raw[i] & 0xFF;
+            while (b != 0) {
+                int position = (i << 3) + Integer.numberOfTrailingZeros(b);
+                b &= b - 1;
+                int bit = position / capacity * bitmap.stride * 64 + position % capacity;
+                bitmap.words[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+        return bitmap;
+    }
+
+    private static final class Header {
+        int capacity;
+        int segments;
+        byte type;
+        int offset;     // 容器数据的起始位置
+    }
+
+    // 解析并严格校验整个编码，不合法时返回null
+    private static Header header(byte[] data) {
+        if (data == null || data.length < 5 || data[0] != MAGIC || data[1] != VERSION) {
+            return null;
+        }
+        Reader reader = new Reader(data, 2);
+        Header header = new Header();
+        header.capacity = reader.varint();
+        header.segments = reader.varint();
+        if (header.capacity < 0 || header.capacity > MAX_CAPACITY
+                || header.segments < 1 || header.segments > MAX_SEGMENTS || reader.position >= data.length) {
+            return null;
+        }
+        header.type = data[reader.position++];
+        header.offset = reader.position;
+
+        long total = (long) header.capacity * header.segments;
+        if (header.type == RAW) {
+            int segmentBytes = (header.capacity + 7) >>> 3;
+            if (data.length - header.offset != segmentBytes * header.segments) {
+                return null;
+            }
+            // 每个区间末尾的填充位必须为0
+            int tail = header.capacity & 7;
+            if (tail != 0) {
+                for (int s = 1; s <= header.segments; s++) {
+                    if ((data[header.offset + s * segmentBytes - 1] & 0xFF) >>> tail != 0) {
+                        return null;
+                    }
+                }
+            }
+            return header;
+        }
+        if (header.type == RUNS) {
+            int count = reader.varint();
+            if (count < 0) {
+                return null;
+            }
+            long end = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = reader.varint();
+                int length = reader.varint();
+                // 游程之间至少间隔一位，长度至少为1
+                if (gap < 0 || length < 1 || i > 0 && gap == 0) {
+                    return null;
+                }
+                end += gap + (long) length;
+                if (end > total) {
+                    return null;
+                }
+            }
+            return reader.position == data.length ? header : null;
+        }
+        return null;
+    }
+
+    private static SeatBitmap parse(byte[] data) {
+        Header header = header(data);
+        if (header == null) {
+            return null;
+        }
+
+        SeatBitmap bitmap = empty(header.capacity, header.segments);
+        if (header.type == RAW) {
+            int segmentBytes = (header.capacity + 7) >>> 3;
+            for (int s = 0; s < header.segments; s++) {
+                for (int k = 0; k < segmentBytes; k++) {
+                    long b = data[header.offset + s * segmentBytes + k] & 0xFFL;
+                    bitmap.words[s * bitmap.stride + (k >>> 3)] |= b << ((k & 7) << 3);
+                }
+            }
+            return bitmap;
+        }
+
+        Reader reader = new Reader(data, header.offset);
+        int count = reader.varint();
+        long position = 0;
+        for (int i = 0; i < count; i++) {
+            position += reader.varint();
+            long end = position + reader.varint();
+            for (; position < end; position++) {
+                int bit = (int) (position / header.capacity) * bitmap.stride * 64 + (int) (position % header.capacity);
+                bitmap.words[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+        return bitmap;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // 顺序读取varint，数据截断或超出int范围时返回-1
+    private static final class Reader {
+        final byte[] data;
+        int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= data.length) {
+                    return -1;
+                }
+                int b = data[position++] & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value < 0 ? -1 : value;
+                }
+            }
+            return -1;
+        }
+    }
+}
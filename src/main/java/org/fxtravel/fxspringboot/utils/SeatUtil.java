@@ -1,37 +1,146 @@
 package org.fxtravel.fxspringboot.utils;
 
-import org.fxtravel.fxspringboot.common.SeatType;
-
+/**
+ * 座位位图工具
+ * 第i个座位对应位图第i位，1表示已占用。
+ * 设置了经停站的列车按区间存储，第s个区间（第s站到第s+1站）的位图依次拼接，
+ * 入库的编码格式见SeatBitmap，byte[]参数均为该编码（兼容旧的原始位图）。
+ * 所有扫描均按64位字进行，一次跳过整字的已占用座位。
+ */
 public class SeatUtil {
-    public static Integer nextAvailable(byte[] seatAllocation) {
-        if (seatAllocation == null) {
+    // 每个字母对应的座位数
+    public static final int GROUP_SIZE = 20;
+    private static final int GROUP_MASK = (1 << GROUP_SIZE) - 1;
+
+    public static int nextAvailable(byte[] seatAllocation) {
+        SeatBitmap bitmap = SeatBitmap.decode(seatAllocation);
+        if (bitmap == null) {
             return -1;
         }
 
-        for (int i = 0; i < seatAllocation.length * 8; i++) {
-            int byteIndex = i / 8;
-            int bitIndex = i % 8;
-            byte currentByte = seatAllocation[byteIndex];
+        return nextAvailable(bitmap.occupancy(0, bitmap.segments()), bitmap.capacity());
+    }
+
+    public static int nextAvailable(long[] words, int capacity) {
+        for (int w = 0; w < words.length; w++) {
+            long free = ~words[w];
+            if (free != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(free);
+                return index < capacity ? index : -1;
+            }
+        }
+        return -1;
+    }
+
+    // 统计空闲座位数
+    public static int countAvailable(long[] words, int capacity) {
+        int occupied = 0;
+        int full = capacity >>> 6;
+        for (int w = 0; w < full && w < words.length; w++) {
+            occupied += Long.bitCount(words[w]);
+        }
+        int tail = capacity & 63;
+        if (tail != 0 && full < words.length) {
+            occupied += Long.bitCount(words[full] & ((1L << tail) - 1));
+        }
+        return capacity - occupied;
+    }
+
+    // 实际可售座位数：已占用座位加上余量，座位号从索引0开始连续编排
+    public static int sellableCapacity(long[] words, int bits, int remain) {
+        return Math.min(bits, bits - countAvailable(words, bits) + Math.max(remain, 0));
+    }
+
+    /**
+     * 一次扫描分配多个座位（不修改位图）
+     * 优先选择同一字母组内连续的座位，其次选择同一字母组内的座位，最后按顺序填充。
+     * @return 选中的座位索引（升序），空闲座位不足时返回null
+     */
+    public static int[] allocate(long[] words, int capacity, int count) {
+        if (count < 1 || countAvailable(words, capacity) < count) {
+            return null;
+        }
+
+        int groups = (capacity + GROUP_SIZE - 1) / GROUP_SIZE;
+        int bestGroup = -1;
+        int bestFree = Integer.MAX_VALUE;
+        if (count <= GROUP_SIZE) {
+            for (int g = 0; g < groups; g++) {
+                int free = freeMask(words, capacity, g);
+                if (free == 0) {
+                    continue;
+                }
+                // 连续空位的起点：free & (free >> 1) & ... 共count项
+                int starts = free;
+                for (int k = 1; k < count && starts != 0; k++) {
+                    starts &= free >>> k;
+                }
+                if (starts != 0) {
+                    return run(g * GROUP_SIZE + Integer.numberOfTrailingZeros(starts), count);
+                }
+                // 记录能容纳全部乘客且空位最少的组，减少碎片
+                int freeCount = Integer.bitCount(free);
+                if (freeCount >= count && freeCount < bestFree) {
+                    bestGroup = g;
+                    bestFree = freeCount;
+                }
+            }
+        }
 
-            // 检查当前位是否为0（可用）
-            if ((currentByte & (1 << bitIndex)) == 0) {
-                return i;
+        int[] result = new int[count];
+        if (bestGroup >= 0) {
+            int free = freeMask(words, capacity, bestGroup);
+            for (int i = 0; i < count; i++) {
+                int bit = Integer.numberOfTrailingZeros(free);
+                result[i] = bestGroup * GROUP_SIZE + bit;
+                free &= free - 1;
             }
+            return result;
         }
 
-        return -1; // 没有找到空闲座位
+        // 按顺序填充
+        int n = 0;
+        for (int w = 0; w < words.length && n < count; w++) {
+            long free = ~words[w];
+            while (free != 0 && n < count) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(free);
+                if (index >= capacity) {
+                    break;
+                }
+                result[n++] = index;
+                free &= free - 1;
+            }
+        }
+        return result;
     }
 
+    /**
+     * 座位序号转换为座位号：每20个座位为一组，组号用字母表示（A-Z，之后为AA、AB……），后接两位的组内序号
+     * 前520个座位的座位号与原来相同，座位数不受字母个数的限制
+     */
     public static String idx2number(int index) {
-        // 每20个座位为一组，使用同一个字母
-        int group = index / 20;
-        int seatInGroup = index % 20 + 1; // 转换为1-20
-        // 确定起始字母
+        if (index < 0) {
+            throw new IllegalArgumentException("座位序号不能为负数: " + index);
+        }
+        int group = index / GROUP_SIZE;
+        int seatInGroup = index % GROUP_SIZE + 1; // 转换为1-20
+        // 组号按双射26进制转换为字母：0 -> A，25 -> Z，26 -> AA
+        int letters = 1;
+        for (int n = group / 26; n > 0; n = (n - 1) / 26) {
+            letters++;
+        }
+        char[] buf = new char[letters + 2];
         char baseChar = getBaseChar();
-        // 计算字母部分
-        char seatChar = (char)(baseChar + group);
+        int n = group + 1;
+        for (int i = letters - 1; i >= 0; i--) {
+            n--;
+            buf[i] = (char) (baseChar + n % 26);
+            n /= 26;
+        }
         // 格式化数字部分为两位数
-        return String.format("%c%02d", seatChar, seatInGroup);
+        buf[letters] = (char) ('0' + seatInGroup / 10);
+        buf[letters + 1] = (char) ('0' + seatInGroup % 10);
+        return new String(buf);
     }
 
     public static int number2idx(String seatNumber) {
@@ -40,26 +149,31 @@ public class SeatUtil {
         }
 
         // 获取字母部分
-        char seatChar = seatNumber.charAt(0);
-        // 获取数字部分
-        String numberStr = seatNumber.substring(1);
-
-        try {
-            int seatInGroup = Integer.parseInt(numberStr);
-            if (seatInGroup < 1 || seatInGroup > 20) {
+        char baseChar = getBaseChar();
+        int letters = 0;
+        long group = 0;
+        while (letters < seatNumber.length() && seatNumber.charAt(letters) >= baseChar
+                && seatNumber.charAt(letters) < baseChar + 26) {
+            group = group * 26 + (seatNumber.charAt(letters) - baseChar + 1);
+            letters++;
+            if (group > Integer.MAX_VALUE / GROUP_SIZE) {
                 return -1;
             }
+        }
+        if (letters == 0 || letters == seatNumber.length()) {
+            return -1;
+        }
 
-            // 确定起始字母
-            char baseChar = getBaseChar();
-            // 计算组号
-            int group = seatChar - baseChar;
-            if (group < 0) {
+        // 获取数字部分
+        String numberStr = seatNumber.substring(letters);
+        try {
+            int seatInGroup = Integer.parseInt(numberStr);
+            if (seatInGroup < 1 || seatInGroup > GROUP_SIZE) {
                 return -1;
             }
 
             // 计算索引
-            return group * 20 + (seatInGroup - 1);
+            return (int) (group - 1) * GROUP_SIZE + (seatInGroup - 1);
         } catch (NumberFormatException e) {
             return -1;
         }
@@ -69,27 +183,103 @@ public class SeatUtil {
         return 'A';
     }
 
-    // 设置特定位为1
-    public static byte[] setBit(byte[] bytes, int index) {
-        if (bytes == null || index < 0 || index >= bytes.length * 8) {
-            return bytes;
+    // 编码中的区间数，直接读取编码头
+    public static int segments(byte[] seatAllocation) {
+        return SeatBitmap.segments(seatAllocation);
+    }
+
+    // 编码中的座位数，直接读取编码头
+    public static int capacity(byte[] seatAllocation) {
+        return SeatBitmap.capacity(seatAllocation);
+    }
+
+    // 第from到第to个区间（不含to）的占用情况：任一区间已占用即视为占用
+    // stride为每个区间的64位字数
+    public static long[] occupancy(long[] words, int stride, int from, int to) {
+        return SeatBitmap.occupancy(words, stride, from, to);
+    }
+
+    // 判断座位是否已占用，多区间时要求整趟都已占用
+    public static boolean isOccupied(byte[] seatAllocation, int index) {
+        return isOccupied(seatAllocation, 0, SeatBitmap.segments(seatAllocation), index);
+    }
+
+    // 座位在第from到第to个区间（不含to）上是否全部处于占用状态，直接在编码上判断
+    public static boolean isOccupied(byte[] seatAllocation, int from, int to, int index) {
+        if (seatAllocation == null || from >= to) {
+            return false;
+        }
+        for (int s = from; s < to; s++) {
+            if (!SeatBitmap.isOccupied(seatAllocation, s, index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 设置特定位为1，返回新的编码
+    public static byte[] setBit(byte[] seatAllocation, int index) {
+        return setBits(seatAllocation, new int[]{index});
+    }
+
+    // 设置特定位为0，返回新的编码
+    public static byte[] clearBit(byte[] seatAllocation, int index) {
+        return clearBits(seatAllocation, new int[]{index});
+    }
+
+    // 在所有区间上批量设置多个位为1，返回新的编码
+    public static byte[] setBits(byte[] seatAllocation, int[] indexes) {
+        return setBits(seatAllocation, 0, SeatBitmap.segments(seatAllocation), indexes);
+    }
+
+    // 在所有区间上批量设置多个位为0，返回新的编码
+    public static byte[] clearBits(byte[] seatAllocation, int[] indexes) {
+        return clearBits(seatAllocation, 0, SeatBitmap.segments(seatAllocation), indexes);
+    }
+
+    // 在第from到第to个区间（不含to）上批量设置多个座位为1，返回新的编码
+    public static byte[] setBits(byte[] seatAllocation, int from, int to, int[] indexes) {
+        SeatBitmap bitmap = SeatBitmap.decode(seatAllocation);
+        if (bitmap == null) {
+            return seatAllocation;
         }
+        bitmap.set(from, to, indexes);
+        return bitmap.encode();
+    }
 
-        int byteIndex = index / 8;
-        int bitIndex = index % 8;
-        bytes[byteIndex] |= (byte) (1 << bitIndex);
-        return bytes;
+    // 在第from到第to个区间（不含to）上批量设置多个座位为0，返回新的编码
+    public static byte[] clearBits(byte[] seatAllocation, int from, int to, int[] indexes) {
+        SeatBitmap bitmap = SeatBitmap.decode(seatAllocation);
+        if (bitmap == null) {
+            return seatAllocation;
+        }
+        bitmap.clear(from, to, indexes);
+        return bitmap.encode();
     }
 
-    // 设置特定位为0
-    public static byte[] clearBit(byte[] bytes, int index) {
-        if (bytes == null || index < 0 || index >= bytes.length * 8) {
-            return bytes;
+    // -------------------- 私有方法 --------------------
+    // 取出第group组（20位）的空闲掩码，可能跨越两个字
+    private static int freeMask(long[] words, int capacity, int group) {
+        int start = group * GROUP_SIZE;
+        int w = start >>> 6;
+        int shift = start & 63;
+        long bits = words[w] >>> shift;
+        if (shift + GROUP_SIZE > 64 && w + 1 < words.length) {
+            bits |= words[w + 1] << (64 - shift);
         }
+        int free = (int) ~bits & GROUP_MASK;
+        int valid = capacity - start;
+        if (valid < GROUP_SIZE) {
+            free &= (1 << valid) - 1;
+        }
+        return free;
+    }
 
-        int byteIndex = index / 8;
-        int bitIndex = index % 8;
-        bytes[byteIndex] &= (byte) ~(1 << bitIndex);
-        return bytes;
+    private static int[] run(int start, int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = start + i;
+        }
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,273 @@
+package org.fxtravel.fxspringboot.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 哈希时间轮，用于大量短期超时任务
+ * 轮盘有2的幂个槽，每个tick前进一格；到期时间超出一圈的任务记录剩余圈数，每经过一次减一。
+ * 添加与取消都是O(1)：调用方只把任务放入无锁队列或修改状态，由唯一的工作线程在每个tick
+ * 把新任务挂入槽位、把已取消的任务从槽位的双向链表中摘除，因此槽位不需要加锁。
+ * 到期的任务交给executor执行，工作线程不会被任务阻塞。
+ * 工作线程在第一次添加任务时启动，精度为一个tick。
+ */
+public final class TimingWheel {
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+
+    // 每个tick最多挂入的新任务数，避免添加过快时工作线程无法前进
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long startTime;
+    private Thread worker;
+    private long tick;      // 只由工作线程访问
+
+    /**
+     * 一个超时任务
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel timer;
+        private final Runnable task;
+        private final long deadline;        // 相对于时间轮启动时间的纳秒数
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // 以下字段只由工作线程访问
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消尚未到期的任务
+         * @return 任务已到期或已取消时返回false
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(WAITING, EXPIRED)) {
+                timer.expired.incrementAndGet();
+                timer.executor.execute(task);
+            }
+        }
+    }
+
+    // 一个槽位：Timeout组成的双向链表
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            timeout.timer.pending.decrementAndGet();
+            return next;
+        }
+
+        // 剩余圈数为0的任务到期，交给executor；其余的剩余圈数减一
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0) {
+                    Timeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tick 每格的时长
+     * @param wheelSize 槽数，向上取整为2的幂
+     * @param executor 执行到期任务
+     */
+    public TimingWheel(long tick, TimeUnit unit, int wheelSize, Executor executor) {
+        if (tick <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tick和wheelSize必须大于0");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+    }
+
+    /**
+     * 添加一个在delay之后执行的任务
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        if (state.get() == STOPPED) {
+            throw new IllegalStateException("时间轮已停止");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 停止工作线程，未到期的任务不再执行
+     */
+    public void stop() {
+        if (state.getAndSet(STOPPED) == STARTED) {
+            worker.interrupt();
+        }
+    }
+
+    // 尚未到期也未被摘除的任务数
+    public long size() {
+        return pending.get();
+    }
+
+    public long expiredCount() {
+        return expired.get();
+    }
+
+    // -------------------- 私有方法 --------------------
+    private void start() {
+        if (state.get() != INIT || !state.compareAndSet(INIT, STARTED)) {
+            // 其他线程正在启动时等待startTime就绪
+            while (startTime == 0 && state.get() == STARTED) {
+                Thread.onSpinWait();
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        // startTime为0表示尚未启动
+        startTime = now == 0 ? 1 : now;
+        worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void run() {
+        while (state.get() == STARTED) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            processCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    // 睡眠到当前tick结束，被停止时返回false
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepMs = (deadline - (System.nanoTime() - startTime) + 999_999) / 1_000_000;
+            if (sleepMs <= 0) {
+                return true;
+            }
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                if (state.get() == STOPPED) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放入当前槽位，本tick即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            // 尚未挂入槽位的任务在transferAdded中跳过
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+-- 基线表结构，与实体类一一对应
+-- 已有数据库由ddl-auto建表，按版本0建立基线后执行本脚本，IF NOT EXISTS保证不会重复建表
+
+CREATE TABLE IF NOT EXISTS user (
+    id       INT NOT NULL AUTO_INCREMENT,
+    email    VARCHAR(255),
+    password VARCHAR(255),
+    verified BOOLEAN NOT NULL DEFAULT FALSE,
+    username VARCHAR(255),
+    gender   VARCHAR(32),
+    role     VARCHAR(32),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS verification_code (
+    id      BIGINT NOT NULL AUTO_INCREMENT,
+    code    VARCHAR(255),
+    user_id INT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS payment (
+    id              INT NOT NULL AUTO_INCREMENT,
+    order_number    VARCHAR(255) NOT NULL,
+    user_id         INT,
+    type            VARCHAR(32),
+    status          VARCHAR(32),
+    amount          DOUBLE,
+    payment_time    DATETIME(6),
+    related_id      INT,
+    timeout_seconds BIGINT,
+    quantity        INT,
+    good_id         INT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS notification (
+    id               VARCHAR(36) NOT NULL,
+    user_id          INT NOT NULL,
+    event_type       VARCHAR(20) NOT NULL,
+    content          TEXT NOT NULL,
+    channel          VARCHAR(10) NOT NULL,
+    status           VARCHAR(10) NOT NULL,
+    create_time      DATETIME(6) NOT NULL,
+    update_time      DATETIME(6),
+    related_order_id VARCHAR(36),
+    is_read          BOOLEAN NOT NULL DEFAULT FALSE,
+    retry_count      INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train (
+    id               INT NOT NULL AUTO_INCREMENT,
+    train_number     VARCHAR(255),
+    train_type       VARCHAR(32),
+    from_station     VARCHAR(255),
+    to_station       VARCHAR(255),
+    departure_time   DATETIME(6),
+    arrival_time     DATETIME(6),
+    duration_minutes INT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train_stop (
+    id             INT NOT NULL AUTO_INCREMENT,
+    train_id       INT NOT NULL,
+    stop_index     INT NOT NULL,
+    station        VARCHAR(255) NOT NULL,
+    arrival_time   DATETIME(6),
+    departure_time DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train_seat (
+    id              INT NOT NULL AUTO_INCREMENT,
+    train_id        INT,
+    seat_type       VARCHAR(32) NOT NULL,
+    price           DOUBLE NOT NULL,
+    remain          INT NOT NULL,
+    seat_allocation BLOB,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train_seat_order (
+    id                 INT NOT NULL AUTO_INCREMENT,
+    order_number       VARCHAR(255),
+    user_id            INT,
+    train_id           INT,
+    train_seat_id      INT,
+    seat_number        VARCHAR(255),
+    from_station       VARCHAR(255),
+    to_station         VARCHAR(255),
+    related_payment_id INT,
+    total_amount       DOUBLE,
+    status             VARCHAR(32),
+    create_time        DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train_meal (
+    id          INT NOT NULL AUTO_INCREMENT,
+    train_id    INT,
+    name        VARCHAR(255),
+    description VARCHAR(255),
+    image       VARCHAR(255),
+    meal_time   VARCHAR(32),
+    price       DOUBLE,
+    remain      INT,
+    enabled     BOOLEAN,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS train_meal_order (
+    id                 INT NOT NULL AUTO_INCREMENT,
+    order_number       VARCHAR(255),
+    user_id            INT NOT NULL,
+    seat_order_id      INT NOT NULL,
+    train_meal_id      INT NOT NULL,
+    related_payment_id INT,
+    quantity           INT NOT NULL,
+    total_amount       DOUBLE NOT NULL,
+    status             VARCHAR(32),
+    create_time        DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS hotel (
+    id          INT NOT NULL AUTO_INCREMENT,
+    name        VARCHAR(255) NOT NULL,
+    destination VARCHAR(255) NOT NULL,
+    address     VARCHAR(255) NOT NULL,
+    rating      DOUBLE,
+    description TEXT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS room (
+    id              INT NOT NULL AUTO_INCREMENT,
+    hotel_id        INT,
+    type_id         INT,
+    name            VARCHAR(50) NOT NULL,
+    remain          INT NOT NULL,
+    price_per_night DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS room_order (
+    id                 INT NOT NULL AUTO_INCREMENT,
+    order_number       VARCHAR(255),
+    user_id            INT NOT NULL,
+    hotel_id           INT NOT NULL,
+    room_id            INT NOT NULL,
+    check_in_date      DATE NOT NULL,
+    check_out_date     DATE NOT NULL,
+    status             VARCHAR(32) NOT NULL,
+    total_amount       DOUBLE NOT NULL,
+    create_time        DATETIME(6) NOT NULL,
+    related_payment_id INT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS test_obj (
+    id           INT NOT NULL AUTO_INCREMENT,
+    string_value VARCHAR(255),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,27 @@
+-- 各Mapper查询使用的索引与唯一约束，MapperIndexTest对每条@Select执行EXPLAIN校验
+
+-- 支付状态流转按订单号查询与更新
+CREATE UNIQUE INDEX uk_payment_order_number ON payment (order_number);
+CREATE INDEX idx_payment_type_status ON payment (type, status);
+
+-- 车次查询按车站对与出发时间
+CREATE INDEX idx_train_route ON train (from_station, to_station, departure_time);
+CREATE UNIQUE INDEX uk_train_stop_train_index ON train_stop (train_id, stop_index);
+-- 每趟列车每种座次只有一条记录
+CREATE UNIQUE INDEX uk_train_seat_train_type ON train_seat (train_id, seat_type);
+CREATE INDEX idx_train_seat_order_user ON train_seat_order (user_id);
+CREATE INDEX idx_train_seat_order_number ON train_seat_order (order_number);
+
+CREATE INDEX idx_train_meal_train ON train_meal (train_id);
+CREATE INDEX idx_train_meal_order_user ON train_meal_order (user_id);
+CREATE INDEX idx_train_meal_order_seat_order ON train_meal_order (seat_order_id);
+
+CREATE INDEX idx_hotel_destination ON hotel (destination, rating);
+CREATE INDEX idx_room_hotel ON room (hotel_id, type_id);
+CREATE INDEX idx_room_order_user ON room_order (user_id);
+
+CREATE INDEX idx_notification_user_time ON notification (user_id, create_time);
+CREATE INDEX idx_notification_status_time ON notification (status, create_time);
+
+CREATE UNIQUE INDEX uk_user_email ON user (email);
+CREATE INDEX idx_verification_code ON verification_code (code);
@@ -0,0 +1,11 @@
+-- 房型按晚的库存日历：每个房型每月一行，sold为当月每晚的已售间数（每晚2字节，大端）
+-- 每晚可售间数为room.remain，下单时按入住区间逐晚扣减
+CREATE TABLE IF NOT EXISTS room_calendar (
+    id         INT NOT NULL AUTO_INCREMENT,
+    room_id    INT NOT NULL,
+    stay_month CHAR(7) NOT NULL,
+    sold       VARBINARY(62) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE UNIQUE INDEX uk_room_calendar_room_month ON room_calendar (room_id, stay_month);
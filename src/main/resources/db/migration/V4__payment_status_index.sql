@@ -0,0 +1,2 @@
+-- 启动时按状态分批读取待支付的订单，恢复支付超时任务
+CREATE INDEX idx_payment_status ON payment (status, id);
@@ -0,0 +1,20 @@
+-- 支付的超时时间：未开启(IDLE)的支付为创建时间加上放弃时限，待支付(PENDING)的支付为payment_time + timeout_seconds
+-- 清理任务按(status, expire_time)分批读取已超时的支付
+ALTER TABLE payment ADD COLUMN expire_time DATETIME(6);
+
+UPDATE payment SET expire_time = TIMESTAMPADD(SECOND, timeout_seconds, payment_time)
+WHERE status = 'PENDING' AND payment_time IS NOT NULL AND timeout_seconds IS NOT NULL;
+UPDATE payment SET expire_time = CURRENT_TIMESTAMP
+WHERE status IN ('IDLE', 'PENDING') AND expire_time IS NULL;
+
+CREATE INDEX idx_payment_status_expire ON payment (status, expire_time, id);
+
+-- 多实例间的定时任务租约：同一时刻只有持有租约的实例执行对应任务，租约过期后其他实例可以接管
+CREATE TABLE IF NOT EXISTS scheduler_lease (
+    name        VARCHAR(64) NOT NULL,
+    owner       VARCHAR(128),
+    lease_until DATETIME(6) NOT NULL,
+    PRIMARY KEY (name)
+);
+
+INSERT INTO scheduler_lease (name, owner, lease_until) VALUES ('payment-sweeper', NULL, '1970-01-01 00:00:00');
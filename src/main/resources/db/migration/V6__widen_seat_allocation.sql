@@ -0,0 +1,3 @@
+-- 早期的train_seat.seat_allocation为固定长度的BINARY列，放不下变长的SeatBitmap编码
+-- 新建的库在V1中已经是BLOB，这里对按基线接入的旧库统一放宽；旧的原始位图仍可直接解析，写入时转换为新编码
+ALTER TABLE train_seat MODIFY seat_allocation BLOB NULL;
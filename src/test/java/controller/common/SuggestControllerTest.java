@@ -0,0 +1,56 @@
+package controller.common;
+
+import org.fxtravel.fxspringboot.controller.common.SuggestController;
+import org.fxtravel.fxspringboot.service.inter.common.SuggestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestControllerTest {
+
+    private SuggestController controller;
+    private SuggestService suggestService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        controller = new SuggestController();
+        suggestService = Mockito.mock(SuggestService.class);
+
+        var field = SuggestController.class.getDeclaredField("suggestService");
+        field.setAccessible(true);
+        field.set(controller, suggestService);
+    }
+
+    // 正向：车站补全，条数截断到TOP_K
+    @Test
+    public void testSuggestStation_success() {
+        Mockito.when(suggestService.suggestStations("北", 10)).thenReturn(List.of("北京南", "北京"));
+
+        ResponseEntity<?> resp = controller.suggest("station", "北", 100);
+        assertEquals(200, resp.getStatusCodeValue());
+        assertEquals(List.of("北京南", "北京"), resp.getBody());
+    }
+
+    // 正向：目的地补全
+    @Test
+    public void testSuggestDestination_success() {
+        Mockito.when(suggestService.suggestDestinations("杭", 5)).thenReturn(List.of("杭州"));
+
+        ResponseEntity<?> resp = controller.suggest("destination", "杭", 5);
+        assertEquals(List.of("杭州"), resp.getBody());
+    }
+
+    // 反向：不支持的类型
+    @Test
+    public void testSuggest_unknownType() {
+        ResponseEntity<?> resp = controller.suggest("airport", "北", 10);
+        assertEquals(400, resp.getStatusCodeValue());
+        assertTrue(((Map<?, ?>) resp.getBody()).containsKey("error"));
+    }
+}
@@ -2,8 +2,10 @@ package controller.hotel;
 
 import jakarta.servlet.http.HttpSession;
 import org.fxtravel.fxspringboot.controller.hotel.HotelController;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.HotelSearchResult;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.SearchHotelRequest;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.entities.User;
 import org.fxtravel.fxspringboot.service.inter.hotel.HotelService;
 import org.fxtravel.fxspringboot.utils.AuthUtil;
@@ -13,12 +15,14 @@ import org.mockito.Mockito;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class HotelControllerTest {
@@ -48,13 +52,34 @@ public class HotelControllerTest {
         when(bindingResult.hasErrors()).thenReturn(false);
 
         List<HotelSearchResult> results = Collections.singletonList(new HotelSearchResult());
-        when(hotelService.searchHotels(anyString(), anyString())).thenReturn(results);
+        when(hotelService.searchHotels(anyString(), anyString(), any(), any(), isNull())).thenReturn(new SearchPage<>(results, "next"));
 
         ResponseEntity<?> response = hotelController.searchHotel(req, bindingResult, session);
         assertEquals(200, response.getStatusCodeValue());
         Map<?, ?> body = (Map<?, ?>) response.getBody();
         assertEquals("查询成功", body.get("message"));
         assertEquals(results, body.get("data"));
+        assertEquals("next", body.get("nextCursor"));
+    }
+
+    // 正向：给出入住区间时按区间查询可订间数
+    @Test
+    public void testSearchHotel_withStayDates() {
+        SearchHotelRequest req = new SearchHotelRequest();
+        req.setDestination("北京");
+        req.setNamePattern("豪华");
+        req.setCheckInDate(LocalDate.of(2024, 7, 30));
+        req.setCheckOutDate(LocalDate.of(2024, 8, 2));
+
+        when(session.getAttribute("user")).thenReturn(new User());
+        when(bindingResult.hasErrors()).thenReturn(false);
+        StayClaim stay = new StayClaim(LocalDate.of(2024, 7, 30), LocalDate.of(2024, 8, 2));
+        when(hotelService.searchHotels("北京", "豪华", null, null, stay))
+                .thenReturn(new SearchPage<>(Collections.emptyList(), null));
+
+        ResponseEntity<?> response = hotelController.searchHotel(req, bindingResult, session);
+        assertEquals(200, response.getStatusCodeValue());
+        verify(hotelService).searchHotels("北京", "豪华", null, null, stay);
     }
 
     // 反向：参数校验失败
@@ -100,7 +125,7 @@ public class HotelControllerTest {
         when(session.getAttribute("user")).thenReturn(user);
         when(bindingResult.hasErrors()).thenReturn(false);
 
-        when(hotelService.searchHotels(anyString(), anyString()))
+        when(hotelService.searchHotels(anyString(), anyString(), any(), any(), isNull()))
                 .thenThrow(new RuntimeException("数据库连接失败"));
 
         ResponseEntity<?> response = hotelController.searchHotel(req, bindingResult, session);
@@ -1,6 +1,7 @@
 package controller.trainmeal;
 
 import jakarta.servlet.http.HttpSession;
+import org.fxtravel.fxspringboot.common.Role;
 import org.fxtravel.fxspringboot.controller.trainmeal.TrainMealController;
 import org.fxtravel.fxspringboot.pojo.entities.User;
 import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
@@ -18,6 +19,8 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -69,4 +72,50 @@ public class TrainMealControllerTest {
 
         assertThrows(RuntimeException.class, () -> controller.getUserMeals(123, session));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetStockStats() {
+        Map<String, Long> stats = Map.of("claims", 3L, "fallbacks", 0L);
+        when(trainMealService.getStockStats()).thenReturn(stats);
+        assertEquals(stats, controller.getStockStats());
+    }
+
+    // 正向：管理员下架餐食，路径中的ID覆盖请求体
+    @Test
+    public void testUpdateMeal_success() {
+        User admin = new User();
+        admin.setRole(Role.ADMIN);
+        when(session.getAttribute("user")).thenReturn(admin);
+        TrainMeal meal = new TrainMeal();
+        meal.setEnabled(false);
+        when(trainMealService.updateMeal(meal)).thenReturn(true);
+
+        ResponseEntity<?> resp = controller.updateMeal(5, meal, session);
+        assertEquals(200, resp.getStatusCodeValue());
+        assertEquals(5, meal.getId());
+    }
+
+    // 反向：餐食不存在
+    @Test
+    public void testUpdateMeal_notFound() {
+        User admin = new User();
+        admin.setRole(Role.ADMIN);
+        when(session.getAttribute("user")).thenReturn(admin);
+        when(trainMealService.updateMeal(any(TrainMeal.class))).thenReturn(false);
+
+        assertEquals(404, controller.updateMeal(5, new TrainMeal(), session).getStatusCodeValue());
+    }
+
+    // 反向：未登录或非管理员
+    @Test
+    public void testUpdateMeal_forbidden() {
+        when(session.getAttribute("user")).thenReturn(null);
+        assertEquals(401, controller.updateMeal(5, new TrainMeal(), session).getStatusCodeValue());
+
+        User user = new User();
+        user.setRole(Role.REGULAR);
+        when(session.getAttribute("user")).thenReturn(user);
+        assertEquals(400, controller.updateMeal(5, new TrainMeal(), session).getStatusCodeValue());
+        verify(trainMealService, never()).updateMeal(any(TrainMeal.class));
+    }
+}
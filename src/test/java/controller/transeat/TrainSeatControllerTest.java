@@ -2,6 +2,8 @@ package controller.transeat;
 
 import jakarta.servlet.http.HttpSession;
 import org.fxtravel.fxspringboot.controller.trainseat.TrainSeatController;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
+import org.fxtravel.fxspringboot.pojo.dto.train.FlexSearchResult;
 import org.fxtravel.fxspringboot.pojo.dto.train.SearchTrainRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
@@ -73,8 +75,8 @@ public class TrainSeatControllerTest {
         req.setDepartureDate(LocalDate.now());
 
         List<TrainSearchResult> results = Collections.singletonList(new TrainSearchResult());
-        Mockito.when(trainSeatService.findByRouteAndTimeOrderByTime(anyString(), anyString(), any()))
-                .thenReturn(results);
+        Mockito.when(trainSeatService.findByRouteAndTimeOrderByTime(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(new SearchPage<>(results, null));
 
         try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
             mocked.when(() -> AuthUtil.check(bindingResult, user)).thenReturn(null);
@@ -119,7 +121,7 @@ public class TrainSeatControllerTest {
         req.setArrivalStation("B");
         req.setDepartureDate(LocalDate.now());
 
-        Mockito.when(trainSeatService.findByRouteAndTimeOrderByTime(anyString(), anyString(), any()))
+        Mockito.when(trainSeatService.findByRouteAndTimeOrderByTime(anyString(), anyString(), any(), any(), any()))
                 .thenThrow(new RuntimeException("数据库异常"));
 
         try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
@@ -144,8 +146,8 @@ public class TrainSeatControllerTest {
         req.setDepartureDate(LocalDate.now());
 
         List<TrainSearchResult> results = Collections.singletonList(new TrainSearchResult());
-        Mockito.when(trainSeatService.findByRouteAndTimeOrderByDuration(anyString(), anyString(), any()))
-                .thenReturn(results);
+        Mockito.when(trainSeatService.findByRouteAndTimeOrderByDuration(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(new SearchPage<>(results, null));
 
         try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
             mocked.when(() -> AuthUtil.check(bindingResult, user)).thenReturn(null);
@@ -158,6 +160,54 @@ public class TrainSeatControllerTest {
         }
     }
 
+    // searchFlexible 正向：未指定天数时默认前后3天
+    @Test
+    public void testSearchFlexible_success() {
+        User user = new User();
+        Mockito.when(session.getAttribute("user")).thenReturn(user);
+        Mockito.when(bindingResult.hasErrors()).thenReturn(false);
+
+        SearchTrainRequest req = new SearchTrainRequest();
+        req.setDepartureStation("A");
+        req.setArrivalStation("B");
+        req.setDepartureDate(LocalDate.now());
+
+        FlexSearchResult result = new FlexSearchResult();
+        Mockito.when(trainSeatService.findFlexible("A", "B", req.getDepartureDate(), 3)).thenReturn(result);
+
+        try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
+            mocked.when(() -> AuthUtil.check(bindingResult, user)).thenReturn(null);
+
+            ResponseEntity<?> resp = controller.searchFlexible(req, bindingResult, session);
+            assertEquals(200, resp.getStatusCodeValue());
+            assertEquals(result.getDays(), ((Map<?, ?>) resp.getBody()).get("days"));
+        }
+    }
+
+    // searchTransfer 正向
+    @Test
+    public void testSearchTransfer_success() {
+        User user = new User();
+        Mockito.when(session.getAttribute("user")).thenReturn(user);
+        Mockito.when(bindingResult.hasErrors()).thenReturn(false);
+
+        SearchTrainRequest req = new SearchTrainRequest();
+        req.setDepartureStation("A");
+        req.setArrivalStation("C");
+        req.setDepartureDate(LocalDate.now());
+
+        List<List<TrainSearchResult>> results = List.of(List.of(new TrainSearchResult(), new TrainSearchResult()));
+        Mockito.when(trainSeatService.findTransfers(anyString(), anyString(), any())).thenReturn(results);
+
+        try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
+            mocked.when(() -> AuthUtil.check(bindingResult, user)).thenReturn(null);
+
+            ResponseEntity<?> resp = controller.searchTransfer(req, bindingResult, session);
+            assertEquals(200, resp.getStatusCodeValue());
+            assertEquals(results, ((Map<?, ?>) resp.getBody()).get("data"));
+        }
+    }
+
     // searchTrainByDuration 反向：参数校验失败
     @Test
     public void testSearchTrainByDuration_paramError() {
@@ -190,7 +240,7 @@ public class TrainSeatControllerTest {
         req.setArrivalStation("B");
         req.setDepartureDate(LocalDate.now());
 
-        Mockito.when(trainSeatService.findByRouteAndTimeOrderByDuration(anyString(), anyString(), any()))
+        Mockito.when(trainSeatService.findByRouteAndTimeOrderByDuration(anyString(), anyString(), any(), any(), any()))
                 .thenThrow(new RuntimeException("数据库异常"));
 
         try (var mocked = Mockito.mockStatic(AuthUtil.class)) {
@@ -10,6 +10,7 @@ import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentRequest;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentResultDTO;
+import org.fxtravel.fxspringboot.pojo.dto.train.BatchTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.GetTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSeatOrderDTO;
 import org.fxtravel.fxspringboot.pojo.entities.*;
@@ -21,6 +22,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -84,6 +86,44 @@ public class TrainSeatOrderControllerTest {
         assertEquals(order.getSeatNumber(), body.get("seat"));
     }
 
+    // getTickets (批量购票) 正向
+    @Test
+    public void testGetTickets_success() {
+        BatchTicketRequest req = new BatchTicketRequest();
+        req.setUserId(1);
+        req.setSeatId(2);
+        req.setQuantity(2);
+
+        TrainSeatOrder first = new TrainSeatOrder();
+        first.setId(10);
+        first.setOrderNumber("T123");
+        first.setSeatNumber("A01");
+        TrainSeatOrder second = new TrainSeatOrder();
+        second.setId(11);
+        second.setOrderNumber("T123");
+        second.setSeatNumber("A02");
+        Mockito.when(trainSeatOrderService.createOrders(any())).thenReturn(List.of(first, second));
+
+        ResponseEntity<?> resp = controller.getTickets(req, bindingResult);
+        assertEquals(200, resp.getStatusCodeValue());
+        Map<?, ?> body = (Map<?, ?>) resp.getBody();
+        assertEquals(List.of(10, 11), body.get("ids"));
+        assertEquals("T123", body.get("number"));
+        assertEquals(List.of("A01", "A02"), body.get("seats"));
+    }
+
+    // getTickets (批量购票) 反向：参数校验失败
+    @Test
+    public void testGetTickets_paramError() {
+        Mockito.when(bindingResult.hasErrors()).thenReturn(true);
+        Mockito.when(bindingResult.getFieldErrors()).thenReturn(List.of(
+                new FieldError("req", "quantity", "单笔订单最多购买5张车票")));
+
+        ResponseEntity<?> resp = controller.getTickets(new BatchTicketRequest(), bindingResult);
+        assertEquals(400, resp.getStatusCodeValue());
+        Mockito.verify(trainSeatOrderService, Mockito.never()).createOrders(any());
+    }
+
     // getTicket (生成车票) 反向：服务异常
     @Test
     public void testGetTicket_serviceException() {
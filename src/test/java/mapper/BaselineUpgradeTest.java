@@ -0,0 +1,147 @@
+package mapper;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Transient;
+import org.flywaydb.core.Flyway;
+import org.fxtravel.fxspringboot.config.UniqueIndexPrecheck;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在H2（MySQL兼容模式）上模拟由ddl-auto建表的旧库（f5abd11的表结构），按版本0建立基线后执行全部迁移：
+ * 迁移完成后每个实体字段都有对应的列，旧数据保留，按区间购票的订单可以写入。
+ */
+class BaselineUpgradeTest {
+
+    private static final String URL =
+            "jdbc:h2:mem:upgrade;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    // f5abd11的实体由ddl-auto: update生成的表
+    private static final String[] BASELINE = {
+            "CREATE TABLE user (id INT NOT NULL AUTO_INCREMENT, email VARCHAR(255), password VARCHAR(255), "
+                    + "verified BOOLEAN NOT NULL, username VARCHAR(255), gender VARCHAR(32), role VARCHAR(32), PRIMARY KEY (id))",
+            "CREATE TABLE verification_code (id BIGINT NOT NULL AUTO_INCREMENT, code VARCHAR(255), user_id INT, PRIMARY KEY (id))",
+            "CREATE TABLE payment (id INT NOT NULL AUTO_INCREMENT, order_number VARCHAR(255) NOT NULL, user_id INT, "
+                    + "type VARCHAR(32), status VARCHAR(32), amount DOUBLE, payment_time DATETIME(6), related_id INT, "
+                    + "timeout_seconds BIGINT, quantity INT, good_id INT, PRIMARY KEY (id))",
+            "CREATE TABLE notification (id VARCHAR(36) NOT NULL, user_id INT NOT NULL, event_type VARCHAR(20) NOT NULL, "
+                    + "content TEXT NOT NULL, channel VARCHAR(10) NOT NULL, status VARCHAR(10) NOT NULL, "
+                    + "create_time DATETIME(6) NOT NULL, update_time DATETIME(6), related_order_id VARCHAR(36), "
+                    + "is_read BOOLEAN NOT NULL, retry_count INT NOT NULL, PRIMARY KEY (id))",
+            "CREATE TABLE train (id INT NOT NULL AUTO_INCREMENT, train_number VARCHAR(255), train_type VARCHAR(32), "
+                    + "from_station VARCHAR(255), to_station VARCHAR(255), departure_time DATETIME(6), "
+                    + "arrival_time DATETIME(6), duration_minutes INT, PRIMARY KEY (id))",
+            "CREATE TABLE train_seat (id INT NOT NULL AUTO_INCREMENT, train_id INT, seat_type VARCHAR(32) NOT NULL, "
+                    + "price DOUBLE NOT NULL, remain INT NOT NULL, seat_allocation BINARY(64), PRIMARY KEY (id))",
+            "CREATE TABLE train_seat_order (id INT NOT NULL AUTO_INCREMENT, order_number VARCHAR(255), user_id INT, "
+                    + "train_id INT, train_seat_id INT, seat_number VARCHAR(255), related_payment_id INT, "
+                    + "total_amount DOUBLE, status VARCHAR(32), create_time DATETIME(6), PRIMARY KEY (id))",
+            "CREATE TABLE train_meal (id INT NOT NULL AUTO_INCREMENT, train_id INT, name VARCHAR(255), "
+                    + "description VARCHAR(255), image VARCHAR(255), meal_time VARCHAR(32), price DOUBLE, remain INT, "
+                    + "enabled BOOLEAN, PRIMARY KEY (id))",
+            "CREATE TABLE train_meal_order (id INT NOT NULL AUTO_INCREMENT, order_number VARCHAR(255), "
+                    + "user_id INT NOT NULL, seat_order_id INT NOT NULL, train_meal_id INT NOT NULL, "
+                    + "related_payment_id INT, quantity INT NOT NULL, total_amount DOUBLE NOT NULL, status VARCHAR(32), "
+                    + "create_time DATETIME(6), PRIMARY KEY (id))",
+            "CREATE TABLE hotel (id INT NOT NULL AUTO_INCREMENT, name VARCHAR(255) NOT NULL, "
+                    + "destination VARCHAR(255) NOT NULL, address VARCHAR(255) NOT NULL, rating DOUBLE, "
+                    + "description TEXT, PRIMARY KEY (id))",
+            "CREATE TABLE room (id INT NOT NULL AUTO_INCREMENT, hotel_id INT, type_id INT, name VARCHAR(50) NOT NULL, "
+                    + "remain INT NOT NULL, price_per_night DOUBLE NOT NULL, PRIMARY KEY (id))",
+            "CREATE TABLE room_order (id INT NOT NULL AUTO_INCREMENT, order_number VARCHAR(255), user_id INT NOT NULL, "
+                    + "hotel_id INT NOT NULL, room_id INT NOT NULL, check_in_date DATE NOT NULL, "
+                    + "check_out_date DATE NOT NULL, status VARCHAR(32) NOT NULL, total_amount DOUBLE NOT NULL, "
+                    + "create_time DATETIME(6) NOT NULL, related_payment_id INT, PRIMARY KEY (id))",
+            "CREATE TABLE test_obj (id INT NOT NULL AUTO_INCREMENT, string_value VARCHAR(255), PRIMARY KEY (id))",
+    };
+
+    @Test
+    void migrate_shouldBringABaselinedDatabaseUpToTheEntities() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            for (String sql : BASELINE) {
+                statement.execute(sql);
+            }
+            statement.executeUpdate("INSERT INTO train_seat_order (order_number, user_id, train_seat_id, seat_number) "
+                    + "VALUES ('T1', 1, 1, 'A01')");
+            statement.executeUpdate("INSERT INTO payment (order_number, status, payment_time, timeout_seconds) "
+                    + "VALUES ('T1', 'PENDING', CURRENT_TIMESTAMP, 30)");
+
+            Flyway.configure()
+                    .dataSource(URL, "sa", "")
+                    .baselineOnMigrate(true)
+                    .baselineVersion("0")
+                    .callbacks(new UniqueIndexPrecheck())
+                    .load()
+                    .migrate();
+
+            List<String> missing = new ArrayList<>();
+            for (Class<?> entity : MapperIndexTest.classesIn("org/fxtravel/fxspringboot/pojo/entities")) {
+                if (!entity.isAnnotationPresent(Entity.class)) {
+                    continue;
+                }
+                String table = MapperIndexTest.tableName(entity);
+                Set<String> columns = columnsOf(connection, table);
+                for (Field field : entity.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Transient.class)) {
+                        continue;
+                    }
+                    String column = MapperIndexTest.columnName(field);
+                    if (!columns.contains(column)) {
+                        missing.add(table + "." + column);
+                    }
+                }
+            }
+            assertTrue(missing.isEmpty(), "升级后的库缺少列: " + missing);
+
+            // 旧订单保留，按区间的新订单可以写入
+            statement.executeUpdate("INSERT INTO train_seat_order (order_number, user_id, train_seat_id, seat_number, "
+                    + "from_station, to_station) VALUES ('T2', 1, 1, 'A02', 'Beijing', 'Jinan')");
+            try (ResultSet rs = statement.executeQuery("SELECT order_number, from_station FROM train_seat_order ORDER BY id")) {
+                assertTrue(rs.next());
+                assertEquals("T1", rs.getString(1));
+                assertNull(rs.getString(2));
+                assertTrue(rs.next());
+                assertEquals("Beijing", rs.getString(2));
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT expire_time FROM payment WHERE order_number = 'T1'")) {
+                assertTrue(rs.next());
+                assertNotNull(rs.getTimestamp(1));
+            }
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    // 新建的库在V1中已有这些列，V8不重复添加
+    @Test
+    void migrate_shouldLeaveAFreshDatabaseAlone() throws Exception {
+        Flyway.configure().dataSource(URL.replace("upgrade", "fresh"), "sa", "").load().migrate();
+        try (Connection connection = DriverManager.getConnection(URL.replace("upgrade", "fresh"), "sa", "");
+             Statement statement = connection.createStatement()) {
+            assertTrue(columnsOf(connection, "train_seat_order").containsAll(Set.of("from_station", "to_station")));
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static Set<String> columnsOf(Connection connection, String table) throws Exception {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = connection.getMetaData().getColumns(null, null, table, null)) {
+            while (rs.next()) {
+                columns.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        return columns;
+    }
+}
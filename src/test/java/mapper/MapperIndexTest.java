@@ -0,0 +1,178 @@
+package mapper;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.apache.ibatis.annotations.Select;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在H2（MySQL兼容模式）上执行Flyway迁移脚本，
+ * 校验每个Mapper的@Select都走索引，以及实体类的每个字段在表结构中都有对应的列。
+ */
+class MapperIndexTest {
+
+    private static final String URL =
+            "jdbc:h2:mem:schema;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    // 不要求走索引的查询：调试用的模糊查询、元数据查询
+    private static final Set<String> EXEMPT = Set.of(
+            "TestMapper.selectByStr");
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        Flyway.configure().dataSource(URL, "sa", "").load().migrate();
+        connection = DriverManager.getConnection(URL, "sa", "");
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void everySelectShouldUseAnIndex() throws Exception {
+        List<String> scans = new ArrayList<>();
+        int checked = 0;
+        for (Class<?> mapper : classesIn("org/fxtravel/fxspringboot/mapper")) {
+            for (Method method : mapper.getDeclaredMethods()) {
+                Select select = method.getAnnotation(Select.class);
+                String name = mapper.getSimpleName() + "." + method.getName();
+                if (select == null || EXEMPT.contains(name)) {
+                    continue;
+                }
+                String plan = explain(toSql(String.join(" ", select.value())));
+                checked++;
+                if (plan.contains("tableScan")) {
+                    scans.add(name + ": " + plan);
+                }
+            }
+        }
+        assertTrue(checked > 20, "未找到Mapper查询");
+        assertTrue(scans.isEmpty(), "以下查询没有使用索引:\n" + String.join("\n", scans));
+    }
+
+    @Test
+    void everyEntityFieldShouldHaveAColumn() throws Exception {
+        List<String> missing = new ArrayList<>();
+        for (Class<?> entity : classesIn("org/fxtravel/fxspringboot/pojo/entities")) {
+            if (!entity.isAnnotationPresent(Entity.class)) {
+                continue;
+            }
+            String table = tableName(entity);
+            Set<String> columns = columnsOf(table);
+            assertFalse(columns.isEmpty(), "缺少表: " + table);
+            for (Field field : entity.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Transient.class)) {
+                    continue;
+                }
+                String column = columnName(field);
+                if (!columns.contains(column)) {
+                    missing.add(table + "." + column);
+                }
+            }
+        }
+        assertTrue(missing.isEmpty(), "迁移脚本缺少列: " + missing);
+    }
+
+    @Test
+    void paymentOrderNumberShouldBeUnique() throws Exception {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO payment (order_number, type, status) VALUES ('dup-order', 'TRAIN_TICKET', 'PENDING')")) {
+            insert.executeUpdate();
+            assertThrows(java.sql.SQLException.class, insert::executeUpdate);
+        }
+    }
+
+    // -------------------- 私有方法 --------------------
+    private static final Pattern FOREACH = Pattern.compile("<foreach[^>]*?open='([^']*)'[^>]*?close='([^']*)'[^>]*>.*?</foreach>");
+    private static final Pattern PARAM = Pattern.compile("#\\{[^}]*}");
+
+    // 把MyBatis注解SQL转换为可执行的SQL：展开所有<if>，foreach替换为单个参数
+    private static String toSql(String sql) {
+        String result = sql.replace("<script>", "").replace("</script>", "");
+        Matcher matcher = FOREACH.matcher(result);
+        result = matcher.replaceAll(m -> Matcher.quoteReplacement(m.group(1) + "?" + m.group(2)));
+        result = result.replaceAll("<if[^>]*>", " ").replace("</if>", " ");
+        result = result.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+        return PARAM.matcher(result).replaceAll("?");
+    }
+
+    private static String explain(String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            int count = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= count; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append(' ');
+                }
+                return plan.toString().replaceAll("\\s+", " ");
+            }
+        }
+    }
+
+    private static Set<String> columnsOf(String table) throws Exception {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = connection.getMetaData().getColumns(null, null, table, null)) {
+            while (rs.next()) {
+                columns.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        return columns;
+    }
+
+    static String tableName(Class<?> entity) {
+        Table table = entity.getAnnotation(Table.class);
+        return table != null && !table.name().isEmpty() ? table.name() : snakeCase(entity.getSimpleName());
+    }
+
+    static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        return column != null && !column.name().isEmpty() ? column.name() : snakeCase(field.getName());
+    }
+
+    // 与Spring Boot默认的命名策略一致：驼峰转下划线
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    static List<Class<?>> classesIn(String path) throws Exception {
+        List<Class<?>> classes = new ArrayList<>();
+        String root = "org/fxtravel/";
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath*:" + path + "/**/*.class")) {
+            String url = resource.getURL().toString();
+            String className = url.substring(url.indexOf(root), url.length() - ".class".length()).replace('/', '.');
+            if (!className.contains("$")) {
+                classes.add(Class.forName(className));
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,84 @@
+package mapper;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在H2（MySQL兼容模式）上模拟已有订单的数据库执行V7：
+ * 仍占用房间的订单把尚未过去的夜晚记入库存日历，room.remain加回当初扣掉的间数。
+ */
+class RoomCalendarSeedTest {
+
+    private static final String URL =
+            "jdbc:h2:mem:seed;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    private Flyway flyway(String target) {
+        return Flyway.configure()
+                .dataSource(URL, "sa", "")
+                .target(target)
+                .load();
+    }
+
+    @Test
+    void migrate_shouldSeedCalendarFromHeldOrdersAndRestoreRemain() throws Exception {
+        flyway("6").migrate();
+        LocalDate today = LocalDate.now();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            // 每晚3间，旧流程下两笔有效订单已把remain扣到1
+            statement.executeUpdate("INSERT INTO room (id, hotel_id, name, remain, price_per_night) "
+                    + "VALUES (1, 1, 'Double', 1, 100)");
+            insertOrder(connection, today.plusDays(10), today.plusDays(12), "COMPLETED");
+            insertOrder(connection, today.minusDays(1), today.plusDays(1), "PENDING");
+            insertOrder(connection, today.plusDays(10), today.plusDays(11), "FAILED");
+            insertOrder(connection, today.minusDays(5), today.minusDays(3), "REFUNDED");
+
+            flyway("latest").migrate();
+
+            try (ResultSet rs = statement.executeQuery("SELECT remain FROM room WHERE id = 1")) {
+                assertTrue(rs.next());
+                assertEquals(3, rs.getInt(1));
+            }
+            assertEquals(1, soldOn(statement, today));
+            assertEquals(0, soldOn(statement, today.minusDays(1)));
+            assertEquals(1, soldOn(statement, today.plusDays(10)));
+            assertEquals(1, soldOn(statement, today.plusDays(11)));
+            assertEquals(0, soldOn(statement, today.plusDays(12)));
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static void insertOrder(Connection connection, LocalDate checkIn, LocalDate checkOut, String status)
+            throws Exception {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO room_order "
+                + "(user_id, hotel_id, room_id, check_in_date, check_out_date, status, total_amount, create_time) "
+                + "VALUES (1, 1, 1, ?, ?, ?, 100, CURRENT_TIMESTAMP)")) {
+            insert.setObject(1, checkIn);
+            insert.setObject(2, checkOut);
+            insert.setString(3, status);
+            insert.executeUpdate();
+        }
+    }
+
+    private static int soldOn(Statement statement, LocalDate night) throws Exception {
+        try (ResultSet rs = statement.executeQuery("SELECT sold FROM room_calendar WHERE room_id = 1 "
+                + "AND stay_month = '" + YearMonth.from(night) + "'")) {
+            if (!rs.next()) {
+                return 0;
+            }
+            byte[] sold = rs.getBytes(1);
+            int index = night.getDayOfMonth() - 1;
+            return ((sold[index * 2] & 0xFF) << 8) | (sold[index * 2 + 1] & 0xFF);
+        }
+    }
+}
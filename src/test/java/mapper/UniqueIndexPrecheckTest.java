@@ -0,0 +1,51 @@
+package mapper;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.fxtravel.fxspringboot.config.UniqueIndexPrecheck;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在H2（MySQL兼容模式）上模拟已有数据的数据库执行V2：
+ * 存在重复值时迁移在建索引前中止并列出重复数据，合并后可以继续迁移。
+ */
+class UniqueIndexPrecheckTest {
+
+    private static final String URL =
+            "jdbc:h2:mem:precheck;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    private Flyway flyway(String target) {
+        return Flyway.configure()
+                .dataSource(URL, "sa", "")
+                .callbacks(new UniqueIndexPrecheck())
+                .target(target)
+                .load();
+    }
+
+    @Test
+    void migrate_shouldStopOnDuplicatesAndResumeAfterMerge() throws Exception {
+        flyway("1").migrate();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO user (email) VALUES ('a@fx.com'), ('a@fx.com'), (NULL), (NULL)");
+            statement.executeUpdate("INSERT INTO payment (order_number) VALUES ('PN1'), ('PN2')");
+
+            FlywayException e = assertThrows(FlywayException.class, () -> flyway("latest").migrate());
+            assertTrue(e.getMessage().contains("user (email) = (a@fx.com): 2 rows"), e.getMessage());
+            assertFalse(e.getMessage().contains("payment"), e.getMessage());
+
+            // 人工合并重复的账号后继续迁移
+            statement.executeUpdate("DELETE FROM user WHERE email = 'a@fx.com' AND id > 1");
+            flyway("latest").migrate();
+            assertThrows(java.sql.SQLException.class,
+                    () -> statement.executeUpdate("INSERT INTO user (email) VALUES ('a@fx.com')"));
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+}
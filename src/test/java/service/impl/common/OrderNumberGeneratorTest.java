@@ -0,0 +1,104 @@
+package service.impl.common;
+
+import org.fxtravel.fxspringboot.common.E_PaymentType;
+import org.fxtravel.fxspringboot.service.impl.common.OrderNumberGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderNumberGeneratorTest {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    // 前缀、毫秒时间戳、节点号、序号
+    @Test
+    void next_shouldKeepPrefixAndTimestamp() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(42);
+        LocalDateTime before = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        String ticket = generator.next(E_PaymentType.TRAIN_TICKET);
+        LocalDateTime after = LocalDateTime.now();
+
+        assertEquals(OrderNumberGenerator.LENGTH, ticket.length());
+        assertTrue(ticket.startsWith("TT"));
+        assertTrue(generator.next(E_PaymentType.TRAIN_MEAL).startsWith("TM"));
+        assertTrue(generator.next(E_PaymentType.HOTEL).startsWith("HT"));
+        LocalDateTime time = LocalDateTime.parse(ticket.substring(2, 19), TIMESTAMP);
+        assertFalse(time.isBefore(before));
+        assertFalse(time.isAfter(after));
+        assertEquals("0042", ticket.substring(19, 23));
+        assertTrue(ticket.substring(23).chars().allMatch(Character::isDigit));
+    }
+
+    // 同一节点生成的订单号按字典序严格递增
+    @Test
+    void next_shouldBeStrictlyIncreasing() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(1);
+        String previous = generator.next(E_PaymentType.HOTEL);
+        for (int i = 0; i < 100_000; i++) {
+            String current = generator.next(E_PaymentType.HOTEL);
+            assertTrue(current.compareTo(previous) > 0, previous + " >= " + current);
+            previous = current;
+        }
+    }
+
+    // 并发生成不重复
+    @Test
+    void next_shouldBeUniqueUnderContention() throws Exception {
+        OrderNumberGenerator generator = new OrderNumberGenerator(7);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    seen.add(generator.next(E_PaymentType.TRAIN_TICKET));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(200_000, seen.size());
+    }
+
+    // 不同节点在同一毫秒内也不会冲突
+    @Test
+    void next_shouldDifferAcrossNodes() {
+        OrderNumberGenerator first = new OrderNumberGenerator(1);
+        OrderNumberGenerator second = new OrderNumberGenerator(2);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(seen.add(first.next(E_PaymentType.TRAIN_MEAL)));
+            assertTrue(seen.add(second.next(E_PaymentType.TRAIN_MEAL)));
+        }
+    }
+
+    @Test
+    void init_shouldRejectNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderNumberGenerator(1024));
+        assertEquals(1023, new OrderNumberGenerator(1023).getNodeId());
+    }
+
+    // 未配置节点号时使用pod序号，没有序号时启动失败而不是散列出可能重复的节点号
+    @Test
+    void init_shouldRequireNodeIdWithoutPodOrdinal() {
+        assertEquals(3, new OrderNumberGenerator(-1, "fx-backend-3").getNodeId());
+        assertEquals(5, new OrderNumberGenerator(5, "fx-backend-3").getNodeId());
+        assertThrows(IllegalStateException.class, () -> new OrderNumberGenerator(-1, "fx-backend-7d9f8c-x2k4q"));
+        assertThrows(IllegalStateException.class, () -> new OrderNumberGenerator(-1, "fx-backend-2048"));
+        assertThrows(IllegalStateException.class, () -> new OrderNumberGenerator(-1, null));
+    }
+}
@@ -3,17 +3,23 @@ package service.impl.common;
 import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 import org.fxtravel.fxspringboot.common.E_PaymentType;
 import org.fxtravel.fxspringboot.event.EventCenter;
+import org.fxtravel.fxspringboot.event.EventType;
+import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.PaymentMapper;
 import org.fxtravel.fxspringboot.pojo.dto.payment.PaymentResultDTO;
 import org.fxtravel.fxspringboot.pojo.entities.payment;
+import org.fxtravel.fxspringboot.service.impl.common.OrderNumberGenerator;
 import org.fxtravel.fxspringboot.service.impl.common.PaymentServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +37,9 @@ class PaymentServiceImplTest {
     @Mock
     private EventCenter eventCenter;
 
+    @Spy
+    private OrderNumberGenerator orderNumbers = new OrderNumberGenerator(1);
+
     @Test
     void testCreatePayment_success() {
         Integer userId = 1;
@@ -64,6 +73,8 @@ class PaymentServiceImplTest {
         assertEquals(quantity, result.getQuantity());
         assertEquals(goodId, result.getGoodId());
         assertNotNull(result.getOrderNumber());
+        assertTrue(result.getOrderNumber().startsWith("TT"));
+        assertEquals(OrderNumberGenerator.LENGTH, result.getOrderNumber().length());
     }
 
     @Test
@@ -92,13 +103,13 @@ class PaymentServiceImplTest {
         payment.setUserId(1);
 
         when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
-        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.COMPLETED), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.PENDING), eq(E_PaymentStatus.COMPLETED), any())).thenReturn(1);
 
         boolean result = paymentService.completePayment(orderNumber, null);
 
         assertTrue(result);
         assertEquals(E_PaymentStatus.COMPLETED, payment.getStatus());
-        verify(paymentMapper).updateStatus(eq(orderNumber), eq(E_PaymentStatus.COMPLETED), any());
+        verify(paymentMapper).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.COMPLETED), any());
     }
 
     @Test
@@ -112,7 +123,7 @@ class PaymentServiceImplTest {
         boolean result = paymentService.completePayment(orderNumber, null);
 
         assertFalse(result);
-        verify(paymentMapper, never()).updateStatus(anyString(), any(), any());
+        verify(paymentMapper, never()).updateStatus(anyString(), any(), any(), any());
     }
 
     @Test
@@ -128,13 +139,13 @@ class PaymentServiceImplTest {
         payment.setUserId(1);
 
         when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
-        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.FAILED), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FAILED), any())).thenReturn(1);
 
         boolean result = paymentService.failPayment(orderNumber, null);
 
         assertTrue(result);
         assertEquals(E_PaymentStatus.FAILED, payment.getStatus());
-        verify(paymentMapper).updateStatus(eq(orderNumber), eq(E_PaymentStatus.FAILED), any());
+        verify(paymentMapper).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FAILED), any());
     }
 
     @Test
@@ -148,7 +159,7 @@ class PaymentServiceImplTest {
         boolean result = paymentService.failPayment(orderNumber, null);
 
         assertFalse(result);
-        verify(paymentMapper, never()).updateStatus(anyString(), any(), any());
+        verify(paymentMapper, never()).updateStatus(anyString(), any(), any(), any());
     }
 
     @Test
@@ -164,13 +175,13 @@ class PaymentServiceImplTest {
         payment.setUserId(1);
 
         when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
-        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.REFUNDED), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.REFUNDED), any())).thenReturn(1);
 
         boolean result = paymentService.refundPayment(orderNumber, null);
 
         assertTrue(result);
         assertEquals(E_PaymentStatus.REFUNDED, payment.getStatus());
-        verify(paymentMapper).updateStatus(eq(orderNumber), eq(E_PaymentStatus.REFUNDED), any());
+        verify(paymentMapper).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.REFUNDED), any());
     }
 
     @Test
@@ -184,7 +195,7 @@ class PaymentServiceImplTest {
         boolean result = paymentService.refundPayment(orderNumber, null);
 
         assertFalse(result);
-        verify(paymentMapper, never()).updateStatus(anyString(), any(), any());
+        verify(paymentMapper, never()).updateStatus(anyString(), any(), any(), any());
     }
 
     @Test
@@ -200,13 +211,13 @@ class PaymentServiceImplTest {
         payment.setUserId(1);
 
         when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
-        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.FINISHED), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FINISHED), any())).thenReturn(1);
 
         boolean result = paymentService.finishPayment(orderNumber, null);
 
         assertTrue(result);
         assertEquals(E_PaymentStatus.FINISHED, payment.getStatus());
-        verify(paymentMapper).updateStatus(eq(orderNumber), eq(E_PaymentStatus.FINISHED), any());
+        verify(paymentMapper).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FINISHED), any());
     }
 
     @Test
@@ -220,7 +231,7 @@ class PaymentServiceImplTest {
         boolean result = paymentService.finishPayment(orderNumber, null);
 
         assertFalse(result);
-        verify(paymentMapper, never()).updateStatus(anyString(), any(), any());
+        verify(paymentMapper, never()).updateStatus(anyString(), any(), any(), any());
     }
 
     @Test
@@ -231,6 +242,7 @@ class PaymentServiceImplTest {
         payment.setOrderNumber(orderNumber);
 
         when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
+        when(paymentMapper.startPending(eq(orderNumber), any(), anyLong(), any())).thenReturn(1);
 
         Supplier<Boolean> inventoryDeduction = () -> true;
         Supplier<Object> data = () -> null;
@@ -293,4 +305,186 @@ class PaymentServiceImplTest {
         assertEquals("Order not found", result.getMessage());
         assertEquals(0L, result.getRemainingTimeSeconds());
     }
-}
\ No newline at end of file
+
+    // 超时后仍为PENDING的支付置为失败，并携带下单时的回调数据
+    @Test
+    void testSimulatePaymentProcess_timeoutFailsPending() throws Exception {
+        String orderNumber = "TT202401010000000012";
+        payment payment = new payment();
+        payment.setStatus(E_PaymentStatus.IDLE);
+        payment.setOrderNumber(orderNumber);
+        payment.setType(E_PaymentType.TRAIN_TICKET);
+        when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
+        when(paymentMapper.startPending(eq(orderNumber), any(), anyLong(), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FAILED), any())).thenReturn(1);
+
+        paymentService.simulatePaymentProcess(orderNumber, 0L, () -> true, () -> "claim");
+
+        verify(paymentMapper, timeout(3000)).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FAILED), any());
+        ArgumentCaptor<PaymentInfo> info = ArgumentCaptor.forClass(PaymentInfo.class);
+        verify(eventCenter, timeout(3000)).publish(eq(EventType.TT_STATUS_CHANGED), info.capture());
+        assertEquals("claim", info.getValue().getData());
+    }
+
+    // 支付完成后取消超时任务
+    @Test
+    void testCompletePayment_cancelsTimeout() throws Exception {
+        String orderNumber = "TT202401010000000013";
+        payment payment = new payment();
+        payment.setStatus(E_PaymentStatus.IDLE);
+        payment.setOrderNumber(orderNumber);
+        payment.setType(E_PaymentType.TRAIN_TICKET);
+        when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
+        when(paymentMapper.startPending(eq(orderNumber), any(), anyLong(), any())).thenReturn(1);
+        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.PENDING), eq(E_PaymentStatus.COMPLETED), any())).thenReturn(1);
+
+        paymentService.simulatePaymentProcess(orderNumber, 1L, () -> true, () -> null);
+        assertTrue(paymentService.completePayment(orderNumber, null));
+
+        Thread.sleep(1500);
+        verify(paymentMapper, never()).updateStatus(eq(orderNumber), any(), eq(E_PaymentStatus.FAILED), any());
+    }
+
+    // 重启后按payment_time + timeout_seconds恢复超时任务，已过期的立即置为失败
+    @Test
+    void testRecoverTimeouts() {
+        payment expired = new payment();
+        expired.setId(1);
+        expired.setOrderNumber("TT202401010000000014");
+        expired.setStatus(E_PaymentStatus.PENDING);
+        expired.setType(E_PaymentType.HOTEL);
+        expired.setPaymentTime(LocalDateTime.now().minusMinutes(5));
+        expired.setTimeoutSeconds(30L);
+        payment waiting = new payment();
+        waiting.setId(2);
+        waiting.setOrderNumber("TT202401010000000015");
+        waiting.setStatus(E_PaymentStatus.PENDING);
+        waiting.setPaymentTime(LocalDateTime.now());
+        waiting.setTimeoutSeconds(600L);
+        when(paymentMapper.findPendingAfter(0, 1)).thenReturn(List.of(expired));
+        when(paymentMapper.findPendingAfter(1, 1)).thenReturn(List.of(waiting));
+        when(paymentMapper.findPendingAfter(2, 1)).thenReturn(List.of());
+        when(paymentMapper.selectByOrderNumber(expired.getOrderNumber())).thenReturn(expired);
+        when(paymentMapper.updateStatus(eq(expired.getOrderNumber()), any(), eq(E_PaymentStatus.FAILED), any())).thenReturn(1);
+
+        assertEquals(2, paymentService.recoverTimeouts(1));
+
+        verify(paymentMapper, timeout(3000)).updateStatus(eq(expired.getOrderNumber()), any(), eq(E_PaymentStatus.FAILED), any());
+        verify(paymentMapper, never()).updateStatus(eq(waiting.getOrderNumber()), any(), any(), any());
+    }
+
+    // 一批超时的支付用一条语句置为失败，待支付的按订单记录归还库存，未开启的没有占用库存
+    @Test
+    void testFailExpired_bulkUpdateAndNotify() {
+        payment first = new payment();
+        first.setId(1);
+        first.setOrderNumber("HT202401010000000016");
+        first.setType(E_PaymentType.HOTEL);
+        first.setStatus(E_PaymentStatus.IDLE);
+        payment second = new payment();
+        second.setId(2);
+        second.setOrderNumber("HT202401010000000017");
+        second.setType(E_PaymentType.HOTEL);
+        second.setStatus(E_PaymentStatus.IDLE);
+        LocalDateTime before = LocalDateTime.now();
+        when(paymentMapper.findExpiredForUpdate(E_PaymentStatus.IDLE, before, 100)).thenReturn(List.of(first, second));
+        when(paymentMapper.failAll(eq(List.of(1, 2)), eq(E_PaymentStatus.IDLE), any())).thenReturn(2);
+
+        List<payment> failed = paymentService.failExpired(E_PaymentStatus.IDLE, before, 100);
+
+        assertEquals(2, failed.size());
+        assertEquals(E_PaymentStatus.FAILED, first.getStatus());
+        verify(paymentMapper, never()).updateStatus(anyString(), any(), any(), any());
+        ArgumentCaptor<PaymentInfo> info = ArgumentCaptor.forClass(PaymentInfo.class);
+        verify(eventCenter, times(2)).publish(eq(EventType.HT_STATUS_CHANGED), info.capture());
+        assertSame(PaymentInfo.NOTHING_HELD, info.getAllValues().get(0).getData());
+    }
+
+    @Test
+    void testFailExpired_nothingExpired() {
+        LocalDateTime before = LocalDateTime.now();
+        when(paymentMapper.findExpiredForUpdate(E_PaymentStatus.PENDING, before, 100)).thenReturn(List.of());
+
+        assertTrue(paymentService.failExpired(E_PaymentStatus.PENDING, before, 100).isEmpty());
+        verify(paymentMapper, never()).failAll(any(), any(), any());
+        verifyNoInteractions(eventCenter);
+    }
+
+    // 完成支付与超时/清理任务并发：比较并更新失败时不发送通知
+    @Test
+    void testCompletePayment_lostRaceDoesNotNotify() {
+        String orderNumber = "TT202401010000000018";
+        payment payment = new payment();
+        payment.setStatus(E_PaymentStatus.PENDING);
+        payment.setOrderNumber(orderNumber);
+        when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(payment);
+        when(paymentMapper.updateStatus(eq(orderNumber), eq(E_PaymentStatus.PENDING), eq(E_PaymentStatus.COMPLETED), any()))
+                .thenReturn(0);
+
+        assertFalse(paymentService.completePayment(orderNumber, null));
+        assertEquals(E_PaymentStatus.PENDING, payment.getStatus());
+        verifyNoInteractions(eventCenter);
+    }
+
+    // 批量置为失败时部分行已被其他请求改变：只通知本条语句更新的行
+    @Test
+    void testFailExpired_partialUpdateNotifiesOnlyFailedRows() {
+        payment first = new payment();
+        first.setId(1);
+        first.setOrderNumber("HT202401010000000019");
+        first.setType(E_PaymentType.HOTEL);
+        first.setStatus(E_PaymentStatus.PENDING);
+        payment second = new payment();
+        second.setId(2);
+        second.setOrderNumber("HT202401010000000020");
+        second.setType(E_PaymentType.HOTEL);
+        second.setStatus(E_PaymentStatus.PENDING);
+        LocalDateTime before = LocalDateTime.now();
+        when(paymentMapper.findExpiredForUpdate(E_PaymentStatus.PENDING, before, 100)).thenReturn(List.of(first, second));
+        ArgumentCaptor<LocalDateTime> time = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(paymentMapper.failAll(eq(List.of(1, 2)), eq(E_PaymentStatus.PENDING), time.capture())).thenReturn(1);
+        when(paymentMapper.selectByIds(List.of(1, 2))).thenAnswer(invocation -> {
+            payment failed = new payment();
+            failed.setId(1);
+            failed.setOrderNumber(first.getOrderNumber());
+            failed.setType(E_PaymentType.HOTEL);
+            failed.setStatus(E_PaymentStatus.FAILED);
+            failed.setPaymentTime(time.getValue());
+            payment completed = new payment();
+            completed.setId(2);
+            completed.setOrderNumber(second.getOrderNumber());
+            completed.setType(E_PaymentType.HOTEL);
+            completed.setStatus(E_PaymentStatus.COMPLETED);
+            completed.setPaymentTime(time.getValue());
+            return List.of(failed, completed);
+        });
+
+        List<payment> failed = paymentService.failExpired(E_PaymentStatus.PENDING, before, 100);
+
+        assertEquals(List.of(1), failed.stream().map(payment::getId).toList());
+        verify(eventCenter, times(1)).publish(eq(EventType.HT_STATUS_CHANGED), any());
+    }
+
+    // 扣减库存后发现支付已被清理任务置为失败：不开始支付，发送带回调数据的失败通知归还库存
+    @Test
+    void testSimulatePaymentProcess_sweptBeforeStartReturnsInventory() {
+        String orderNumber = "TT202401010000000021";
+        payment idle = new payment();
+        idle.setStatus(E_PaymentStatus.IDLE);
+        idle.setOrderNumber(orderNumber);
+        idle.setType(E_PaymentType.TRAIN_TICKET);
+        payment swept = new payment();
+        swept.setStatus(E_PaymentStatus.FAILED);
+        swept.setOrderNumber(orderNumber);
+        when(paymentMapper.selectByOrderNumber(orderNumber)).thenReturn(idle, swept);
+        when(paymentMapper.startPending(eq(orderNumber), any(), anyLong(), any())).thenReturn(0);
+
+        PaymentResultDTO result = paymentService.simulatePaymentProcess(orderNumber, 60L, () -> true, () -> "claim");
+
+        assertEquals(E_PaymentStatus.FAILED, result.getCurrentStatus());
+        ArgumentCaptor<PaymentInfo> info = ArgumentCaptor.forClass(PaymentInfo.class);
+        verify(eventCenter).publish(eq(EventType.TT_STATUS_CHANGED), info.capture());
+        assertEquals(E_PaymentStatus.FAILED, info.getValue().getNewStatus());
+        assertEquals("claim", info.getValue().getData());
+    }
+}
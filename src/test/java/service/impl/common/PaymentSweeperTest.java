@@ -0,0 +1,102 @@
+package service.impl.common;
+
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
+import org.fxtravel.fxspringboot.mapper.SchedulerLeaseMapper;
+import org.fxtravel.fxspringboot.pojo.entities.payment;
+import org.fxtravel.fxspringboot.service.impl.common.PaymentSweeper;
+import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PaymentSweeperTest {
+
+    private PaymentService paymentService;
+    private SchedulerLeaseMapper leaseMapper;
+    private PaymentSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = mock(PaymentService.class);
+        leaseMapper = mock(SchedulerLeaseMapper.class);
+        sweeper = new PaymentSweeper();
+        injectField(sweeper, "paymentService", paymentService);
+        injectField(sweeper, "leaseMapper", leaseMapper);
+        injectField(sweeper, "owner", "pod-1");
+        injectField(sweeper, "batchSize", 2);
+        injectField(sweeper, "maxBatches", 3);
+        when(paymentService.failExpired(any(), any(), anyInt())).thenReturn(Collections.emptyList());
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<payment> payments(int count) {
+        List<payment> payments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            payments.add(new payment());
+        }
+        return payments;
+    }
+
+    // 其他实例持有租约时不做任何处理
+    @Test
+    void sweep_shouldSkipWithoutLease() {
+        when(leaseMapper.acquire("payment-sweeper", "pod-1", 10)).thenReturn(0);
+
+        assertEquals(0, sweeper.sweep());
+        verifyNoInteractions(paymentService);
+        assertEquals(1L, sweeper.getStats().get("leaseDenied"));
+    }
+
+    // 满批时继续下一批，不足一批时停止
+    @Test
+    void sweep_shouldContinueWhileBatchesAreFull() {
+        when(leaseMapper.acquire("payment-sweeper", "pod-1", 10)).thenReturn(1);
+        when(paymentService.failExpired(eq(E_PaymentStatus.PENDING), any(), eq(2)))
+                .thenReturn(payments(2), payments(1));
+        when(paymentService.failExpired(eq(E_PaymentStatus.IDLE), any(), eq(2)))
+                .thenReturn(payments(1));
+
+        assertEquals(4, sweeper.sweep());
+        verify(paymentService, times(2)).failExpired(eq(E_PaymentStatus.PENDING), any(), eq(2));
+        verify(paymentService, times(1)).failExpired(eq(E_PaymentStatus.IDLE), any(), eq(2));
+        assertEquals(3L, sweeper.getStats().get("expiredPending"));
+        assertEquals(1L, sweeper.getStats().get("abandonedIdle"));
+    }
+
+    // 每轮最多处理max-batches批，积压留给下一轮
+    @Test
+    void sweep_shouldStopAfterMaxBatches() {
+        when(leaseMapper.acquire("payment-sweeper", "pod-1", 10)).thenReturn(1);
+        when(paymentService.failExpired(eq(E_PaymentStatus.PENDING), any(), eq(2))).thenReturn(payments(2));
+
+        assertEquals(6, sweeper.sweep());
+        verify(paymentService, times(3)).failExpired(eq(E_PaymentStatus.PENDING), any(), eq(2));
+    }
+
+    // 待支付的支付超时后留出宽限时间，由创建它的实例的时间轮先处理
+    @Test
+    void sweep_shouldLeaveGraceForLocalTimers() {
+        when(leaseMapper.acquire("payment-sweeper", "pod-1", 10)).thenReturn(1);
+
+        sweeper.sweep();
+        verify(paymentService).failExpired(eq(E_PaymentStatus.PENDING),
+                argThat((LocalDateTime before) -> before.isBefore(LocalDateTime.now().minusSeconds(4))), eq(2));
+    }
+}
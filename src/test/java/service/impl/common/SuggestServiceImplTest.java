@@ -0,0 +1,48 @@
+package service.impl.common;
+
+import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
+import org.fxtravel.fxspringboot.service.impl.common.SuggestServiceImpl;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TimetableIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SuggestServiceImplTest {
+
+    @InjectMocks
+    private SuggestServiceImpl suggestService;
+    @Mock
+    private TimetableIndex timetable;
+    @Mock
+    private HotelMapper hotelMapper;
+
+    @Test
+    void refresh_shouldBuildStationAndDestinationDictionaries() {
+        when(timetable.stationWeights()).thenReturn(Map.of("北京南", 10L, "北京", 20L, "上海", 15L));
+        when(hotelMapper.countByDestination()).thenReturn(List.of(
+                Map.of("name", "北京", "weight", 3L),
+                Map.of("name", "杭州", "weight", 8L)));
+
+        suggestService.refresh();
+
+        assertEquals(List.of("北京", "北京南"), suggestService.suggestStations("北", 10));
+        assertEquals(List.of("杭州"), suggestService.suggestDestinations("杭", 10));
+        assertEquals("上海", suggestService.canonicalStation(" 上海 "));
+        assertEquals("广州", suggestService.canonicalStation("广州"));
+    }
+
+    @Test
+    void suggest_shouldBeEmptyBeforeRefresh() {
+        assertTrue(suggestService.suggestStations("北", 10).isEmpty());
+        assertEquals("北京", suggestService.canonicalDestination("北京"));
+    }
+}
@@ -0,0 +1,115 @@
+package service.impl.hotel;
+
+import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Hotel;
+import org.fxtravel.fxspringboot.service.impl.hotel.HotelNameIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HotelNameIndexTest {
+
+    private HotelMapper hotelMapper;
+    private HotelNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        hotelMapper = mock(HotelMapper.class);
+        index = new HotelNameIndex();
+        injectField(index, "hotelMapper", hotelMapper);
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void load(Hotel... hotels) {
+        when(hotelMapper.findAfter(0)).thenReturn(new ArrayList<>(List.of(hotels)));
+        index.reload();
+    }
+
+    private static List<Integer> ids(List<HotelNameIndex.Entry> entries) {
+        return entries.stream().map(HotelNameIndex.Entry::getId).toList();
+    }
+
+    // 中文名称的子串匹配，按评分降序，未评分的排在最后，只在同一目的地内查找
+    @Test
+    void match_shouldFindChineseSubstringsRankedByRating() {
+        load(new Hotel(1, "北京国际饭店", "北京", "addr", 4.2, null),
+                new Hotel(2, "国际青年旅舍", "北京", "addr", null, null),
+                new Hotel(3, "北京饭店", "北京", "addr", 4.8, null),
+                new Hotel(4, "上海国际饭店", "上海", "addr", 4.9, null));
+
+        assertEquals(List.of(1, 2), ids(index.match("北京", "国际")));
+        assertEquals(List.of(3, 1), ids(index.match("北京", "饭店")));
+        assertEquals(List.of(1), ids(index.match("北京", "京国际饭")));
+        assertTrue(index.match("北京", "和平").isEmpty());
+        assertTrue(index.match("广州", "饭店").isEmpty());
+    }
+
+    // 长查询串的每个三元组都出现但不连续时不算子串匹配
+    @Test
+    void match_shouldVerifyCandidatesAndIgnoreCaseAndSpaces() {
+        load(new Hotel(1, "Grand Hyatt", "Shanghai", "addr", 4.5, null),
+                new Hotel(2, "abcXbcd", "Shanghai", "addr", 4.0, null));
+
+        assertEquals(List.of(1), ids(index.match("Shanghai", "grandhy")));
+        assertEquals(List.of(1), ids(index.match("Shanghai", "HYATT ")));
+        assertTrue(index.match("Shanghai", "abcd").isEmpty());
+    }
+
+    // 子串匹配在前，写错一个字时按二元组重合度模糊匹配
+    @Test
+    void search_shouldAppendFuzzyMatchesAfterSubstringMatches() {
+        load(new Hotel(1, "如家快捷酒店", "杭州", "addr", 3.5, null),
+                new Hotel(2, "如家精选酒店", "杭州", "addr", 4.0, null),
+                new Hotel(3, "西湖国宾馆", "杭州", "addr", 4.9, null),
+                new Hotel(4, "如家精选宾馆", "杭州", "addr", 4.2, null));
+
+        assertEquals(List.of(2, 4), index.search("杭州", "如家精选酒店", 10));
+        assertEquals(List.of(2), index.search("杭州", "如家精选酒店", 1));
+        assertEquals(List.of(2), ids(index.fuzzy("杭州", "如家精品酒店")));
+        assertTrue(index.fuzzy("杭州", "锦江之星").isEmpty());
+    }
+
+    // 新增、修改酒店后只重建对应目的地，目的地变更时从原目的地移除
+    @Test
+    void put_shouldMaintainIndexOnInsertAndUpdate() {
+        load(new Hotel(1, "北京饭店", "北京", "addr", 4.0, null));
+
+        index.put(new Hotel(2, "王府饭店", "北京", "addr", 4.5, null));
+        assertEquals(List.of(2, 1), ids(index.match("北京", "饭店")));
+
+        index.put(new Hotel(1, "天津饭店", "天津", "addr", 4.0, null));
+        assertEquals(List.of(2), ids(index.match("北京", "饭店")));
+        assertEquals(List.of(1), ids(index.match("天津", "饭店")));
+
+        index.remove(2);
+        assertTrue(index.match("北京", "饭店").isEmpty());
+        assertEquals(1L, index.getStats().get("hotelNameDestinations"));
+    }
+
+    // 增量刷新只读取ID大于已加载最大ID的酒店
+    @Test
+    void refresh_shouldLoadOnlyNewHotels() {
+        assertFalse(index.isLoaded());
+        load(new Hotel(3, "北京饭店", "北京", "addr", 4.0, null));
+        assertTrue(index.isLoaded());
+
+        when(hotelMapper.findAfter(3)).thenReturn(List.of(new Hotel(4, "国贸饭店", "北京", "addr", 4.6, null)));
+        assertEquals(1, index.refresh());
+        assertEquals(List.of(4, 3), ids(index.match("北京", "饭店")));
+        verify(hotelMapper).findAfter(3);
+    }
+}
@@ -6,10 +6,16 @@ import org.fxtravel.fxspringboot.event.EventType;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.hotel.HotelMapper;
 import org.fxtravel.fxspringboot.mapper.hotel.RoomMapper;
+import org.fxtravel.fxspringboot.mapper.hotel.RoomOrderMapper;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.HotelSearchResult;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
+import org.fxtravel.fxspringboot.pojo.entities.RoomOrder;
+import org.fxtravel.fxspringboot.service.impl.hotel.HotelNameIndex;
 import org.fxtravel.fxspringboot.service.impl.hotel.HotelServiceImpl;
+import org.fxtravel.fxspringboot.service.impl.hotel.RoomCalendar;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,9 +23,11 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,6 +43,12 @@ class HotelServiceImplTest {
     private RoomMapper roomMapper;
     @Mock
     private EventCenter eventCenter;
+    @Mock
+    private HotelNameIndex nameIndex;
+    @Mock
+    private RoomOrderMapper roomOrderMapper;
+    @Mock
+    private RoomCalendar calendar;
 
     @Test
     void testGetHotelById_Found() {
@@ -67,7 +81,7 @@ class HotelServiceImplTest {
         Hotel hotel = new Hotel();
         when(hotelMapper.findByDestAndName("Beijing", "Luxury")).thenReturn(Arrays.asList(hotel));
         Room room = new Room();
-        when(roomMapper.findByHotel(hotel.getId())).thenReturn(Arrays.asList(room));
+        when(roomMapper.findByHotels(Arrays.asList(hotel.getId()))).thenReturn(Arrays.asList(room));
         List<HotelSearchResult> results = hotelService.searchHotels("Beijing", "Luxury");
         assertNotNull(results);
         assertFalse(results.isEmpty());
@@ -85,12 +99,104 @@ class HotelServiceImplTest {
         Hotel hotel = new Hotel();
         when(hotelMapper.findByDest("Shanghai")).thenReturn(Arrays.asList(hotel));
         Room room = new Room();
-        when(roomMapper.findByHotel(hotel.getId())).thenReturn(Arrays.asList(room));
+        when(roomMapper.findByHotels(Arrays.asList(hotel.getId()))).thenReturn(Arrays.asList(room));
         List<HotelSearchResult> results = hotelService.searchHotels("Shanghai", "");
         assertNotNull(results);
         assertFalse(results.isEmpty());
     }
 
+    @Test
+    void testSearchHotelsPage_ShouldReturnNextCursorAndContinueAfterIt() {
+        Hotel first = new Hotel(1, "A", "Beijing", "addr", 4.5, null);
+        Hotel second = new Hotel(2, "B", "Beijing", "addr", 4.0, null);
+        Hotel third = new Hotel(3, "C", "Beijing", "addr", 3.0, null);
+        when(hotelMapper.findPageByDest("Beijing", null, null, null, 3)).thenReturn(Arrays.asList(first, second, third));
+        when(roomMapper.findByHotels(Arrays.asList(1, 2))).thenReturn(Arrays.asList(room(1), room(2)));
+
+        SearchPage<HotelSearchResult> page = hotelService.searchHotels("Beijing", null, null, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+
+        when(hotelMapper.findPageByDest("Beijing", null, 4.0, 2, 3)).thenReturn(Arrays.asList(third));
+        when(roomMapper.findByHotels(Arrays.asList(3))).thenReturn(Arrays.asList(room(3)));
+        SearchPage<HotelSearchResult> next = hotelService.searchHotels("Beijing", null, page.getNextCursor(), 2);
+
+        assertEquals(third, next.getItems().get(0).getHotel());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void testSearchHotelsPage_ShouldCapPageSizeAndRejectBadCursor() {
+        when(hotelMapper.findPageByDest("Beijing", "Luxury", null, null, 101)).thenReturn(Collections.emptyList());
+
+        SearchPage<HotelSearchResult> page = hotelService.searchHotels("Beijing", "Luxury", null, 10000);
+
+        assertTrue(page.getItems().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> hotelService.searchHotels("Beijing", null, "!!", 10));
+    }
+
+    // 一次查询取回全部房型，按评分顺序返回，没有房型的酒店被过滤
+    @Test
+    void testSearchHotels_ShouldLoadRoomsInOneQueryAndKeepRatingOrder() {
+        Hotel best = new Hotel(5, "A", "Beijing", "addr", 4.8, null);
+        Hotel empty = new Hotel(6, "B", "Beijing", "addr", 4.5, null);
+        Hotel good = new Hotel(7, "C", "Beijing", "addr", 4.0, null);
+        when(hotelMapper.findByDest("Beijing")).thenReturn(Arrays.asList(best, empty, good));
+        when(roomMapper.findByHotels(Arrays.asList(5, 6, 7))).thenReturn(Arrays.asList(room(7), room(5), room(7)));
+
+        List<HotelSearchResult> results = hotelService.searchHotels("Beijing", "");
+
+        assertEquals(2, results.size());
+        assertEquals(best, results.get(0).getHotel());
+        assertEquals(good, results.get(1).getHotel());
+        assertEquals(2, results.get(1).getRooms().size());
+        verify(roomMapper, never()).findByHotel(any());
+    }
+
+    // 名称索引已加载时按索引给出的顺序返回，数据库只按主键取行
+    @Test
+    void testSearchHotels_ShouldUseNameIndexWhenLoaded() {
+        Hotel exact = new Hotel(7, "Luxury Inn", "Beijing", "addr", 4.0, null);
+        Hotel fuzzy = new Hotel(5, "Luxe Hotel", "Beijing", "addr", 4.8, null);
+        when(nameIndex.isLoaded()).thenReturn(true);
+        when(nameIndex.search("Beijing", "Luxury", Integer.MAX_VALUE)).thenReturn(Arrays.asList(7, 5, 9));
+        when(hotelMapper.selectByIds(Arrays.asList(7, 5, 9))).thenReturn(Arrays.asList(fuzzy, exact));
+        when(roomMapper.findByHotels(Arrays.asList(7, 5))).thenReturn(Arrays.asList(room(5), room(7)));
+
+        List<HotelSearchResult> results = hotelService.searchHotels("Beijing", "Luxury");
+
+        assertEquals(2, results.size());
+        assertEquals(exact, results.get(0).getHotel());
+        assertEquals(fuzzy, results.get(1).getHotel());
+        verify(hotelMapper, never()).findByDestAndName(any(), any());
+    }
+
+    // 给出入住区间时为每个房型附上区间内的可订间数，本页的房型一次计算
+    @Test
+    void testSearchHotelsPage_WithStay_ShouldAttachAvailability() {
+        Hotel hotel = new Hotel(1, "A", "Beijing", "addr", 4.5, null);
+        Room room = room(1);
+        room.setId(7);
+        room.setRemain(5);
+        when(hotelMapper.findPageByDest("Beijing", null, null, null, 3)).thenReturn(List.of(hotel));
+        when(roomMapper.findByHotels(List.of(1))).thenReturn(List.of(room));
+        LocalDate checkIn = LocalDate.of(2024, 7, 30);
+        when(calendar.available(List.of(room), checkIn, checkIn.plusDays(2))).thenReturn(Map.of(7, 3));
+
+        SearchPage<HotelSearchResult> page = hotelService.searchHotels("Beijing", null, null, 2,
+                new StayClaim(checkIn, checkIn.plusDays(2)));
+
+        assertEquals(Map.of(7, 3), page.getItems().get(0).getAvailable());
+        assertNull(hotelService.searchHotels("Beijing", null, null, 2, null).getItems().get(0).getAvailable());
+    }
+
+    private static Room room(int hotelId) {
+        Room room = new Room();
+        room.setHotelId(hotelId);
+        return room;
+    }
+
     @Test
     void testSearchHotels_WithoutPattern_NotFound() {
         when(hotelMapper.findByDest("Shanghai")).thenReturn(Collections.emptyList());
@@ -136,14 +242,70 @@ class HotelServiceImplTest {
         verify(roomMapper, times(1)).add(1, 2);
     }
 
+    // 按入住区间下单时remain是每晚的可售间数，由库存日历逐晚扣减
     @Test
-    void testHandlePaymentStatusChange_FailedOrRefunded() {
-        PaymentInfo info = mock(PaymentInfo.class);
-        when(info.getNewStatus()).thenReturn(org.fxtravel.fxspringboot.common.E_PaymentStatus.FAILED);
-        when(info.getGoodId()).thenReturn(1);
-        when(info.getQuantity()).thenReturn(2);
-        hotelService.handlePaymentStatusChange(info);
-        verify(roomMapper, times(1)).add(1, 2);
+    void testCheckAndGet_WithStay_ShouldReserveEveryNight() {
+        Room room = new Room();
+        room.setRemain(5);
+        when(roomMapper.selectById(1)).thenReturn(room);
+        StayClaim stay = new StayClaim(LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3));
+        when(calendar.reserve(1, 5, stay.getCheckInDate(), stay.getCheckOutDate(), 2)).thenReturn(true);
+
+        assertTrue(hotelService.checkAndGet(1, 2, stay));
+        verify(roomMapper, never()).deduct(anyInt(), anyInt());
+    }
+
+    @Test
+    void testPutBack_WithStay_ShouldReleaseEveryNight() {
+        StayClaim stay = new StayClaim(LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3));
+        hotelService.putBack(1, 2, stay);
+        verify(calendar).release(1, stay.getCheckInDate(), stay.getCheckOutDate(), 2);
+        verify(roomMapper, never()).add(anyInt(), anyInt());
+    }
+
+    // 占用成功后支付超时：回调携带入住区间
+    @Test
+    void testHandlePaymentStatusChange_FailedAfterReserve() {
+        StayClaim stay = new StayClaim(LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3));
+        hotelService.handlePaymentStatusChange(new PaymentInfo(9, 1, 2,
+                org.fxtravel.fxspringboot.common.E_PaymentStatus.FAILED, 1, stay));
+        verify(calendar).release(1, stay.getCheckInDate(), stay.getCheckOutDate(), 2);
+    }
+
+    // 库存不足导致的失败没有占用任何房量
+    @Test
+    void testHandlePaymentStatusChange_FailedWithoutReserve() {
+        hotelService.handlePaymentStatusChange(new PaymentInfo(9, 1, 2,
+                org.fxtravel.fxspringboot.common.E_PaymentStatus.FAILED, 1, PaymentInfo.NOTHING_HELD));
+        verifyNoInteractions(calendar);
+        verifyNoInteractions(roomOrderMapper);
+        verify(roomMapper, never()).add(anyInt(), anyInt());
+    }
+
+    // 重启后恢复的超时没有回调数据，按订单记录的入住区间归还
+    @Test
+    void testHandlePaymentStatusChange_FailedAfterRecovery() {
+        RoomOrder order = new RoomOrder();
+        order.setCheckInDate(LocalDate.of(2024, 7, 1));
+        order.setCheckOutDate(LocalDate.of(2024, 7, 3));
+        when(roomOrderMapper.selectById(9)).thenReturn(order);
+
+        hotelService.handlePaymentStatusChange(new PaymentInfo(9, 1, 2,
+                org.fxtravel.fxspringboot.common.E_PaymentStatus.FAILED, 1, null));
+        verify(calendar).release(1, LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3), 2);
+    }
+
+    // 退款按订单记录的入住区间归还
+    @Test
+    void testHandlePaymentStatusChange_Refunded() {
+        RoomOrder order = new RoomOrder();
+        order.setCheckInDate(LocalDate.of(2024, 7, 30));
+        order.setCheckOutDate(LocalDate.of(2024, 8, 2));
+        when(roomOrderMapper.selectById(9)).thenReturn(order);
+
+        hotelService.handlePaymentStatusChange(new PaymentInfo(9, 1, 2,
+                org.fxtravel.fxspringboot.common.E_PaymentStatus.REFUNDED, 1, null));
+        verify(calendar).release(1, LocalDate.of(2024, 7, 30), LocalDate.of(2024, 8, 2), 2);
     }
 
     @Test
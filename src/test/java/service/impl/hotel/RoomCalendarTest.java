@@ -0,0 +1,264 @@
+package service.impl.hotel;
+
+import org.fxtravel.fxspringboot.mapper.hotel.RoomCalendarMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Room;
+import org.fxtravel.fxspringboot.pojo.entities.RoomCalendarMonth;
+import org.fxtravel.fxspringboot.service.impl.hotel.RoomCalendar;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RoomCalendarTest {
+
+    private static final LocalDate JULY_30 = LocalDate.of(2024, 7, 30);
+
+    private RoomCalendarMapper calendarMapper;
+    private RoomCalendar calendar;
+    // 模拟room_calendar表：房型ID/月份 -> sold
+    private final Map<String, byte[]> table = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        calendarMapper = mock(RoomCalendarMapper.class);
+        when(calendarMapper.find(anyInt(), anyString())).thenAnswer(inv -> {
+            byte[] sold = table.get(inv.getArgument(0) + "/" + inv.getArgument(1));
+            return sold == null ? null : new RoomCalendarMonth(null, inv.getArgument(0), inv.getArgument(1), sold);
+        });
+        when(calendarMapper.insertIfAbsent(anyInt(), anyString(), any())).thenAnswer(inv ->
+                table.putIfAbsent(inv.getArgument(0) + "/" + inv.getArgument(1), inv.getArgument(2)) == null ? 1 : 0);
+        when(calendarMapper.compareAndSet(anyInt(), anyString(), any(), any())).thenAnswer(inv -> {
+            synchronized (table) {
+                String key = inv.getArgument(0) + "/" + inv.getArgument(1);
+                if (!Arrays.equals(table.get(key), inv.getArgument(2))) {
+                    return 0;
+                }
+                table.put(key, inv.getArgument(3));
+                return 1;
+            }
+        });
+        when(calendarMapper.findByRooms(anyList(), anyList())).thenAnswer(inv -> {
+            List<RoomCalendarMonth> rows = new ArrayList<>();
+            for (Integer roomId : inv.<List<Integer>>getArgument(0)) {
+                for (String month : inv.<List<String>>getArgument(1)) {
+                    byte[] sold = table.get(roomId + "/" + month);
+                    if (sold != null) {
+                        rows.add(new RoomCalendarMonth(null, roomId, month, sold));
+                    }
+                }
+            }
+            return rows;
+        });
+        calendar = calendar(false);
+    }
+
+    private RoomCalendar calendar(boolean resident) {
+        RoomCalendar calendar = new RoomCalendar();
+        injectField(calendar, "calendarMapper", calendarMapper);
+        injectField(calendar, "resident", resident);
+        return calendar;
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 只扣减入住区间内的夜晚，离店当天不占用
+    @Test
+    void reserve_shouldDecrementEveryNightOfTheStay() {
+        assertTrue(calendar.reserve(1, 2, JULY_30, JULY_30.plusDays(3), 1));
+
+        assertArrayEquals(new int[]{2, 1, 1, 1, 2},
+                calendar.remaining(1, 2, JULY_30.minusDays(1), JULY_30.plusDays(4)));
+    }
+
+    // 任何一晚不足时整个区间都不扣减
+    @Test
+    void reserve_shouldBeAllOrNothing() {
+        assertTrue(calendar.reserve(1, 1, JULY_30.plusDays(2), JULY_30.plusDays(3), 1));
+
+        assertFalse(calendar.reserve(1, 1, JULY_30, JULY_30.plusDays(4), 1));
+        assertArrayEquals(new int[]{1, 1, 0, 1}, calendar.remaining(1, 1, JULY_30, JULY_30.plusDays(4)));
+        assertTrue(calendar.reserve(1, 1, JULY_30, JULY_30.plusDays(2), 1));
+    }
+
+    @Test
+    void reserve_shouldRejectInvalidRanges() {
+        assertFalse(calendar.reserve(1, 5, JULY_30, JULY_30, 1));
+        assertFalse(calendar.reserve(1, 5, JULY_30, JULY_30.minusDays(1), 1));
+        assertFalse(calendar.reserve(1, 5, JULY_30, JULY_30.plusDays(31), 1));
+        assertFalse(calendar.reserve(1, 5, JULY_30, JULY_30.plusDays(1), 0));
+        verifyNoInteractions(calendarMapper);
+    }
+
+    // 归还与占用对称，已售间数不会减到0以下
+    @Test
+    void release_shouldRestoreNightsSymmetrically() {
+        assertTrue(calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(3), 2));
+        calendar.release(1, JULY_30, JULY_30.plusDays(3), 2);
+        calendar.release(1, JULY_30, JULY_30.plusDays(1), 1);
+
+        assertArrayEquals(new int[]{3, 3, 3}, calendar.remaining(1, 3, JULY_30, JULY_30.plusDays(3)));
+    }
+
+    // 常驻模式：跨月的区间写回涉及的每一个月，已保存的计数在下次加载时恢复
+    @Test
+    void reserve_shouldPersistEachTouchedMonthAndReloadIt() {
+        RoomCalendar resident = calendar(true);
+        assertTrue(resident.reserve(1, 3, JULY_30, JULY_30.plusDays(3), 2));
+
+        byte[] july = table.get("1/2024-07");
+        byte[] august = table.get("1/2024-08");
+        assertEquals(62, july.length);
+        assertEquals(2, july[29 * 2 + 1]);
+        assertEquals(2, august[1]);
+
+        RoomCalendar restarted = calendar(true);
+        assertArrayEquals(new int[]{1, 1, 1, 3}, restarted.remaining(1, 3, JULY_30, JULY_30.plusDays(4)));
+    }
+
+    // 常驻模式：另一个实例先写回时不覆盖它的数据，把它的变化并入内存后再写回
+    @Test
+    void persist_shouldMergeRowsWrittenByAnotherInstance() {
+        RoomCalendar first = calendar(true);
+        RoomCalendar second = calendar(true);
+        assertArrayEquals(new int[]{5}, first.remaining(1, 5, JULY_30, JULY_30.plusDays(1)));
+        assertArrayEquals(new int[]{5}, second.remaining(1, 5, JULY_30, JULY_30.plusDays(1)));
+
+        assertTrue(first.reserve(1, 5, JULY_30, JULY_30.plusDays(1), 1));
+        assertTrue(second.reserve(1, 5, JULY_30, JULY_30.plusDays(1), 2));
+        assertTrue(first.reserve(1, 5, JULY_30, JULY_30.plusDays(1), 1));
+
+        assertEquals(4, table.get("1/2024-07")[29 * 2 + 1]);
+        assertArrayEquals(new int[]{1}, first.remaining(1, 5, JULY_30, JULY_30.plusDays(1)));
+    }
+
+    // 数据库模式：多个实例共用同一份日历，不会超售
+    @Test
+    void reserve_shouldShareTheDatabaseRowsAcrossInstances() {
+        RoomCalendar other = calendar(false);
+        assertTrue(calendar.reserve(1, 1, JULY_30, JULY_30.plusDays(2), 1));
+
+        assertFalse(other.reserve(1, 1, JULY_30.plusDays(1), JULY_30.plusDays(3), 1));
+        assertArrayEquals(new int[]{0, 0, 1}, other.remaining(1, 1, JULY_30, JULY_30.plusDays(3)));
+        other.release(1, JULY_30, JULY_30.plusDays(2), 1);
+        assertTrue(calendar.reserve(1, 1, JULY_30.plusDays(1), JULY_30.plusDays(3), 1));
+    }
+
+    // 数据库模式：后面的月份没有余量时把前面已写入的月份加回
+    @Test
+    void reserve_shouldUndoEarlierMonthsWhenALaterMonthIsFull() {
+        assertTrue(calendar.reserve(1, 1, LocalDate.of(2024, 8, 1), LocalDate.of(2024, 8, 2), 1));
+
+        assertFalse(calendar.reserve(1, 1, JULY_30, JULY_30.plusDays(3), 1));
+        assertArrayEquals(new byte[62], table.get("1/2024-07"));
+        assertArrayEquals(new int[]{1, 1, 0}, calendar.remaining(1, 1, JULY_30, JULY_30.plusDays(3)));
+    }
+
+    // 冲突重试耗尽时不扣减
+    @Test
+    void reserve_shouldGiveUpAfterRetries() {
+        table.put("1/2024-07", new byte[62]);
+        reset(calendarMapper);
+        when(calendarMapper.find(1, "2024-07")).thenReturn(new RoomCalendarMonth(null, 1, "2024-07", new byte[62]));
+        when(calendarMapper.compareAndSet(anyInt(), anyString(), any(), any())).thenReturn(0);
+
+        assertFalse(calendar.reserve(1, 5, JULY_30, JULY_30.plusDays(1), 1));
+        verify(calendarMapper, times(6)).compareAndSet(anyInt(), anyString(), any(), any());
+    }
+
+    // 可订间数为区间内各晚剩余间数的最小值，所有房型一次查询
+    @Test
+    void available_shouldReturnTheTightestNightForEachRoom() {
+        assertTrue(calendar.reserve(1, 3, JULY_30.plusDays(1), JULY_30.plusDays(2), 2));
+        assertTrue(calendar.reserve(2, 3, JULY_30, JULY_30.plusDays(1), 1));
+
+        Map<Integer, Integer> available = calendar.available(List.of(room(1, 3), room(2, 3), room(3, 0)),
+                JULY_30, JULY_30.plusDays(3));
+
+        assertEquals(Map.of(1, 1, 2, 2, 3, 0), available);
+        verify(calendarMapper).findByRooms(List.of(1, 2, 3), List.of("2024-07", "2024-08"));
+        assertThrows(IllegalArgumentException.class,
+                () -> calendar.available(List.of(room(1, 3)), JULY_30, JULY_30));
+    }
+
+    // 冲突次数超过重试上限时占用放弃，归还（包括跨月占用失败后的回滚）仍重试到写入为止
+    @Test
+    void release_shouldKeepRetryingPastTheRetryLimit() {
+        assertTrue(calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(1), 1));
+        injectField(calendar, "maxRetries", 1);
+        AtomicInteger conflicts = new AtomicInteger(5);
+        doAnswer(inv -> {
+            if (conflicts.getAndDecrement() > 0) {
+                return 0;
+            }
+            synchronized (table) {
+                table.put(inv.getArgument(0) + "/" + inv.getArgument(1), inv.getArgument(3));
+                return 1;
+            }
+        }).when(calendarMapper).compareAndSet(anyInt(), anyString(), any(), any());
+
+        assertFalse(calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(1), 1));
+        calendar.release(1, JULY_30, JULY_30.plusDays(1), 1);
+
+        assertEquals(-1, conflicts.get());
+        assertArrayEquals(new int[]{3}, calendar.remaining(1, 3, JULY_30, JULY_30.plusDays(1)));
+    }
+
+    private static Room room(int id, int remain) {
+        Room room = new Room();
+        room.setId(id);
+        room.setRemain(remain);
+        return room;
+    }
+
+    // 并发占用重叠区间时不会超售，两种模式相同
+    @Test
+    void reserve_shouldNeverOversellUnderContention() throws Exception {
+        for (boolean resident : new boolean[]{false, true}) {
+            int roomId = resident ? 2 : 1;
+            RoomCalendar calendar = calendar(resident);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int offset = i % 3;
+                results.add(pool.submit(() -> calendar.reserve(roomId, 10, JULY_30.plusDays(offset), JULY_30.plusDays(offset + 2), 1)));
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                succeeded += result.get() ? 1 : 0;
+            }
+            int[] remaining = calendar(false).remaining(roomId, 10, JULY_30, JULY_30.plusDays(4));
+            int soldNights = 0;
+            for (int left : remaining) {
+                assertTrue(left >= 0);
+                soldNights += 10 - left;
+            }
+            assertEquals(succeeded * 2, soldNights);
+            assertTrue(succeeded >= 10);
+        }
+    }
+}
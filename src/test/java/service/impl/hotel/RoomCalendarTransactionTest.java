@@ -0,0 +1,130 @@
+package service.impl.hotel;
+
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import org.flywaydb.core.Flyway;
+import org.fxtravel.fxspringboot.mapper.hotel.RoomCalendarMapper;
+import org.fxtravel.fxspringboot.service.impl.hotel.RoomCalendar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在H2（MySQL兼容模式）上用真实的事务验证：调用方已在可重复读事务中读过数据时，
+ * 日历的读取与比较并交换不加入该事务，能看到之后其他实例提交的写入，冲突后重试仍能成功。
+ */
+@SpringJUnitConfig(RoomCalendarTransactionTest.Config.class)
+class RoomCalendarTransactionTest {
+
+    private static final String URL =
+            "jdbc:h2:mem:calendar-tx;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    private static final LocalDate JULY_30 = LocalDate.of(2024, 7, 30);
+
+    @Configuration
+    @EnableTransactionManagement
+    @MapperScan(basePackageClasses = RoomCalendarMapper.class)
+    static class Config {
+        @Bean
+        DataSource dataSource() {
+            Flyway.configure().dataSource(URL, "sa", "").load().migrate();
+            return new DriverManagerDataSource(URL, "sa", "");
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        MybatisSqlSessionFactoryBean sqlSessionFactory(DataSource dataSource) {
+            MybatisSqlSessionFactoryBean factory = new MybatisSqlSessionFactoryBean();
+            factory.setDataSource(dataSource);
+            return factory;
+        }
+
+        @Bean
+        RoomCalendar roomCalendar() {
+            return new RoomCalendar();
+        }
+    }
+
+    @Autowired
+    private RoomCalendar calendar;
+    @Autowired
+    private RoomCalendarMapper calendarMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void clear() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            connection.createStatement().executeUpdate("DELETE FROM room_calendar");
+        }
+    }
+
+    // 调用方事务读过日历之后另一个实例又售出一间，第一次比较并交换冲突，重试读到最新的行后成功
+    @Test
+    void reserve_shouldRetryAgainstRowsCommittedAfterTheCallerTransactionStarted() {
+        assertTrue(calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(1), 1));
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        Boolean reserved = tx.execute(status -> {
+            // 与支付流程相同，调用方事务先读过数据，此后事务内读到的都是这一刻的快照
+            assertNotNull(calendarMapper.find(1, "2024-07"));
+            soldByAnotherInstance(2);
+            return calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(1), 1);
+        });
+
+        assertEquals(Boolean.TRUE, reserved);
+        assertArrayEquals(new int[]{0}, calendar.remaining(1, 3, JULY_30, JULY_30.plusDays(1)));
+    }
+
+    // 归还同样不加入调用方事务
+    @Test
+    void release_shouldApplyToTheLatestRowInsideACallerTransaction() {
+        assertTrue(calendar.reserve(1, 3, JULY_30, JULY_30.plusDays(1), 1));
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        tx.executeWithoutResult(status -> {
+            assertNotNull(calendarMapper.find(1, "2024-07"));
+            soldByAnotherInstance(3);
+            calendar.release(1, JULY_30, JULY_30.plusDays(1), 1);
+        });
+
+        assertArrayEquals(new int[]{1}, calendar.remaining(1, 3, JULY_30, JULY_30.plusDays(1)));
+    }
+
+    // 另一个实例在独立的连接上提交的写入：7月30日当晚已售sold间
+    private static void soldByAnotherInstance(int sold) {
+        byte[] row = new byte[62];
+        row[29 * 2 + 1] = (byte) sold;
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE room_calendar SET sold = ? WHERE room_id = 1 AND stay_month = '2024-07'")) {
+            update.setBytes(1, row);
+            assertEquals(1, update.executeUpdate());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
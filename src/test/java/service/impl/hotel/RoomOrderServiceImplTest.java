@@ -3,6 +3,8 @@ package service.impl.hotel;
 import org.fxtravel.fxspringboot.common.E_PaymentType;
 import org.fxtravel.fxspringboot.mapper.hotel.RoomOrderMapper;
 import org.fxtravel.fxspringboot.pojo.dto.hotel.BookHotelRequest;
+import org.fxtravel.fxspringboot.event.data.PaymentInfo;
+import org.fxtravel.fxspringboot.pojo.dto.hotel.StayClaim;
 import org.fxtravel.fxspringboot.pojo.entities.Hotel;
 import org.fxtravel.fxspringboot.pojo.entities.Room;
 import org.fxtravel.fxspringboot.pojo.entities.RoomOrder;
@@ -12,15 +14,18 @@ import org.fxtravel.fxspringboot.service.impl.hotel.RoomOrderServiceImpl;
 import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -90,4 +95,54 @@ public class RoomOrderServiceImplTest {
         });
     }
 
+    // 按入住区间占用房量，占用成功后支付失败时才携带区间归还
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateOrder_shouldReserveStayRange() {
+        BookHotelRequest request = new BookHotelRequest();
+        request.setUserId(1);
+        request.setHotelId(100);
+        request.setRoomId(200);
+        request.setCheckInDate(LocalDate.of(2024, 7, 30));
+        request.setCheckOutDate(LocalDate.of(2024, 8, 2));
+
+        Room room = new Room();
+        room.setId(200);
+        room.setPricePerNight(100.0);
+        when(hotelService.getHotelById(100)).thenReturn(new Hotel());
+        when(hotelService.getRoomById(200)).thenReturn(room);
+        payment payment = mock(payment.class);
+        when(payment.getOrderNumber()).thenReturn("HT-1");
+        when(paymentService.createPayment(eq(1), eq(E_PaymentType.HOTEL), eq(300.0), any(), anyInt(), anyInt()))
+                .thenReturn(payment);
+
+        roomOrderService.createOrder(request);
+
+        ArgumentCaptor<Supplier<Boolean>> deduction = ArgumentCaptor.forClass(Supplier.class);
+        ArgumentCaptor<Supplier<Object>> data = ArgumentCaptor.forClass(Supplier.class);
+        verify(paymentService).simulatePaymentProcess(eq("HT-1"), eq(30L), deduction.capture(), data.capture());
+
+        StayClaim stay = new StayClaim(LocalDate.of(2024, 7, 30), LocalDate.of(2024, 8, 2));
+        when(hotelService.checkAndGet(200, 1, stay)).thenReturn(false);
+        assertFalse(deduction.getValue().get());
+        assertSame(PaymentInfo.NOTHING_HELD, data.getValue().get());
+
+        when(hotelService.checkAndGet(200, 1, stay)).thenReturn(true);
+        assertTrue(deduction.getValue().get());
+        assertEquals(stay, data.getValue().get());
+    }
+
+    @Test
+    void testCreateOrder_checkOutNotAfterCheckIn_shouldThrowException() {
+        BookHotelRequest request = new BookHotelRequest();
+        request.setHotelId(100);
+        request.setRoomId(200);
+        request.setCheckInDate(LocalDate.of(2024, 7, 3));
+        request.setCheckOutDate(LocalDate.of(2024, 7, 3));
+
+        when(hotelService.getHotelById(100)).thenReturn(new Hotel());
+        when(hotelService.getRoomById(200)).thenReturn(new Room());
+
+        assertThrows(IllegalArgumentException.class, () -> roomOrderService.createOrder(request));
+    }
 }
@@ -0,0 +1,166 @@
+package service.impl.trainmeal;
+
+import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
+import org.fxtravel.fxspringboot.service.impl.trainmeal.MealMenuCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MealMenuCacheTest {
+
+    private MealMenuCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MealMenuCache();
+        loads = new AtomicInteger();
+    }
+
+    private void setField(String field, Object value) {
+        try {
+            var f = MealMenuCache.class.getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(cache, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Supplier<List<TrainMeal>> loader(int trainId, int... mealIds) {
+        return () -> {
+            loads.incrementAndGet();
+            List<TrainMeal> meals = new ArrayList<>();
+            for (int id : mealIds) {
+                TrainMeal meal = new TrainMeal();
+                meal.setId(id);
+                meal.setTrainId(trainId);
+                meal.setRemain(10);
+                meals.add(meal);
+            }
+            return meals;
+        };
+    }
+
+    // 命中时返回副本，调用方修改不影响缓存
+    @Test
+    void get_shouldCacheAndReturnCopies() {
+        List<TrainMeal> first = cache.get(1, loader(1, 11, 12));
+        first.get(0).setRemain(0);
+        first.clear();
+
+        List<TrainMeal> second = cache.get(1, loader(1, 11, 12));
+
+        assertEquals(1, loads.get());
+        assertEquals(2, second.size());
+        assertEquals(10, second.get(0).getRemain());
+        assertEquals(1L, cache.getStats().get("menuCacheHits"));
+    }
+
+    @Test
+    void updateAndAdjustRemain_shouldPatchCachedMeal() {
+        cache.get(1, loader(1, 11));
+
+        cache.updateRemain(11, 4);
+        assertEquals(4, cache.get(1, loader(1, 11)).get(0).getRemain());
+        cache.adjustRemain(11, -6);
+        assertEquals(0, cache.get(1, loader(1, 11)).get(0).getRemain());
+
+        // 未缓存的餐食忽略
+        cache.updateRemain(99, 1);
+        cache.adjustRemain(99, 1);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_shouldReloadOnlyThatTrain() {
+        cache.get(1, loader(1, 11));
+        cache.get(2, loader(2, 21));
+
+        cache.invalidate(1);
+        cache.updateRemain(11, 3);
+        cache.get(1, loader(1, 11));
+        cache.get(2, loader(2, 21));
+
+        assertEquals(3, loads.get());
+        assertEquals(10, cache.get(1, loader(1, 11)).get(0).getRemain());
+    }
+
+    // 超出条目数时淘汰最久未访问的车次，过期的条目重新加载
+    @Test
+    void get_shouldEvictLeastRecentlyUsedAndExpire() {
+        setField("maxEntries", 2);
+        cache.get(1, loader(1, 11));
+        cache.get(2, loader(2, 21));
+        cache.get(1, loader(1, 11));
+        cache.get(3, loader(3, 31));
+
+        cache.get(1, loader(1, 11));
+        assertEquals(3, loads.get());
+        cache.get(2, loader(2, 21));
+        assertEquals(4, loads.get());
+        assertEquals(2L, cache.getStats().get("menuCacheEvictions"));
+
+        setField("ttlSeconds", 0L);
+        cache.invalidateAll();
+        cache.get(1, loader(1, 11));
+        cache.get(1, loader(1, 11));
+        assertEquals(6, loads.get());
+    }
+
+    // 查询期间餐食余量被修改：查到的旧余量只返回不缓存，下次读取重新查询
+    @Test
+    void get_shouldNotCacheMenuWhoseMealWasPatchedDuringTheLoad() {
+        Supplier<List<TrainMeal>> stale = () -> {
+            List<TrainMeal> meals = loader(1, 11).get();
+            // 查询已读到余量10，返回前另一个线程下单扣减了2
+            cache.adjustRemain(11, -2);
+            return meals;
+        };
+
+        assertEquals(10, cache.get(1, stale).get(0).getRemain());
+        assertEquals(1L, cache.getStats().get("menuCacheDiscarded"));
+        assertEquals(0L, cache.getStats().get("menuCacheEntries"));
+
+        cache.get(1, loader(1, 11));
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.getStats().get("menuCacheEntries"));
+    }
+
+    // 查询期间车次被淘汰（餐食上下架）同样不缓存；其他餐食、其他车次的修改不影响
+    @Test
+    void get_shouldNotCacheMenuInvalidatedDuringTheLoad() {
+        cache.get(1, () -> {
+            cache.invalidate(1);
+            return loader(1, 11).get();
+        });
+        assertEquals(0L, cache.getStats().get("menuCacheEntries"));
+
+        cache.get(1, () -> {
+            cache.adjustRemain(21, -1);
+            cache.invalidate(2);
+            return loader(1, 11).get();
+        });
+        assertEquals(1L, cache.getStats().get("menuCacheEntries"));
+        assertEquals(1L, cache.getStats().get("menuCacheDiscarded"));
+    }
+
+    // 查询失败时异常抛给调用方，之后的修改与查询不受影响
+    @Test
+    void get_shouldRethrowLoaderFailure() {
+        assertThrows(IllegalStateException.class, () -> cache.get(1, () -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        cache.get(1, loader(1, 11));
+        cache.adjustRemain(11, -1);
+        assertEquals(9, cache.get(1, loader(1, 11)).get(0).getRemain());
+        assertEquals(1, loads.get());
+    }
+}
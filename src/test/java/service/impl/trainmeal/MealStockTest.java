@@ -0,0 +1,190 @@
+package service.impl.trainmeal;
+
+import org.fxtravel.fxspringboot.mapper.trainmeal.TrainMealMapper;
+import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
+import org.fxtravel.fxspringboot.service.impl.trainmeal.MealStock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MealStockTest {
+
+    private TrainMealMapper trainMealMapper;
+    private MealStock stock;
+
+    @BeforeEach
+    void setUp() {
+        trainMealMapper = mock(TrainMealMapper.class);
+        stock = new MealStock();
+        injectField(stock, "trainMealMapper", trainMealMapper);
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void meal(int id, int remain) {
+        TrainMeal meal = new TrainMeal();
+        meal.setId(id);
+        meal.setRemain(remain);
+        when(trainMealMapper.selectById(id)).thenReturn(meal);
+    }
+
+    // 首次访问时加载，之后只在内存中扣减
+    @Test
+    void claim_shouldLoadLazilyAndStayInMemory() {
+        meal(1, 10);
+        assertEquals(-1, stock.remain(1));
+
+        assertTrue(stock.claim(1, 3));
+        assertTrue(stock.claim(1, 2));
+
+        assertEquals(5, stock.remain(1));
+        verify(trainMealMapper, times(1)).selectById(1);
+        verify(trainMealMapper, never()).deduct(anyInt(), anyInt());
+    }
+
+    // 单个条带不足时从其他条带凑齐，总量不足时不扣减
+    @Test
+    void claim_shouldBorrowAcrossStripesAndRejectWhenShort() {
+        meal(1, 10);
+
+        assertTrue(stock.claim(1, 9));
+        assertEquals(1, stock.remain(1));
+        assertFalse(stock.claim(1, 2));
+        assertEquals(1, stock.remain(1));
+        assertTrue(stock.claim(1, 1));
+        assertFalse(stock.claim(1, 1));
+        assertTrue(stock.getStats().get("borrows") >= 1);
+        assertEquals(2L, stock.getStats().get("rejects"));
+    }
+
+    @Test
+    void claim_shouldRejectUnknownMeal() {
+        assertFalse(stock.claim(99, 1));
+        assertEquals(-1, stock.remain(99));
+    }
+
+    // 写回的是增量，写回后没有新变更时不再写
+    @Test
+    void flush_shouldWriteDeltasInOneStatement() {
+        meal(1, 10);
+        meal(2, 5);
+        stock.claim(1, 4);
+        stock.release(1, 1);
+        stock.claim(2, 5);
+
+        stock.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TrainMeal>> batch = ArgumentCaptor.forClass(List.class);
+        verify(trainMealMapper).addAll(batch.capture());
+        assertEquals(2, batch.getValue().size());
+        for (TrainMeal meal : batch.getValue()) {
+            assertEquals(meal.getId() == 1 ? -3 : -5, meal.getRemain());
+        }
+
+        stock.flush();
+        verify(trainMealMapper, times(1)).addAll(any());
+        assertEquals(1L, stock.getStats().get("flushStatements"));
+        assertEquals(2L, stock.getStats().get("flushedRows"));
+    }
+
+    // 写回失败时保留增量，下一轮重试
+    @Test
+    void flush_shouldRetryAfterFailure() {
+        meal(1, 10);
+        stock.claim(1, 2);
+        when(trainMealMapper.addAll(any())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+
+        stock.flush();
+        stock.claim(1, 1);
+        stock.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TrainMeal>> batch = ArgumentCaptor.forClass(List.class);
+        verify(trainMealMapper, times(2)).addAll(batch.capture());
+        assertEquals(-3, batch.getAllValues().get(1).get(0).getRemain());
+        assertEquals(1L, stock.getStats().get("flushFailures"));
+    }
+
+    // 核对：补货等其他途径的修改并入内存，本实例未写回的扣减不受影响
+    @Test
+    void reconcile_shouldMergeChangesMadeDirectlyInTheDatabase() {
+        meal(1, 10);
+        stock.claim(1, 4);
+        TrainMeal restocked = new TrainMeal();
+        restocked.setId(1);
+        // 写回-4之后后台又补了20份
+        restocked.setRemain(26);
+        when(trainMealMapper.selectByIds(List.of(1))).thenReturn(List.of(restocked));
+
+        stock.reconcile();
+
+        assertEquals(26, stock.remain(1));
+        verify(trainMealMapper).addAll(any());
+        stock.flush();
+        verify(trainMealMapper, times(1)).addAll(any());
+        assertEquals(1L, stock.getStats().get("reconciled"));
+    }
+
+    // 核对：数据库余量被调低且超过内存余量时只扣到0，之后归还的份数继续抵扣
+    @Test
+    void reconcile_shouldApplyReductionsAsStockBecomesFree() {
+        meal(1, 10);
+        stock.claim(1, 8);
+        TrainMeal row = new TrainMeal();
+        row.setId(1);
+        // 写回-8之后余量为2，后台直接把余量改小了5份
+        row.setRemain(-3);
+        when(trainMealMapper.selectByIds(List.of(1))).thenReturn(List.of(row));
+
+        stock.reconcile();
+        assertEquals(0, stock.remain(1));
+        assertFalse(stock.claim(1, 1));
+
+        // 退回3份后余量为0，而不是3
+        stock.release(1, 3);
+        row.setRemain(0);
+        stock.reconcile();
+        assertEquals(0, stock.remain(1));
+    }
+
+    // 并发下单时不会超卖
+    @Test
+    void claim_shouldNeverOversellUnderContention() throws Exception {
+        meal(1, 100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            results.add(pool.submit(() -> stock.claim(1, 1)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            succeeded += result.get() ? 1 : 0;
+        }
+        assertEquals(100 - stock.remain(1), succeeded);
+        assertTrue(stock.remain(1) >= 0);
+        assertTrue(succeeded >= 90);
+    }
+}
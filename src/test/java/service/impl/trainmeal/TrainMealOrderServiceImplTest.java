@@ -19,6 +19,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -168,6 +169,37 @@ class TrainMealOrderServiceImplTest {
                 eq("ORDER123"), eq(30L), any(), any());
     }
 
+    // createOrder 餐食售罄：支付失败携带NOTHING_HELD，失败回调不会归还没有扣减过的余量
+    @Test
+    @SuppressWarnings("unchecked")
+    void createOrder_soldOutShouldFailWithNothingHeld() {
+        TrainMealOrderDTO orderDTO = new TrainMealOrderDTO();
+        orderDTO.setUserId(1);
+        orderDTO.setTrainMealId(5);
+        orderDTO.setQuantity(2);
+        TrainMeal meal = new TrainMeal();
+        meal.setId(5);
+        meal.setPrice(50.0);
+        meal.setEnabled(true);
+        payment mockPayment = mock(payment.class);
+        when(mockPayment.getOrderNumber()).thenReturn("ORDER123");
+        when(trainMealService.getMealById(5)).thenReturn(meal);
+        when(paymentService.createPayment(any(), any(), any(), any(), any(), any())).thenReturn(mockPayment);
+        when(trainMealService.checkAndGet(eq(5), eq(2), any())).thenReturn(false);
+        Object[] data = new Object[1];
+        when(paymentService.simulatePaymentProcess(eq("ORDER123"), eq(30L), any(), any())).thenAnswer(invocation -> {
+            Supplier<Boolean> deduction = invocation.getArgument(2);
+            Supplier<Object> failure = invocation.getArgument(3);
+            assertFalse(deduction.get());
+            data[0] = failure.get();
+            return null;
+        });
+
+        service.createOrder(orderDTO);
+
+        assertSame(PaymentInfo.NOTHING_HELD, data[0]);
+    }
+
     // createOrder 反向（餐食不存在）
     @Test
     void createOrder_shouldThrowExceptionWhenMealNotFound() {
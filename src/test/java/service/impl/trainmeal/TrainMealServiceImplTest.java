@@ -1,9 +1,12 @@
 package service.impl.trainmeal;
 
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 import org.fxtravel.fxspringboot.event.EventCenter;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.trainmeal.TrainMealMapper;
 import org.fxtravel.fxspringboot.pojo.entities.trainmeal.TrainMeal;
+import org.fxtravel.fxspringboot.service.impl.trainmeal.MealMenuCache;
+import org.fxtravel.fxspringboot.service.impl.trainmeal.MealStock;
 import org.fxtravel.fxspringboot.service.impl.trainmeal.TrainMealServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +14,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
@@ -29,6 +33,10 @@ class TrainMealServiceImplTest {
     private TrainMealMapper trainMealMapper;
     @Mock
     private EventCenter eventCenter;
+    @Mock
+    private MealStock mealStock;
+    @Spy
+    private MealMenuCache menuCache = new MealMenuCache();
 
     // getMealsByTrain4User 正向
     @Test
@@ -64,38 +72,92 @@ class TrainMealServiceImplTest {
         assertNull(result);
     }
 
-    // checkAndGet 正向
+    private void setResident(boolean resident) {
+        try {
+            var f = TrainMealServiceImpl.class.getDeclaredField("residentStock");
+            f.setAccessible(true);
+            f.set(service, resident);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // checkAndGet 正向：常驻模式只扣减内存条带，不访问数据库
+    @Test
+    void checkAndGet_shouldClaimFromResidentStock() {
+        setResident(true);
+        when(mealStock.claim(1, 5)).thenReturn(true);
+        assertTrue(service.checkAndGet(1, 5, null));
+        verifyNoInteractions(trainMealMapper);
+    }
+
+    // checkAndGet 数据库模式：只有一条带条件的UPDATE
     @Test
     void checkAndGet_shouldDeductStockAndReturnTrue() {
-        TrainMeal meal = new TrainMeal();
-        meal.setRemain(10);
-        when(trainMealMapper.selectByIdForUpdate(1)).thenReturn(meal);
+        setResident(false);
         when(trainMealMapper.deduct(1, 5)).thenReturn(1);
         boolean result = service.checkAndGet(1, 5, null);
         assertTrue(result);
+        verify(trainMealMapper).deduct(1, 5);
+        verifyNoMoreInteractions(trainMealMapper);
+        assertEquals(1L, service.getStockStats().get("fallbacks"));
     }
 
-    // checkAndGet 反向（库存不足）
+    // checkAndGet 反向（库存不足或无此商品）
     @Test
     void checkAndGet_shouldReturnFalseWhenStockNotEnough() {
-        TrainMeal meal = new TrainMeal();
-        meal.setRemain(2);
-        when(trainMealMapper.selectByIdForUpdate(1)).thenReturn(meal);
+        setResident(false);
+        when(trainMealMapper.deduct(1, 5)).thenReturn(0);
         boolean result = service.checkAndGet(1, 5, null);
         assertFalse(result);
     }
 
-    // checkAndGet 反向（无此商品）
+    // 常驻模式下菜单显示内存中的余量
     @Test
-    void checkAndGet_shouldReturnFalseWhenMealNotFound() {
-        when(trainMealMapper.selectByIdForUpdate(99)).thenReturn(null);
-        boolean result = service.checkAndGet(99, 1, null);
-        assertFalse(result);
+    void getMealsByTrain4User_shouldOverlayResidentRemain() {
+        setResident(true);
+        TrainMeal loaded = new TrainMeal();
+        loaded.setId(1);
+        loaded.setRemain(10);
+        TrainMeal cold = new TrainMeal();
+        cold.setId(2);
+        cold.setRemain(7);
+        when(trainMealMapper.selectByTrain(1)).thenReturn(Arrays.asList(loaded, cold));
+        when(mealStock.remain(1)).thenReturn(4);
+        when(mealStock.remain(2)).thenReturn(-1);
+
+        List<TrainMeal> result = service.getMealsByTrain4User(1);
+
+        assertEquals(4, result.get(0).getRemain());
+        assertEquals(7, result.get(1).getRemain());
+    }
+
+    @Test
+    void putBack_shouldReleaseToResidentStock() {
+        setResident(true);
+        service.putBack(1, 5, null);
+        verify(mealStock).release(1, 5);
+        verifyNoInteractions(trainMealMapper);
+    }
+
+    // 支付失败：扣减失败的订单携带NOTHING_HELD，不归还余量；扣减过的订单照常归还
+    @Test
+    void handlePaymentStatusChange_failedShouldSkipNothingHeld() throws Exception {
+        setResident(true);
+        var method = TrainMealServiceImpl.class.getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+
+        method.invoke(service, new PaymentInfo(1, 5, 2, E_PaymentStatus.FAILED, 7, PaymentInfo.NOTHING_HELD));
+        verify(mealStock, never()).release(anyInt(), anyInt());
+
+        method.invoke(service, new PaymentInfo(2, 5, 2, E_PaymentStatus.FAILED, 7, null));
+        verify(mealStock).release(5, 2);
     }
 
-    // putBack 正向
+    // putBack 正向（数据库模式）
     @Test
     void putBack_shouldAddStock() {
+        setResident(false);
         service.putBack(1, 5, null);
         verify(trainMealMapper, times(1)).add(1, 5);
     }
@@ -103,8 +165,72 @@ class TrainMealServiceImplTest {
     // putBack 反向（数量为0）
     @Test
     void putBack_shouldNotAddWhenCountIsZero() {
+        setResident(false);
         service.putBack(1, 0, null);
         verify(trainMealMapper, times(1)).add(1, 0);
     }
 
-}
\ No newline at end of file
+    private static TrainMeal meal(int id, int trainId, int remain) {
+        TrainMeal meal = new TrainMeal();
+        meal.setId(id);
+        meal.setTrainId(trainId);
+        meal.setRemain(remain);
+        meal.setEnabled(true);
+        return meal;
+    }
+
+    // 重复查看菜单时不再访问数据库
+    @Test
+    void getMealsByTrain4User_shouldServeRepeatedViewsFromCache() {
+        when(trainMealMapper.selectByTrain(1)).thenReturn(Arrays.asList(meal(1, 1, 10)));
+
+        service.getMealsByTrain4User(1);
+        List<TrainMeal> again = service.getMealsByTrain4User(1);
+
+        assertEquals(1, again.size());
+        verify(trainMealMapper, times(1)).selectByTrain(1);
+    }
+
+    // 数据库模式下单、退单直接修改缓存中的余量
+    @Test
+    void checkAndGet_shouldPatchCachedMenuRemain() {
+        setResident(false);
+        when(trainMealMapper.selectByTrain(1)).thenReturn(Arrays.asList(meal(1, 1, 10)));
+        when(trainMealMapper.deduct(1, 3)).thenReturn(1);
+        service.getMealsByTrain4User(1);
+
+        assertTrue(service.checkAndGet(1, 3, null));
+        assertEquals(7, service.getMealsByTrain4User(1).get(0).getRemain());
+        service.putBack(1, 1, null);
+        assertEquals(8, service.getMealsByTrain4User(1).get(0).getRemain());
+        verify(trainMealMapper, times(1)).selectByTrain(1);
+    }
+
+    // 上下架后淘汰所在车次的菜单，且不修改余量
+    @Test
+    void updateMeal_shouldInvalidateMenuAndKeepRemain() {
+        when(trainMealMapper.selectByTrain(1)).thenReturn(Arrays.asList(meal(1, 1, 10)))
+                .thenReturn(Collections.emptyList());
+        when(trainMealMapper.selectById(1)).thenReturn(meal(1, 1, 10));
+        when(trainMealMapper.updateById(any(TrainMeal.class))).thenReturn(1);
+        service.getMealsByTrain4User(1);
+
+        TrainMeal disabled = new TrainMeal();
+        disabled.setId(1);
+        disabled.setEnabled(false);
+        disabled.setRemain(99);
+        assertTrue(service.updateMeal(disabled));
+
+        assertNull(disabled.getRemain());
+        assertTrue(service.getMealsByTrain4User(1).isEmpty());
+        verify(trainMealMapper, times(2)).selectByTrain(1);
+    }
+
+    @Test
+    void updateMeal_shouldReturnFalseWhenMealNotFound() {
+        TrainMeal meal = new TrainMeal();
+        meal.setId(99);
+        assertFalse(service.updateMeal(meal));
+        verify(trainMealMapper, never()).updateById(any(TrainMeal.class));
+    }
+}
@@ -0,0 +1,422 @@
+package service.impl.trainseat;
+
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainStopMapper;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.pojo.entities.TrainStop;
+import org.fxtravel.fxspringboot.service.impl.trainseat.SeatInventory;
+import org.fxtravel.fxspringboot.utils.SeatUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SeatInventoryTest {
+
+    private TrainSeatMapper trainSeatMapper;
+    private TrainStopMapper trainStopMapper;
+    private SeatInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        trainSeatMapper = mock(TrainSeatMapper.class);
+        trainStopMapper = mock(TrainStopMapper.class);
+        inventory = new SeatInventory();
+        injectField(inventory, "trainSeatMapper", trainSeatMapper);
+        injectField(inventory, "trainStopMapper", trainStopMapper);
+        injectField(inventory, "trainMapper", mock(TrainMapper.class));
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private TrainSeat seat(int id, int remain, byte[] allocation) {
+        TrainSeat seat = new TrainSeat();
+        seat.setId(id);
+        seat.setRemain(remain);
+        seat.setSeatAllocation(allocation);
+        return seat;
+    }
+
+    // claim 正向：跳过已占用的座位，只加载一次
+    @Test
+    void claim_shouldReturnFirstFreeSeatAndLoadOnce() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 10, new byte[]{0x07, 0, 0, 0, 0, 0, 0, 0}));
+
+        assertEquals(3, inventory.claim(1));
+        assertEquals(4, inventory.claim(1));
+        verify(trainSeatMapper, times(1)).selectById(1);
+    }
+
+    // claim 反向：余量为0
+    @Test
+    void claim_shouldFailWhenNoRemain() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 0, new byte[8]));
+
+        assertEquals(-1, inventory.claim(1));
+    }
+
+    // claim 反向：位图已满时归还余量
+    @Test
+    void claim_shouldFailWhenBitmapFull() {
+        byte[] full = new byte[8];
+        Arrays.fill(full, (byte) -1);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 3, full));
+
+        assertEquals(-1, inventory.claim(1));
+        assertEquals(-1, inventory.claim(1));
+    }
+
+    // claim 反向：座次不存在
+    @Test
+    void claim_shouldFailWhenSeatNotFound() {
+        when(trainSeatMapper.selectById(9)).thenReturn(null);
+
+        assertEquals(-1, inventory.claim(9));
+    }
+
+    // release 正向与重复释放
+    @Test
+    void release_shouldFreeSeatOnlyOnce() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 1, new byte[8]));
+
+        int index = inventory.claim(1);
+        assertEquals(-1, inventory.claim(1));
+        assertTrue(inventory.release(1, index));
+        assertFalse(inventory.release(1, index));
+        assertEquals(index, inventory.claim(1));
+    }
+
+    // flush：一条语句写回所有脏座次
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldWriteDirtySeatsInOneStatement() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+        when(trainSeatMapper.selectById(2)).thenReturn(seat(2, 5, new byte[8]));
+
+        inventory.claim(1);
+        inventory.claim(1);
+        inventory.claim(2);
+        inventory.flush();
+
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper, times(1)).flushAllocations(captor.capture());
+        List<TrainSeat> written = captor.getValue();
+        assertEquals(2, written.size());
+        TrainSeat first = written.stream().filter(s -> s.getId() == 1).findFirst().orElseThrow();
+        assertEquals(3, first.getRemain());
+        assertTrue(SeatUtil.isOccupied(first.getSeatAllocation(), 1));
+        assertFalse(SeatUtil.isOccupied(first.getSeatAllocation(), 2));
+
+        // 没有新的变更时不再写库
+        inventory.flush();
+        verify(trainSeatMapper, times(1)).flushAllocations(any());
+    }
+
+    // flush 失败后下一轮重试
+    @Test
+    void flush_shouldRetryAfterFailure() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+        when(trainSeatMapper.flushAllocations(any())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+
+        inventory.claim(1);
+        inventory.flush();
+        inventory.flush();
+
+        verify(trainSeatMapper, times(2)).flushAllocations(any());
+        assertEquals(1L, inventory.getStats().get("flushFailures"));
+    }
+
+    // 并发占座不会重复分配
+    @Test
+    void claim_shouldNeverHandOutSameSeatTwice() throws Exception {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 512, new byte[64]));
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        List<Integer> duplicates = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    int index = inventory.claim(1);
+                    if (index >= 0 && !seen.add(index)) {
+                        synchronized (duplicates) {
+                            duplicates.add(index);
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(duplicates.isEmpty());
+        assertEquals(512, seen.size());
+    }
+
+    // 多座位占用：优先同组相邻
+    @Test
+    void claimMany_shouldPreferAdjacentSeatsInSameGroup() {
+        // 第0组只剩零散空位，第1组(B)整组空闲
+        byte[] allocation = new byte[8];
+        allocation[0] = (byte) 0xAA;
+        allocation[1] = (byte) 0xAA;
+        allocation[2] = (byte) 0x0A;
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 40, allocation));
+
+        int[] indexes = inventory.claim(1, 4);
+
+        assertArrayEquals(new int[]{20, 21, 22, 23}, indexes);
+        assertEquals(4L, inventory.getStats().get("claims"));
+    }
+
+    // 多座位占用反向：余量不足时不占用任何座位
+    @Test
+    void claimMany_shouldFailAtomicallyWhenNotEnoughRemain() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 2, new byte[8]));
+
+        assertNull(inventory.claim(1, 3));
+        assertArrayEquals(new int[]{0, 1}, inventory.claim(1, 2));
+    }
+
+    // 多座位占用：不会分配超出实际可售座位数的座位号
+    @Test
+    void claimMany_shouldStayWithinSellableCapacity() {
+        // 共10个座位，已售出0、2、4号，余量7
+        byte[] allocation = new byte[8];
+        allocation[0] = (byte) 0x15;
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 7, allocation));
+
+        int[] indexes = inventory.claim(1, 7);
+
+        assertArrayEquals(new int[]{1, 3, 5, 6, 7, 8, 9}, indexes);
+    }
+
+    // 多座位释放
+    @Test
+    void releaseMany_shouldCountOnlyOccupiedSeats() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 10, new byte[8]));
+
+        int[] indexes = inventory.claim(1, 3);
+        assertEquals(3, inventory.release(1, new int[]{indexes[0], indexes[1], indexes[2], 40}));
+        assertEquals(0, inventory.release(1, indexes));
+    }
+
+    // 三站两区间的列车
+    private TrainSeat segmentedSeat(int remain) {
+        TrainSeat seat = seat(1, remain, new byte[64]);
+        seat.setTrainId(7);
+        when(trainStopMapper.findByTrain(7)).thenReturn(List.of(
+                new TrainStop(1, 7, 0, "北京", null, null),
+                new TrainStop(2, 7, 1, "济南", null, null),
+                new TrainStop(3, 7, 2, "上海", null, null)));
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        return seat;
+    }
+
+    // 区间占座：同一座位分别售出互不重叠的区间
+    @Test
+    void claimLeg_shouldReuseSeatForDisjointLegs() {
+        segmentedSeat(2);
+
+        assertArrayEquals(new int[]{0}, inventory.claim(1, "北京", "济南", 1));
+        assertArrayEquals(new int[]{0}, inventory.claim(1, "济南", "上海", 1));
+        assertArrayEquals(new int[]{1}, inventory.claim(1, "北京", "上海", 1));
+        // 共2个座位，北京-济南已满
+        assertNull(inventory.claim(1, "北京", "济南", 1));
+        assertEquals(0, inventory.available(1, "济南", "上海"));
+        assertNull(inventory.claim(1, "上海", "北京", 1));
+    }
+
+    // 区间退座与写回：余量按整趟空闲的座位推算
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseLeg_shouldFreeOnlyThatLegAndFlushMatrix() {
+        segmentedSeat(5);
+
+        inventory.claim(1, "北京", "济南", 1);
+        inventory.claim(1, "济南", "上海", 1);
+        assertEquals(1, inventory.release(1, "北京", "济南", new int[]{0}));
+        assertEquals(0, inventory.release(1, "北京", "济南", new int[]{0}));
+        assertEquals(5, inventory.available(1, "北京", "济南"));
+        assertEquals(4, inventory.available(1, "济南", "上海"));
+
+        inventory.flush();
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        TrainSeat written = captor.getValue().get(0);
+        assertEquals(2, SeatUtil.segments(written.getSeatAllocation()));
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 1, 2, 0));
+        assertFalse(SeatUtil.isOccupied(written.getSeatAllocation(), 0, 1, 0));
+        assertEquals(4, written.getRemain());
+    }
+
+    // 尚未分配过座位的座次按余量售卖，可超过512个座位
+    @Test
+    @SuppressWarnings("unchecked")
+    void claim_shouldSellLargeClassWithoutAllocation() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 1000, null));
+
+        int[] indexes = inventory.claim(1, 1000);
+        assertNotNull(indexes);
+        assertEquals(999, indexes[999]);
+        assertEquals(-1, inventory.claim(1));
+
+        inventory.flush();
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        byte[] written = captor.getValue().get(0).getSeatAllocation();
+        assertEquals(1000, SeatUtil.capacity(written));
+        // 全部售出的座次只有一个游程
+        assertTrue(written.length < 16);
+    }
+
+    // 暂留：座位在内存中占用，但不写回数据库
+    @Test
+    @SuppressWarnings("unchecked")
+    void hold_shouldOccupySeatWithoutWritingIt() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+
+        assertArrayEquals(new int[]{0}, inventory.hold(42, 1, null, null, 1));
+        // 重复暂留返回同一座位
+        assertArrayEquals(new int[]{0}, inventory.hold(42, 1, null, null, 1));
+        assertEquals(4, inventory.available(1, null, null));
+        inventory.flush();
+        verify(trainSeatMapper, never()).flushAllocations(any());
+
+        // 其他座位的变更写回时不包含暂留的座位
+        assertEquals(1, inventory.claim(1));
+        inventory.flush();
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        TrainSeat written = captor.getValue().get(0);
+        assertFalse(SeatUtil.isOccupied(written.getSeatAllocation(), 0));
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 1));
+        assertEquals(4, written.getRemain());
+    }
+
+    // 确认暂留后座位随下一轮写回落库
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitHold_shouldFlushHeldSeat() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+
+        inventory.hold(42, 1, null, null, 2);
+        assertTrue(inventory.commitHold(42));
+        assertFalse(inventory.commitHold(42));
+        assertFalse(inventory.releaseHold(42));
+        inventory.flush();
+
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        TrainSeat written = captor.getValue().get(0);
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 0));
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 1));
+        assertEquals(3, written.getRemain());
+        assertEquals(1L, inventory.getStats().get("holdCommits"));
+    }
+
+    // 过期的暂留直接在内存中释放，不写库
+    @Test
+    void expireHolds_shouldDropExpiredHoldsWithoutTouchingDatabase() {
+        segmentedSeat(1);
+        injectField(inventory, "holdTtlSeconds", 0L);
+
+        assertArrayEquals(new int[]{0}, inventory.hold(42, 1, "北京", "济南", 1));
+        assertEquals(0, inventory.available(1, "北京", "济南"));
+        assertEquals(1, inventory.expireHolds());
+
+        assertEquals(1, inventory.available(1, "北京", "济南"));
+        assertFalse(inventory.commitHold(42));
+        inventory.flush();
+        verify(trainSeatMapper, never()).flushAllocations(any());
+        assertEquals(1L, inventory.getStats().get("holdExpired"));
+        assertEquals(0L, inventory.getStats().get("activeHolds"));
+    }
+
+    // 并发重复暂留只保留一笔，后到者归还自己占用的座位
+    @Test
+    void hold_concurrentSameKeyShouldKeepSingleHold() throws Exception {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 64, new byte[64]));
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<java.util.concurrent.Future<int[]>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return inventory.hold(42, 1, null, null, 2);
+            }));
+        }
+        start.countDown();
+        int[] first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (var result : results) {
+            assertArrayEquals(first, result.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(62, inventory.available(1, null, null));
+        assertEquals(1L, inventory.getStats().get("activeHolds"));
+        assertTrue(inventory.releaseHold(42));
+        assertEquals(64, inventory.available(1, null, null));
+    }
+
+    // claimExact 正向：按记录的座位重新占用并写回
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimExact_shouldClaimRecordedSeatsAndFlush() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+
+        assertTrue(inventory.claimExact(1, null, null, new int[]{2, 3}));
+        inventory.flush();
+
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        TrainSeat written = captor.getValue().get(0);
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 2));
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), 3));
+        assertEquals(3, written.getRemain());
+        assertEquals(1L, inventory.getStats().get("reclaims"));
+    }
+
+    // claimExact 反向：任一座位已被占用时不占用任何座位
+    @Test
+    void claimExact_shouldFailWithoutSideEffectsWhenSeatTaken() {
+        when(trainSeatMapper.selectById(1)).thenReturn(seat(1, 5, new byte[8]));
+        assertEquals(0, inventory.claim(1));
+
+        assertFalse(inventory.claimExact(1, null, null, new int[]{1, 0}));
+        assertFalse(inventory.claimExact(1, null, null, new int[]{7}));
+        assertEquals(4, inventory.available(1, null, null));
+        assertEquals(1, inventory.claim(1));
+        assertEquals(1L, inventory.getStats().get("reclaimFailures"));
+    }
+}
@@ -0,0 +1,129 @@
+package service.impl.trainseat;
+
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
+import org.fxtravel.fxspringboot.pojo.entities.Train;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TimetableIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TimetableIndexTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    private TrainMapper trainMapper;
+    private TimetableIndex index;
+
+    @BeforeEach
+    void setUp() {
+        trainMapper = mock(TrainMapper.class);
+        index = new TimetableIndex();
+        injectField(index, "trainMapper", trainMapper);
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Train train(int id, String from, String to, LocalDateTime departure, int minutes) {
+        return new Train(id, "G" + id, null, from, to, departure, departure.plusMinutes(minutes), minutes);
+    }
+
+    private static List<Integer> ids(List<Train> trains) {
+        return trains.stream().map(Train::getId).toList();
+    }
+
+    // 未加载时返回null，由调用方查询数据库
+    @Test
+    void find_shouldReturnNullBeforeLoad() {
+        assertFalse(index.isLoaded());
+        assertNull(index.find("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59), false));
+    }
+
+    // 按出发时间窗口截取，边界包含在内，只返回该车站对的列车
+    @Test
+    void find_shouldSliceByDepartureWindow() {
+        List<Train> trains = new ArrayList<>(List.of(
+                train(1, "北京", "上海", DATE.atTime(9, 0), 300),
+                train(2, "北京", "上海", DATE.atStartOfDay(), 330),
+                train(3, "北京", "上海", DATE.atTime(23, 59, 59), 280),
+                train(4, "北京", "上海", DATE.plusDays(1).atStartOfDay(), 290),
+                train(5, "北京", "广州", DATE.atTime(10, 0), 500),
+                train(6, "北京", "上海", DATE.minusDays(1).atTime(23, 0), 300)));
+        Collections.shuffle(trains);
+        when(trainMapper.findAfter(0)).thenReturn(trains);
+        index.reload();
+
+        assertEquals(List.of(2, 1, 3), ids(index.find("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59), false)));
+        assertEquals(List.of(3, 1, 2), ids(index.find("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59), true)));
+        assertTrue(index.find("上海", "北京", DATE.atStartOfDay(), DATE.atTime(23, 59, 59), false).isEmpty());
+        assertTrue(index.find("北京", "上海", DATE.plusDays(5).atStartOfDay(), DATE.plusDays(5).atTime(23, 59, 59), false).isEmpty());
+    }
+
+    // 增量加载只读取新增的列车
+    @Test
+    void refresh_shouldLoadOnlyNewTrains() {
+        when(trainMapper.findAfter(0)).thenReturn(List.of(train(1, "北京", "上海", DATE.atTime(9, 0), 300)));
+        assertEquals(1, index.refresh());
+        when(trainMapper.findAfter(1)).thenReturn(List.of(train(2, "北京", "上海", DATE.atTime(8, 0), 300)));
+        assertEquals(1, index.refresh());
+        when(trainMapper.findAfter(2)).thenReturn(Collections.emptyList());
+        assertEquals(0, index.refresh());
+
+        assertEquals(List.of(2, 1), ids(index.find("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59), false)));
+        verify(trainMapper, times(1)).findAfter(0);
+        assertEquals(2L, index.getStats().get("timetableTrains"));
+    }
+
+    // 一次换乘：换乘间隔不足的组合被排除，每个首段出发时间给出最早到达的行程
+    @Test
+    void journeys_shouldRespectMinimumConnectionTime() {
+        when(trainMapper.findAfter(0)).thenReturn(List.of(
+                train(1, "北京", "济南", DATE.atTime(8, 0), 120),
+                train(2, "济南", "上海", DATE.atTime(10, 10), 180),   // 换乘只有10分钟
+                train(3, "济南", "上海", DATE.atTime(11, 0), 200),
+                train(4, "北京", "济南", DATE.atTime(12, 0), 120),
+                train(5, "济南", "上海", DATE.atTime(15, 0), 180),
+                train(6, "济南", "北京", DATE.atTime(9, 0), 120)));
+        index.reload();
+
+        List<List<Train>> journeys = index.journeys("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59));
+
+        assertEquals(2, journeys.size());
+        assertEquals(List.of(1, 3), ids(journeys.get(0)));
+        assertEquals(List.of(4, 5), ids(journeys.get(1)));
+    }
+
+    // 两次换乘只有比一次换乘更早到达时才返回
+    @Test
+    void journeys_shouldKeepTwoTransfersOnlyWhenFaster() {
+        when(trainMapper.findAfter(0)).thenReturn(List.of(
+                train(1, "北京", "济南", DATE.atTime(8, 0), 120),
+                train(2, "济南", "上海", DATE.atTime(13, 0), 240),    // 17:00到达
+                train(3, "济南", "南京", DATE.atTime(10, 30), 120),
+                train(4, "南京", "上海", DATE.atTime(13, 0), 60),     // 14:00到达
+                train(5, "北京", "上海", DATE.plusDays(1).atTime(8, 0), 300)));
+        index.reload();
+
+        List<List<Train>> journeys = index.journeys("北京", "上海", DATE.atStartOfDay(), DATE.atTime(23, 59, 59));
+
+        assertEquals(2, journeys.size());
+        assertTrue(journeys.stream().anyMatch(j -> ids(j).equals(List.of(1, 2))));
+        assertTrue(journeys.stream().anyMatch(j -> ids(j).equals(List.of(1, 3, 4))));
+        assertTrue(index.journeys("北京", "广州", DATE.atStartOfDay(), DATE.atTime(23, 59, 59)).isEmpty());
+    }
+}
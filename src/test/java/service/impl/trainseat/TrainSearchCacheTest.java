@@ -0,0 +1,125 @@
+package service.impl.trainseat;
+
+import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
+import org.fxtravel.fxspringboot.pojo.entities.Train;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TrainSearchCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrainSearchCacheTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    private TrainSearchCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TrainSearchCache();
+        loads = new AtomicInteger();
+    }
+
+    private void injectField(Object target, String field, Object value) {
+        try {
+            var f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 每次查询都返回新的对象，模拟数据库
+    private Supplier<List<TrainSearchResult>> loader(int trainId, int seatId, int remain) {
+        return () -> {
+            loads.incrementAndGet();
+            Train train = new Train();
+            train.setId(trainId);
+            TrainSeat seat = new TrainSeat();
+            seat.setId(seatId);
+            seat.setTrainId(trainId);
+            seat.setRemain(remain);
+            TrainSearchResult result = new TrainSearchResult();
+            result.setTrain(train);
+            result.setTrainseats(List.of(seat));
+            return List.of(result);
+        };
+    }
+
+    private static int remainOf(List<TrainSearchResult> results) {
+        return results.get(0).getTrainseats().get(0).getRemain();
+    }
+
+    // 命中：相同条件只查询一次，不同排序方式分别缓存
+    @Test
+    void get_shouldLoadOncePerKey() {
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        cache.get("北京", "上海", DATE, "duration", loader(1, 1, 10));
+
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.getStats().get("searchCacheHits"));
+    }
+
+    // 没有车次的查询结果（null）同样缓存
+    @Test
+    void get_shouldCacheNullResults() {
+        Supplier<List<TrainSearchResult>> empty = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertNull(cache.get("北京", "拉萨", DATE, "duration", empty));
+        assertNull(cache.get("北京", "拉萨", DATE, "duration", empty));
+        assertEquals(1, loads.get());
+    }
+
+    // 更新余量：同一座次在所有缓存结果中一起更新
+    @Test
+    void updateSeat_shouldPatchEverySharedResult() {
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 7, 10));
+        cache.get("北京", "上海", DATE, "duration", loader(1, 7, 10));
+
+        cache.updateSeat(7, 4, null);
+
+        assertEquals(4, remainOf(cache.get("北京", "上海", DATE, "departureTime", loader(1, 7, 10))));
+        assertEquals(4, remainOf(cache.get("北京", "上海", DATE, "duration", loader(1, 7, 10))));
+        assertEquals(2, loads.get());
+    }
+
+    // 过期：有效期为0时每次都重新查询
+    @Test
+    void get_shouldReloadExpiredEntries() {
+        injectField(cache, "ttlSeconds", 0L);
+
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+
+        assertEquals(2, loads.get());
+    }
+
+    // 淘汰：超出条目数时淘汰最久未访问的条目，不再被引用的座次不再更新
+    @Test
+    void get_shouldEvictLeastRecentlyUsedEntry() {
+        injectField(cache, "maxEntries", 2);
+
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        cache.get("北京", "广州", DATE, "departureTime", loader(2, 2, 10));
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        cache.get("北京", "深圳", DATE, "departureTime", loader(3, 3, 10));
+
+        assertEquals(1L, cache.getStats().get("searchCacheEvictions"));
+        cache.get("北京", "上海", DATE, "departureTime", loader(1, 1, 10));
+        assertEquals(3, loads.get());
+        cache.get("北京", "广州", DATE, "departureTime", loader(2, 2, 10));
+        assertEquals(4, loads.get());
+    }
+}
@@ -1,11 +1,15 @@
 package service.impl.trainseat;
 
 
+import org.fxtravel.fxspringboot.common.E_PaymentStatus;
 import org.fxtravel.fxspringboot.event.EventCenter;
+import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.PaymentMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
+import org.fxtravel.fxspringboot.pojo.dto.train.BatchTicketRequest;
 import org.fxtravel.fxspringboot.pojo.dto.train.GetTicketRequest;
+import org.fxtravel.fxspringboot.pojo.dto.train.SeatClaim;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeatOrder;
 import org.fxtravel.fxspringboot.pojo.entities.payment;
@@ -14,9 +18,14 @@ import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
 import org.fxtravel.fxspringboot.service.inter.trainseat.TrainSeatService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Supplier;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -156,4 +165,194 @@ class TrainSeatOrderServiceImplTest {
         assertThrows(IllegalArgumentException.class, () -> service.createOrder(req));
     }
 
-}
\ No newline at end of file
+    // 批量购票：一次插入、一笔支付、一次占座、一次回填座位号
+    @Test
+    @SuppressWarnings("unchecked")
+    void createOrders_shouldShareOnePaymentAndOneAllocation() {
+        BatchTicketRequest request = new BatchTicketRequest();
+        request.setUserId(2);
+        request.setSeatId(1);
+        request.setQuantity(3);
+
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setPrice(100.0);
+        seat.setTrainId(10);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+
+        doAnswer(invocation -> {
+            List<TrainSeatOrder> orders = invocation.getArgument(0);
+            for (int i = 0; i < orders.size(); i++) {
+                orders.get(i).setId(5 + i); // 模拟数据库生成ID
+            }
+            return orders.size();
+        }).when(trainSeatOrderMapper).insertBatch(anyList());
+
+        payment payment = new payment();
+        payment.setId(10);
+        payment.setOrderNumber("ORDER123");
+        when(paymentService.createPayment(eq(2), any(), eq(300.0), eq(5), eq(3), eq(1))).thenReturn(payment);
+
+        when(trainSeatService.checkAndGet(eq(1), eq(3), any())).thenAnswer(invocation -> {
+            String[] buf = ((SeatClaim) invocation.getArgument(2)).getSeatNumbers();
+            buf[0] = "A01";
+            buf[1] = "A02";
+            buf[2] = "A03";
+            return true;
+        });
+        when(paymentService.simulatePaymentProcess(eq("ORDER123"), anyLong(), any(), any())).thenAnswer(invocation -> {
+            Supplier<Boolean> deduction = invocation.getArgument(2);
+            assertTrue(deduction.get());
+            return null;
+        });
+
+        List<TrainSeatOrder> result = service.createOrders(request);
+
+        assertEquals(3, result.size());
+        verify(trainSeatOrderMapper, times(1)).insertBatch(anyList());
+        verify(trainSeatOrderMapper, never()).insert(any(TrainSeatOrder.class));
+        verify(paymentService, times(1)).createPayment(anyInt(), any(), anyDouble(), anyInt(), anyInt(), anyInt());
+        verify(trainSeatOrderMapper).bindPayment(List.of(5, 6, 7), "ORDER123", 10);
+
+        ArgumentCaptor<SeatClaim> claim = ArgumentCaptor.forClass(SeatClaim.class);
+        verify(trainSeatService, times(1)).checkAndGet(eq(1), eq(3), claim.capture());
+        assertEquals(5, claim.getValue().getHoldKey());
+        verify(trainSeatOrderMapper, times(1)).updateSeatNumbers(anyList());
+        assertEquals("A03", result.get(2).getSeatNumber());
+        assertEquals("ORDER123", result.get(1).getOrderNumber());
+    }
+
+    // 批量购票反向：数量无效
+    @Test
+    void createOrders_shouldRejectInvalidQuantity() {
+        BatchTicketRequest request = new BatchTicketRequest();
+        request.setSeatId(1);
+        request.setQuantity(0);
+        when(trainSeatMapper.selectById(1)).thenReturn(new TrainSeat());
+
+        assertThrows(IllegalArgumentException.class, () -> service.createOrders(request));
+        verify(trainSeatOrderMapper, never()).insertBatch(anyList());
+    }
+
+    // 批量购票反向：关联支付中途失败时异常向外抛出由事务回滚，不再开始支付流程
+    @Test
+    void createOrders_shouldRollBackWhenBindingPaymentFails() throws Exception {
+        BatchTicketRequest request = new BatchTicketRequest();
+        request.setUserId(2);
+        request.setSeatId(1);
+        request.setQuantity(2);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setPrice(100.0);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        payment payment = new payment();
+        payment.setId(10);
+        payment.setOrderNumber("ORDER123");
+        when(paymentService.createPayment(any(), any(), any(), any(), any(), any())).thenReturn(payment);
+        when(trainSeatOrderMapper.bindPayment(anyList(), any(), any())).thenThrow(new RuntimeException("db down"));
+
+        assertThrows(RuntimeException.class, () -> service.createOrders(request));
+        verify(paymentService, never()).simulatePaymentProcess(any(), anyLong(), any(), any());
+        verify(trainSeatService, never()).checkAndGet(anyInt(), anyInt(), any());
+
+        Transactional tx = TrainSeatOrderServiceImpl.class
+                .getMethod("createOrders", BatchTicketRequest.class).getAnnotation(Transactional.class);
+        assertNotNull(tx);
+        assertArrayEquals(new Class<?>[]{Exception.class}, tx.rollbackFor());
+    }
+
+    // 批量购票反向：占座之后回填座位号失败，订单回滚的同时归还已占的座位
+    @Test
+    void createOrders_shouldPutBackSeatsWhenALaterStepFails() {
+        BatchTicketRequest request = new BatchTicketRequest();
+        request.setUserId(2);
+        request.setSeatId(1);
+        request.setQuantity(3);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setPrice(100.0);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        payment payment = new payment();
+        payment.setId(10);
+        payment.setOrderNumber("ORDER123");
+        when(paymentService.createPayment(any(), any(), any(), any(), any(), any())).thenReturn(payment);
+
+        // 模拟座次余量：占座扣减，归还加回
+        AtomicInteger remain = new AtomicInteger(10);
+        when(trainSeatService.checkAndGet(eq(1), eq(3), any())).thenAnswer(invocation -> {
+            String[] buf = ((SeatClaim) invocation.getArgument(2)).getSeatNumbers();
+            for (int i = 0; i < buf.length; i++) {
+                buf[i] = "A0" + (i + 1);
+            }
+            remain.addAndGet(-3);
+            return true;
+        });
+        doAnswer(invocation -> remain.addAndGet(invocation.<Integer>getArgument(1)))
+                .when(trainSeatService).putBack(eq(1), anyInt(), any());
+        // 第3位乘客的座位号写入失败
+        when(trainSeatOrderMapper.updateSeatNumbers(anyList())).thenThrow(new RuntimeException("passenger 3 failed"));
+        when(paymentService.simulatePaymentProcess(eq("ORDER123"), anyLong(), any(), any())).thenAnswer(invocation -> {
+            Supplier<Boolean> deduction = invocation.getArgument(2);
+            deduction.get();
+            return null;
+        });
+
+        assertThrows(RuntimeException.class, () -> service.createOrders(request));
+
+        assertEquals(10, remain.get());
+        ArgumentCaptor<SeatClaim> claim = ArgumentCaptor.forClass(SeatClaim.class);
+        verify(trainSeatService).putBack(eq(1), eq(3), claim.capture());
+        assertArrayEquals(new String[]{"A01", "A02", "A03"}, claim.getValue().getSeatNumbers());
+    }
+
+    // 批量购票反向：没有占到座位时失败不归还
+    @Test
+    void createOrders_shouldNotPutBackWhenNothingWasTaken() {
+        BatchTicketRequest request = new BatchTicketRequest();
+        request.setUserId(2);
+        request.setSeatId(1);
+        request.setQuantity(2);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        payment payment = new payment();
+        payment.setOrderNumber("ORDER123");
+        when(paymentService.createPayment(any(), any(), any(), any(), any(), any())).thenReturn(payment);
+        when(paymentService.simulatePaymentProcess(eq("ORDER123"), anyLong(), any(), any()))
+                .thenThrow(new RuntimeException("db down"));
+
+        assertThrows(RuntimeException.class, () -> service.createOrders(request));
+
+        verify(trainSeatService, never()).putBack(anyInt(), anyInt(), any());
+    }
+
+    // 支付状态变更：联表更新没有命中（订单号为空）时按ID更新
+    @Test
+    void handlePaymentStatusChange_shouldFallBackToIdWithoutOrderNumber() throws Exception {
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getOrderId()).thenReturn(5);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.FAILED);
+        when(trainSeatOrderMapper.updateGroupStatus(5, E_PaymentStatus.FAILED)).thenReturn(0);
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(trainSeatOrderMapper).updateStatus(5, E_PaymentStatus.FAILED);
+    }
+
+    // 支付状态变更：联表更新命中时不再按ID更新
+    @Test
+    void handlePaymentStatusChange_shouldUpdateGroupByOrderNumber() throws Exception {
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getOrderId()).thenReturn(5);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.COMPLETED);
+        when(trainSeatOrderMapper.updateGroupStatus(5, E_PaymentStatus.COMPLETED)).thenReturn(3);
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(trainSeatOrderMapper, never()).updateStatus(anyInt(), any());
+    }
+}
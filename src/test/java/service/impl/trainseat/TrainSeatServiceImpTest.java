@@ -5,41 +5,75 @@ import org.fxtravel.fxspringboot.event.EventCenter;
 import org.fxtravel.fxspringboot.event.data.PaymentInfo;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainMapper;
 import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainSeatOrderMapper;
+import org.fxtravel.fxspringboot.mapper.trainseat.TrainStopMapper;
+import org.fxtravel.fxspringboot.pojo.dto.SearchPage;
+import org.fxtravel.fxspringboot.pojo.dto.train.FlexSearchResult;
+import org.fxtravel.fxspringboot.pojo.dto.train.SeatClaim;
 import org.fxtravel.fxspringboot.pojo.dto.train.TrainSearchResult;
 import org.fxtravel.fxspringboot.pojo.entities.Train;
 import org.fxtravel.fxspringboot.pojo.entities.TrainSeat;
+import org.fxtravel.fxspringboot.pojo.entities.TrainSeatOrder;
+import org.fxtravel.fxspringboot.service.impl.trainseat.SeatInventory;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TimetableIndex;
+import org.fxtravel.fxspringboot.service.impl.trainseat.TrainSearchCache;
 import org.fxtravel.fxspringboot.service.impl.trainseat.TrainSeatServiceImpl;
+import org.fxtravel.fxspringboot.service.inter.common.PaymentService;
 import org.fxtravel.fxspringboot.utils.SeatUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 class TrainSeatServiceImplTest {
 
     private TrainMapper trainMapper;
     private TrainSeatMapper trainSeatMapper;
+    private TrainSeatOrderMapper trainSeatOrderMapper;
     private EventCenter eventCenter;
+    private SeatInventory seatInventory;
+    private TimetableIndex timetable;
+    private PaymentService paymentService;
     private TrainSeatServiceImpl service;
 
     @BeforeEach
     void setUp() {
         trainMapper = mock(TrainMapper.class);
         trainSeatMapper = mock(TrainSeatMapper.class);
+        trainSeatOrderMapper = mock(TrainSeatOrderMapper.class);
         eventCenter = mock(EventCenter.class);
+        seatInventory = mock(SeatInventory.class);
 
         service = new TrainSeatServiceImpl();
         injectField(service, "trainMapper", trainMapper);
         injectField(service, "trainSeatMapper", trainSeatMapper);
+        injectField(service, "trainSeatOrderMapper", trainSeatOrderMapper);
         injectField(service, "eventCenter", eventCenter);
+        injectField(service, "seatInventory", seatInventory);
+        injectField(service, "searchCache", new TrainSearchCache());
+        timetable = mock(TimetableIndex.class);
+        injectField(service, "timetable", timetable);
+        paymentService = mock(PaymentService.class);
+        injectField(service, "paymentService", paymentService);
     }
 
     // 工具方法：反射注入
@@ -94,7 +128,7 @@ class TrainSeatServiceImplTest {
 
         when(trainMapper.findByRouteAndTimeOrderByTime("北京", "上海", startOfDay, endOfDay))
                 .thenReturn(trains);
-        when(trainSeatMapper.findByTrain(1)).thenReturn(seats);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(seats);
 
         List<TrainSearchResult> results = service.findByRouteAndTimeOrderByTime("北京", "上海", date);
 
@@ -132,7 +166,7 @@ class TrainSeatServiceImplTest {
 
         when(trainMapper.findByRouteAndTimeOrderByTime("北京", "上海", startOfDay, endOfDay))
                 .thenReturn(trains);
-        when(trainSeatMapper.findByTrain(1)).thenReturn(Collections.emptyList());
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(Collections.emptyList());
 
         List<TrainSearchResult> results = service.findByRouteAndTimeOrderByTime("北京", "上海", date);
 
@@ -140,6 +174,239 @@ class TrainSeatServiceImplTest {
         assertTrue(results.isEmpty());
     }
 
+    // 搜索结果：一次查询取回所有列车的座次，保持列车顺序
+    @Test
+    void findByRouteAndTimeOrderByTime_shouldLoadSeatsInOneQuery() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        Train first = new Train();
+        first.setId(2);
+        Train second = new Train();
+        second.setId(1);
+        Train noSeats = new Train();
+        noSeats.setId(3);
+        when(trainMapper.findByRouteAndTimeOrderByTime(eq("北京"), eq("上海"), any(), any()))
+                .thenReturn(List.of(first, second, noSeats));
+
+        TrainSeat a = new TrainSeat();
+        a.setId(10);
+        a.setTrainId(1);
+        TrainSeat b = new TrainSeat();
+        b.setId(11);
+        b.setTrainId(2);
+        TrainSeat c = new TrainSeat();
+        c.setId(12);
+        c.setTrainId(2);
+        when(trainSeatMapper.findByTrains(List.of(2, 1, 3))).thenReturn(List.of(a, b, c));
+
+        List<TrainSearchResult> results = service.findByRouteAndTimeOrderByTime("北京", "上海", date);
+
+        assertEquals(2, results.size());
+        assertEquals(first, results.get(0).getTrain());
+        assertEquals(List.of(b, c), results.get(0).getTrainseats());
+        assertEquals(List.of(a), results.get(1).getTrainseats());
+        verify(trainSeatMapper, times(1)).findByTrains(anyList());
+        verify(trainSeatMapper, never()).findByTrain(anyInt());
+    }
+
+    // 搜索缓存：相同条件只查询一次，占座后缓存中的余量随之更新
+    @Test
+    void findByRouteAndTimeOrderByTime_shouldServeFromCacheWithFreshRemain() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        Train train = new Train();
+        train.setId(1);
+        when(trainMapper.findByRouteAndTimeOrderByTime(eq("北京"), eq("上海"), any(), any())).thenReturn(List.of(train));
+        TrainSeat listed = new TrainSeat();
+        listed.setId(1);
+        listed.setTrainId(1);
+        listed.setRemain(10);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(List.of(listed));
+
+        assertEquals(10, service.findByRouteAndTimeOrderByTime("北京", "上海", date).get(0).getTrainseats().get(0).getRemain());
+
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(10);
+        seat.setSeatAllocation(new byte[8]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), eq(2), any(), any())).thenReturn(1);
+        assertTrue(service.checkAndGet(1, 2, new String[2]));
+
+        List<TrainSearchResult> results = service.findByRouteAndTimeOrderByTime("北京", "上海", date);
+        assertEquals(8, results.get(0).getTrainseats().get(0).getRemain());
+        verify(trainMapper, times(1)).findByRouteAndTimeOrderByTime(any(), any(), any(), any());
+        verify(trainSeatMapper, times(1)).findByTrains(anyList());
+        assertEquals(1L, service.getInventoryStats().get("searchCacheHits"));
+    }
+
+    // 搜索缓存：常驻内存模式下余量以内存为准
+    @Test
+    void findByRouteAndTimeOrderByDuration_residentShouldOverlayInventoryRemain() {
+        injectField(service, "residentInventory", true);
+        Train train = new Train();
+        train.setId(1);
+        when(trainMapper.findByRouteAndTimeOrderByDuration(eq("北京"), eq("上海"), any(), any())).thenReturn(List.of(train));
+        TrainSeat listed = new TrainSeat();
+        listed.setId(1);
+        listed.setTrainId(1);
+        listed.setRemain(10);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(List.of(listed));
+        when(seatInventory.remain(1)).thenReturn(3);
+
+        List<TrainSearchResult> results = service.findByRouteAndTimeOrderByDuration("北京", "上海", LocalDate.of(2024, 1, 1));
+
+        assertEquals(3, results.get(0).getTrainseats().get(0).getRemain());
+    }
+
+    // 时刻表索引加载后不再查询数据库
+    @Test
+    void findByRouteAndTimeOrderByTime_shouldUseTimetableIndexWhenLoaded() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        Train train = new Train();
+        train.setId(1);
+        when(timetable.isLoaded()).thenReturn(true);
+        when(timetable.find("北京", "上海", date.atStartOfDay(), date.atTime(23, 59, 59), false))
+                .thenReturn(List.of(train));
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setTrainId(1);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(List.of(seat));
+
+        List<TrainSearchResult> results = service.findByRouteAndTimeOrderByTime("北京", "上海", date);
+
+        assertEquals(train, results.get(0).getTrain());
+        verify(trainMapper, never()).findByRouteAndTimeOrderByTime(any(), any(), any(), any());
+    }
+
+    // 换乘查询：按行程组装各段列车的座次，缺少座次的行程不返回
+    @Test
+    void findTransfers_shouldAssembleLegsWithSeats() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        Train first = new Train();
+        first.setId(1);
+        Train second = new Train();
+        second.setId(2);
+        Train other = new Train();
+        other.setId(3);
+        when(timetable.journeys("北京", "上海", date.atStartOfDay(), date.atTime(23, 59, 59)))
+                .thenReturn(List.of(List.of(first, second), List.of(first, other)));
+        TrainSeat seat1 = new TrainSeat();
+        seat1.setId(11);
+        seat1.setTrainId(1);
+        TrainSeat seat2 = new TrainSeat();
+        seat2.setId(12);
+        seat2.setTrainId(2);
+        when(trainSeatMapper.findByTrains(List.of(1, 2, 3))).thenReturn(List.of(seat1, seat2));
+
+        List<List<TrainSearchResult>> itineraries = service.findTransfers("北京", "上海", date);
+
+        assertEquals(1, itineraries.size());
+        assertEquals(first, itineraries.get(0).get(0).getTrain());
+        assertEquals(List.of(seat2), itineraries.get(0).get(1).getTrainseats());
+    }
+
+    // 分页查询：索引未加载时在SQL中按游标分页，多取一条判断下一页
+    @Test
+    void findByRouteAndTimeOrderByTimePage_shouldPushCursorAndLimitIntoSql() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        Train first = new Train(1, "G1", null, "北京", "上海", date.atTime(8, 0), date.atTime(13, 0), 300);
+        Train second = new Train(2, "G2", null, "北京", "上海", date.atTime(9, 0), date.atTime(14, 0), 300);
+        when(trainMapper.findPageOrderByTime("北京", "上海", date.atStartOfDay(), date.atTime(23, 59, 59), null, null, 2))
+                .thenReturn(List.of(first, second));
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setTrainId(1);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(List.of(seat));
+
+        SearchPage<TrainSearchResult> page = service.findByRouteAndTimeOrderByTime("北京", "上海", date, null, 1);
+
+        assertEquals(1, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+
+        when(trainMapper.findPageOrderByTime("北京", "上海", date.atStartOfDay(), date.atTime(23, 59, 59),
+                date.atTime(8, 0), 1, 2)).thenReturn(List.of());
+        SearchPage<TrainSearchResult> next = service.findByRouteAndTimeOrderByTime("北京", "上海", date, page.getNextCursor(), 1);
+
+        assertTrue(next.getItems().isEmpty());
+        assertNull(next.getNextCursor());
+    }
+
+    // 分页查询：索引已加载时在当天的缓存结果上按游标截取
+    @Test
+    void findByRouteAndTimeOrderByDurationPage_shouldSliceCachedResultsWhenIndexLoaded() {
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        List<Train> trains = List.of(
+                new Train(3, "G3", null, "北京", "上海", date.atTime(10, 0), date.atTime(14, 0), 240),
+                new Train(1, "G1", null, "北京", "上海", date.atTime(8, 0), date.atTime(13, 0), 300),
+                new Train(2, "G2", null, "北京", "上海", date.atTime(9, 0), date.atTime(14, 0), 300));
+        when(timetable.isLoaded()).thenReturn(true);
+        when(timetable.find(eq("北京"), eq("上海"), any(), any(), eq(true))).thenReturn(trains);
+        List<TrainSeat> seats = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            TrainSeat seat = new TrainSeat();
+            seat.setId(id);
+            seat.setTrainId(id);
+            seats.add(seat);
+        }
+        when(trainSeatMapper.findByTrains(List.of(3, 1, 2))).thenReturn(seats);
+
+        SearchPage<TrainSearchResult> page = service.findByRouteAndTimeOrderByDuration("北京", "上海", date, null, 2);
+        SearchPage<TrainSearchResult> next = service.findByRouteAndTimeOrderByDuration("北京", "上海", date, page.getNextCursor(), 2);
+
+        assertEquals(List.of(3, 1), page.getItems().stream().map(r -> r.getTrain().getId()).toList());
+        assertEquals(List.of(2), next.getItems().stream().map(r -> r.getTrain().getId()).toList());
+        assertNull(next.getNextCursor());
+        verify(trainMapper, never()).findPageOrderByDuration(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    // 弹性日期查询：一次范围查询加一次座次查询，按天汇总
+    @Test
+    void findFlexible_shouldSummarizeEachDayFromOneRangeQuery() {
+        LocalDate date = LocalDate.of(2024, 1, 2);
+        Train early = new Train(1, "G1", null, "北京", "上海", date.atTime(7, 0), date.atTime(12, 30), 330);
+        Train fast = new Train(2, "G2", null, "北京", "上海", date.atTime(9, 0), date.atTime(13, 30), 270);
+        Train next = new Train(3, "G3", null, "北京", "上海", date.plusDays(1).atTime(8, 0), date.plusDays(1).atTime(13, 0), 300);
+        when(trainMapper.findByRouteAndTimeOrderByTime("北京", "上海", date.minusDays(1).atStartOfDay(), date.plusDays(1).atTime(23, 59, 59)))
+                .thenReturn(List.of(early, fast, next));
+        TrainSeat cheap = new TrainSeat(11, 1, null, 300.0, 0, null);
+        TrainSeat business = new TrainSeat(12, 1, null, 900.0, 5, null);
+        TrainSeat second = new TrainSeat(21, 2, null, 550.0, 10, null);
+        TrainSeat other = new TrainSeat(31, 3, null, 500.0, 2, null);
+        when(trainSeatMapper.findByTrains(List.of(1, 2, 3))).thenReturn(List.of(cheap, business, second, other));
+
+        FlexSearchResult result = service.findFlexible("北京", "上海", date, 1);
+
+        assertEquals(3, result.getDays().size());
+        assertEquals(0, result.getDays().get(0).getTrainCount());
+        FlexSearchResult.DaySummary day = result.getDays().get(1);
+        assertEquals(2, day.getTrainCount());
+        assertEquals(1, day.getEarliestTrainId());
+        assertEquals(2, day.getShortestTrainId());
+        assertEquals(270, day.getShortestMinutes());
+        assertEquals(550.0, day.getMinPrice());
+        assertEquals(15, day.getSeatsLeft());
+        assertEquals(500.0, result.getDays().get(2).getMinPrice());
+        assertEquals(3, result.getTrains().size());
+        verify(trainSeatMapper, times(1)).findByTrains(any());
+    }
+
+    // 弹性日期查询：没有到达时间和历时的车次不会被当作最短历时
+    @Test
+    void findFlexible_shouldSkipTrainsWithoutDuration() {
+        LocalDate date = LocalDate.of(2024, 1, 2);
+        Train unknown = new Train(1, "G1", null, "北京", "上海", date.atTime(7, 0), null, null);
+        Train known = new Train(2, "G2", null, "北京", "上海", date.atTime(9, 0), date.atTime(13, 30), 270);
+        when(trainMapper.findByRouteAndTimeOrderByTime("北京", "上海", date.atStartOfDay(), date.atTime(23, 59, 59)))
+                .thenReturn(List.of(unknown, known));
+        when(trainSeatMapper.findByTrains(List.of(1, 2))).thenReturn(List.of(
+                new TrainSeat(11, 1, null, 300.0, 1, null), new TrainSeat(21, 2, null, 300.0, 1, null)));
+
+        FlexSearchResult.DaySummary day = service.findFlexible("北京", "上海", date, 0).getDays().get(0);
+
+        assertEquals(2, day.getTrainCount());
+        assertEquals(2, day.getShortestTrainId());
+        assertEquals(270, day.getShortestMinutes());
+    }
+
     // findByRouteAndTimeOrderByDuration 正向
     @Test
     void findByRouteAndTimeOrderByDuration_shouldReturnSearchResults() {
@@ -158,7 +425,7 @@ class TrainSeatServiceImplTest {
 
         when(trainMapper.findByRouteAndTimeOrderByDuration("北京", "上海", startOfDay, endOfDay))
                 .thenReturn(trains);
-        when(trainSeatMapper.findByTrain(1)).thenReturn(seats);
+        when(trainSeatMapper.findByTrains(List.of(1))).thenReturn(seats);
 
         List<TrainSearchResult> results = service.findByRouteAndTimeOrderByDuration("北京", "上海", date);
 
@@ -194,17 +461,17 @@ class TrainSeatServiceImplTest {
             seat.setSeatAllocation(new byte[]{0, 0, 0, 0});
 
             when(trainSeatMapper.selectById(1)).thenReturn(seat);
-            when(trainSeatMapper.deduct(eq(1), any(byte[].class))).thenReturn(1);
+            when(trainSeatMapper.deduct(eq(1), eq(1), any(), any())).thenReturn(1);
 
-            mockedSeatUtil.when(() -> SeatUtil.nextAvailable(any())).thenReturn(0);
+            mockedSeatUtil.when(() -> SeatUtil.allocate(any(), anyInt(), eq(1))).thenReturn(new int[]{0});
             mockedSeatUtil.when(() -> SeatUtil.idx2number(0)).thenReturn("1A");
-            mockedSeatUtil.when(() -> SeatUtil.setBit(any(), eq(0))).thenReturn(new byte[]{1, 0, 0, 0});
+            mockedSeatUtil.when(() -> SeatUtil.setBits(any(), any())).thenReturn(new byte[]{1, 0, 0, 0});
 
             boolean result = service.checkAndGet(1, 1, seatNumber);
 
             assertTrue(result);
             assertEquals("1A", seatNumber[0]);
-            verify(trainSeatMapper, times(1)).deduct(eq(1), any(byte[].class));
+            verify(trainSeatMapper, times(1)).deduct(eq(1), eq(1), any(byte[].class), any(byte[].class));
         }
     }
 
@@ -257,7 +524,7 @@ class TrainSeatServiceImplTest {
             seat.setSeatAllocation(new byte[]{-1, -1, -1, -1});
 
             when(trainSeatMapper.selectById(1)).thenReturn(seat);
-            mockedSeatUtil.when(() -> SeatUtil.nextAvailable(any())).thenReturn(null);
+            mockedSeatUtil.when(() -> SeatUtil.allocate(any(), anyInt(), anyInt())).thenReturn(null);
 
             boolean result = service.checkAndGet(1, 1, seatNumber);
 
@@ -276,11 +543,13 @@ class TrainSeatServiceImplTest {
 
             when(trainSeatMapper.selectById(1)).thenReturn(seat);
             mockedSeatUtil.when(() -> SeatUtil.number2idx("1A")).thenReturn(0);
-            mockedSeatUtil.when(() -> SeatUtil.clearBit(any(), eq(0))).thenReturn(new byte[]{0, -1, -1, -1});
+            mockedSeatUtil.when(() -> SeatUtil.isOccupied(any(), eq(0))).thenReturn(true);
+            when(trainSeatMapper.add(eq(1), eq(1), any(), any())).thenReturn(1);
+            mockedSeatUtil.when(() -> SeatUtil.clearBits(any(), any())).thenReturn(new byte[]{0, -1, -1, -1});
 
             service.putBack(1, 1, "1A");
 
-            verify(trainSeatMapper, times(1)).add(eq(1), any(byte[].class));
+            verify(trainSeatMapper, times(1)).add(eq(1), eq(1), any(byte[].class), any(byte[].class));
         }
     }
 
@@ -291,7 +560,7 @@ class TrainSeatServiceImplTest {
 
         service.putBack(999, 1, "1A");
 
-        verify(trainSeatMapper, never()).add(anyInt(), any(byte[].class));
+        verify(trainSeatMapper, never()).add(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
     }
 
     // putBack 反向（参数类型错误）
@@ -301,7 +570,7 @@ class TrainSeatServiceImplTest {
 
         service.putBack(1, 1, invalidParam);
 
-        verify(trainSeatMapper, never()).add(anyInt(), any(byte[].class));
+        verify(trainSeatMapper, never()).add(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
     }
 
     // putBack 反向（无效座位号）
@@ -317,7 +586,7 @@ class TrainSeatServiceImplTest {
 
             service.putBack(1, 1, "INVALID");
 
-            verify(trainSeatMapper, never()).add(anyInt(), any(byte[].class));
+            verify(trainSeatMapper, never()).add(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
         }
     }
 
@@ -337,13 +606,15 @@ class TrainSeatServiceImplTest {
             when(trainSeatMapper.selectById(1)).thenReturn(seat);
 
             mockedSeatUtil.when(() -> SeatUtil.number2idx("1A")).thenReturn(0);
-            mockedSeatUtil.when(() -> SeatUtil.clearBit(any(), eq(0))).thenReturn(new byte[]{0, -1, -1, -1});
+            mockedSeatUtil.when(() -> SeatUtil.isOccupied(any(), eq(0))).thenReturn(true);
+            when(trainSeatMapper.add(eq(1), eq(1), any(), any())).thenReturn(1);
+            mockedSeatUtil.when(() -> SeatUtil.clearBits(any(), any())).thenReturn(new byte[]{0, -1, -1, -1});
 
             var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
             method.setAccessible(true);
             method.invoke(service, info);
 
-            verify(trainSeatMapper, times(1)).add(eq(1), any(byte[].class));
+            verify(trainSeatMapper, times(1)).add(eq(1), eq(1), any(byte[].class), any(byte[].class));
         }
     }
 
@@ -363,13 +634,15 @@ class TrainSeatServiceImplTest {
             when(trainSeatMapper.selectById(1)).thenReturn(seat);
 
             mockedSeatUtil.when(() -> SeatUtil.number2idx("1A")).thenReturn(0);
-            mockedSeatUtil.when(() -> SeatUtil.clearBit(any(), eq(0))).thenReturn(new byte[]{0, -1, -1, -1});
+            mockedSeatUtil.when(() -> SeatUtil.isOccupied(any(), eq(0))).thenReturn(true);
+            when(trainSeatMapper.add(eq(1), eq(1), any(), any())).thenReturn(1);
+            mockedSeatUtil.when(() -> SeatUtil.clearBits(any(), any())).thenReturn(new byte[]{0, -1, -1, -1});
 
             var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
             method.setAccessible(true);
             method.invoke(service, info);
 
-            verify(trainSeatMapper, times(1)).add(eq(1), any(byte[].class));
+            verify(trainSeatMapper, times(1)).add(eq(1), eq(1), any(byte[].class), any(byte[].class));
         }
     }
 
@@ -383,6 +656,553 @@ class TrainSeatServiceImplTest {
         method.setAccessible(true);
         method.invoke(service, info);
 
-        verify(trainSeatMapper, never()).add(anyInt(), any(byte[].class));
+        verify(trainSeatMapper, never()).add(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
+    }
+
+    // checkAndGet 常驻内存模式正向
+    @Test
+    void checkAndGet_residentShouldClaimFromInventory() {
+        injectField(service, "residentInventory", true);
+        String[] seatNumber = new String[1];
+        when(seatInventory.claim(1, null, null, 1)).thenReturn(new int[]{21});
+
+        boolean result = service.checkAndGet(1, 1, seatNumber);
+
+        assertTrue(result);
+        assertEquals("B02", seatNumber[0]);
+        verify(trainSeatMapper, never()).selectById(anyInt());
+        verify(trainSeatMapper, never()).deduct(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
+    }
+
+    // checkAndGet 常驻内存模式反向（无可用座位）
+    @Test
+    void checkAndGet_residentShouldFailWhenInventoryExhausted() {
+        injectField(service, "residentInventory", true);
+        String[] seatNumber = new String[1];
+        when(seatInventory.claim(1, null, null, 1)).thenReturn(null);
+
+        assertFalse(service.checkAndGet(1, 1, seatNumber));
+        assertNull(seatNumber[0]);
+    }
+
+    // handlePaymentStatusChange 退款：同一订单号下的所有座位一起归还
+    @Test
+    void handlePaymentStatusChange_shouldPutBackWholeGroupOnRefund() throws Exception {
+        injectField(service, "residentInventory", true);
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.REFUNDED);
+        when(info.getOrderId()).thenReturn(5);
+        TrainSeatOrder first = new TrainSeatOrder();
+        first.setId(5);
+        first.setTrainSeatId(1);
+        first.setOrderNumber("T123");
+        first.setSeatNumber("A01");
+        TrainSeatOrder second = new TrainSeatOrder();
+        second.setId(6);
+        second.setTrainSeatId(1);
+        second.setOrderNumber("T123");
+        second.setSeatNumber("A02");
+        when(trainSeatOrderMapper.selectById(5)).thenReturn(first);
+        when(trainSeatOrderMapper.findAllByOrderNumber("T123")).thenReturn(List.of(first, second));
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(seatInventory, times(1)).release(eq(1), isNull(), isNull(), aryEq(new int[]{0, 1}));
+    }
+
+    // checkAndGet 常驻内存模式：带暂留键时只暂留座位
+    @Test
+    void checkAndGet_residentShouldHoldWhenHoldKeyGiven() {
+        injectField(service, "residentInventory", true);
+        String[] seatNumber = new String[1];
+        when(seatInventory.hold(42, 1, null, null, 1)).thenReturn(new int[]{0});
+
+        assertTrue(service.checkAndGet(1, 1, new SeatClaim(null, null, seatNumber, 42)));
+
+        assertEquals("A01", seatNumber[0]);
+        verify(seatInventory, never()).claim(anyInt(), any(), any(), anyInt());
+    }
+
+    // putBack 常驻内存模式：带暂留键时丢弃暂留，不按座位号归还
+    @Test
+    void putBack_residentShouldReleaseHoldWhenHoldKeyGiven() {
+        injectField(service, "residentInventory", true);
+        when(seatInventory.releaseHold(42)).thenReturn(true);
+
+        service.putBack(1, 1, new SeatClaim(null, null, new String[]{"A01"}, 42));
+
+        verify(seatInventory, times(1)).releaseHold(42);
+        verify(seatInventory, never()).release(anyInt(), any(), any(), any(int[].class));
+    }
+
+    // handlePaymentStatusChange 常驻内存模式：支付完成时确认暂留
+    @Test
+    void handlePaymentStatusChange_residentShouldCommitHoldOnCompleted() throws Exception {
+        injectField(service, "residentInventory", true);
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.COMPLETED);
+        when(info.getOrderId()).thenReturn(42);
+        when(seatInventory.commitHold(42)).thenReturn(true);
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(seatInventory, times(1)).commitHold(42);
+    }
+
+    // handlePaymentStatusChange 常驻内存模式：支付失败时只丢弃暂留，不退座
+    @Test
+    void handlePaymentStatusChange_residentShouldReleaseHoldOnFailed() throws Exception {
+        injectField(service, "residentInventory", true);
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.FAILED);
+        when(info.getOrderId()).thenReturn(42);
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(seatInventory, times(1)).releaseHold(42);
+        verify(seatInventory, never()).release(anyInt(), any(), any(), any(int[].class));
+        verify(trainSeatOrderMapper, never()).selectById(any());
+    }
+
+    // putBack 常驻内存模式
+    @Test
+    void putBack_residentShouldReleaseToInventory() {
+        injectField(service, "residentInventory", true);
+
+        service.putBack(1, 1, "B02");
+
+        verify(seatInventory, times(1)).release(eq(1), isNull(), isNull(), aryEq(new int[]{21}));
+        verify(trainSeatMapper, never()).add(anyInt(), anyInt(), any(byte[].class), any(byte[].class));
+    }
+
+    // checkAndGet 多座位：一次扫描分配同组相邻座位，一次写库
+    @Test
+    void checkAndGet_shouldAllocateAdjacentSeatsInOneWrite() {
+        String[] seatNumber = new String[3];
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(10);
+        // A01、A03已占用，A04起有连续空位
+        seat.setSeatAllocation(new byte[]{0x05, 0, 0, 0, 0, 0, 0, 0});
+
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), eq(3), any(byte[].class), any(byte[].class))).thenReturn(1);
+
+        boolean result = service.checkAndGet(1, 3, seatNumber);
+
+        assertTrue(result);
+        assertArrayEquals(new String[]{"A04", "A05", "A06"}, seatNumber);
+        verify(trainSeatMapper, times(1)).deduct(eq(1), eq(3), any(byte[].class), any(byte[].class));
+    }
+
+    // checkAndGet 反向（缓冲区小于购买数量）
+    @Test
+    void checkAndGet_shouldReturnFalseWhenBufferTooSmall() {
+        assertFalse(service.checkAndGet(1, 2, new String[1]));
+        verify(trainSeatMapper, never()).selectById(anyInt());
+    }
+
+    // checkAndGet 比较并交换冲突后重新读取并重试
+    @Test
+    void checkAndGet_shouldRetryAfterCasConflict() {
+        injectField(service, "casBackoffMs", 0L);
+        String[] seatNumber = new String[1];
+        TrainSeat stale = new TrainSeat();
+        stale.setId(1);
+        stale.setRemain(10);
+        stale.setSeatAllocation(new byte[8]);
+        TrainSeat fresh = new TrainSeat();
+        fresh.setId(1);
+        fresh.setRemain(9);
+        fresh.setSeatAllocation(new byte[]{0x01, 0, 0, 0, 0, 0, 0, 0});
+
+        when(trainSeatMapper.selectById(1)).thenReturn(stale, fresh);
+        when(trainSeatMapper.deduct(eq(1), eq(1), any(), any())).thenReturn(0, 1);
+
+        assertTrue(service.checkAndGet(1, 1, seatNumber));
+        assertEquals("A02", seatNumber[0]);
+        assertEquals(1L, service.getInventoryStats().get("casConflicts"));
+        assertEquals(1L, service.getInventoryStats().get("casRetries"));
+    }
+
+    // checkAndGet 冲突次数超过上限后放弃
+    @Test
+    void checkAndGet_shouldGiveUpAfterMaxRetries() {
+        injectField(service, "casBackoffMs", 0L);
+        injectField(service, "casMaxRetries", 2);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(10);
+        seat.setSeatAllocation(new byte[8]);
+
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), eq(1), any(), any())).thenReturn(0);
+
+        assertFalse(service.checkAndGet(1, 1, new String[1]));
+        verify(trainSeatMapper, times(3)).deduct(eq(1), eq(1), any(), any());
+        assertEquals(1L, service.getInventoryStats().get("casExhausted"));
+    }
+
+    // checkAndGet 并发请求合并为一次读取、一次写库，各自取回不同的座位
+    @Test
+    void checkAndGet_shouldCombineConcurrentRequestsIntoOneWrite() throws Exception {
+        injectField(service, "combineWindowUs", 500_000L);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(10);
+        seat.setSeatAllocation(new byte[8]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), anyInt(), any(), any())).thenReturn(1);
+
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> seats = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            seats.add(pool.submit(() -> {
+                start.await();
+                String[] seatNumber = new String[1];
+                return service.checkAndGet(1, 1, seatNumber) ? seatNumber[0] : null;
+            }));
+        }
+        start.countDown();
+        Set<String> seen = new HashSet<>();
+        for (Future<String> f : seats) {
+            seen.add(f.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(Set.of("A01", "A02", "A03", "A04"), seen);
+        verify(trainSeatMapper, times(1)).selectById(1);
+        verify(trainSeatMapper, times(1)).deduct(eq(1), eq(4), any(), any());
+        assertEquals(1L, service.getInventoryStats().get("combinedBatches"));
+        assertEquals(4L, service.getInventoryStats().get("combinedRequests"));
+    }
+
+    // checkAndGet 合并批次中余量不足的请求单独失败，不影响其他请求
+    @Test
+    void checkAndGet_shouldFailOnlyRequestsBeyondRemain() throws Exception {
+        injectField(service, "combineWindowUs", 500_000L);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(2);
+        seat.setSeatAllocation(new byte[8]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), anyInt(), any(), any())).thenReturn(1);
+
+        int threads = 3;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.checkAndGet(1, 1, new String[1]);
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Boolean> f : results) {
+            succeeded += f.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        pool.shutdown();
+
+        assertEquals(2, succeeded);
+        verify(trainSeatMapper, times(1)).deduct(eq(1), eq(2), any(), any());
+    }
+
+    // checkAndGet 组长分配时抛出Error：本批请求失败，组被移除，之后的请求照常处理
+    @Test
+    void checkAndGet_leaderErrorShouldFailBatchAndReleaseGroup() throws Exception {
+        injectField(service, "combineWindowUs", 0L);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(10);
+        seat.setSeatAllocation(new byte[8]);
+        when(trainSeatMapper.selectById(1)).thenThrow(new StackOverflowError("boom")).thenReturn(seat);
+        when(trainSeatMapper.deduct(eq(1), anyInt(), any(), any())).thenReturn(1);
+
+        assertThrows(CompletionException.class, () -> service.checkAndGet(1, 1, new String[1]));
+        assertTrue(groups().isEmpty());
+
+        String[] seatNumber = new String[1];
+        assertTrue(service.checkAndGet(1, 1, seatNumber));
+        assertEquals("A01", seatNumber[0]);
+        assertTrue(groups().isEmpty());
+    }
+
+    // checkAndGet 组长处理满max-leader-batches批后交给队首的请求，所有请求都得到不同的座位
+    @Test
+    void checkAndGet_shouldHandLeadershipToNextWaiter() throws Exception {
+        injectField(service, "combineWindowUs", 300_000L);
+        injectField(service, "combineMaxBatch", 1);
+        injectField(service, "combineMaxLeaderBatches", 1);
+        byte[][] allocation = {new byte[8]};
+        when(trainSeatMapper.selectById(1)).thenAnswer(invocation -> {
+            TrainSeat seat = new TrainSeat();
+            seat.setId(1);
+            seat.setRemain(10);
+            seat.setSeatAllocation(allocation[0]);
+            return seat;
+        });
+        when(trainSeatMapper.deduct(eq(1), anyInt(), any(), any())).thenAnswer(invocation -> {
+            allocation[0] = invocation.getArgument(2);
+            return 1;
+        });
+
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> seats = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            seats.add(pool.submit(() -> {
+                start.await();
+                String[] seatNumber = new String[1];
+                return service.checkAndGet(1, 1, seatNumber) ? seatNumber[0] : null;
+            }));
+        }
+        start.countDown();
+        Set<String> seen = new HashSet<>();
+        for (Future<String> f : seats) {
+            seen.add(f.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(Set.of("A01", "A02", "A03", "A04"), seen);
+        verify(trainSeatMapper, times(4)).deduct(eq(1), eq(1), any(), any());
+        assertTrue(groups().isEmpty());
+    }
+
+    private java.util.Map<?, ?> groups() throws Exception {
+        var f = TrainSeatServiceImpl.class.getDeclaredField("groups");
+        f.setAccessible(true);
+        return (java.util.Map<?, ?>) f.get(service);
+    }
+
+    // putBack 只归还仍被占用的座位
+    @Test
+    void putBack_shouldSkipSeatsAlreadyFree() {
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setSeatAllocation(new byte[]{0x01, 0, 0, 0, 0, 0, 0, 0});
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        when(trainSeatMapper.add(eq(1), anyInt(), any(), any())).thenReturn(1);
+
+        service.putBack(1, 2, new String[]{"A01", "A02"});
+        verify(trainSeatMapper, times(1)).add(eq(1), eq(1), any(), any());
+
+        seat.setSeatAllocation(new byte[8]);
+        service.putBack(1, 1, "A01");
+        verify(trainSeatMapper, times(1)).add(anyInt(), anyInt(), any(), any());
+    }
+
+    // 三站两区间的座次，位图为旧的单区间格式
+    private TrainSeat segmentedSeat(byte[] allocation) {
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setTrainId(7);
+        seat.setRemain(10);
+        seat.setSeatAllocation(allocation);
+        when(seatInventory.route(7)).thenReturn(List.of("北京", "济南", "上海"));
+        return seat;
+    }
+
+    // checkAndGet 区间：同一座位可分别售出互不重叠的区间
+    @Test
+    void checkAndGet_shouldSellSameSeatForDisjointLegs() {
+        TrainSeat seat = segmentedSeat(new byte[64]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        ArgumentCaptor<byte[]> updated = ArgumentCaptor.forClass(byte[].class);
+        when(trainSeatMapper.deduct(eq(1), anyInt(), updated.capture(), any())).thenReturn(1);
+
+        String[] first = new String[1];
+        assertTrue(service.checkAndGet(1, 1, new SeatClaim("北京", "济南", first)));
+        assertEquals("A01", first[0]);
+        // 首次售出整趟空闲的座位，扣减余量；位图扩展为两个区间
+        verify(trainSeatMapper).deduct(eq(1), eq(1), any(), any());
+        byte[] matrix = updated.getValue();
+        assertEquals(2, SeatUtil.segments(matrix));
+        assertTrue(SeatUtil.isOccupied(matrix, 0, 1, 0));
+        assertFalse(SeatUtil.isOccupied(matrix, 1, 2, 0));
+
+        seat.setSeatAllocation(matrix);
+        String[] second = new String[1];
+        assertTrue(service.checkAndGet(1, 1, new SeatClaim("济南", "上海", second)));
+        assertEquals("A01", second[0]);
+        // 座位此前已部分售出，不再扣减余量
+        verify(trainSeatMapper).deduct(eq(1), eq(0), any(), any());
+
+        seat.setSeatAllocation(updated.getValue());
+        String[] whole = new String[1];
+        assertTrue(service.checkAndGet(1, 1, new SeatClaim("北京", "上海", whole)));
+        assertEquals("A02", whole[0]);
+    }
+
+    // checkAndGet 区间反向：车站不在经停站中或方向相反
+    @Test
+    void checkAndGet_shouldRejectInvalidLeg() {
+        TrainSeat seat = segmentedSeat(new byte[64]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+
+        assertFalse(service.checkAndGet(1, 1, new SeatClaim("上海", "北京", new String[1])));
+        assertFalse(service.checkAndGet(1, 1, new SeatClaim("北京", "广州", new String[1])));
+        verify(trainSeatMapper, never()).deduct(anyInt(), anyInt(), any(), any());
+    }
+
+    // putBack 区间：只清除所退区间，座位整趟空闲后才归还余量
+    @Test
+    void putBack_shouldReleaseOnlyTheLeg() {
+        byte[] matrix = SeatUtil.setBits(new byte[128], 0, 2, new int[]{0});
+        TrainSeat seat = segmentedSeat(matrix);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+        ArgumentCaptor<byte[]> updated = ArgumentCaptor.forClass(byte[].class);
+        when(trainSeatMapper.add(eq(1), anyInt(), updated.capture(), any())).thenReturn(1);
+
+        service.putBack(1, 1, new SeatClaim("北京", "济南", new String[]{"A01"}));
+
+        verify(trainSeatMapper).add(eq(1), eq(0), any(), any());
+        assertFalse(SeatUtil.isOccupied(updated.getValue(), 0, 1, 0));
+        assertTrue(SeatUtil.isOccupied(updated.getValue(), 1, 2, 0));
+    }
+
+    // getAvailability：按区间统计余座
+    @Test
+    void getAvailability_shouldCountFreeSeatsOnLeg() {
+        byte[] matrix = SeatUtil.setBits(new byte[128], 0, 1, new int[]{0, 1});
+        TrainSeat seat = segmentedSeat(matrix);
+        seat.setRemain(8);
+        when(trainSeatMapper.findByTrain(7)).thenReturn(List.of(seat));
+
+        // 共10个座位，北京-济南已售2个
+        assertEquals(8, service.getAvailability(7, "北京", "济南").get(1));
+        assertEquals(10, service.getAvailability(7, "济南", "上海").get(1));
+        assertEquals(8, service.getAvailability(7, null, null).get(1));
+    }
+
+    // handlePaymentStatusChange 以订单记录的区间退座
+    @Test
+    void handlePaymentStatusChange_shouldPutBackLegFromOrder() throws Exception {
+        injectField(service, "residentInventory", true);
+        TrainSeatOrder order = new TrainSeatOrder();
+        order.setTrainSeatId(1);
+        order.setSeatNumber("A01");
+        order.setFromStation("北京");
+        order.setToStation("济南");
+        when(trainSeatOrderMapper.selectById(5)).thenReturn(order);
+        PaymentInfo info = new PaymentInfo(5, 1, 1, E_PaymentStatus.REFUNDED, 1, "B09");
+
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+
+        verify(seatInventory).release(eq(1), eq("北京"), eq("济南"), aryEq(new int[]{0}));
+    }
+
+    private TrainSeatOrder heldOrder(int id, String orderNumber, String seatNumber) {
+        TrainSeatOrder order = new TrainSeatOrder();
+        order.setId(id);
+        order.setOrderNumber(orderNumber);
+        order.setTrainSeatId(1);
+        order.setSeatNumber(seatNumber);
+        return order;
+    }
+
+    private PaymentInfo completed(int orderId) {
+        PaymentInfo info = mock(PaymentInfo.class);
+        when(info.getNewStatus()).thenReturn(E_PaymentStatus.COMPLETED);
+        when(info.getOrderId()).thenReturn(orderId);
+        return info;
+    }
+
+    private void handle(PaymentInfo info) throws Exception {
+        var method = service.getClass().getDeclaredMethod("handlePaymentStatusChange", PaymentInfo.class);
+        method.setAccessible(true);
+        method.invoke(service, info);
+    }
+
+    // handlePaymentStatusChange 常驻内存模式：暂留丢失时按订单记录的座位补占，不退款
+    @Test
+    void handlePaymentStatusChange_residentShouldReclaimSeatsWhenHoldMissing() throws Exception {
+        injectField(service, "residentInventory", true);
+        TrainSeatOrder order = heldOrder(42, "PN42", SeatUtil.idx2number(3));
+        when(trainSeatOrderMapper.selectById(42)).thenReturn(order);
+        when(trainSeatOrderMapper.findAllByOrderNumber("PN42")).thenReturn(List.of(order));
+        when(seatInventory.commitHold(42)).thenReturn(false);
+        when(seatInventory.claimExact(eq(1), isNull(), isNull(), aryEq(new int[]{3}))).thenReturn(true);
+
+        handle(completed(42));
+
+        verify(seatInventory).claimExact(eq(1), isNull(), isNull(), aryEq(new int[]{3}));
+        verify(paymentService, never()).refundPayment(any(), any());
+    }
+
+    // handlePaymentStatusChange 常驻内存模式：补占失败时退款，退款回调不再归还座位
+    @Test
+    void handlePaymentStatusChange_residentShouldRefundWhenReclaimFails() throws Exception {
+        injectField(service, "residentInventory", true);
+        TrainSeatOrder order = heldOrder(42, "PN42", SeatUtil.idx2number(3));
+        when(trainSeatOrderMapper.selectById(42)).thenReturn(order);
+        when(trainSeatOrderMapper.findAllByOrderNumber("PN42")).thenReturn(List.of(order));
+        when(seatInventory.commitHold(42)).thenReturn(false);
+        when(seatInventory.claimExact(anyInt(), any(), any(), any())).thenReturn(false);
+
+        handle(completed(42));
+        verify(paymentService).refundPayment("PN42", PaymentInfo.NOTHING_HELD);
+
+        PaymentInfo refunded = mock(PaymentInfo.class);
+        when(refunded.getNewStatus()).thenReturn(E_PaymentStatus.REFUNDED);
+        when(refunded.getOrderId()).thenReturn(42);
+        when(refunded.getData()).thenReturn(PaymentInfo.NOTHING_HELD);
+        handle(refunded);
+        verify(seatInventory, never()).release(anyInt(), any(), any(), any());
+        verify(trainSeatMapper, never()).updateById(any(TrainSeat.class));
+    }
+
+    // 重启后暂留丢失、待支付的订单完成支付：座位按订单记录补占并写回train_seat
+    @Test
+    @SuppressWarnings("unchecked")
+    void handlePaymentStatusChange_pendingPaymentCompletedAfterRestartShouldPersistSeats() throws Exception {
+        injectField(service, "residentInventory", true);
+        TrainSeat seat = new TrainSeat();
+        seat.setId(1);
+        seat.setRemain(5);
+        seat.setSeatAllocation(new byte[8]);
+        when(trainSeatMapper.selectById(1)).thenReturn(seat);
+
+        // 重启前：占座只暂留在内存中，订单记录了座位号
+        SeatInventory before = residentInventory();
+        int[] held = before.hold(42, 1, null, null, 2);
+        TrainSeatOrder first = heldOrder(42, "PN42", SeatUtil.idx2number(held[0]));
+        TrainSeatOrder second = heldOrder(43, "PN42", SeatUtil.idx2number(held[1]));
+        when(trainSeatOrderMapper.selectById(42)).thenReturn(first);
+        when(trainSeatOrderMapper.findAllByOrderNumber("PN42")).thenReturn(List.of(first, second));
+
+        // 重启后：新的库存实例没有暂留，支付随后完成
+        SeatInventory after = residentInventory();
+        injectField(service, "seatInventory", after);
+        handle(completed(42));
+        after.flush();
+
+        ArgumentCaptor<List<TrainSeat>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainSeatMapper).flushAllocations(captor.capture());
+        TrainSeat written = captor.getValue().get(0);
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), held[0]));
+        assertTrue(SeatUtil.isOccupied(written.getSeatAllocation(), held[1]));
+        assertEquals(3, written.getRemain());
+        verify(paymentService, never()).refundPayment(any(), any());
+    }
+
+    private SeatInventory residentInventory() {
+        SeatInventory inventory = new SeatInventory();
+        injectField(inventory, "trainSeatMapper", trainSeatMapper);
+        injectField(inventory, "trainStopMapper", mock(TrainStopMapper.class));
+        injectField(inventory, "trainMapper", trainMapper);
+        return inventory;
     }
-}
\ No newline at end of file
+}
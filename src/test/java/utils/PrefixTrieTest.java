@@ -0,0 +1,62 @@
+package utils;
+
+import org.fxtravel.fxspringboot.utils.PrefixTrie;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixTrieTest {
+
+    private static PrefixTrie trie() {
+        Map<String, Long> entries = new HashMap<>();
+        entries.put("北京", 50L);
+        entries.put("北京南", 80L);
+        entries.put("北京西", 30L);
+        entries.put("北海", 5L);
+        entries.put("上海虹桥", 70L);
+        entries.put("Beijing West", 3L);
+        return new PrefixTrie(entries);
+    }
+
+    // 前缀查询按权重降序
+    @Test
+    void suggest_shouldReturnPrefixMatchesByWeight() {
+        PrefixTrie trie = trie();
+
+        assertEquals(List.of("北京南", "北京", "北京西", "北海"), trie.suggest("北", 10));
+        assertEquals(List.of("北京南", "北京"), trie.suggest("北京", 2));
+        assertEquals(List.of("上海虹桥"), trie.suggest("上", 10));
+        assertTrue(trie.suggest("广", 10).isEmpty());
+    }
+
+    // 查询忽略空白与大小写，返回原始写法
+    @Test
+    void suggest_shouldIgnoreWhitespaceAndCase() {
+        PrefixTrie trie = trie();
+
+        assertEquals(List.of("Beijing West"), trie.suggest("beijingw", 10));
+        assertEquals("Beijing West", trie.canonical(" BEIJING west "));
+        assertEquals("北京", trie.canonical("北 京"));
+        assertNull(trie.canonical("北"));
+    }
+
+    // 每个节点只保留前TOP_K个
+    @Test
+    void suggest_shouldKeepTopKPerNode() {
+        Map<String, Long> entries = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            entries.put("站" + i, (long) i);
+        }
+        PrefixTrie trie = new PrefixTrie(entries);
+
+        List<String> top = trie.suggest("站", 100);
+        assertEquals(PrefixTrie.TOP_K, top.size());
+        assertEquals("站49", top.get(0));
+        assertEquals(50, trie.size());
+        assertTrue(PrefixTrie.empty().suggest("", 10).isEmpty());
+    }
+}
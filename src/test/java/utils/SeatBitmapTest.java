@@ -0,0 +1,128 @@
+package utils;
+
+import org.fxtravel.fxspringboot.utils.SeatBitmap;
+import org.fxtravel.fxspringboot.utils.SeatUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatBitmapTest {
+
+    private static SeatBitmap randomBitmap(Random random, int capacity, int segments, double density) {
+        SeatBitmap bitmap = SeatBitmap.empty(capacity, segments);
+        for (int s = 0; s < segments; s++) {
+            for (int i = 0; i < capacity; i++) {
+                if (random.nextDouble() < density) {
+                    bitmap.set(s, s + 1, new int[]{i});
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    private static void assertSameSeats(SeatBitmap expected, SeatBitmap actual) {
+        assertEquals(expected.capacity(), actual.capacity());
+        assertEquals(expected.segments(), actual.segments());
+        assertArrayEquals(expected.words(), actual.words());
+    }
+
+    // 编码与解码往返，两种容器都应还原
+    @Test
+    void encode_shouldRoundTripForAnyDensity() {
+        Random random = new Random(42);
+        for (int capacity : new int[]{0, 1, 7, 63, 64, 65, 500, 1200}) {
+            for (double density : new double[]{0, 0.01, 0.5, 0.99, 1}) {
+                SeatBitmap bitmap = randomBitmap(random, capacity, 3, density);
+                byte[] encoded = bitmap.encode();
+
+                assertSameSeats(bitmap, SeatBitmap.decode(encoded));
+            }
+        }
+    }
+
+    // 空闲或售罄的座次只需几个字节
+    @Test
+    void encode_shouldUseRunsForEmptyAndFullClasses() {
+        SeatBitmap empty = SeatBitmap.empty(2000, 4);
+        SeatBitmap full = SeatBitmap.empty(2000, 4);
+        int[] all = new int[2000];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        full.set(0, 4, all);
+
+        assertTrue(empty.encode().length <= 8);
+        assertTrue(full.encode().length <= 12);
+        assertEquals(SeatBitmap.RUNS, empty.encode()[5]);
+    }
+
+    // 直接在编码上查询，不必解码
+    @Test
+    void isOccupied_shouldReadEncodedFormDirectly() {
+        Random random = new Random(7);
+        for (double density : new double[]{0.02, 0.6}) {
+            SeatBitmap bitmap = randomBitmap(random, 300, 2, density);
+            byte[] encoded = bitmap.encode();
+            for (int s = 0; s < 2; s++) {
+                for (int i = 0; i < 300; i++) {
+                    assertEquals(bitmap.isOccupied(s, s + 1, i), SeatBitmap.isOccupied(encoded, s, i));
+                }
+            }
+            assertEquals(300, SeatUtil.capacity(encoded));
+            assertEquals(2, SeatUtil.segments(encoded));
+        }
+    }
+
+    // 旧格式：64字节一个区间的原始位图
+    @Test
+    void decode_shouldReadLegacyRawBitmap() {
+        byte[] raw = new byte[128];
+        raw[0] = 0x05;
+        raw[64] = 0x02;
+
+        SeatBitmap bitmap = SeatBitmap.decode(raw);
+
+        assertEquals(512, bitmap.capacity());
+        assertEquals(2, bitmap.segments());
+        assertTrue(bitmap.isOccupied(0, 1, 2));
+        assertTrue(bitmap.isOccupied(1, 2, 1));
+        assertFalse(bitmap.isOccupied(1, 2, 0));
+        assertTrue(SeatUtil.isOccupied(raw, 0, 1, 0));
+    }
+
+    // 结构不合法的数据不视为新格式，按旧格式的原始位图解析
+    @Test
+    void decode_shouldTreatMalformedDataAsLegacy() {
+        byte[] encoded = SeatBitmap.empty(100, 1).encode();
+        byte[] badVersion = encoded.clone();
+        badVersion[1] = 9;
+
+        for (byte[] malformed : new byte[][]{
+                Arrays.copyOf(encoded, encoded.length + 1),
+                badVersion,
+                // 游程越界
+                {SeatBitmap.MAGIC, 1, 10, 1, SeatBitmap.RUNS, 1, 5, 10},
+                // RAW容器填充位非0
+                {SeatBitmap.MAGIC, 1, 4, 1, SeatBitmap.RAW, (byte) 0x10}}) {
+            assertEquals(malformed.length * 8, SeatUtil.capacity(malformed));
+            assertEquals(malformed.length * 8, SeatBitmap.decode(malformed).capacity());
+        }
+        assertEquals(100, SeatUtil.capacity(encoded));
+    }
+
+    // widen：单区间复制到每个区间
+    @Test
+    void widen_shouldCopySingleSegment() {
+        SeatBitmap bitmap = SeatBitmap.empty(100, 1);
+        bitmap.set(0, 1, new int[]{70});
+
+        SeatBitmap widened = bitmap.widen(3);
+
+        assertTrue(widened.isOccupied(0, 3, 70));
+        assertNull(widened.widen(2));
+        assertSame(widened, widened.widen(3));
+    }
+}
@@ -0,0 +1,46 @@
+package utils;
+
+import org.fxtravel.fxspringboot.utils.SeatUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatUtilTest {
+
+    // 前520个座位沿用单个字母的座位号
+    @Test
+    void idx2number_shouldKeepSingleLetterNumbers() {
+        assertEquals("A01", SeatUtil.idx2number(0));
+        assertEquals("A20", SeatUtil.idx2number(19));
+        assertEquals("B01", SeatUtil.idx2number(20));
+        assertEquals("Z20", SeatUtil.idx2number(519));
+    }
+
+    // 超过26组后使用两个字母，不会出现字母以外的字符
+    @Test
+    void idx2number_shouldContinueWithTwoLetters() {
+        assertEquals("AA01", SeatUtil.idx2number(520));
+        assertEquals("AZ20", SeatUtil.idx2number(26 * 20 + 26 * 20 - 1));
+        assertEquals("BA01", SeatUtil.idx2number(52 * 20));
+        assertThrows(IllegalArgumentException.class, () -> SeatUtil.idx2number(-1));
+    }
+
+    @Test
+    void number2idx_shouldRoundTrip() {
+        for (int index = 0; index < 1 << 16; index++) {
+            String number = SeatUtil.idx2number(index);
+            assertTrue(number.chars().limit(number.length() - 2).allMatch(c -> c >= 'A' && c <= 'Z'), number);
+            assertEquals(index, SeatUtil.number2idx(number));
+        }
+    }
+
+    @Test
+    void number2idx_shouldRejectInvalidNumbers() {
+        assertEquals(-1, SeatUtil.number2idx("A21"));
+        assertEquals(-1, SeatUtil.number2idx("A00"));
+        assertEquals(-1, SeatUtil.number2idx("[01"));
+        assertEquals(-1, SeatUtil.number2idx("AB"));
+        assertEquals(-1, SeatUtil.number2idx("01"));
+        assertEquals(-1, SeatUtil.number2idx(null));
+    }
+}
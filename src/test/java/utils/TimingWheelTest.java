@@ -0,0 +1,93 @@
+package utils;
+
+import org.fxtravel.fxspringboot.utils.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    // 小轮盘，任务很快就会跨过一圈
+    private final TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void schedule_shouldFireAfterDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = wheel.schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertEquals(1, wheel.expiredCount());
+    }
+
+    // 到期时间超过一圈的任务按剩余圈数等待
+    @Test
+    void schedule_shouldWaitForRemainingRounds() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(fired::countDown, 250, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    void cancel_shouldPreventFiring() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(fired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        Thread.sleep(200);
+
+        assertEquals(0, fired.get());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.size());
+    }
+
+    // 已到期的任务不能再取消
+    @Test
+    void cancel_shouldFailAfterExpiry() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void size_shouldCountPendingTimeouts() throws Exception {
+        CountDownLatch fired = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule(fired::countDown, 20 + i, TimeUnit.MILLISECONDS);
+        }
+        TimingWheel.Timeout later = wheel.schedule(() -> { }, 10, TimeUnit.SECONDS);
+        assertEquals(101, wheel.size());
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertEquals(100, wheel.expiredCount());
+        later.cancel();
+        Thread.sleep(50);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_shouldRejectAfterStop() {
+        wheel.schedule(() -> { }, 1, TimeUnit.SECONDS);
+        wheel.stop();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, 1, TimeUnit.SECONDS));
+    }
+}